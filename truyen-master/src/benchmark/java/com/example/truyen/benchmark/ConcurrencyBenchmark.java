@@ -0,0 +1,403 @@
+package com.example.truyen.benchmark;
+
+import com.example.truyen.TruyenApplication;
+import com.example.truyen.entity.Chapter;
+import com.example.truyen.entity.CoinPackage;
+import com.example.truyen.entity.PaymentOrder;
+import com.example.truyen.entity.Story;
+import com.example.truyen.entity.User;
+import com.example.truyen.repository.ChapterRepository;
+import com.example.truyen.repository.CoinPackageRepository;
+import com.example.truyen.repository.PaymentOrderRepository;
+import com.example.truyen.repository.StoryRepository;
+import com.example.truyen.repository.UserRepository;
+import com.example.truyen.security.UserPrincipal;
+import com.example.truyen.service.ChapterAccessService;
+import com.example.truyen.service.PaymentService;
+import com.example.truyen.service.WalletLedgerService;
+import com.example.truyen.service.WalletService;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.math.BigDecimal;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Benchmark đồng thời cho các luồng tiền: mở khóa chương, nạp/trừ xu (user nóng + user lạnh)
+ * và IPN VNPay gửi trùng. Khởi động cả ứng dụng (profile "benchmark") với MySQL + Redis local,
+ * tạo dữ liệu riêng cho mỗi lần chạy rồi in throughput, p50/p99, số lần chờ khóa InnoDB và
+ * kiểm tra bất biến (không âm số dư, không cộng xu 2 lần, ledger khớp số dư).
+ *
+ * Chạy: ./gradlew benchmark -PbenchArgs="--bench.threads=64 --bench.hot-users=2"
+ * Thoát với mã 1 nếu có bất biến bị vi phạm.
+ */
+public class ConcurrencyBenchmark {
+
+    private final ConfigurableApplicationContext context;
+    private final Environment env;
+    private final JdbcTemplate jdbcTemplate;
+    private final WalletService walletService;
+    private final WalletLedgerService walletLedgerService;
+    private final ChapterAccessService chapterAccessService;
+    private final PaymentService paymentService;
+
+    private final String runId = Long.toString(System.currentTimeMillis(), 36).toUpperCase();
+    private final int threads;
+    private final double hotRatio;
+
+    private List<User> hotUsers;
+    private List<User> coldUsers;
+    private List<Long> chapterIds;
+    private CoinPackage coinPackage;
+    private final List<Long> ipnOrderIds = new ArrayList<>();
+    private final List<String> violations = new ArrayList<>();
+
+    ConcurrencyBenchmark(ConfigurableApplicationContext context) {
+        this.context = context;
+        this.env = context.getEnvironment();
+        this.jdbcTemplate = context.getBean(JdbcTemplate.class);
+        this.walletService = context.getBean(WalletService.class);
+        this.walletLedgerService = context.getBean(WalletLedgerService.class);
+        this.chapterAccessService = context.getBean(ChapterAccessService.class);
+        this.paymentService = context.getBean(PaymentService.class);
+        this.threads = intProperty("bench.threads", 32);
+        this.hotRatio = env.getProperty("bench.hot-ratio", Double.class, 0.8);
+    }
+
+    public static void main(String[] args) {
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(TruyenApplication.class)
+                .profiles("benchmark")
+                .run(args);
+        // Benchmark không cần consumer Kafka
+        context.getBean(KafkaListenerEndpointRegistry.class).stop();
+
+        boolean passed;
+        try {
+            passed = new ConcurrencyBenchmark(context).run();
+        } finally {
+            context.close();
+        }
+        System.exit(passed ? 0 : 1);
+    }
+
+    boolean run() {
+        setUp();
+        System.out.printf("Benchmark run %s: %d threads, %d hot / %d cold users, %d chapters%n",
+                runId, threads, hotUsers.size(), coldUsers.size(), chapterIds.size());
+
+        runUnlocks().print();
+        runWalletMix().print();
+        runDuplicateIpns().print();
+
+        walletLedgerService.settleLedger();
+        checkInvariants();
+
+        System.out.printf("%n== Invariants ==%n");
+        if (violations.isEmpty()) {
+            System.out.println("  all invariants hold");
+        } else {
+            violations.forEach(v -> System.out.println("  VIOLATION: " + v));
+        }
+        return violations.isEmpty();
+    }
+
+    // ===== FIXTURES =====
+
+    private void setUp() {
+        UserRepository userRepository = context.getBean(UserRepository.class);
+        hotUsers = createUsers(userRepository, "h", intProperty("bench.hot-users", 4));
+        coldUsers = createUsers(userRepository, "c", intProperty("bench.cold-users", 200));
+
+        int initialCoins = intProperty("bench.initial-coins", 500);
+        allUsers().forEach(user -> walletService.addCoins(user.getId(), initialCoins, "Benchmark seed", null, null));
+
+        Story story = context.getBean(StoryRepository.class).save(Story.builder()
+                .title("Benchmark " + runId)
+                .build());
+        int price = intProperty("bench.chapter-price", 5);
+        List<Chapter> chapters = new ArrayList<>();
+        for (int i = 1; i <= intProperty("bench.chapters", 300); i++) {
+            chapters.add(Chapter.builder()
+                    .story(story)
+                    .chapterNumber(i)
+                    .title("Chapter " + i)
+                    .isLocked(true)
+                    .coinsPrice(price)
+                    .build());
+        }
+        chapterIds = context.getBean(ChapterRepository.class).saveAll(chapters).stream()
+                .map(Chapter::getId)
+                .toList();
+
+        coinPackage = context.getBean(CoinPackageRepository.class).save(CoinPackage.builder()
+                .name("Benchmark " + runId)
+                .coins(100)
+                .price(BigDecimal.valueOf(10_000))
+                .isActive(false)
+                .build());
+    }
+
+    private List<User> createUsers(UserRepository userRepository, String kind, int count) {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String username = "b" + runId + kind + i;
+            users.add(User.builder()
+                    .username(username)
+                    .email(username + "@benchmark.local")
+                    .password("benchmark")
+                    .build());
+        }
+        return userRepository.saveAll(users);
+    }
+
+    // ===== SCENARIOS =====
+
+    // Mở khóa chương ngẫu nhiên, user nóng chiếm hot-ratio số thao tác
+    private ScenarioResult runUnlocks() {
+        int operations = intProperty("bench.unlock-operations", 5000);
+        List<Runnable> tasks = new ArrayList<>(operations);
+        for (int i = 0; i < operations; i++) {
+            User user = pickUser();
+            Long chapterId = chapterIds.get(ThreadLocalRandom.current().nextInt(chapterIds.size()));
+            tasks.add(() -> {
+                SecurityContextHolder.getContext().setAuthentication(authenticationOf(user));
+                try {
+                    chapterAccessService.unlockChapter(chapterId);
+                } finally {
+                    SecurityContextHolder.clearContext();
+                }
+            });
+        }
+        return runConcurrently("Concurrent chapter unlocks", tasks);
+    }
+
+    // Nạp và trừ xu đan xen trên cùng nhóm user
+    private ScenarioResult runWalletMix() {
+        int operations = intProperty("bench.wallet-operations", 5000);
+        List<Runnable> tasks = new ArrayList<>(operations);
+        for (int i = 0; i < operations; i++) {
+            User user = pickUser();
+            int amount = 1 + ThreadLocalRandom.current().nextInt(20);
+            if (ThreadLocalRandom.current().nextBoolean()) {
+                tasks.add(() -> walletService.addCoins(user.getId(), amount, "Benchmark top-up", null, null));
+            } else {
+                tasks.add(() -> walletService.spendCoins(user.getId(), amount, "Benchmark spend", null, null));
+            }
+        }
+        return runConcurrently("Mixed top-ups and spends", tasks);
+    }
+
+    // Mỗi đơn nhận nhiều IPN trùng cùng lúc, sau đó chạy worker tới khi xử lý hết
+    private ScenarioResult runDuplicateIpns() {
+        int orders = intProperty("bench.ipn-orders", 200);
+        int duplicates = intProperty("bench.ipn-duplicates", 5);
+        PaymentOrderRepository orderRepository = context.getBean(PaymentOrderRepository.class);
+        String secret = env.getRequiredProperty("vnpay.hash-secret");
+
+        List<Runnable> tasks = new ArrayList<>(orders * duplicates);
+        for (int i = 0; i < orders; i++) {
+            String orderCode = "B" + runId + "O" + i;
+            PaymentOrder order = orderRepository.save(PaymentOrder.builder()
+                    .orderCode(orderCode)
+                    .vnpTxnRef(orderCode)
+                    .user(pickUser())
+                    .coinPackage(coinPackage)
+                    .amount(coinPackage.getPrice())
+                    .coinsToAdd(coinPackage.getCoins())
+                    .status(PaymentOrder.Status.PENDING)
+                    .build());
+            ipnOrderIds.add(order.getId());
+
+            Map<String, String> params = signedIpn(order, runId + i, secret);
+            for (int d = 0; d < duplicates; d++) {
+                tasks.add(() -> {
+                    String code = paymentService.handleVNPayIPN(new HashMap<>(params));
+                    if (!"00".equals(code) && !"02".equals(code)) {
+                        throw new IllegalStateException("Unexpected IPN response " + code);
+                    }
+                });
+            }
+        }
+        Collections.shuffle(tasks);
+        ScenarioResult result = runConcurrently("Duplicate VNPay IPNs (" + duplicates + "x per order)", tasks);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 1000 && pendingCallbacks() > 0; i++) {
+            paymentService.settleCallbacks();
+        }
+        System.out.printf("%n  IPN settlement drained in %.2fs (%d callbacks still pending)%n",
+                (System.nanoTime() - start) / 1e9, pendingCallbacks());
+        return result;
+    }
+
+    private ScenarioResult runConcurrently(String name, List<Runnable> tasks) {
+        ScenarioResult result = new ScenarioResult(name, tasks.size());
+        long[] lockBefore = rowLockStatus();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch startGate = new CountDownLatch(1);
+        for (Runnable task : tasks) {
+            pool.execute(() -> {
+                try {
+                    startGate.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                long begin = System.nanoTime();
+                String outcome = "ok";
+                try {
+                    task.run();
+                } catch (Exception e) {
+                    outcome = ScenarioResult.classify(e);
+                }
+                result.record(System.nanoTime() - begin, outcome);
+            });
+        }
+
+        long start = System.nanoTime();
+        startGate.countDown();
+        pool.shutdown();
+        try {
+            pool.awaitTermination(1, TimeUnit.HOURS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        long[] lockAfter = rowLockStatus();
+        result.finish(System.nanoTime() - start, lockAfter[0] - lockBefore[0], lockAfter[1] - lockBefore[1]);
+        if (result.count("error") > 0) {
+            violations.add(name + ": " + result.count("error") + " unexpected errors");
+        }
+        return result;
+    }
+
+    // ===== INVARIANTS =====
+
+    private void checkInvariants() {
+        String userIds = allUsers().stream().map(u -> String.valueOf(u.getId())).collect(Collectors.joining(","));
+
+        // Số dư Redis = snapshot + ledger chưa settle, và không âm
+        for (User user : allUsers()) {
+            long redisBalance = walletLedgerService.getBalance(user.getId());
+            Long dbBalance = jdbcTemplate.queryForObject("SELECT " +
+                    "COALESCE((SELECT balance FROM user_wallets WHERE user_id = ?), 0) + " +
+                    "COALESCE((SELECT SUM(CASE WHEN type = 'SPEND' THEN -amount ELSE amount END) " +
+                    "FROM wallet_transactions WHERE user_id = ? AND settled = false), 0)",
+                    Long.class, user.getId(), user.getId());
+            if (redisBalance < 0 || dbBalance == null || dbBalance < 0) {
+                violations.add("negative balance for user " + user.getId() + ": redis=" + redisBalance + " db=" + dbBalance);
+            } else if (redisBalance != dbBalance) {
+                violations.add("balance drift for user " + user.getId() + ": redis=" + redisBalance + " db=" + dbBalance);
+            }
+        }
+
+        // Ledger (dữ liệu riêng của lần chạy) cộng dồn phải khớp số dư đã settle
+        List<Map<String, Object>> ledgerMismatch = jdbcTemplate.queryForList("SELECT t.user_id, " +
+                "SUM(CASE WHEN t.type = 'SPEND' THEN -t.amount ELSE t.amount END) AS ledger, w.balance " +
+                "FROM wallet_transactions t LEFT JOIN user_wallets w ON w.user_id = t.user_id " +
+                "WHERE t.user_id IN (" + userIds + ") GROUP BY t.user_id, w.balance " +
+                "HAVING ledger <> COALESCE(w.balance, 0)");
+        ledgerMismatch.forEach(row -> violations.add("ledger/balance mismatch: " + row));
+
+        // Mỗi lần mở khóa đúng 1 giao dịch trừ xu và ngược lại
+        List<Map<String, Object>> unlockMismatch = jdbcTemplate.queryForList("SELECT u.id, " +
+                "(SELECT COUNT(*) FROM user_chapter_access a WHERE a.user_id = u.id) AS unlocks, " +
+                "(SELECT COUNT(*) FROM wallet_transactions t WHERE t.user_id = u.id AND t.type = 'SPEND' " +
+                "AND t.description LIKE 'Mo khoa chuong%') AS charges " +
+                "FROM users u WHERE u.id IN (" + userIds + ") HAVING unlocks <> charges");
+        unlockMismatch.forEach(row -> violations.add("unlock/charge mismatch: " + row));
+
+        // Mỗi đơn IPN được cộng xu đúng 1 lần
+        String orderIds = ipnOrderIds.stream().map(String::valueOf).collect(Collectors.joining(","));
+        if (!orderIds.isEmpty()) {
+            List<Map<String, Object>> credits = jdbcTemplate.queryForList("SELECT o.id, o.status, " +
+                    "(SELECT COUNT(*) FROM wallet_transactions t WHERE t.type = 'DEPOSIT' AND t.ref_type = 'PAYMENT_ORDER' AND t.ref_id = o.id " +
+                    "AND t.description LIKE 'Nap xu%') AS credits " +
+                    "FROM payment_orders o WHERE o.id IN (" + orderIds + ") " +
+                    "HAVING credits <> 1 OR o.status <> 'SUCCESS'");
+            credits.forEach(row -> violations.add("order not credited exactly once: " + row));
+        }
+    }
+
+    // ===== HELPERS =====
+
+    private User pickUser() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<User> pool = !hotUsers.isEmpty() && (coldUsers.isEmpty() || random.nextDouble() < hotRatio)
+                ? hotUsers : coldUsers;
+        return pool.get(random.nextInt(pool.size()));
+    }
+
+    private List<User> allUsers() {
+        List<User> users = new ArrayList<>(hotUsers);
+        users.addAll(coldUsers);
+        return users;
+    }
+
+    private long pendingCallbacks() {
+        Long pending = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM payment_callbacks " +
+                "WHERE status = 'RECEIVED' AND order_code LIKE ?", Long.class, "B" + runId + "O%");
+        return pending != null ? pending : 0;
+    }
+
+    // {Innodb_row_lock_waits, Innodb_row_lock_time (ms)}
+    private long[] rowLockStatus() {
+        Map<String, Long> status = new HashMap<>();
+        jdbcTemplate.query("SHOW GLOBAL STATUS LIKE 'Innodb_row_lock_%'",
+                rs -> { status.put(rs.getString(1), rs.getLong(2)); });
+        return new long[] { status.getOrDefault("Innodb_row_lock_waits", 0L),
+                status.getOrDefault("Innodb_row_lock_time", 0L) };
+    }
+
+    private static UsernamePasswordAuthenticationToken authenticationOf(User user) {
+        UserPrincipal principal = UserPrincipal.from(user);
+        return new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities());
+    }
+
+    // Tham số IPN giống VNPay gửi, ký bằng cùng hash secret (cùng cách ghép như VNPayServiceImpl)
+    private static Map<String, String> signedIpn(PaymentOrder order, String transactionNo, String secret) {
+        Map<String, String> params = new TreeMap<>();
+        params.put("vnp_Amount", String.valueOf(order.getAmount().multiply(BigDecimal.valueOf(100)).longValue()));
+        params.put("vnp_ResponseCode", "00");
+        params.put("vnp_TransactionNo", transactionNo);
+        params.put("vnp_TransactionStatus", "00");
+        params.put("vnp_TxnRef", order.getOrderCode());
+
+        String query = params.entrySet().stream()
+                .map(e -> URLEncoder.encode(e.getKey(), StandardCharsets.US_ASCII) + "="
+                        + URLEncoder.encode(e.getValue(), StandardCharsets.US_ASCII))
+                .collect(Collectors.joining("&"));
+        try {
+            Mac mac = Mac.getInstance("HmacSHA512");
+            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA512"));
+            params.put("vnp_SecureHash", HexFormat.of().formatHex(mac.doFinal(query.getBytes(StandardCharsets.UTF_8))));
+        } catch (Exception e) {
+            throw new IllegalStateException("Cannot sign benchmark IPN", e);
+        }
+        return params;
+    }
+
+    private int intProperty(String name, int defaultValue) {
+        return env.getProperty(name, Integer.class, defaultValue);
+    }
+}
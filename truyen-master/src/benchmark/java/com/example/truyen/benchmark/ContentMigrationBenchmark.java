@@ -0,0 +1,176 @@
+package com.example.truyen.benchmark;
+
+import com.example.truyen.repository.ChapterContentRepository;
+import com.example.truyen.service.impl.ChapterContentServiceImpl;
+import com.example.truyen.util.CompressionUtils;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Đo job chuyển nội dung chương (chapters.content -> chapter_contents nén deflate) trên MySQL/MariaDB
+ * thật: tạo bảng chapters kiểu cũ (content LONGTEXT), nạp chương tổng hợp, rồi in dung lượng bảng
+ * và độ trễ các query chỉ đọc metadata trước/sau khi chuyển và sau OPTIMIZE TABLE.
+ *
+ * Chạy: ./gradlew contentMigrationBenchmark -PbenchArgs="--chapters=20000 --stories=200"
+ * Kết nối qua TEST_MYSQL_URL, TEST_MYSQL_USER, TEST_MYSQL_PASSWORD (mặc định localhost/truyen_test);
+ * xóa và tạo lại bảng chapters, chapter_contents của database đó.
+ */
+public class ContentMigrationBenchmark {
+
+    private static final int ROUNDS = 50;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    ContentMigrationBenchmark(SingleConnectionDataSource dataSource) {
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    }
+
+    public static void main(String[] args) throws ReflectiveOperationException {
+        int chapters = RevisionStorageBenchmark.intArg(args, "chapters", 20_000);
+        int stories = RevisionStorageBenchmark.intArg(args, "stories", 200);
+        SingleConnectionDataSource dataSource = new SingleConnectionDataSource(
+                env("TEST_MYSQL_URL", "jdbc:mysql://127.0.0.1:3306/truyen_test?rewriteBatchedStatements=true"),
+                env("TEST_MYSQL_USER", "root"), env("TEST_MYSQL_PASSWORD", "root"), true);
+        // 1 kết nối giữ suốt lần chạy: số đo không gồm thời gian mở kết nối
+        System.exit(new ContentMigrationBenchmark(dataSource).run(chapters, stories) ? 0 : 1);
+    }
+
+    boolean run(int chapters, int stories) throws ReflectiveOperationException {
+        createLegacySchema();
+        populate(chapters, stories);
+        System.out.printf("%,d chapters in %d stories%n", chapters, stories);
+        String checksum = contentChecksum("SELECT id, content FROM chapters ORDER BY id");
+        report("before migration", stories);
+
+        ChapterContentServiceImpl service = new ChapterContentServiceImpl(
+                storageStatsRepository(), jdbcTemplate, transactionTemplate);
+        Field batchSize = ChapterContentServiceImpl.class.getDeclaredField("migrationBatchSize");
+        batchSize.setAccessible(true);
+        batchSize.setInt(service, 200);
+        service.prepareLegacyColumn();
+        long start = System.nanoTime();
+        service.migrateLegacyContent();
+        System.out.printf("migration: %.1f s%n", (System.nanoTime() - start) / 1e9);
+        report("after migration", stories);
+
+        jdbcTemplate.queryForList("OPTIMIZE TABLE chapters");
+        report("after OPTIMIZE TABLE chapters", stories);
+
+        // Giải nén bảng mới phải khớp nội dung gốc
+        StringBuilder migrated = new StringBuilder();
+        jdbcTemplate.query("SELECT chapter_id, data, original_size FROM chapter_contents ORDER BY chapter_id", rs -> {
+            String content = new String(CompressionUtils.inflate(rs.getBytes(2), rs.getInt(3)), StandardCharsets.UTF_8);
+            migrated.append(rs.getLong(1)).append(':').append(content.hashCode()).append(';');
+        });
+        boolean ok = checksum.equals(migrated.toString())
+                && jdbcTemplate.queryForObject("SELECT COUNT(*) FROM chapters WHERE content IS NOT NULL", Long.class) == 0;
+        System.out.println(ok ? "all chapter contents round-trip exactly" : "MISMATCH after migration");
+        return ok;
+    }
+
+    private void createLegacySchema() {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS chapter_contents");
+        jdbcTemplate.execute("DROP TABLE IF EXISTS chapters");
+        // Bảng chapters như trước khi tách nội dung (cột content NOT NULL)
+        jdbcTemplate.execute("CREATE TABLE chapters (id BIGINT AUTO_INCREMENT PRIMARY KEY, story_id BIGINT NOT NULL, " +
+                "chapter_number INT NOT NULL, title VARCHAR(500) NOT NULL, content LONGTEXT NOT NULL, views INT, " +
+                "is_locked BIT NOT NULL, coins_price INT NOT NULL, created_at DATETIME(6), updated_at DATETIME(6), " +
+                "snapshot_version BIGINT, INDEX idx_chapters_story_number (story_id, chapter_number)) " +
+                "DEFAULT CHARSET=utf8mb4");
+        jdbcTemplate.execute("CREATE TABLE chapter_contents (chapter_id BIGINT NOT NULL PRIMARY KEY, " +
+                "encoding VARCHAR(20) NOT NULL, data LONGBLOB NOT NULL, original_size INT NOT NULL, " +
+                "stored_size INT NOT NULL, updated_at DATETIME(6))");
+    }
+
+    // Chương 2.000-12.000 ký tự: chương ngắn nằm luôn trong trang dữ liệu, chương dài bị đẩy ra trang riêng
+    private void populate(int chapters, int stories) {
+        Random random = new Random(42);
+        int perStory = Math.max(1, chapters / stories);
+        List<Object[]> batch = new ArrayList<>(500);
+        for (int i = 0; i < chapters; i++) {
+            batch.add(new Object[] { 1 + i / perStory, 1 + i % perStory, "Chương " + (1 + i % perStory),
+                    RevisionStorageBenchmark.syntheticChapter(2_000 + random.nextInt(10_000), random),
+                    random.nextInt(10_000), i % 10 == 0 });
+            if (batch.size() == 500 || i == chapters - 1) {
+                jdbcTemplate.batchUpdate("INSERT INTO chapters (story_id, chapter_number, title, content, views, " +
+                        "is_locked, coins_price, created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, 0, NOW(), NOW())", batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void report(String phase, int stories) {
+        jdbcTemplate.queryForList("ANALYZE TABLE chapters, chapter_contents");
+        System.out.println(phase + ":");
+        for (String table : List.of("chapters", "chapter_contents")) {
+            Map<String, Object> size = jdbcTemplate.queryForMap("SELECT data_length, index_length, data_free " +
+                    "FROM information_schema.TABLES WHERE table_schema = DATABASE() AND table_name = ?", table);
+            System.out.printf("  %-16s data %,8d KB   index %,6d KB   free %,8d KB%n", table,
+                    ((Number) size.get("data_length")).longValue() / 1024,
+                    ((Number) size.get("index_length")).longValue() / 1024,
+                    ((Number) size.get("data_free")).longValue() / 1024);
+        }
+
+        Random random = new Random(7);
+        // Mục lục 1 truyện (index story_id, chapter_number + đọc row trong bảng chapters)
+        latency("table of contents", () -> jdbcTemplate.queryForList(
+                "SELECT id, chapter_number, title, is_locked, coins_price, views FROM chapters " +
+                        "WHERE story_id = ? AND chapter_number > 0 ORDER BY chapter_number LIMIT 50",
+                1 + random.nextInt(stories)));
+        // Quét toàn bảng chỉ lấy metadata (thống kê dashboard)
+        latency("full metadata scan", () -> jdbcTemplate.queryForList(
+                "SELECT story_id, COUNT(*), SUM(views) FROM chapters GROUP BY story_id"));
+    }
+
+    private static void latency(String name, Runnable query) {
+        for (int i = 0; i < 5; i++) {
+            query.run();
+        }
+        long[] nanos = new long[ROUNDS];
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            query.run();
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+        System.out.printf("  %-18s p50 %8.2f ms   p99 %8.2f ms%n", name,
+                nanos[ROUNDS / 2] / 1e6, nanos[ROUNDS * 99 / 100] / 1e6);
+    }
+
+    private String contentChecksum(String sql) {
+        StringBuilder checksum = new StringBuilder();
+        jdbcTemplate.query(sql, rs -> {
+            checksum.append(rs.getLong(1)).append(':').append(rs.getString(2).hashCode()).append(';');
+        });
+        return checksum.toString();
+    }
+
+    // Job chuyển chỉ dùng getStorageStats của repository
+    private ChapterContentRepository storageStatsRepository() {
+        return (ChapterContentRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { ChapterContentRepository.class }, (proxy, method, args) -> switch (method.getName()) {
+                    case "getStorageStats" -> jdbcTemplate.query(
+                            "SELECT COUNT(*), COALESCE(SUM(original_size), 0), COALESCE(SUM(stored_size), 0) " +
+                                    "FROM chapter_contents", (rs, rowNum) -> new Object[] { rs.getLong(1), rs.getLong(2), rs.getLong(3) });
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private static String env(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return value != null ? value : defaultValue;
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.truyen.benchmark;
+
+import com.example.truyen.dto.response.ChapterRevisionResponse;
+import com.example.truyen.entity.ChapterRevision;
+import com.example.truyen.repository.ChapterRevisionRepository;
+import com.example.truyen.service.impl.ChapterRevisionServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+/**
+ * Đo dung lượng lưu trữ và thời gian dựng lại lịch sử phiên bản chương (FULL + DELTA) trên
+ * 1 chương tổng hợp, không cần MySQL: repository được thay bằng danh sách trong bộ nhớ nên
+ * số đo chỉ gồm diff, nén deflate và áp diff.
+ *
+ * Chạy: ./gradlew revisionBenchmark -PbenchArgs="--size=50000 --edits=20 --interval=10"
+ * Thoát với mã 1 nếu có phiên bản dựng lại không khớp nội dung gốc.
+ */
+public class RevisionStorageBenchmark {
+
+    private static final int ROUNDS = 200;
+
+    private final List<ChapterRevision> revisions = new ArrayList<>();
+    private final ChapterRevisionServiceImpl service;
+
+    RevisionStorageBenchmark(int interval) throws ReflectiveOperationException {
+        service = new ChapterRevisionServiceImpl(inMemoryRepository(), new SimpleMeterRegistry());
+        Field field = ChapterRevisionServiceImpl.class.getDeclaredField("snapshotInterval");
+        field.setAccessible(true);
+        field.setInt(service, interval);
+    }
+
+    public static void main(String[] args) throws ReflectiveOperationException {
+        int size = intArg(args, "size", 50_000);
+        int edits = intArg(args, "edits", 20);
+        int interval = intArg(args, "interval", 10);
+        System.exit(new RevisionStorageBenchmark(interval).run(size, edits, interval) ? 0 : 1);
+    }
+
+    boolean run(int size, int edits, int interval) {
+        Random random = new Random(42);
+        List<String> versions = new ArrayList<>();
+        String content = syntheticChapter(size, random);
+        versions.add(content);
+        service.recordRevision(1L, null, content);
+        for (int i = 0; i < edits; i++) {
+            String next;
+            do {
+                next = smallEdit(content, random);
+            } while (next.equals(content));
+            service.recordRevision(1L, content, next);
+            versions.add(next);
+            content = next;
+        }
+
+        System.out.printf("Chapter of %d bytes, %d edits, snapshot every %d revisions%n",
+                versions.get(0).getBytes(StandardCharsets.UTF_8).length, edits, interval);
+        for (ChapterRevision.Type type : ChapterRevision.Type.values()) {
+            long[] sizes = revisions.stream().filter(r -> r.getType() == type)
+                    .mapToLong(ChapterRevision::getStoredSize).toArray();
+            if (sizes.length > 0) {
+                System.out.printf("  %-5s x%-3d avg %,8d B   max %,8d B%n", type, sizes.length,
+                        Arrays.stream(sizes).sum() / sizes.length, Arrays.stream(sizes).max().getAsLong());
+            }
+        }
+        long stored = revisions.stream().mapToLong(ChapterRevision::getStoredSize).sum();
+        long raw = versions.stream().mapToLong(v -> v.getBytes(StandardCharsets.UTF_8).length).sum();
+        System.out.printf("  stored %,d B for %,d B of history (%.1f%%)%n", stored, raw, 100.0 * stored / raw);
+
+        // Khởi động JIT trước khi đo
+        int latest = versions.size();
+        for (int i = 0; i < ROUNDS; i++) {
+            service.getRevision(1L, latest);
+        }
+        long[] nanos = new long[ROUNDS];
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            service.getRevision(1L, latest);
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+        System.out.printf("  rebuild revision %d: p50 %.2f ms, p99 %.2f ms%n", latest,
+                nanos[ROUNDS / 2] / 1e6, nanos[ROUNDS * 99 / 100] / 1e6);
+
+        boolean ok = true;
+        for (int revision = 1; revision <= latest; revision++) {
+            ChapterRevisionResponse response = service.getRevision(1L, revision);
+            if (!versions.get(revision - 1).equals(response.getContent())) {
+                System.out.println("  MISMATCH at revision " + revision);
+                ok = false;
+            }
+        }
+        if (ok) {
+            System.out.println("  all revisions round-trip exactly");
+        }
+        return ok;
+    }
+
+    // Đoạn văn ~80-400 ký tự có dấu, cách nhau bằng dòng trống như chương truyện thực tế
+    static String syntheticChapter(int size, Random random) {
+        String[] words = { "anh", "ấy", "nói", "rằng", "trời", "đã", "tối", "cô", "bước", "vào",
+                "căn", "phòng", "không", "một", "ai", "biết", "chuyện", "gì", "sắp", "xảy", "ra" };
+        StringBuilder text = new StringBuilder(size + 512);
+        while (text.length() < size) {
+            int length = 80 + random.nextInt(320);
+            int start = text.length();
+            while (text.length() - start < length) {
+                text.append(words[random.nextInt(words.length)]).append(' ');
+            }
+            text.setCharAt(text.length() - 1, '.');
+            text.append("\n\n");
+        }
+        return text.toString();
+    }
+
+    // Sửa 1-3 đoạn: thay chữ, chèn hoặc xóa đoạn
+    private static String smallEdit(String content, Random random) {
+        List<String> lines = new ArrayList<>(Arrays.asList(content.split("\n", -1)));
+        int changes = 1 + random.nextInt(3);
+        for (int i = 0; i < changes; i++) {
+            int at = random.nextInt(lines.size());
+            switch (random.nextInt(3)) {
+                case 0 -> lines.set(at, lines.get(at).replaceFirst("trời", "đêm"));
+                case 1 -> lines.add(at, "Một đoạn mới được thêm vào ở lần sửa này.");
+                default -> lines.remove(at);
+            }
+        }
+        return String.join("\n", lines);
+    }
+
+    static int intArg(String[] args, String name, int defaultValue) {
+        String prefix = "--" + name + "=";
+        return Arrays.stream(args).filter(a -> a.startsWith(prefix))
+                .map(a -> Integer.parseInt(a.substring(prefix.length())))
+                .findFirst().orElse(defaultValue);
+    }
+
+    // Chỉ cài các method mà ChapterRevisionServiceImpl dùng khi ghi và đọc phiên bản
+    private ChapterRevisionRepository inMemoryRepository() {
+        return (ChapterRevisionRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { ChapterRevisionRepository.class }, (proxy, method, args) -> switch (method.getName()) {
+                    case "save" -> {
+                        revisions.add((ChapterRevision) args[0]);
+                        yield args[0];
+                    }
+                    case "findLatestRevisionNumber" -> revisions.isEmpty()
+                            ? Optional.empty()
+                            : Optional.of(revisions.get(revisions.size() - 1).getRevisionNumber());
+                    case "findBaseRevisionNumber" -> revisions.stream()
+                            .filter(r -> r.getType() == ChapterRevision.Type.FULL
+                                    && r.getRevisionNumber() <= (Integer) args[1])
+                            .map(ChapterRevision::getRevisionNumber)
+                            .max(Integer::compare);
+                    case "findByChapterIdAndRevisionNumberBetweenOrderByRevisionNumberAsc" -> revisions.stream()
+                            .filter(r -> r.getRevisionNumber() >= (Integer) args[1]
+                                    && r.getRevisionNumber() <= (Integer) args[2])
+                            .toList();
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
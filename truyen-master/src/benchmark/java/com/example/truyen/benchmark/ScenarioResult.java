@@ -0,0 +1,87 @@
+package com.example.truyen.benchmark;
+
+import com.example.truyen.exception.BadRequestException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.PessimisticLockingFailureException;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Kết quả 1 kịch bản: độ trễ từng thao tác + số thao tác theo kết quả
+class ScenarioResult {
+
+    private final String name;
+    private final long[] latenciesNanos;
+    private final AtomicInteger recorded = new AtomicInteger();
+    private final Map<String, LongAdder> outcomes = new ConcurrentHashMap<>();
+    private long elapsedNanos;
+    private long rowLockWaits;
+    private long rowLockTimeMs;
+
+    ScenarioResult(String name, int operations) {
+        this.name = name;
+        this.latenciesNanos = new long[operations];
+    }
+
+    void record(long nanos, String outcome) {
+        int i = recorded.getAndIncrement();
+        if (i < latenciesNanos.length) {
+            latenciesNanos[i] = nanos;
+        }
+        outcomes.computeIfAbsent(outcome, k -> new LongAdder()).increment();
+    }
+
+    // ok: thành công; rejected: lỗi nghiệp vụ mong đợi (hết xu, đã mở khóa);
+    // conflict: vi phạm unique do request song song; deadlock/lock-timeout; error: còn lại
+    static String classify(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof BadRequestException) {
+                return "rejected";
+            }
+            if (t instanceof PessimisticLockingFailureException) {
+                return String.valueOf(t.getMessage()).contains("Deadlock") ? "deadlock" : "lock-timeout";
+            }
+            if (t instanceof DataIntegrityViolationException) {
+                return "conflict";
+            }
+        }
+        return "error";
+    }
+
+    void finish(long elapsedNanos, long rowLockWaits, long rowLockTimeMs) {
+        this.elapsedNanos = elapsedNanos;
+        this.rowLockWaits = rowLockWaits;
+        this.rowLockTimeMs = rowLockTimeMs;
+    }
+
+    long count(String outcome) {
+        LongAdder adder = outcomes.get(outcome);
+        return adder != null ? adder.sum() : 0;
+    }
+
+    void print() {
+        int n = Math.min(recorded.get(), latenciesNanos.length);
+        long[] sorted = Arrays.copyOf(latenciesNanos, n);
+        Arrays.sort(sorted);
+        double seconds = elapsedNanos / 1e9;
+
+        System.out.printf("%n== %s ==%n", name);
+        System.out.printf("  operations     : %d in %.2fs (%.0f ops/s)%n", n, seconds, n / seconds);
+        System.out.printf("  latency        : p50=%.2fms p99=%.2fms max=%.2fms%n",
+                percentile(sorted, 0.50), percentile(sorted, 0.99), n > 0 ? sorted[n - 1] / 1e6 : 0.0);
+        System.out.printf("  outcomes       : %s%n", new TreeMap<>(outcomes));
+        System.out.printf("  InnoDB row lock: %d waits, %d ms total%n", rowLockWaits, rowLockTimeMs);
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1e6;
+    }
+}
@@ -1,6 +1,6 @@
 package com.example.truyen.aspect;
 
-import com.example.truyen.entity.User;
+import com.example.truyen.security.UserPrincipal;
 import com.example.truyen.service.ActivityLogService;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
@@ -27,8 +27,27 @@ public class LoggingAspect {
     private final ActivityLogService activityLogService;
     private final com.fasterxml.jackson.databind.ObjectMapper objectMapper;
 
+    // Bỏ qua các service hạ tầng được gọi nhiều lần trong 1 request đọc (cache, index,
+    // bộ đếm, snapshot) hoặc có tham số/kết quả là toàn văn chương: serialize ra JSON ở
+    // mỗi lần gọi tốn hơn chính công việc của chúng
     @Pointcut("execution(* com.example.truyen.service..*(..)) && " +
-            "!execution(* com.example.truyen.service.ActivityLogService.*(..))")
+            "!execution(* com.example.truyen.service.ActivityLogService.*(..)) && " +
+            "!execution(* com.example.truyen.service.ChapterAccessBitmapService.*(..)) && " +
+            "!execution(* com.example.truyen.service.ChapterContentService.*(..)) && " +
+            "!execution(* com.example.truyen.service.ChapterContentCacheService.*(..)) && " +
+            "!execution(* com.example.truyen.service.ChapterImportService.*(..)) && " +
+            "!execution(* com.example.truyen.service.ChapterRevisionService.*(..)) && " +
+            "!execution(* com.example.truyen.service.ChapterIndexService.*(..)) && " +
+            "!execution(* com.example.truyen.service.ChapterViewService.*(..)) && " +
+            "!execution(* com.example.truyen.service.ChapterPrefetchService.*(..)) && " +
+            "!execution(* com.example.truyen.service.ChapterSnapshotService.*(..)) && " +
+            "!execution(* com.example.truyen.service.OutboxService.*(..)) && " +
+            "!execution(* com.example.truyen.service.PaymentService.expireDueOrders(..)) && " +
+            "!execution(* com.example.truyen.service.PaymentService.settleCallbacks(..)) && " +
+            "!execution(* com.example.truyen.service.StatsRollupService.*(..)) && " +
+            "!execution(* com.example.truyen.service.StoryCacheService.*(..)) && " +
+            "!execution(* com.example.truyen.service.UserStatusService.*(..)) && " +
+            "!execution(* com.example.truyen.service.WalletLedgerService.*(..))")
     public void serviceLayer() {
     }
 
@@ -105,8 +124,9 @@ public class LoggingAspect {
                 String description = buildErrorDescription(methodName, parameters, e.getMessage(), executionTime);
                 String username = getCurrentUsername();
 
-                // Gửi nhật ký lỗi qua Kafka
-                activityLogService.logActivity(
+                // Gửi nhật ký lỗi qua Kafka; aspect có thể nằm trong transaction đang rollback
+                // nên phải ghi outbox trong transaction riêng
+                activityLogService.logError(
                         fullMethodName + " [ERROR]",
                         tableName,
                         null,
@@ -182,9 +202,8 @@ public class LoggingAspect {
             if (authentication != null && authentication.isAuthenticated()
                     && !"anonymousUser".equals(authentication.getPrincipal())) {
 
-                Object principal = authentication.getPrincipal();
-                if (principal instanceof User) {
-                    return ((User) principal).getId();
+                if (authentication.getPrincipal() instanceof UserPrincipal principal) {
+                    return principal.getId();
                 }
             }
         } catch (Exception e) {
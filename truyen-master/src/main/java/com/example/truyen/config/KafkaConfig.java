@@ -13,6 +13,7 @@ import org.springframework.kafka.listener.ContainerProperties;
 import org.springframework.kafka.support.serializer.JsonDeserializer;
 import org.springframework.kafka.support.serializer.JsonSerializer;
 
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -23,6 +24,24 @@ public class KafkaConfig {
     @Value("${spring.kafka.bootstrap-servers}")
     private String bootstrapServers;
 
+    // Chỉ relay outbox gửi Kafka và luôn flush sau mỗi lô: linger lớn để gom batch
+    @Value("${app.outbox.linger-ms:100}")
+    private int lingerMs;
+
+    @Value("${app.outbox.producer-batch-size:262144}")
+    private int producerBatchSize;
+
+    // Relay chờ Kafka ngoài transaction nhưng vẫn phải có giới hạn: send() chặn tối đa max-block,
+    // mỗi record được ack hoặc báo lỗi trong delivery-timeout (>= linger + request-timeout)
+    @Value("${app.outbox.max-block:5s}")
+    private Duration maxBlock;
+
+    @Value("${app.outbox.request-timeout:10s}")
+    private Duration requestTimeout;
+
+    @Value("${app.outbox.delivery-timeout:30s}")
+    private Duration deliveryTimeout;
+
     @Bean
     public ProducerFactory<String, Object> producerFactory() {
         Map<String, Object> config = new HashMap<>();
@@ -36,8 +55,8 @@ public class KafkaConfig {
 
         // Performance & Reliability
         config.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, "snappy");
-        config.put(ProducerConfig.BATCH_SIZE_CONFIG, 16384);
-        config.put(ProducerConfig.LINGER_MS_CONFIG, 10);
+        config.put(ProducerConfig.BATCH_SIZE_CONFIG, producerBatchSize);
+        config.put(ProducerConfig.LINGER_MS_CONFIG, lingerMs);
         config.put(ProducerConfig.BUFFER_MEMORY_CONFIG, 33554432);
 
         // Đảm bảo không gửi trùng
@@ -45,6 +64,11 @@ public class KafkaConfig {
         config.put(ProducerConfig.ACKS_CONFIG, "all");
         config.put(ProducerConfig.RETRIES_CONFIG, 3);
 
+        // Giới hạn thời gian chờ broker
+        config.put(ProducerConfig.MAX_BLOCK_MS_CONFIG, (int) maxBlock.toMillis());
+        config.put(ProducerConfig.REQUEST_TIMEOUT_MS_CONFIG, (int) requestTimeout.toMillis());
+        config.put(ProducerConfig.DELIVERY_TIMEOUT_MS_CONFIG, (int) deliveryTimeout.toMillis());
+
         return new DefaultKafkaProducerFactory<>(config);
     }
 
@@ -57,11 +57,111 @@ public class RedisKeyConstants {
     // Cache max views trong N ngày. Key: max:views:{days}d
     public static final String MAX_VIEWS_PREFIX = "max:views:";
 
+    // --- STORY DETAIL CACHE ---
+
+    // Cache L2 của StoryResponse. Key: story:detail:{storyId}
+    public static final String STORY_DETAIL_CACHE = "story:detail:";
+
+    // Số lần cache của story bị xóa, dùng để bỏ kết quả load cũ ghi đè sau khi đã evict.
+    // Key: story:detail:version:{storyId}. Type: String (INCR)
+    public static final String STORY_DETAIL_VERSION = "story:detail:version:";
+
+    // Kênh pub/sub báo các node xóa cache L1. Payload: danh sách storyId cách nhau
+    // bởi dấu phẩy
+    public static final String STORY_CACHE_INVALIDATION_CHANNEL = "story:cache:invalidate";
+
+    // --- CHAPTER INDEX ---
+
+    // Index chương của truyện. Key: chapter:index:{storyId}. Type: Hash
+    // (field: chapterId, value: chapterNumber:isLocked:updatedAt; field "_built" đánh dấu đã build đủ)
+    public static final String CHAPTER_INDEX_CACHE = "chapter:index:";
+
+    // Số lần index của truyện bị sửa, dùng để bỏ kết quả build chạy song song với lần sửa.
+    // Key: chapter:index:version:{storyId}. Type: String (INCR)
+    public static final String CHAPTER_INDEX_VERSION = "chapter:index:version:";
+
+    // Kênh pub/sub báo các node xóa index trong bộ nhớ (payload: danh sách storyId)
+    public static final String CHAPTER_INDEX_INVALIDATION_CHANNEL = "chapter:index:invalidate";
+
+    // --- CHAPTER CONTENT CACHE ---
+
+    // Nội dung chương theo version. Key: chapter:content:{chapterId}:{version}. Type: String
+    public static final String CHAPTER_CONTENT_CACHE = "chapter:content:";
+
+    // --- CHAPTER ACCESS BITMAP ---
+
+    // Bitmap (RoaringBitmap, Base64) id các chương user đã mở khóa.
+    // Key: chapter:access:bitmap:{username}. Type: String
+    public static final String CHAPTER_ACCESS_BITMAP = "chapter:access:bitmap:";
+
+    // Các chương mở khóa sau lần build bitmap gần nhất, gộp vào khi đọc.
+    // Key: chapter:access:added:{username}. Type: Set
+    public static final String CHAPTER_ACCESS_ADDED = "chapter:access:added:";
+
+    // Kênh pub/sub báo các node xóa bitmap trong bộ nhớ (payload: username)
+    public static final String CHAPTER_ACCESS_INVALIDATION_CHANNEL = "chapter:access:invalidate";
+
+    // --- CHAPTER SNAPSHOT ---
+
+    // Lock để chỉ 1 node render snapshot cho các chương chưa có (backfill)
+    public static final String CHAPTER_SNAPSHOT_BACKFILL_LOCK = "chapter:snapshot:backfill:lock";
+
+    // --- CHAPTER VIEWS (buffered) ---
+
+    // Lượt xem chương chờ ghi vào MySQL. Key: chapter:views:pending. Type: Hash
+    // (field: chapterId, value: delta)
+    public static final String CHAPTER_VIEWS_PENDING = "chapter:views:pending";
+
+    // Snapshot đang được ghi vào MySQL (RENAME từ pending)
+    public static final String CHAPTER_VIEWS_APPLYING = "chapter:views:applying";
+
+    // Lock để chỉ 1 node ghi lượt xem vào MySQL tại một thời điểm
+    public static final String CHAPTER_VIEWS_APPLY_LOCK = "chapter:views:apply:lock";
+
+    // --- WALLET ---
+
+    // Số dư ví dùng để duyệt chi tiêu (Lua check-and-decrement). Key: wallet:balance:{userId}. Type: String
+    public static final String WALLET_BALANCE = "wallet:balance:";
+
+    // Reservation chưa kết thúc (score: thời điểm tạo, member: reservationId:userId:delta). Type: ZSet
+    public static final String WALLET_RESERVATIONS = "wallet:reservations";
+
+    // Reservation đang dở của từng user (field pending: số reservation chưa kết thúc, releases: số lần đã
+    // kết thúc). Số dư chỉ được nạp lại từ DB khi không có reservation nào dở. Key: wallet:inflight:{userId}. Type: Hash
+    public static final String WALLET_INFLIGHT = "wallet:inflight:";
+
+    // Lock để chỉ 1 node gộp ledger vào user_wallets tại một thời điểm
+    public static final String WALLET_SETTLE_LOCK = "wallet:settle:lock";
+
+    // Lock để chỉ 1 node chuyển giao dịch cũ sang bảng lưu trữ
+    public static final String WALLET_ARCHIVE_LOCK = "wallet:archive:lock";
+
+    // --- PAYMENT ---
+
+    // Đơn PENDING chờ hết hạn (score: thời điểm hết hạn, member: orderCode). Type: ZSet
+    public static final String PAYMENT_ORDER_EXPIRY = "payment:order:expiry";
+
+    // --- STATS ---
+
+    // Lock để chỉ 1 node tính lại bảng tổng hợp theo ngày
+    public static final String STATS_ROLLUP_RECONCILE_LOCK = "stats:rollup:reconcile:lock";
+
+    // --- RATING ---
+
+    // Lock để chỉ 1 node đối soát rating_sum / rating_count
+    public static final String RATING_RECONCILE_LOCK = "rating:reconcile:lock";
+
     // --- AUTH ---
 
     // Blacklist token. Key: token:blacklist:{token}
     public static final String TOKEN_BLACKLIST_PREFIX = "token:blacklist:";
 
+    // Version trạng thái tài khoản (-1: bị khóa/đã xóa). Key: user:status:version:{userId}
+    public static final String USER_STATUS_VERSION = "user:status:version:";
+
+    // Kênh pub/sub báo các node xóa version trong bộ nhớ (payload: userId)
+    public static final String USER_STATUS_INVALIDATION_CHANNEL = "user:status:invalidate";
+
     private RedisKeyConstants() {
         throw new AssertionError("Cannot instantiate constants class");
     }
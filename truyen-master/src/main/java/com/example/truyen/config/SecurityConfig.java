@@ -94,6 +94,9 @@ public class SecurityConfig {
                         .hasAnyRole("ADMIN", "SUPER_ADMIN")
                         .requestMatchers(HttpMethod.GET, "/api/chapters/**").permitAll()
                         .requestMatchers(HttpMethod.POST, "/api/chapters/*/unlock").authenticated()
+                        .requestMatchers(HttpMethod.POST, "/api/chapters/story/*/unlock",
+                                "/api/chapters/story/*/unlock/quote").authenticated()
+                        .requestMatchers(HttpMethod.POST, "/api/chapters/*/view").permitAll()
                         .requestMatchers(HttpMethod.POST, "/api/chapters/**").hasAnyRole("ADMIN", "SUPER_ADMIN")
                         .requestMatchers(HttpMethod.PUT, "/api/chapters/**").hasAnyRole("ADMIN", "SUPER_ADMIN")
                         .requestMatchers(HttpMethod.DELETE, "/api/chapters/**").hasAnyRole("ADMIN", "SUPER_ADMIN")
@@ -119,6 +122,10 @@ public class SecurityConfig {
                         .requestMatchers(HttpMethod.GET, "/api/comments/**").permitAll()
                         .requestMatchers(HttpMethod.GET, "/api/ratings/**").permitAll()
 
+                        // Actuator (metrics cache, ...)
+                        .requestMatchers("/actuator/health").permitAll()
+                        .requestMatchers("/actuator/**").hasAnyRole("ADMIN", "SUPER_ADMIN")
+
                         // Swagger
                         .requestMatchers("/swagger-ui/**").permitAll()
                         .requestMatchers("/swagger-ui.html").permitAll()
@@ -1,21 +1,43 @@
 package com.example.truyen.controller;
 
+import com.example.truyen.dto.projection.ChapterContentStream;
+import com.example.truyen.dto.request.BulkUnlockRequest;
+import com.example.truyen.dto.request.ChapterImportItem;
 import com.example.truyen.dto.request.ChapterRequest;
 import com.example.truyen.dto.response.ApiResponse;
+import com.example.truyen.dto.response.BulkUnlockResponse;
+import com.example.truyen.dto.response.ChapterImportResponse;
+import com.example.truyen.dto.response.ChapterNavigationResponse;
 import com.example.truyen.dto.response.ChapterResponse;
+import com.example.truyen.dto.response.ChapterRevisionResponse;
+import com.example.truyen.dto.response.ChapterTocPageResponse;
 import com.example.truyen.dto.response.UnlockedChapterResponse;
 import com.example.truyen.service.ChapterAccessService;
+import com.example.truyen.service.ChapterImportService;
+import com.example.truyen.service.ChapterIndexService;
+import com.example.truyen.service.ChapterRevisionService;
+import com.example.truyen.service.ChapterViewService;
 import com.example.truyen.service.ChapterService;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 
 import java.util.List;
 
@@ -26,29 +48,163 @@ public class ChapterController {
 
     private final ChapterService chapterService;
     private final ChapterAccessService chapterAccessService;
+    private final ChapterImportService chapterImportService;
+    private final ChapterIndexService chapterIndexService;
+    private final ChapterViewService chapterViewService;
+    private final ChapterRevisionService chapterRevisionService;
+
+    // Nội dung phụ thuộc quyền đọc của từng user nên chỉ cho phép cache private
+    private static final CacheControl REVALIDATE_PRIVATE = CacheControl.noCache().cachePrivate();
+
+    private static final MediaType TEXT_PLAIN_UTF8 = new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8);
+
+    // Mỗi lần ghi + flush 1 đoạn 16KB: client hiển thị được màn hình đầu ngay. Nội dung là mảng
+    // dùng chung trong cache L1, phần heap riêng của mỗi request chỉ là buffer này
+    private static final int STREAM_SEGMENT_BYTES = 16 * 1024;
 
-    // Lấy danh sách chương của truyện
+    // Lấy danh sách chương của truyện (If-None-Match khớp → 304, không load chương)
     @GetMapping("/story/{storyId}")
     public ResponseEntity<ApiResponse<List<ChapterResponse>>> getChaptersByStoryId(
-            @PathVariable Long storyId) {
+            @PathVariable Long storyId,
+            WebRequest webRequest) {
+        String etag = chapterService.getChapterListETag(storyId);
+        if (webRequest.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(REVALIDATE_PRIVATE).build();
+        }
         List<ChapterResponse> chapters = chapterService.getChaptersByStoryId(storyId);
-        return ResponseEntity.ok(ApiResponse.success("Get chapter list successfully", chapters));
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(REVALIDATE_PRIVATE)
+                .body(ApiResponse.success("Get chapter list successfully", chapters));
     }
 
-    // Lấy chi tiết chương theo ID
+    // Mục lục chương không kèm content, phân trang theo cursor (after = số chương cuối của trang trước)
+    @GetMapping("/story/{storyId}/toc")
+    public ResponseEntity<ApiResponse<ChapterTocPageResponse>> getChapterToc(
+            @PathVariable Long storyId,
+            @RequestParam(required = false) Integer after,
+            @RequestParam(defaultValue = "100") int size,
+            WebRequest webRequest) {
+        // Cùng validator với danh sách chương (ETag gắn với URL nên không cần phân biệt after/size)
+        String etag = chapterService.getChapterListETag(storyId);
+        if (webRequest.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(REVALIDATE_PRIVATE).build();
+        }
+        ChapterTocPageResponse toc = chapterService.getChapterToc(storyId, after, size);
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(REVALIDATE_PRIVATE)
+                .body(ApiResponse.success("Get chapter table of contents successfully", toc));
+    }
+
+    // Lấy chi tiết chương theo ID (If-None-Match khớp → 304, không đọc content)
     @GetMapping("/{id}")
-    public ResponseEntity<ApiResponse<ChapterResponse>> getChapterById(@PathVariable Long id) {
+    public ResponseEntity<ApiResponse<ChapterResponse>> getChapterById(@PathVariable Long id, WebRequest webRequest) {
+        String etag = chapterService.getChapterETag(id);
+        if (webRequest.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(REVALIDATE_PRIVATE).build();
+        }
         ChapterResponse chapter = chapterService.getChapterById(id);
-        return ResponseEntity.ok(ApiResponse.success("Get chapter details successfully", chapter));
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(REVALIDATE_PRIVATE)
+                .body(ApiResponse.success("Get chapter details successfully", chapter));
+    }
+
+    // Nội dung chương dạng text/plain, ghi dần theo từng đoạn (hỗ trợ Range: bytes=start-end
+    // để client tải phần đầu trước rồi tải tiếp phần còn lại)
+    @GetMapping("/{id}/content")
+    public ResponseEntity<StreamingResponseBody> streamChapterContent(
+            @PathVariable Long id,
+            @RequestHeader HttpHeaders headers,
+            WebRequest webRequest) {
+        String etag = chapterService.getChapterETag(id);
+        if (webRequest.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(REVALIDATE_PRIVATE).build();
+        }
+
+        List<HttpRange> ranges;
+        try {
+            ranges = headers.getRange();
+        } catch (IllegalArgumentException e) {
+            ranges = List.of();
+        }
+        // Chỉ hỗ trợ 1 khoảng; nhiều khoảng thì trả toàn bộ nội dung (200)
+        HttpRange range = ranges.size() == 1 ? ranges.get(0) : null;
+
+        ChapterContentStream content = chapterService.openChapterContent(id,
+                range == null || range.getRangeStart(Long.MAX_VALUE) == 0);
+        long length = content.getLength();
+
+        long start = 0;
+        long end = length - 1;
+        if (range != null) {
+            try {
+                start = range.getRangeStart(length);
+                end = range.getRangeEnd(length);
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                        .header(HttpHeaders.CONTENT_RANGE, "bytes */" + length)
+                        .build();
+            }
+        }
+
+        long offset = start;
+        long count = Math.max(0, end - start + 1);
+        StreamingResponseBody body = out -> {
+            try (InputStream in = content.getSource().get()) {
+                in.skipNBytes(offset);
+                byte[] buffer = new byte[STREAM_SEGMENT_BYTES];
+                long remaining = count;
+                while (remaining > 0) {
+                    int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                    if (read < 0) {
+                        break;
+                    }
+                    out.write(buffer, 0, read);
+                    out.flush();
+                    remaining -= read;
+                }
+            }
+        };
+
+        ResponseEntity.BodyBuilder builder = range != null
+                ? ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
+                        .header(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length)
+                : ResponseEntity.ok();
+        return builder
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                .eTag(etag)
+                .cacheControl(REVALIDATE_PRIVATE)
+                .contentType(TEXT_PLAIN_UTF8)
+                .contentLength(count)
+                .body(body);
     }
 
     // Lấy chương theo ID truyện và số thứ tự chương
     @GetMapping("/story/{storyId}/number/{chapterNumber}")
     public ResponseEntity<ApiResponse<ChapterResponse>> getChapterByStoryAndNumber(
             @PathVariable Long storyId,
-            @PathVariable Integer chapterNumber) {
+            @PathVariable Integer chapterNumber,
+            WebRequest webRequest) {
+        String etag = chapterService.getChapterETag(storyId, chapterNumber);
+        if (webRequest.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(REVALIDATE_PRIVATE).build();
+        }
         ChapterResponse chapter = chapterService.getChapterByStoryAndNumber(storyId, chapterNumber);
-        return ResponseEntity.ok(ApiResponse.success("Chapter retrieved successfully", chapter));
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(REVALIDATE_PRIVATE)
+                .body(ApiResponse.success("Chapter retrieved successfully", chapter));
+    }
+
+    // Chương trước/sau của 1 chương, đọc từ index chương trong cache (không truy vấn MySQL)
+    @GetMapping("/story/{storyId}/number/{chapterNumber}/navigation")
+    public ResponseEntity<ApiResponse<ChapterNavigationResponse>> getChapterNavigation(
+            @PathVariable Long storyId,
+            @PathVariable Integer chapterNumber) {
+        ChapterNavigationResponse navigation = chapterIndexService.getNavigation(storyId, chapterNumber);
+        return ResponseEntity.ok(ApiResponse.success("Get chapter navigation successfully", navigation));
     }
 
     // Kiểm tra quyền đọc chương (có thể gọi trước khi mở chapter)
@@ -58,6 +214,13 @@ public class ChapterController {
         return ResponseEntity.ok(ApiResponse.success("Access checked", hasAccess));
     }
 
+    // Ghi nhận lượt xem khi client đọc chương miễn phí trực tiếp từ snapshot trên MinIO
+    @PostMapping("/{id}/view")
+    public ResponseEntity<ApiResponse<String>> recordChapterView(@PathVariable Long id, HttpServletRequest request) {
+        chapterViewService.recordSnapshotView(id, getClientIpAddress(request));
+        return ResponseEntity.ok(ApiResponse.success("View recorded", null));
+    }
+
     // Mở khóa chương bằng xu (yêu cầu đăng nhập)
     @PostMapping("/{id}/unlock")
     @PreAuthorize("isAuthenticated()")
@@ -66,6 +229,26 @@ public class ChapterController {
         return ResponseEntity.ok(ApiResponse.success("Chapter unlocked successfully", null));
     }
 
+    // Báo giá mở khóa nhiều chương (yêu cầu đăng nhập)
+    @PostMapping("/story/{storyId}/unlock/quote")
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<ApiResponse<BulkUnlockResponse>> quoteBulkUnlock(
+            @PathVariable Long storyId,
+            @RequestBody BulkUnlockRequest request) {
+        BulkUnlockResponse quote = chapterAccessService.quoteBulkUnlock(storyId, request);
+        return ResponseEntity.ok(ApiResponse.success("Bulk unlock quoted successfully", quote));
+    }
+
+    // Mở khóa nhiều chương bằng xu trong 1 lần trừ (yêu cầu đăng nhập)
+    @PostMapping("/story/{storyId}/unlock")
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<ApiResponse<BulkUnlockResponse>> unlockChapters(
+            @PathVariable Long storyId,
+            @RequestBody BulkUnlockRequest request) {
+        BulkUnlockResponse result = chapterAccessService.unlockChapters(storyId, request);
+        return ResponseEntity.ok(ApiResponse.success("Chapters unlocked successfully", result));
+    }
+
     // Xem lịch sử chương đã mở khóa của tôi (yêu cầu đăng nhập)
     @GetMapping("/my-unlocked")
     @PreAuthorize("isAuthenticated()")
@@ -99,6 +282,26 @@ public class ChapterController {
                 .body(ApiResponse.success("Create new chapter successfully", chapter));
     }
 
+    // Import nhiều chương cùng lúc từ JSON array (Admin, Super Admin)
+    @PostMapping(value = "/story/{storyId}/import", consumes = MediaType.APPLICATION_JSON_VALUE)
+    @PreAuthorize("hasAnyRole('ADMIN', 'SUPER_ADMIN')")
+    public ResponseEntity<ApiResponse<ChapterImportResponse>> importChapters(
+            @PathVariable Long storyId,
+            @RequestBody List<ChapterImportItem> chapters) {
+        ChapterImportResponse result = chapterImportService.importChapters(storyId, chapters);
+        return ResponseEntity.ok(ApiResponse.success("Import chapters successfully", result));
+    }
+
+    // Import chương dạng NDJSON (mỗi dòng 1 chương), server đọc stream nên payload lớn không nằm trọn trong RAM
+    @PostMapping(value = "/story/{storyId}/import", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    @PreAuthorize("hasAnyRole('ADMIN', 'SUPER_ADMIN')")
+    public ResponseEntity<ApiResponse<ChapterImportResponse>> importChaptersNdjson(
+            @PathVariable Long storyId,
+            InputStream body) {
+        ChapterImportResponse result = chapterImportService.importChaptersNdjson(storyId, body);
+        return ResponseEntity.ok(ApiResponse.success("Import chapters successfully", result));
+    }
+
     // Cập nhật chương (Admin, Super Admin)
     @PutMapping("/{id}")
     @PreAuthorize("hasAnyRole('ADMIN', 'SUPER_ADMIN')")
@@ -109,6 +312,34 @@ public class ChapterController {
         return ResponseEntity.ok(ApiResponse.success("Update chapter successfully", chapter));
     }
 
+    // Lịch sử phiên bản nội dung chương (Admin, Super Admin)
+    @GetMapping("/{id}/revisions")
+    @PreAuthorize("hasAnyRole('ADMIN', 'SUPER_ADMIN')")
+    public ResponseEntity<ApiResponse<List<ChapterRevisionResponse>>> getRevisions(@PathVariable Long id) {
+        List<ChapterRevisionResponse> revisions = chapterRevisionService.getRevisions(id);
+        return ResponseEntity.ok(ApiResponse.success("Get chapter revisions successfully", revisions));
+    }
+
+    // Xem toàn văn 1 phiên bản (Admin, Super Admin)
+    @GetMapping("/{id}/revisions/{revisionNumber}")
+    @PreAuthorize("hasAnyRole('ADMIN', 'SUPER_ADMIN')")
+    public ResponseEntity<ApiResponse<ChapterRevisionResponse>> getRevision(
+            @PathVariable Long id,
+            @PathVariable Integer revisionNumber) {
+        ChapterRevisionResponse revision = chapterRevisionService.getRevision(id, revisionNumber);
+        return ResponseEntity.ok(ApiResponse.success("Get chapter revision successfully", revision));
+    }
+
+    // Khôi phục nội dung chương về 1 phiên bản cũ (Admin, Super Admin)
+    @PostMapping("/{id}/revisions/{revisionNumber}/restore")
+    @PreAuthorize("hasAnyRole('ADMIN', 'SUPER_ADMIN')")
+    public ResponseEntity<ApiResponse<ChapterResponse>> restoreRevision(
+            @PathVariable Long id,
+            @PathVariable Integer revisionNumber) {
+        ChapterResponse chapter = chapterService.restoreRevision(id, revisionNumber);
+        return ResponseEntity.ok(ApiResponse.success("Restore chapter revision successfully", chapter));
+    }
+
     // Xóa chương (Admin, Super Admin)
     @DeleteMapping("/{id}")
     @PreAuthorize("hasAnyRole('ADMIN', 'SUPER_ADMIN')")
@@ -117,4 +348,16 @@ public class ChapterController {
         return ResponseEntity.ok(ApiResponse.success("Delete chapter successfully", null));
     }
 
-}
\ No newline at end of file
+    // Lấy IP thực của client
+    private String getClientIpAddress(HttpServletRequest request) {
+        String xForwardedFor = request.getHeader("X-Forwarded-For");
+        if (xForwardedFor != null && !xForwardedFor.isEmpty()) {
+            return xForwardedFor.split(",")[0].trim();
+        }
+        String xRealIp = request.getHeader("X-Real-IP");
+        if (xRealIp != null && !xRealIp.isEmpty()) {
+            return xRealIp;
+        }
+        return request.getRemoteAddr();
+    }
+}
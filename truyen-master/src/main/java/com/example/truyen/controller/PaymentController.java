@@ -67,6 +67,7 @@ public class PaymentController {
             case "97" -> "Invalid Checksum";
             case "01" -> "Order Not Found";
             case "02" -> "Order Already Confirmed";
+            case "04" -> "Invalid Amount";
             default -> "Unknown Error";
         };
         java.util.LinkedHashMap<String, String> body = new java.util.LinkedHashMap<>();
@@ -107,6 +108,15 @@ public class PaymentController {
         return ResponseEntity.ok(ApiResponse.success("Get all orders successfully", orders));
     }
 
+    // Admin: xử lý lại các callback VNPay đã FAILED (bỏ orderCode = tất cả)
+    @PostMapping("/callbacks/retry")
+    @PreAuthorize("hasAnyRole('ADMIN', 'SUPER_ADMIN')")
+    public ResponseEntity<ApiResponse<Integer>> retryFailedCallbacks(
+            @RequestParam(required = false) String orderCode) {
+        int requeued = paymentService.retryFailedCallbacks(orderCode);
+        return ResponseEntity.ok(ApiResponse.success("Requeued failed payment callbacks successfully", requeued));
+    }
+
     // Lấy IP thực của client
     private String getClientIpAddress(HttpServletRequest request) {
         String xForwardedFor = request.getHeader("X-Forwarded-For");
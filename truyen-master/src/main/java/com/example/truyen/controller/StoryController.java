@@ -9,12 +9,14 @@ import com.example.truyen.service.StoryService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.time.ZoneOffset;
 import java.util.List;
 
 @RestController
@@ -25,21 +27,31 @@ public class StoryController {
         private final StoryService storyService;
         private final MinIoService minIoService;
 
+        // view=card: trả về thẻ truyện gọn (không description, không categories)
+        private static final String CARD_VIEW = "card";
+
         // Lấy danh sách truyện (có phân trang)
         @GetMapping
-        public ResponseEntity<ApiResponse<Page<StoryResponse>>> getAllStories(
+        public ResponseEntity<ApiResponse<Page<?>>> getAllStories(
                         @RequestParam(defaultValue = "0") int page,
-                        @RequestParam(defaultValue = "10") int size) {
-                return ResponseEntity.ok(ApiResponse.success("Get story list successfully",
-                                storyService.getAllStories(page, size)));
+                        @RequestParam(defaultValue = "10") int size,
+                        @RequestParam(defaultValue = "full") String view) {
+                Page<?> stories = isCardView(view)
+                                ? storyService.getAllStoryCards(page, size)
+                                : storyService.getAllStories(page, size);
+                return ResponseEntity.ok(ApiResponse.success("Get story list successfully", stories));
         }
 
-        // Lấy chi tiết truyện theo ID và tăng lượt xem (dùng cho user)
+        // Lấy chi tiết truyện theo ID và tăng lượt xem (dùng cho user).
+        // Có ETag: If-None-Match khớp sẽ trả 304 mà không serialize body
         @GetMapping("/{id}")
         public ResponseEntity<ApiResponse<StoryResponse>> getStoryById(@PathVariable Long id) {
                 var story = storyService.getStoryById(id);
                 storyService.increaseView(id);
-                return ResponseEntity.ok(ApiResponse.success("Get story details successfully", story));
+                return ResponseEntity.ok()
+                                .cacheControl(CacheControl.noCache())
+                                .eTag(storyETag(story))
+                                .body(ApiResponse.success("Get story details successfully", story));
         }
 
         // Lấy chi tiết truyện theo ID KHÔNG tăng lượt xem (dùng cho admin)
@@ -47,45 +59,60 @@ public class StoryController {
         @PreAuthorize("hasAnyRole('ADMIN', 'SUPER_ADMIN')")
         public ResponseEntity<ApiResponse<StoryResponse>> getStoryByIdAdmin(@PathVariable Long id) {
                 var story = storyService.getStoryById(id);
-                return ResponseEntity.ok(ApiResponse.success("Get story details successfully", story));
+                return ResponseEntity.ok()
+                                .cacheControl(CacheControl.noCache().cachePrivate())
+                                .eTag(storyETag(story))
+                                .body(ApiResponse.success("Get story details successfully", story));
         }
 
         // Tìm kiếm truyện theo từ khóa
         @GetMapping("/search")
-        public ResponseEntity<ApiResponse<Page<StoryResponse>>> searchStories(
+        public ResponseEntity<ApiResponse<Page<?>>> searchStories(
                         @RequestParam String keyword,
                         @RequestParam(defaultValue = "0") int page,
-                        @RequestParam(defaultValue = "10") int size) {
-                return ResponseEntity.ok(ApiResponse.success("Search completed",
-                                storyService.searchStories(keyword, page, size)));
+                        @RequestParam(defaultValue = "10") int size,
+                        @RequestParam(defaultValue = "full") String view) {
+                Page<?> stories = isCardView(view)
+                                ? storyService.searchStoryCards(keyword, page, size)
+                                : storyService.searchStories(keyword, page, size);
+                return ResponseEntity.ok(ApiResponse.success("Search completed", stories));
         }
 
         // Lấy truyện theo danh mục
         @GetMapping("/category/{categoryId}")
-        public ResponseEntity<ApiResponse<Page<StoryResponse>>> getStoriesByCategory(
+        public ResponseEntity<ApiResponse<Page<?>>> getStoriesByCategory(
                         @PathVariable Long categoryId,
                         @RequestParam(defaultValue = "0") int page,
-                        @RequestParam(defaultValue = "10") int size) {
-                return ResponseEntity.ok(ApiResponse.success("Get story list successfully",
-                                storyService.getStoriesByCategory(categoryId, page, size)));
+                        @RequestParam(defaultValue = "10") int size,
+                        @RequestParam(defaultValue = "full") String view) {
+                Page<?> stories = isCardView(view)
+                                ? storyService.getStoryCardsByCategory(categoryId, page, size)
+                                : storyService.getStoriesByCategory(categoryId, page, size);
+                return ResponseEntity.ok(ApiResponse.success("Get story list successfully", stories));
         }
 
         // Lấy danh sách truyện HOT
         @GetMapping("/hot")
-        public ResponseEntity<ApiResponse<Page<StoryResponse>>> getHotStories(
+        public ResponseEntity<ApiResponse<Page<?>>> getHotStories(
                         @RequestParam(defaultValue = "0") int page,
-                        @RequestParam(defaultValue = "10") int size) {
-                return ResponseEntity.ok(ApiResponse.success("Get hot stories successfully",
-                                storyService.getHotStories(page, size)));
+                        @RequestParam(defaultValue = "10") int size,
+                        @RequestParam(defaultValue = "full") String view) {
+                Page<?> stories = isCardView(view)
+                                ? storyService.getHotStoryCards(page, size)
+                                : storyService.getHotStories(page, size);
+                return ResponseEntity.ok(ApiResponse.success("Get hot stories successfully", stories));
         }
 
         // Lấy danh sách truyện mới nhất
         @GetMapping("/latest")
-        public ResponseEntity<ApiResponse<Page<StoryResponse>>> getLatestStories(
+        public ResponseEntity<ApiResponse<Page<?>>> getLatestStories(
                         @RequestParam(defaultValue = "0") int page,
-                        @RequestParam(defaultValue = "10") int size) {
-                return ResponseEntity.ok(ApiResponse.success("Get latest stories successfully",
-                                storyService.getLatestStories(page, size)));
+                        @RequestParam(defaultValue = "10") int size,
+                        @RequestParam(defaultValue = "full") String view) {
+                Page<?> stories = isCardView(view)
+                                ? storyService.getLatestStoryCards(page, size)
+                                : storyService.getLatestStories(page, size);
+                return ResponseEntity.ok(ApiResponse.success("Get latest stories successfully", stories));
         }
 
         // Tạo truyện mới kèm ảnh bìa
@@ -152,16 +179,36 @@ public class StoryController {
 
         // Lấy danh sách truyện của một tác giả
         @GetMapping("/author/{authorId}")
-        public ApiResponse<List<StoryResponse>> getStoriesByAuthor(@PathVariable Long authorId) {
-                return ApiResponse.success("Get story list successfully",
-                                storyService.getStoriesByAuthor(authorId));
+        public ApiResponse<List<?>> getStoriesByAuthor(
+                        @PathVariable Long authorId,
+                        @RequestParam(defaultValue = "full") String view) {
+                List<?> stories = isCardView(view)
+                                ? storyService.getStoryCardsByAuthor(authorId)
+                                : storyService.getStoriesByAuthor(authorId);
+                return ApiResponse.success("Get story list successfully", stories);
+        }
+
+        // ETag từ bản StoryResponse đã cache: updatedAt + hash toàn bộ field (rating,
+        // danh mục, VIP... không làm đổi updatedAt nhưng vẫn làm đổi hash)
+        private static String storyETag(StoryResponse story) {
+                long updatedAt = story.getUpdatedAt() != null
+                                ? story.getUpdatedAt().toInstant(ZoneOffset.UTC).toEpochMilli()
+                                : 0L;
+                return "\"s" + story.getId() + "-" + updatedAt + "-" + Integer.toHexString(story.hashCode()) + "\"";
         }
 
         // Lọc truyện nâng cao
         @GetMapping("/filter")
-        public ResponseEntity<ApiResponse<Page<StoryResponse>>> filterStories(
-                        @ModelAttribute StoryFilterCriteria criteria) {
-                var stories = storyService.filterStories(criteria);
+        public ResponseEntity<ApiResponse<Page<?>>> filterStories(
+                        @ModelAttribute StoryFilterCriteria criteria,
+                        @RequestParam(defaultValue = "full") String view) {
+                Page<?> stories = isCardView(view)
+                                ? storyService.filterStoryCards(criteria)
+                                : storyService.filterStories(criteria);
                 return ResponseEntity.ok(ApiResponse.success("Get filtered stories successfully", stories));
         }
+
+        private static boolean isCardView(String view) {
+                return CARD_VIEW.equalsIgnoreCase(view);
+        }
 }
@@ -4,7 +4,6 @@ import com.example.truyen.dto.request.TrackViewRequest;
 import com.example.truyen.dto.response.StoryStatsResponse;
 import com.example.truyen.dto.response.StoryTrendingDTO;
 import com.example.truyen.entity.Ranking;
-import com.example.truyen.repository.RatingRepository;
 import com.example.truyen.repository.FavoriteRepository;
 import com.example.truyen.repository.CommentRepository;
 import com.example.truyen.repository.StoryRepository;
@@ -29,7 +28,6 @@ public class TrendingController {
     private final TrendingService trendingService;
     private final StoryViewService viewService;
     private final StoryRepository storyRepository;
-    private final RatingRepository ratingRepository;
     private final FavoriteRepository favoriteRepository;
     private final CommentRepository commentRepository;
 
@@ -128,7 +126,7 @@ public class TrendingController {
                     .views7Days(viewService.getRecentViews(storyId, 7))
                     .views30Days(viewService.getRecentViews(storyId, 30))
                     .totalViews(story.getTotalViews())
-                    .averageRating(ratingRepository.getAverageRating(storyId))
+                    .averageRating(story.getAverageRating())
                     .favoriteCount(favoriteRepository.countByStoryId(storyId))
                     .commentCount(commentRepository.countByStoryId(storyId))
                     .build();
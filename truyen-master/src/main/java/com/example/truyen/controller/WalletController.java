@@ -2,6 +2,7 @@ package com.example.truyen.controller;
 
 import com.example.truyen.dto.response.ApiResponse;
 import com.example.truyen.dto.response.WalletResponse;
+import com.example.truyen.dto.response.WalletTransactionPageResponse;
 import com.example.truyen.dto.response.WalletTransactionResponse;
 import com.example.truyen.service.WalletService;
 import lombok.RequiredArgsConstructor;
@@ -35,7 +36,7 @@ public class WalletController {
             @RequestParam Long userId,
             @RequestParam int amount,
             @RequestParam(defaultValue = "Admin top-up") String description) {
-        walletService.addCoins(userId, amount, description, null);
+        walletService.addCoins(userId, amount, description, null, null);
         return ResponseEntity.ok(ApiResponse.success("Added " + amount + " coins to user " + userId, null));
     }
 
@@ -46,7 +47,7 @@ public class WalletController {
             @RequestParam Long userId,
             @RequestParam int amount,
             @RequestParam(defaultValue = "Admin deduction") String description) {
-        walletService.spendCoins(userId, amount, description, null);
+        walletService.spendCoins(userId, amount, description, null, null);
         return ResponseEntity.ok(ApiResponse.success("Deducted " + amount + " coins from user " + userId, null));
     }
 
@@ -61,6 +62,16 @@ public class WalletController {
         return ResponseEntity.ok(ApiResponse.success("Get transactions successfully", transactions));
     }
 
+    // Lịch sử giao dịch của tôi theo cursor (after = nextCursor của trang trước)
+    @GetMapping("/transactions/history")
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<ApiResponse<WalletTransactionPageResponse>> getMyTransactionHistory(
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "20") int size) {
+        WalletTransactionPageResponse history = walletService.getMyTransactionHistory(after, size);
+        return ResponseEntity.ok(ApiResponse.success("Get transaction history successfully", history));
+    }
+
     // Admin: xem ví của user bất kỳ
     @GetMapping("/admin/{userId}")
     @PreAuthorize("hasAnyRole('ADMIN', 'SUPER_ADMIN')")
@@ -81,14 +92,36 @@ public class WalletController {
         return ResponseEntity.ok(ApiResponse.success("Get user transactions successfully", transactions));
     }
 
-    // Admin: xem tất cả giao dịch ví (phân trang)
+    // Admin: lịch sử giao dịch của user bất kỳ theo cursor
+    @GetMapping("/admin/{userId}/transactions/history")
+    @PreAuthorize("hasAnyRole('ADMIN', 'SUPER_ADMIN')")
+    public ResponseEntity<ApiResponse<WalletTransactionPageResponse>> getUserTransactionHistory(
+            @PathVariable Long userId,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "20") int size) {
+        WalletTransactionPageResponse history = walletService.getTransactionHistoryByUserId(userId, after, size);
+        return ResponseEntity.ok(ApiResponse.success("Get user transaction history successfully", history));
+    }
+
+    // Admin: xem tất cả giao dịch ví (phân trang; approximateCount=true bỏ COUNT toàn bảng)
     @GetMapping("/admin/all-transactions")
     @PreAuthorize("hasAnyRole('ADMIN', 'SUPER_ADMIN')")
     public ResponseEntity<ApiResponse<Page<WalletTransactionResponse>>> getAllTransactions(
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "20") int size) {
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(defaultValue = "false") boolean approximateCount) {
         Pageable pageable = PageRequest.of(page, size, Sort.by("createdAt").descending());
-        Page<WalletTransactionResponse> transactions = walletService.getAllTransactions(pageable);
+        Page<WalletTransactionResponse> transactions = walletService.getAllTransactions(pageable, approximateCount);
         return ResponseEntity.ok(ApiResponse.success("Get all transactions successfully", transactions));
     }
+
+    // Admin: tất cả giao dịch ví theo cursor
+    @GetMapping("/admin/all-transactions/history")
+    @PreAuthorize("hasAnyRole('ADMIN', 'SUPER_ADMIN')")
+    public ResponseEntity<ApiResponse<WalletTransactionPageResponse>> getAllTransactionHistory(
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "20") int size) {
+        WalletTransactionPageResponse history = walletService.getAllTransactionHistory(after, size);
+        return ResponseEntity.ok(ApiResponse.success("Get all transaction history successfully", history));
+    }
 }
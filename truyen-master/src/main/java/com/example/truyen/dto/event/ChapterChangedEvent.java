@@ -0,0 +1,27 @@
+package com.example.truyen.dto.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Collection;
+import java.util.Set;
+
+// Application event: nội dung/trạng thái khóa của các chương đã thay đổi (tạo,
+// sửa, xóa, import) của 1 truyện. Được xử lý sau khi transaction commit.
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChapterChangedEvent {
+
+    private Long storyId;
+    private Set<Long> chapterIds;
+
+    public static ChapterChangedEvent of(Long storyId, Long chapterId) {
+        return new ChapterChangedEvent(storyId, Set.of(chapterId));
+    }
+
+    public static ChapterChangedEvent of(Long storyId, Collection<Long> chapterIds) {
+        return new ChapterChangedEvent(storyId, Set.copyOf(chapterIds));
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.truyen.dto.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Set;
+
+// Application event: user vừa mở khóa các chương (xử lý sau khi transaction commit
+// để bitmap quyền đọc không bao giờ chứa chương chưa trừ xu thành công)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChapterUnlockedEvent {
+
+    private String username;
+
+    private Set<Long> chapterIds;
+}
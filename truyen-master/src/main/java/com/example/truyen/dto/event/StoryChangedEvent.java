@@ -0,0 +1,26 @@
+package com.example.truyen.dto.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Collection;
+import java.util.Set;
+
+// Application event: dữ liệu hiển thị của các truyện đã thay đổi (truyện,
+// chương, đánh giá, danh mục, tác giả). Được xử lý sau khi transaction commit.
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StoryChangedEvent {
+
+    private Set<Long> storyIds;
+
+    public static StoryChangedEvent of(Long storyId) {
+        return new StoryChangedEvent(Set.of(storyId));
+    }
+
+    public static StoryChangedEvent of(Collection<Long> storyIds) {
+        return new StoryChangedEvent(Set.copyOf(storyIds));
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.truyen.dto.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Application event: role/trạng thái/mật khẩu của user đổi → token cũ hết hiệu lực.
+// statusVersion = -1 nghĩa là tài khoản bị khóa hoặc đã xóa.
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserStatusChangedEvent {
+
+    private Long userId;
+
+    private int statusVersion;
+}
@@ -0,0 +1,17 @@
+package com.example.truyen.dto.projection;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.io.InputStream;
+import java.util.function.Supplier;
+
+// Nguồn đọc nội dung chương dạng stream (UTF-8), đọc từ mảng dùng chung trong cache nội dung
+@Getter
+@AllArgsConstructor
+public class ChapterContentStream {
+    private Long chapterId;
+    // Độ dài nội dung tính bằng byte UTF-8
+    private long length;
+    private Supplier<InputStream> source;
+}
@@ -0,0 +1,28 @@
+package com.example.truyen.dto.projection;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Arrays;
+
+// Mục lục rút gọn của 1 truyện: số chương (tăng dần) → id chương + cờ khóa, dùng cho prev/next
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChapterIndex {
+    private Long storyId;
+    private int[] chapterNumbers;
+    private long[] chapterIds;
+    private boolean[] locked;
+
+    // Vị trí của số chương trong index, -1 nếu không có
+    public int positionOf(int chapterNumber) {
+        int position = Arrays.binarySearch(chapterNumbers, chapterNumber);
+        return position >= 0 ? position : -1;
+    }
+
+    public int size() {
+        return chapterNumbers.length;
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.truyen.dto.projection;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+
+// Một dòng mục lục chương, không đọc cột content
+@Getter
+@AllArgsConstructor
+public class ChapterTocItem {
+    private Long id;
+    private Integer chapterNumber;
+    private String title;
+    private Boolean isLocked;
+    private Integer coinsPrice;
+    private LocalDateTime createdAt;
+    private Long snapshotVersion;
+}
@@ -0,0 +1,16 @@
+package com.example.truyen.dto.projection;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+
+// Metadata tối thiểu để tính ETag của chương, không đọc cột content
+@Getter
+@AllArgsConstructor
+public class ChapterVersion {
+    private Long id;
+    private Boolean isLocked;
+    private LocalDateTime chapterUpdatedAt;
+    private LocalDateTime storyUpdatedAt;
+}
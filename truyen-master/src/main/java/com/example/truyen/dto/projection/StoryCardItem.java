@@ -0,0 +1,25 @@
+package com.example.truyen.dto.projection;
+
+import com.example.truyen.entity.Story;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// Read model cho thẻ truyện (view=card): SELECT hẹp, không có description/categories
+@Getter
+@AllArgsConstructor
+public class StoryCardItem {
+    private Long id;
+    private String title;
+    private String image;
+    private String authorName;
+    private Story.Status status;
+    private Integer totalChapters;
+    private Integer totalViews;
+    private Long ratingSum;
+    private Integer ratingCount;
+    private Boolean hasVipChapters;
+
+    public double getAverageRating() {
+        return ratingCount != null && ratingCount > 0 ? (double) ratingSum / ratingCount : 0.0;
+    }
+}
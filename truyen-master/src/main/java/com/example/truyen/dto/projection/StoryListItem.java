@@ -0,0 +1,33 @@
+package com.example.truyen.dto.projection;
+
+import com.example.truyen.entity.Story;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+
+// Read model cho trang danh sách truyện: được dựng trực tiếp bằng JPQL constructor
+// expression, không tạo managed entity, không load proxy của các collection
+@Getter
+@AllArgsConstructor
+public class StoryListItem {
+    private Long id;
+    private String title;
+    private Long authorId;
+    private String authorName;
+    private String description;
+    private String image;
+    private Story.Status status;
+    private Integer totalChapters;
+    private Integer totalViews;
+    private Boolean isHot;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+    private Long ratingSum;
+    private Integer ratingCount;
+    private Boolean hasVipChapters;
+
+    public double getAverageRating() {
+        return ratingCount != null && ratingCount > 0 ? (double) ratingSum / ratingCount : 0.0;
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.truyen.dto.request;
+
+import lombok.Data;
+
+import java.util.List;
+
+// Mở khóa nhiều chương của 1 truyện (storyId nằm trên URL): truyền khoảng số
+// chương [fromChapter, toChapter] hoặc danh sách id chương
+@Data
+public class BulkUnlockRequest {
+
+    private Integer fromChapter;
+
+    private Integer toChapter;
+
+    private List<Long> chapterIds;
+}
@@ -0,0 +1,21 @@
+package com.example.truyen.dto.request;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// 1 chương trong payload import (storyId nằm trên URL)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ChapterImportItem {
+    private Integer chapterNumber;
+    private String title;
+    private String content;
+    @Builder.Default
+    private Boolean isLocked = false;
+    @Builder.Default
+    private Integer coinsPrice = 0;
+}
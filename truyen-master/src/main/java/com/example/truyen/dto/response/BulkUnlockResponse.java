@@ -0,0 +1,26 @@
+package com.example.truyen.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BulkUnlockResponse {
+    private Long storyId;
+    // Các chương được mở khóa (hoặc sẽ được mở khóa nếu chỉ báo giá)
+    private List<Long> chapterIds;
+    // Số chương bị khóa trong lựa chọn nhưng user đã mở khóa từ trước
+    private Integer alreadyUnlocked;
+    // Tổng giá gốc, % giảm theo gói và số xu thực trả
+    private Integer totalPrice;
+    private Integer discountPercent;
+    private Integer coinsCharged;
+    // Số dư sau khi trừ (null khi chỉ báo giá)
+    private Integer balanceAfter;
+}
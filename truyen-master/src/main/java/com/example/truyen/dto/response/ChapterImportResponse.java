@@ -0,0 +1,20 @@
+package com.example.truyen.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ChapterImportResponse {
+    private Long storyId;
+    // Số chương được thêm mới trong lần import này
+    private Integer imported;
+    // Số chương đã tồn tại (import lại sau khi lỗi sẽ bỏ qua các chương này)
+    private Integer skipped;
+    private Integer totalChapters;
+    private Long elapsedMillis;
+}
@@ -0,0 +1,23 @@
+package com.example.truyen.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ChapterNavigationResponse {
+    private Long storyId;
+    private Long chapterId;
+    private Integer chapterNumber;
+    private Long prevChapterId;
+    private Integer prevChapterNumber;
+    private Boolean prevLocked;
+    private Long nextChapterId;
+    private Integer nextChapterNumber;
+    private Boolean nextLocked;
+    private Integer totalChapters;
+}
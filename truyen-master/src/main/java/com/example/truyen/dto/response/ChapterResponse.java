@@ -23,4 +23,11 @@ public class ChapterResponse {
     private Integer coinsPrice;
     private Boolean hasAccess;
     private LocalDateTime createdAt;
+    // URL bản JSON tĩnh (gzip) của chương miễn phí trên MinIO
+    private String snapshotUrl;
+    // Chương trước/sau theo index chương (null nếu là chương đầu/cuối)
+    private Long prevChapterId;
+    private Integer prevChapterNumber;
+    private Long nextChapterId;
+    private Integer nextChapterNumber;
 }
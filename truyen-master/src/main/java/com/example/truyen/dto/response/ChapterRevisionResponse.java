@@ -0,0 +1,24 @@
+package com.example.truyen.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ChapterRevisionResponse {
+    private Long chapterId;
+    private Integer revisionNumber;
+    private String type;
+    private Integer contentSize;
+    private Integer storedSize;
+    private String createdBy;
+    private LocalDateTime createdAt;
+    // Chỉ có khi xem chi tiết 1 phiên bản
+    private String content;
+}
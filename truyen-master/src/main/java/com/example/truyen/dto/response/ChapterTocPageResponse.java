@@ -0,0 +1,19 @@
+package com.example.truyen.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// Trang mục lục phân trang theo cursor (số chương cuối cùng của trang trước)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ChapterTocPageResponse {
+    private List<ChapterTocResponse> items;
+    private Integer nextCursor;
+    private Boolean hasMore;
+}
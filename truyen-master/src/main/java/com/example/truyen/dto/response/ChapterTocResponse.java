@@ -0,0 +1,24 @@
+package com.example.truyen.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ChapterTocResponse {
+    private Long id;
+    private Integer chapterNumber;
+    private String title;
+    private Boolean isLocked;
+    private Integer coinsPrice;
+    private Boolean hasAccess;
+    private LocalDateTime createdAt;
+    // URL bản JSON tĩnh (gzip) của chương miễn phí, đọc thẳng từ MinIO không qua API
+    private String snapshotUrl;
+}
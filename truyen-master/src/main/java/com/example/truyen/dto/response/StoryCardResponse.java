@@ -0,0 +1,22 @@
+package com.example.truyen.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StoryCardResponse {
+    private Long id;
+    private String title;
+    private String image;
+    private String authorName;
+    private String status;
+    private Integer totalChapters;
+    private Integer totalViews;
+    private Double averageRating;
+    private Boolean hasVipChapters;
+}
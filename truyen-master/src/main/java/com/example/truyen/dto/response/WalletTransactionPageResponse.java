@@ -0,0 +1,19 @@
+package com.example.truyen.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// Trang lịch sử giao dịch phân trang theo cursor (không COUNT, không OFFSET)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class WalletTransactionPageResponse {
+    private List<WalletTransactionResponse> items;
+    private String nextCursor;
+    private Boolean hasMore;
+}
@@ -3,13 +3,19 @@ package com.example.truyen.entity;
 import jakarta.persistence.*;
 import lombok.*;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.UpdateTimestamp;
 
 import java.time.LocalDateTime;
 import java.util.HashSet;
 import java.util.Set;
 
 @Entity
-@Table(name = "chapters")
+@Table(name = "chapters", indexes = {
+        // Mục lục phân trang theo cursor: WHERE story_id = ? AND chapter_number > ? ORDER BY chapter_number
+        @Index(name = "idx_chapters_story_number", columnList = "story_id, chapter_number")
+})
+@DynamicUpdate
 @Getter
 @Setter
 @NoArgsConstructor
@@ -31,8 +37,7 @@ public class Chapter {
     @Column(nullable = false, length = 500)
     private String title;
 
-    @Column(nullable = false, columnDefinition = "LONGTEXT")
-    private String content;
+    // Nội dung chương nằm ở bảng chapter_contents (xem ChapterContentService)
 
     @Builder.Default
     private Integer views = 0;
@@ -49,6 +54,17 @@ public class Chapter {
     @Column(name = "created_at", updatable = false)
     private LocalDateTime createdAt;
 
+    // Dùng làm validator cho ETag; lượt xem được cộng dồn bằng JDBC batch nên không
+    // làm thay đổi cột này
+    @UpdateTimestamp
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    // Version (updated_at, epoch millis) của bản JSON tĩnh trên MinIO; null = chưa có
+    // hoặc đã cũ, client phải đọc qua API
+    @Column(name = "snapshot_version")
+    private Long snapshotVersion;
+
     @OneToMany(mappedBy = "chapter", cascade = CascadeType.ALL, orphanRemoval = true)
     @Builder.Default
     private Set<Comment> comments = new HashSet<>();
@@ -0,0 +1,45 @@
+package com.example.truyen.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.LocalDateTime;
+
+// Nội dung chương tách khỏi bảng chapters, lưu dạng nén (khóa chính = id chương)
+@Entity
+@Table(name = "chapter_contents")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ChapterContent {
+
+    @Id
+    @Column(name = "chapter_id")
+    private Long chapterId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    @Builder.Default
+    private Encoding encoding = Encoding.DEFLATE;
+
+    @Column(nullable = false, columnDefinition = "LONGBLOB")
+    private byte[] data;
+
+    // Kích thước UTF-8 trước khi nén (dùng để thống kê tỉ lệ nén)
+    @Column(name = "original_size", nullable = false)
+    private Integer originalSize;
+
+    @Column(name = "stored_size", nullable = false)
+    private Integer storedSize;
+
+    @UpdateTimestamp
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    public enum Encoding {
+        DEFLATE
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.truyen.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+// 1 phiên bản nội dung chương: bản đầy đủ (FULL) hoặc diff so với phiên bản liền trước (DELTA), nén deflate
+@Entity
+@Table(name = "chapter_revisions", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_chapter_revisions_chapter_revision", columnNames = { "chapter_id", "revision_number" })
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ChapterRevision {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "chapter_id", nullable = false)
+    private Long chapterId;
+
+    @Column(name = "revision_number", nullable = false)
+    private Integer revisionNumber;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 10)
+    private Type type;
+
+    @Column(nullable = false, columnDefinition = "LONGBLOB")
+    private byte[] data;
+
+    // Kích thước UTF-8 của toàn văn ở phiên bản này
+    @Column(name = "content_size", nullable = false)
+    private Integer contentSize;
+
+    @Column(name = "stored_size", nullable = false)
+    private Integer storedSize;
+
+    @Column(name = "created_by", length = 100)
+    private String createdBy;
+
+    @CreationTimestamp
+    @Column(name = "created_at", updatable = false)
+    private LocalDateTime createdAt;
+
+    public enum Type {
+        FULL, DELTA
+    }
+}
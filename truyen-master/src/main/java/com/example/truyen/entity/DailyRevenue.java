@@ -0,0 +1,42 @@
+package com.example.truyen.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+// Doanh thu theo ngày; mỗi ngày chia nhiều shard để các giao dịch song song không tranh 1 dòng
+@Entity
+@Table(name = "daily_revenue")
+@IdClass(DailyRevenue.Key.class)
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class DailyRevenue {
+
+    @Id
+    @Column(name = "stat_date")
+    private LocalDate statDate;
+
+    @Id
+    @Column(name = "shard")
+    private Integer shard;
+
+    @Column(name = "success_orders", nullable = false)
+    private Long successOrders;
+
+    @Column(nullable = false, precision = 19, scale = 2)
+    private BigDecimal revenue;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private LocalDate statDate;
+        private Integer shard;
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.truyen.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+// Lượt mở khóa chương + xu tiêu theo ngày (chia shard như DailyRevenue)
+@Entity
+@Table(name = "daily_unlocks")
+@IdClass(DailyUnlocks.Key.class)
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class DailyUnlocks {
+
+    @Id
+    @Column(name = "stat_date")
+    private LocalDate statDate;
+
+    @Id
+    @Column(name = "shard")
+    private Integer shard;
+
+    @Column(nullable = false)
+    private Long unlocks;
+
+    @Column(name = "coins_spent", nullable = false)
+    private Long coinsSpent;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private LocalDate statDate;
+        private Integer shard;
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.truyen.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+// Sự kiện chờ gửi Kafka, ghi cùng transaction nghiệp vụ; relay gửi xong thì xóa
+@Entity
+@Table(name = "outbox_events")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class OutboxEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 100)
+    private String topic;
+
+    @Column(name = "message_key", length = 255)
+    private String messageKey;
+
+    // Class của event để relay dựng lại object (consumer dựa vào type header)
+    @Column(name = "event_type", nullable = false, length = 255)
+    private String eventType;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String payload;
+
+    @CreationTimestamp
+    @Column(name = "created_at", updatable = false)
+    private LocalDateTime createdAt;
+
+    // Relay đang gửi dòng này tới thời điểm claimed_until; quá hạn (node chết) thì relay khác nhận lại
+    @Column(name = "claim_token", length = 36)
+    private String claimToken;
+
+    @Column(name = "claimed_until")
+    private LocalDateTime claimedUntil;
+}
@@ -0,0 +1,77 @@
+package com.example.truyen.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+// Callback VNPay (IPN/return) đã xác thực chữ ký, ghi lại trước khi xử lý để trả lời VNPay ngay.
+// Unique theo (vnp_transaction_no, order_code): VNPay gửi lại cùng callback thì chỉ có 1 dòng;
+// kèm order_code vì giao dịch bị hủy trên VNPay đều có vnp_TransactionNo = 0.
+@Entity
+@Table(name = "payment_callbacks",
+        uniqueConstraints = @UniqueConstraint(name = "uq_payment_callback",
+                columnNames = { "vnp_transaction_no", "order_code" }),
+        indexes = @Index(name = "idx_payment_callbacks_status", columnList = "status, id"))
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PaymentCallback {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "vnp_transaction_no", nullable = false, length = 100)
+    private String vnpTransactionNo;
+
+    @Column(name = "order_code", nullable = false, length = 50)
+    private String orderCode;
+
+    @Column(name = "response_code", length = 10)
+    private String responseCode;
+
+    // vnp_Amount (VND x 100)
+    @Column(name = "amount")
+    private Long amount;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    @Builder.Default
+    private Status status = Status.RECEIVED;
+
+    // Kết quả xử lý: SUCCESS, FAILED, ALREADY_PROCESSED, ORDER_NOT_FOUND, INVALID_AMOUNT
+    @Column(length = 30)
+    private String result;
+
+    // Tổng số lần xử lý lỗi (cả lỗi tạm thời), dùng để tính thời gian chờ thử lại
+    @Column(nullable = false)
+    @Builder.Default
+    private Integer attempts = 0;
+
+    // Số lần lỗi không phải tạm thời; đủ max-attempts thì chuyển FAILED
+    @Column(nullable = false)
+    @Builder.Default
+    private Integer failures = 0;
+
+    // Chưa tới thời điểm này thì worker bỏ qua (backoff sau lỗi)
+    @Column(name = "next_attempt_at")
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "last_error", length = 255)
+    private String lastError;
+
+    @CreationTimestamp
+    @Column(name = "received_at", updatable = false)
+    private LocalDateTime receivedAt;
+
+    @Column(name = "processed_at")
+    private LocalDateTime processedAt;
+
+    public enum Status {
+        RECEIVED, PROCESSED, FAILED
+    }
+}
@@ -8,7 +8,11 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "payment_orders")
+@Table(name = "payment_orders",
+        indexes = {
+                @Index(name = "idx_payment_orders_status_created", columnList = "status, created_at"),
+                @Index(name = "idx_payment_orders_status_completed", columnList = "status, completed_at")
+        })
 @Getter
 @Setter
 @NoArgsConstructor
@@ -3,6 +3,7 @@ package com.example.truyen.entity;
 import jakarta.persistence.*;
 import lombok.*;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.DynamicUpdate;
 import org.hibernate.annotations.UpdateTimestamp;
 
 import java.time.LocalDateTime;
@@ -11,6 +12,7 @@ import java.util.Set;
 
 @Entity
 @Table(name = "stories")
+@DynamicUpdate
 @Getter
 @Setter
 @NoArgsConstructor
@@ -52,6 +54,16 @@ public class Story {
     @Builder.Default
     private Boolean isHot = false;
 
+    // Tổng điểm và số lượt đánh giá, được cộng dồn atomic bởi RatingService.
+    // @DynamicUpdate đảm bảo việc save Story ở nơi khác không ghi đè 2 cột này.
+    @Column(name = "rating_sum", nullable = false, columnDefinition = "BIGINT DEFAULT 0")
+    @Builder.Default
+    private Long ratingSum = 0L;
+
+    @Column(name = "rating_count", nullable = false, columnDefinition = "INT DEFAULT 0")
+    @Builder.Default
+    private Integer ratingCount = 0;
+
     @ManyToMany(fetch = FetchType.LAZY)
     @JoinTable(name = "story_categories", joinColumns = @JoinColumn(name = "story_id"), inverseJoinColumns = @JoinColumn(name = "category_id"))
     @Builder.Default
@@ -89,6 +101,11 @@ public class Story {
     @Builder.Default
     private Set<Ranking> rankings = new HashSet<>();
 
+    // Điểm trung bình tính từ aggregate lưu sẵn trên row, không cần query ratings
+    public double getAverageRating() {
+        return ratingCount != null && ratingCount > 0 ? (double) ratingSum / ratingCount : 0.0;
+    }
+
     public enum Status {
         ONGOING, COMPLETED, PAUSED, DRAFT, PRIVATE
     }
@@ -46,6 +46,11 @@ public class User {
     @Builder.Default
     private Boolean isActive = true;
 
+    // Tăng mỗi khi đổi role/trạng thái/mật khẩu; token mang version cũ bị từ chối
+    @Column(name = "status_version")
+    @Builder.Default
+    private Integer statusVersion = 0;
+
     @CreationTimestamp
     @Column(name = "created_at", updatable = false)
     private LocalDateTime createdAt;
@@ -8,7 +8,7 @@ import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "user_chapter_access", uniqueConstraints = @UniqueConstraint(name = "uq_user_chapter", columnNames = {
-        "user_id", "chapter_id" }))
+        "user_id", "chapter_id" }), indexes = @Index(name = "idx_user_chapter_access_accessed", columnList = "accessed_at"))
 @Getter
 @Setter
 @NoArgsConstructor
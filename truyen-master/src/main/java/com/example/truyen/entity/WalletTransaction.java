@@ -7,7 +7,11 @@ import org.hibernate.annotations.CreationTimestamp;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "wallet_transactions")
+@Table(name = "wallet_transactions", indexes = {
+        @Index(name = "idx_wallet_tx_settled", columnList = "settled"),
+        @Index(name = "idx_wallet_tx_user_created", columnList = "user_id, created_at, id"),
+        @Index(name = "idx_wallet_tx_created", columnList = "created_at, id")
+})
 @Getter
 @Setter
 @NoArgsConstructor
@@ -36,9 +40,23 @@ public class WalletTransaction {
     @Column(length = 255)
     private String description;
 
+    // ref_id trỏ tới đâu: đơn nạp, chương (mở 1 chương) hoặc truyện (mở hàng loạt); null với dòng cũ/admin
+    @Enumerated(EnumType.STRING)
+    @Column(name = "ref_type", length = 20)
+    private RefType refType;
+
     @Column(name = "ref_id")
     private Long refId;
 
+    // Id reservation trên Redis (khôi phục sau crash: có dòng ledger nghĩa là giao dịch đã commit)
+    @Column(name = "reservation_id", length = 36, unique = true)
+    private String reservationId;
+
+    // false: chưa gộp vào user_wallets.balance; null: dòng cũ từ trước khi có ledger (đã nằm trong balance)
+    @Column(name = "settled")
+    @Builder.Default
+    private Boolean settled = false;
+
     @CreationTimestamp
     @Column(name = "created_at", updatable = false)
     private LocalDateTime createdAt;
@@ -46,4 +64,8 @@ public class WalletTransaction {
     public enum Type {
         DEPOSIT, SPEND, BONUS
     }
+
+    public enum RefType {
+        PAYMENT_ORDER, CHAPTER, STORY
+    }
 }
@@ -0,0 +1,53 @@
+package com.example.truyen.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+// Giao dịch ví cũ đã chuyển khỏi wallet_transactions (giữ nguyên id, chỉ để tra cứu lịch sử)
+@Entity
+@Table(name = "wallet_transactions_archive",
+        indexes = @Index(name = "idx_wallet_tx_archive_user_created", columnList = "user_id, created_at, id"))
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class WalletTransactionArchive {
+
+    @Id
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private WalletTransaction.Type type;
+
+    @Column(nullable = false)
+    private Integer amount;
+
+    @Column(name = "balance_after", nullable = false)
+    private Integer balanceAfter;
+
+    @Column(length = 255)
+    private String description;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "ref_type", length = 20)
+    private WalletTransaction.RefType refType;
+
+    @Column(name = "ref_id")
+    private Long refId;
+
+    @Column(name = "reservation_id", length = 36)
+    private String reservationId;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "archived_at", nullable = false)
+    private LocalDateTime archivedAt;
+}
@@ -0,0 +1,9 @@
+package com.example.truyen.exception;
+
+// Ví đang đồng bộ lại số dư (có reservation dở): lỗi tạm thời, gọi lại sau là được
+public class WalletBusyException extends BadRequestException {
+
+    public WalletBusyException(String message) {
+        super(message);
+    }
+}
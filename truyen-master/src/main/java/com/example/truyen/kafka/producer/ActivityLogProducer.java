@@ -2,37 +2,35 @@ package com.example.truyen.kafka.producer;
 
 import com.example.truyen.config.KafkaTopicConfig;
 import com.example.truyen.dto.event.ActivityLogEvent;
+import com.example.truyen.service.OutboxService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Component;
 
-// Producer gửi Activity Log Events vào Kafka
+// Producer gửi Activity Log Events vào Kafka (qua outbox)
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class ActivityLogProducer {
 
-    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final OutboxService outboxService;
 
-    // Gửi activity log event vào Kafka
+    // Ghi activity log event vào outbox, relay gửi Kafka sau khi transaction commit
     public void sendActivityLog(ActivityLogEvent event) {
-        try {
-            // Sử dụng userId làm key để các logs của cùng user vào cùng partition
-            String key = event.getUserId() != null ? String.valueOf(event.getUserId()) : "system";
+        outboxService.publish(KafkaTopicConfig.ACTIVITY_LOGS, key(event), event);
+        log.debug("Activity log queued: {} {} by user {}",
+                event.getAction(), event.getEntityType(), event.getUsername());
+    }
 
-            kafkaTemplate.send(KafkaTopicConfig.ACTIVITY_LOGS, key, event)
-                    .whenComplete((result, ex) -> {
-                        if (ex == null) {
-                            log.debug("Activity log sent: {} {} by user {}",
-                                    event.getAction(), event.getEntityType(), event.getUsername());
-                        } else {
-                            log.error("Failed to send activity log: {}", ex.getMessage());
-                        }
-                    });
+    // Nhật ký lỗi: thao tác đang rollback nên ghi outbox trong transaction riêng
+    public void sendErrorLog(ActivityLogEvent event) {
+        outboxService.publishIndependently(KafkaTopicConfig.ACTIVITY_LOGS, key(event), event);
+        log.debug("Error log queued: {} {} by user {}",
+                event.getAction(), event.getEntityType(), event.getUsername());
+    }
 
-        } catch (Exception e) {
-            log.error("Error sending activity log event: {}", e.getMessage());
-        }
+    // Sử dụng userId làm key để các logs của cùng user vào cùng partition
+    private String key(ActivityLogEvent event) {
+        return event.getUserId() != null ? String.valueOf(event.getUserId()) : "system";
     }
 }
@@ -2,37 +2,30 @@ package com.example.truyen.kafka.producer;
 
 import com.example.truyen.config.KafkaTopicConfig;
 import com.example.truyen.dto.event.SearchEvent;
+import com.example.truyen.service.OutboxService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Component;
 
-// Producer gửi search events vào Kafka
+// Producer gửi search events vào Kafka (qua outbox)
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class SearchProducer {
 
-    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final OutboxService outboxService;
 
-    // Gửi search event vào Kafka
+    // Ghi search event vào outbox
     public void sendSearchEvent(SearchEvent event) {
         try {
             // Sử dụng query làm key để partition
             String key = event.getQuery() != null ? event.getQuery() : "unknown";
 
-            kafkaTemplate.send(KafkaTopicConfig.SEARCH_QUERIES, key, event)
-                    .whenComplete((result, ex) -> {
-                        if (ex == null) {
-                            log.debug("Search event sent successfully: query={}", event.getQuery());
-                        } else {
-                            log.error("Failed to send search event: query={}, error={}",
-                                    event.getQuery(), ex.getMessage());
-                        }
-                    });
+            outboxService.publish(KafkaTopicConfig.SEARCH_QUERIES, key, event);
+            log.debug("Search event queued: query={}", event.getQuery());
 
         } catch (Exception e) {
-            log.error("Error sending search event: {}", e.getMessage(), e);
+            log.error("Error queuing search event: {}", e.getMessage(), e);
         }
     }
 }
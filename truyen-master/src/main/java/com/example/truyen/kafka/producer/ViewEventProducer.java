@@ -2,46 +2,30 @@ package com.example.truyen.kafka.producer;
 
 import com.example.truyen.config.KafkaTopicConfig;
 import com.example.truyen.dto.event.ViewEvent;
+import com.example.truyen.service.OutboxService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.kafka.core.KafkaTemplate;
-import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Component;
 
-import java.util.concurrent.CompletableFuture;
-
-// Producer gửi View Events vào Kafka
+// Producer gửi View Events vào Kafka (qua outbox)
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class ViewEventProducer {
 
-    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final OutboxService outboxService;
 
-    // Gửi view event vào Kafka topic
+    // Ghi view event vào outbox
     public void sendViewEvent(ViewEvent viewEvent) {
         try {
             // Sử dụng storyId làm key để đảm bảo các events của cùng 1 story vào cùng partition
             String key = String.valueOf(viewEvent.getStoryId());
 
-            CompletableFuture<SendResult<String, Object>> future = kafkaTemplate
-                    .send(KafkaTopicConfig.STORY_VIEW_EVENTS, key, viewEvent);
-
-            // Callback xử lý thành công/thất bại
-            future.whenComplete((result, ex) -> {
-                if (ex == null) {
-                    log.debug("View event sent successfully for story ID: {} to partition: {}",
-                            viewEvent.getStoryId(),
-                            result.getRecordMetadata().partition());
-                } else {
-                    log.error("Failed to send view event for story ID: {}: {}",
-                            viewEvent.getStoryId(),
-                            ex.getMessage());
-                }
-            });
+            outboxService.publish(KafkaTopicConfig.STORY_VIEW_EVENTS, key, viewEvent);
+            log.debug("View event queued for story ID: {}", viewEvent.getStoryId());
 
         } catch (Exception e) {
-            log.error("Error sending view event for story ID: {}: {}",
+            log.error("Error queuing view event for story ID: {}: {}",
                     viewEvent.getStoryId(),
                     e.getMessage());
         }
@@ -0,0 +1,26 @@
+package com.example.truyen.repository;
+
+import com.example.truyen.entity.ChapterContent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ChapterContentRepository extends JpaRepository<ChapterContent, Long> {
+
+    // Xóa nội dung của mọi chương thuộc các truyện (gọi trước khi xóa truyện)
+    @Modifying
+    @Query("DELETE FROM ChapterContent cc WHERE cc.chapterId IN " +
+            "(SELECT c.id FROM Chapter c WHERE c.story.id IN :storyIds)")
+    int deleteByStoryIds(@Param("storyIds") Collection<Long> storyIds);
+
+    // Thống kê dung lượng: số chương, tổng byte gốc, tổng byte đã nén
+    @Query("SELECT COUNT(cc), COALESCE(SUM(cc.originalSize), 0), COALESCE(SUM(cc.storedSize), 0) " +
+            "FROM ChapterContent cc")
+    List<Object[]> getStorageStats();
+}
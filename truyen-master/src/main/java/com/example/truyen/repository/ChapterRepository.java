@@ -1,11 +1,19 @@
 package com.example.truyen.repository;
 
+import com.example.truyen.dto.projection.ChapterTocItem;
+import com.example.truyen.dto.projection.ChapterVersion;
 import com.example.truyen.entity.Chapter;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -16,6 +24,11 @@ public interface ChapterRepository extends JpaRepository<Chapter, Long> {
 
     Optional<Chapter> findByStoryIdAndChapterNumber(Long storyId, Integer chapterNumber);
 
+    // Khóa row chương khi sửa: các lần sửa đồng thời chạy tuần tự (số phiên bản, diff với nội dung mới nhất)
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM Chapter c WHERE c.id = :id")
+    Optional<Chapter> findByIdForUpdate(@Param("id") Long id);
+
     Long countByStoryId(Long storyId);
 
     @Query("SELECT MAX(c.chapterNumber) FROM Chapter c WHERE c.story.id = :storyId")
@@ -25,5 +38,102 @@ public interface ChapterRepository extends JpaRepository<Chapter, Long> {
 
     boolean existsByStoryIdAndIsLockedTrue(Long storyId);
 
+    // Mở khóa hàng loạt: [id, chapterNumber, coinsPrice] các chương bị khóa trong khoảng số chương
+    @Query("SELECT c.id, c.chapterNumber, c.coinsPrice FROM Chapter c " +
+            "WHERE c.story.id = :storyId AND c.isLocked = true " +
+            "AND c.chapterNumber BETWEEN :fromNumber AND :toNumber ORDER BY c.chapterNumber")
+    List<Object[]> findLockedPricesByStoryIdAndNumberRange(@Param("storyId") Long storyId,
+            @Param("fromNumber") Integer fromNumber, @Param("toNumber") Integer toNumber, Pageable pageable);
+
+    // Mở khóa hàng loạt: như trên nhưng theo danh sách id
+    @Query("SELECT c.id, c.chapterNumber, c.coinsPrice FROM Chapter c " +
+            "WHERE c.story.id = :storyId AND c.isLocked = true AND c.id IN :ids ORDER BY c.chapterNumber")
+    List<Object[]> findLockedPricesByStoryIdAndIds(@Param("storyId") Long storyId,
+            @Param("ids") Collection<Long> ids);
+
+    // Kiểm tra quyền đọc: chỉ cần cờ khóa, không load cả entity
+    @Query("SELECT c.isLocked FROM Chapter c WHERE c.id = :id")
+    Optional<Boolean> findIsLockedById(@Param("id") Long id);
+
     long countByIsLockedTrue();
+
+    // ===== INDEX CHƯƠNG (prev/next) =====
+
+    // [chapterNumber, id, isLocked, lần sửa cuối] theo thứ tự số chương
+    @Query("SELECT c.chapterNumber, c.id, c.isLocked, COALESCE(c.updatedAt, c.createdAt) FROM Chapter c " +
+            "WHERE c.story.id = :storyId ORDER BY c.chapterNumber ASC")
+    List<Object[]> findIndexRowsByStoryId(@Param("storyId") Long storyId);
+
+    // Như trên nhưng chỉ cho các chương vừa thay đổi (chương đã xóa không có trong kết quả)
+    @Query("SELECT c.chapterNumber, c.id, c.isLocked, COALESCE(c.updatedAt, c.createdAt) FROM Chapter c " +
+            "WHERE c.story.id = :storyId AND c.id IN :ids")
+    List<Object[]> findIndexRowsByStoryIdAndIds(@Param("storyId") Long storyId, @Param("ids") Collection<Long> ids);
+
+    // [storyId, chapterId] của mọi chương thuộc các truyện (đọc trước khi xóa truyện/tác giả)
+    @Query("SELECT c.story.id, c.id FROM Chapter c WHERE c.story.id IN :storyIds")
+    List<Object[]> findIdsByStoryIds(@Param("storyIds") Collection<Long> storyIds);
+
+    // [chapterNumber, id, isLocked] từ số chương cho trước trở đi (chương hiện tại + chương sau)
+    @Query("SELECT c.chapterNumber, c.id, c.isLocked FROM Chapter c " +
+            "WHERE c.story.id = :storyId AND c.chapterNumber >= :chapterNumber ORDER BY c.chapterNumber ASC")
+    List<Object[]> findNavigationRowsFrom(@Param("storyId") Long storyId,
+            @Param("chapterNumber") Integer chapterNumber, Pageable pageable);
+
+    // [chapterNumber, id, isLocked] của các chương trước số chương cho trước, gần nhất trước
+    @Query("SELECT c.chapterNumber, c.id, c.isLocked FROM Chapter c " +
+            "WHERE c.story.id = :storyId AND c.chapterNumber < :chapterNumber ORDER BY c.chapterNumber DESC")
+    List<Object[]> findNavigationRowsBefore(@Param("storyId") Long storyId,
+            @Param("chapterNumber") Integer chapterNumber, Pageable pageable);
+
+    // ===== SNAPSHOT TĨNH (MinIO) =====
+
+    // Chỉ ghi nhận snapshot nếu chương chưa bị sửa kể từ lúc render (bulk update, không đổi updated_at)
+    @Modifying
+    @Query("UPDATE Chapter c SET c.snapshotVersion = :snapshotVersion " +
+            "WHERE c.id = :id AND COALESCE(c.updatedAt, c.createdAt) = :renderedAt AND c.isLocked = false")
+    int markSnapshotPublished(@Param("id") Long id, @Param("snapshotVersion") Long snapshotVersion,
+            @Param("renderedAt") LocalDateTime renderedAt);
+
+    // Backfill: chương miễn phí chưa có snapshot, duyệt theo id để chạy tiếp được từ con trỏ
+    @Query("SELECT c.id FROM Chapter c WHERE c.snapshotVersion IS NULL AND c.isLocked = false " +
+            "AND c.id > :afterId ORDER BY c.id")
+    List<Long> findSnapshotBackfillIds(@Param("afterId") Long afterId, Pageable pageable);
+
+    // ===== IMPORT HÀNG LOẠT =====
+
+    @Query("SELECT c.chapterNumber FROM Chapter c WHERE c.story.id = :storyId")
+    List<Integer> findChapterNumbersByStoryId(@Param("storyId") Long storyId);
+
+    // [chapterNumber, id] của các chương vừa insert bằng JDBC batch
+    @Query("SELECT c.chapterNumber, c.id FROM Chapter c " +
+            "WHERE c.story.id = :storyId AND c.chapterNumber IN :chapterNumbers")
+    List<Object[]> findIdsByStoryIdAndChapterNumbers(@Param("storyId") Long storyId,
+            @Param("chapterNumbers") Collection<Integer> chapterNumbers);
+
+    // ===== MỤC LỤC (không đọc content) =====
+
+    // Keyset theo chapter_number; Pageable chỉ dùng để giới hạn số dòng
+    @Query("SELECT new com.example.truyen.dto.projection.ChapterTocItem(" +
+            "c.id, c.chapterNumber, c.title, c.isLocked, c.coinsPrice, c.createdAt, c.snapshotVersion) " +
+            "FROM Chapter c WHERE c.story.id = :storyId AND c.chapterNumber > :afterNumber " +
+            "ORDER BY c.chapterNumber ASC")
+    List<ChapterTocItem> findTocByStoryId(@Param("storyId") Long storyId,
+            @Param("afterNumber") Integer afterNumber, Pageable pageable);
+
+    // ===== CONDITIONAL GET (ETag) =====
+
+    String VERSION_SELECT = "SELECT new com.example.truyen.dto.projection.ChapterVersion(" +
+            "c.id, c.isLocked, COALESCE(c.updatedAt, c.createdAt), s.updatedAt) " +
+            "FROM Chapter c JOIN c.story s ";
+
+    @Query(VERSION_SELECT + "WHERE c.id = :id")
+    Optional<ChapterVersion> findVersionById(@Param("id") Long id);
+
+    @Query(VERSION_SELECT + "WHERE s.id = :storyId AND c.chapterNumber = :chapterNumber")
+    Optional<ChapterVersion> findVersionByStoryIdAndChapterNumber(@Param("storyId") Long storyId,
+            @Param("chapterNumber") Integer chapterNumber);
+
+    // Số chương và thời điểm sửa gần nhất của danh sách chương
+    @Query("SELECT COUNT(c), MAX(COALESCE(c.updatedAt, c.createdAt)) FROM Chapter c WHERE c.story.id = :storyId")
+    List<Object[]> findListVersionByStoryId(@Param("storyId") Long storyId);
 }
\ No newline at end of file
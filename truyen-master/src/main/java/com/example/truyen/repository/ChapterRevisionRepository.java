@@ -0,0 +1,44 @@
+package com.example.truyen.repository;
+
+import com.example.truyen.entity.ChapterRevision;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface ChapterRevisionRepository extends JpaRepository<ChapterRevision, Long> {
+
+    // Danh sách phiên bản không đọc cột data:
+    // [revisionNumber, type, contentSize, storedSize, createdBy, createdAt]
+    @Query("SELECT r.revisionNumber, r.type, r.contentSize, r.storedSize, r.createdBy, r.createdAt " +
+            "FROM ChapterRevision r WHERE r.chapterId = :chapterId ORDER BY r.revisionNumber DESC")
+    List<Object[]> findSummariesByChapterId(@Param("chapterId") Long chapterId);
+
+    @Query("SELECT MAX(r.revisionNumber) FROM ChapterRevision r WHERE r.chapterId = :chapterId")
+    Optional<Integer> findLatestRevisionNumber(@Param("chapterId") Long chapterId);
+
+    // Bản FULL gần nhất không sau revisionNumber (điểm bắt đầu để dựng lại)
+    @Query("SELECT MAX(r.revisionNumber) FROM ChapterRevision r " +
+            "WHERE r.chapterId = :chapterId AND r.revisionNumber <= :revisionNumber " +
+            "AND r.type = com.example.truyen.entity.ChapterRevision.Type.FULL")
+    Optional<Integer> findBaseRevisionNumber(@Param("chapterId") Long chapterId,
+            @Param("revisionNumber") Integer revisionNumber);
+
+    List<ChapterRevision> findByChapterIdAndRevisionNumberBetweenOrderByRevisionNumberAsc(
+            Long chapterId, Integer fromRevision, Integer toRevision);
+
+    @Modifying
+    @Query("DELETE FROM ChapterRevision r WHERE r.chapterId = :chapterId")
+    int deleteByChapterId(@Param("chapterId") Long chapterId);
+
+    @Modifying
+    @Query("DELETE FROM ChapterRevision r WHERE r.chapterId IN " +
+            "(SELECT c.id FROM Chapter c WHERE c.story.id IN :storyIds)")
+    int deleteByStoryIds(@Param("storyIds") Collection<Long> storyIds);
+}
@@ -0,0 +1,23 @@
+package com.example.truyen.repository;
+
+import com.example.truyen.entity.DailyRevenue;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+@Repository
+public interface DailyRevenueRepository extends JpaRepository<DailyRevenue, DailyRevenue.Key> {
+
+    @Query("SELECT COALESCE(SUM(r.revenue), 0) FROM DailyRevenue r WHERE r.statDate >= :from AND r.statDate < :to")
+    BigDecimal sumRevenueBetween(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    @Query("SELECT COALESCE(SUM(r.revenue), 0) FROM DailyRevenue r")
+    BigDecimal sumTotalRevenue();
+
+    @Query("SELECT COALESCE(SUM(r.successOrders), 0) FROM DailyRevenue r")
+    long sumTotalSuccessOrders();
+}
@@ -0,0 +1,16 @@
+package com.example.truyen.repository;
+
+import com.example.truyen.entity.DailyUnlocks;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface DailyUnlocksRepository extends JpaRepository<DailyUnlocks, DailyUnlocks.Key> {
+
+    @Query("SELECT COALESCE(SUM(u.unlocks), 0) FROM DailyUnlocks u")
+    long sumTotalUnlocks();
+
+    @Query("SELECT COALESCE(SUM(u.coinsSpent), 0) FROM DailyUnlocks u")
+    long sumTotalCoinsSpent();
+}
@@ -0,0 +1,41 @@
+package com.example.truyen.repository;
+
+import com.example.truyen.entity.PaymentCallback;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface PaymentCallbackRepository extends JpaRepository<PaymentCallback, Long> {
+
+    // Nhận 1 lô callback chờ xử lý; SKIP LOCKED để nhiều node chạy song song không tranh nhau
+    // Callback đang chờ backoff (next_attempt_at trong tương lai) bị bỏ qua tới lượt sau
+    @Query(value = "SELECT * FROM payment_callbacks WHERE status = 'RECEIVED' " +
+            "AND (next_attempt_at IS NULL OR next_attempt_at <= :now) " +
+            "ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<PaymentCallback> lockReceived(@Param("limit") int limit, @Param("now") LocalDateTime now);
+
+    @Query(value = "SELECT * FROM payment_callbacks WHERE id = :id AND status = 'RECEIVED' " +
+            "FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    Optional<PaymentCallback> lockReceivedById(@Param("id") Long id);
+
+    @Query("SELECT c.id FROM PaymentCallback c " +
+            "WHERE c.status = com.example.truyen.entity.PaymentCallback.Status.RECEIVED " +
+            "AND (c.nextAttemptAt IS NULL OR c.nextAttemptAt <= :now) ORDER BY c.id")
+    List<Long> findReceivedIds(@Param("now") LocalDateTime now, Pageable pageable);
+
+    // Admin: đưa callback FAILED về hàng đợi (orderCode null = tất cả), đếm lại lỗi từ đầu
+    @Modifying
+    @Query("UPDATE PaymentCallback c SET c.status = com.example.truyen.entity.PaymentCallback.Status.RECEIVED, " +
+            "c.failures = 0, c.nextAttemptAt = NULL " +
+            "WHERE c.status = com.example.truyen.entity.PaymentCallback.Status.FAILED " +
+            "AND (:orderCode IS NULL OR c.orderCode = :orderCode)")
+    int requeueFailed(@Param("orderCode") String orderCode);
+}
@@ -12,6 +12,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -24,7 +25,10 @@ public interface PaymentOrderRepository extends JpaRepository<PaymentOrder, Long
     @Query("SELECT p FROM PaymentOrder p WHERE p.orderCode = :orderCode")
     Optional<PaymentOrder> findByOrderCodeForUpdate(@Param("orderCode") String orderCode);
 
-    boolean existsByVnpTransactionNo(String vnpTransactionNo);
+    // Xử lý callback theo lô: khóa các đơn của cả lô trong 1 query
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM PaymentOrder p WHERE p.orderCode IN :orderCodes")
+    List<PaymentOrder> findByOrderCodeInForUpdate(@Param("orderCodes") Collection<String> orderCodes);
 
     Page<PaymentOrder> findByUserIdOrderByCreatedAtDesc(Long userId, Pageable pageable);
 
@@ -34,14 +38,13 @@ public interface PaymentOrderRepository extends JpaRepository<PaymentOrder, Long
     @Query("SELECT p FROM PaymentOrder p WHERE p.status = 'PENDING' AND p.createdAt < :cutoff")
     List<PaymentOrder> findPendingOrdersBefore(@Param("cutoff") LocalDateTime cutoff);
 
+    // Hủy 1 đơn hết hạn (chỉ khi vẫn PENDING)
+    @Modifying
+    @Query("UPDATE PaymentOrder p SET p.status = 'CANCELLED' WHERE p.orderCode = :orderCode AND p.status = 'PENDING'")
+    int cancelPendingOrder(@Param("orderCode") String orderCode);
+
     // Hủy hàng loạt đơn PENDING quá hạn bằng bulk UPDATE
     @Modifying
     @Query("UPDATE PaymentOrder p SET p.status = 'CANCELLED' WHERE p.status = 'PENDING' AND p.createdAt < :cutoff")
     int cancelPendingOrdersBefore(@Param("cutoff") LocalDateTime cutoff);
-
-    @Query("SELECT COUNT(p) FROM PaymentOrder p WHERE p.status = 'SUCCESS' AND p.completedAt BETWEEN :start AND :end")
-    long countSuccessOrdersByPeriod(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
-
-    @Query("SELECT COALESCE(SUM(p.amount), 0) FROM PaymentOrder p WHERE p.status = 'SUCCESS' AND p.completedAt BETWEEN :start AND :end")
-    long sumRevenueByPeriod(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
 }
@@ -1,5 +1,7 @@
 package com.example.truyen.repository;
 
+import com.example.truyen.dto.projection.StoryCardItem;
+import com.example.truyen.dto.projection.StoryListItem;
 import com.example.truyen.entity.Story;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -10,7 +12,9 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface StoryRepository extends JpaRepository<Story, Long> {
@@ -44,37 +48,86 @@ public interface StoryRepository extends JpaRepository<Story, Long> {
 
         Page<Story> findByStatus(Story.Status status, Pageable pageable);
 
-        Page<Story> findByIsHotTrue(Pageable pageable);
-
-        @Query("SELECT s FROM Story s WHERE LOWER(s.title) LIKE LOWER(CONCAT('%', :keyword, '%'))")
-        Page<Story> searchByTitle(@Param("keyword") String keyword, Pageable pageable);
-
-        @Query("SELECT DISTINCT s FROM Story s JOIN s.categories c WHERE c.id = :categoryId")
-        Page<Story> findByCategoryId(@Param("categoryId") Long categoryId, Pageable pageable);
 
         @Query("SELECT s FROM Story s WHERE s.author.id = :authorId")
         Page<Story> findByAuthorId(@Param("authorId") Long authorId, Pageable pageable);
 
         List<Story> findTop10ByOrderByTotalViewsDesc();
 
-        @Query("SELECT s FROM Story s ORDER BY s.createdAt DESC")
-        Page<Story> findAllOrderByCreatedAtDesc(Pageable pageable);
-
         List<Story> findByAuthorId(Long authorId);
 
+        List<Story> findByStatusIn(List<Story.Status> statuses);
+
         @Query("SELECT DISTINCT s FROM Story s " +
-                        "LEFT JOIN s.categories c " +
-                        "WHERE (:keyword IS NULL OR LOWER(s.title) LIKE LOWER(CONCAT('%', :keyword, '%'))) AND " +
+                        "LEFT JOIN FETCH s.categories " +
+                        "LEFT JOIN FETCH s.author " +
+                        "WHERE s.status IN :statuses")
+        List<Story> findByStatusInWithDetails(@Param("statuses") List<Story.Status> statuses);
+
+        // Chi tiết truyện kèm tác giả và danh mục (dùng cho cache, không cần session mở)
+        @Query("SELECT DISTINCT s FROM Story s " +
+                        "LEFT JOIN FETCH s.author " +
+                        "LEFT JOIN FETCH s.categories " +
+                        "WHERE s.id = :id")
+        Optional<Story> findByIdWithDetails(@Param("id") Long id);
+
+        @Query("SELECT s.id FROM Story s JOIN s.categories c WHERE c.id = :categoryId")
+        List<Long> findIdsByCategoryId(@Param("categoryId") Long categoryId);
+
+        @Query("SELECT s.id FROM Story s WHERE s.author.id = :authorId")
+        List<Long> findIdsByAuthorId(@Param("authorId") Long authorId);
+
+        // ===== LISTING READ MODEL (1 query nội dung + 1 count + 1 batch category) =====
+
+        String LIST_ITEM_SELECT = "SELECT new com.example.truyen.dto.projection.StoryListItem(" +
+                        "s.id, s.title, a.id, a.name, s.description, s.image, s.status, " +
+                        "s.totalChapters, s.totalViews, s.isHot, s.createdAt, s.updatedAt, " +
+                        "s.ratingSum, s.ratingCount, " +
+                        "CASE WHEN EXISTS (SELECT 1 FROM Chapter ch WHERE ch.story.id = s.id AND ch.isLocked = true) " +
+                        "THEN true ELSE false END) " +
+                        "FROM Story s LEFT JOIN s.author a ";
+
+        String FILTER_CONDITION = "WHERE (:keyword IS NULL OR LOWER(s.title) LIKE LOWER(CONCAT('%', :keyword, '%'))) AND " +
                         "(:authorId IS NULL OR s.author.id = :authorId) AND " +
                         "(:status IS NULL OR s.status = :status) AND " +
                         "(:minChapters IS NULL OR s.totalChapters >= :minChapters) AND " +
                         "(:maxChapters IS NULL OR s.totalChapters <= :maxChapters) AND " +
                         "(:startDate IS NULL OR s.createdAt >= :startDate) AND " +
-                        "(:endDate IS NULL OR s.createdAt <= :endDate) " +
-                        "GROUP BY s.id " +
-                        "HAVING (:categoryIds IS NULL OR :categoryCount IS NULL OR " +
-                        "COUNT(DISTINCT CASE WHEN c.id IN :categoryIds THEN c.id END) = :categoryCount)")
-        Page<Story> filterStories(
+                        "(:endDate IS NULL OR s.createdAt <= :endDate) AND " +
+                        "(:categoryIds IS NULL OR :categoryCount IS NULL OR " +
+                        "(SELECT COUNT(DISTINCT c.id) FROM Story s2 JOIN s2.categories c " +
+                        "WHERE s2.id = s.id AND c.id IN :categoryIds) = :categoryCount)";
+
+        String HOT_CONDITION = "WHERE s.isHot = true";
+
+        String TITLE_CONDITION = "WHERE LOWER(s.title) LIKE LOWER(CONCAT('%', :keyword, '%'))";
+
+        String CATEGORY_CONDITION = "JOIN s.categories c WHERE c.id = :categoryId";
+
+        String LATEST_ORDER = "ORDER BY s.createdAt DESC";
+
+        String COUNT_ALL = "SELECT COUNT(s) FROM Story s ";
+
+        @Query(value = LIST_ITEM_SELECT, countQuery = COUNT_ALL)
+        Page<StoryListItem> findAllListItems(Pageable pageable);
+
+        @Query(value = LIST_ITEM_SELECT + HOT_CONDITION, countQuery = COUNT_ALL + HOT_CONDITION)
+        Page<StoryListItem> findHotListItems(Pageable pageable);
+
+        @Query(value = LIST_ITEM_SELECT + LATEST_ORDER, countQuery = COUNT_ALL)
+        Page<StoryListItem> findLatestListItems(Pageable pageable);
+
+        @Query(value = LIST_ITEM_SELECT + TITLE_CONDITION, countQuery = COUNT_ALL + TITLE_CONDITION)
+        Page<StoryListItem> searchListItemsByTitle(@Param("keyword") String keyword, Pageable pageable);
+
+        @Query(value = LIST_ITEM_SELECT + CATEGORY_CONDITION, countQuery = COUNT_ALL + CATEGORY_CONDITION)
+        Page<StoryListItem> findListItemsByCategoryId(@Param("categoryId") Long categoryId, Pageable pageable);
+
+        @Query(LIST_ITEM_SELECT + "WHERE a.id = :authorId")
+        List<StoryListItem> findListItemsByAuthorId(@Param("authorId") Long authorId);
+
+        @Query(value = LIST_ITEM_SELECT + FILTER_CONDITION, countQuery = COUNT_ALL + FILTER_CONDITION)
+        Page<StoryListItem> filterListItems(
                         @Param("keyword") String keyword,
                         @Param("authorId") Long authorId,
                         @Param("status") Story.Status status,
@@ -86,15 +139,78 @@ public interface StoryRepository extends JpaRepository<Story, Long> {
                         @Param("categoryCount") Integer categoryCount,
                         Pageable pageable);
 
-        List<Story> findByStatusIn(List<Story.Status> statuses);
+        // ===== STORY CARD (view=card): chỉ các cột hiển thị trên thẻ, không description,
+        // không categories → 1 query nội dung + 1 count =====
 
-        @Query("SELECT DISTINCT s FROM Story s " +
-                        "LEFT JOIN FETCH s.categories " +
-                        "LEFT JOIN FETCH s.author " +
-                        "WHERE s.status IN :statuses")
-        List<Story> findByStatusInWithDetails(@Param("statuses") List<Story.Status> statuses);
+        String CARD_ITEM_SELECT = "SELECT new com.example.truyen.dto.projection.StoryCardItem(" +
+                        "s.id, s.title, s.image, a.name, s.status, s.totalChapters, s.totalViews, " +
+                        "s.ratingSum, s.ratingCount, " +
+                        "CASE WHEN EXISTS (SELECT 1 FROM Chapter ch WHERE ch.story.id = s.id AND ch.isLocked = true) " +
+                        "THEN true ELSE false END) " +
+                        "FROM Story s LEFT JOIN s.author a ";
+
+        @Query(value = CARD_ITEM_SELECT, countQuery = COUNT_ALL)
+        Page<StoryCardItem> findAllCardItems(Pageable pageable);
+
+        @Query(value = CARD_ITEM_SELECT + HOT_CONDITION, countQuery = COUNT_ALL + HOT_CONDITION)
+        Page<StoryCardItem> findHotCardItems(Pageable pageable);
+
+        @Query(value = CARD_ITEM_SELECT + LATEST_ORDER, countQuery = COUNT_ALL)
+        Page<StoryCardItem> findLatestCardItems(Pageable pageable);
+
+        @Query(value = CARD_ITEM_SELECT + TITLE_CONDITION, countQuery = COUNT_ALL + TITLE_CONDITION)
+        Page<StoryCardItem> searchCardItemsByTitle(@Param("keyword") String keyword, Pageable pageable);
+
+        @Query(value = CARD_ITEM_SELECT + CATEGORY_CONDITION, countQuery = COUNT_ALL + CATEGORY_CONDITION)
+        Page<StoryCardItem> findCardItemsByCategoryId(@Param("categoryId") Long categoryId, Pageable pageable);
+
+        @Query(CARD_ITEM_SELECT + "WHERE a.id = :authorId")
+        List<StoryCardItem> findCardItemsByAuthorId(@Param("authorId") Long authorId);
+
+        @Query(value = CARD_ITEM_SELECT + FILTER_CONDITION, countQuery = COUNT_ALL + FILTER_CONDITION)
+        Page<StoryCardItem> filterCardItems(
+                        @Param("keyword") String keyword,
+                        @Param("authorId") Long authorId,
+                        @Param("status") Story.Status status,
+                        @Param("minChapters") Integer minChapters,
+                        @Param("maxChapters") Integer maxChapters,
+                        @Param("startDate") LocalDateTime startDate,
+                        @Param("endDate") LocalDateTime endDate,
+                        @Param("categoryIds") List<Long> categoryIds,
+                        @Param("categoryCount") Integer categoryCount,
+                        Pageable pageable);
+
+        // Batch: Lấy tên danh mục theo danh sách storyIds (tránh N+1)
+        @Query("SELECT s.id, c.name FROM Story s JOIN s.categories c WHERE s.id IN :storyIds")
+        List<Object[]> findCategoryNamesByStoryIds(@Param("storyIds") List<Long> storyIds);
+
+        // Cộng dồn atomic tổng điểm / số lượt đánh giá trên row của truyện
+        @Modifying
+        @Query("UPDATE Story s SET s.ratingSum = s.ratingSum + :sumDelta, " +
+                        "s.ratingCount = s.ratingCount + :countDelta WHERE s.id = :storyId")
+        int adjustRatingAggregate(@Param("storyId") Long storyId,
+                        @Param("sumDelta") long sumDelta,
+                        @Param("countDelta") int countDelta);
+
+        // Đối soát theo lô: id truyện kế tiếp sau con trỏ
+        @Query("SELECT s.id FROM Story s WHERE s.id > :afterId ORDER BY s.id")
+        List<Long> findIdsAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+        // Đối soát: trong lô, các truyện có aggregate lệch với bảng ratings (chỉ đọc, không khóa)
+        @Query("SELECT s.id FROM Story s WHERE s.id IN :storyIds AND (" +
+                        "s.ratingSum <> (SELECT COALESCE(SUM(r.rating), 0) FROM Rating r WHERE r.story.id = s.id) " +
+                        "OR s.ratingCount <> (SELECT COUNT(r) FROM Rating r WHERE r.story.id = s.id))")
+        List<Long> findRatingDriftIds(@Param("storyIds") Collection<Long> storyIds);
+
+        // Đối soát: tính lại aggregate từ bảng ratings, chỉ khóa các truyện đã phát hiện lệch
+        @Modifying
+        @Query("UPDATE Story s SET " +
+                        "s.ratingSum = (SELECT COALESCE(SUM(r.rating), 0) FROM Rating r WHERE r.story.id = s.id), " +
+                        "s.ratingCount = (SELECT COUNT(r) FROM Rating r WHERE r.story.id = s.id) " +
+                        "WHERE s.id IN :storyIds")
+        int recomputeRatingAggregates(@Param("storyIds") Collection<Long> storyIds);
 
         @Modifying
         @Query("UPDATE Story s SET s.totalViews = COALESCE(s.totalViews, 0) + :increment WHERE s.id = :storyId")
-        void incrementTotalViews(@Param("storyId") Long storyId, @Param("increment") int increment);
+        int incrementTotalViews(@Param("storyId") Long storyId, @Param("increment") int increment);
 }
\ No newline at end of file
@@ -8,6 +8,9 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+
 @Repository
 public interface UserChapterAccessRepository extends JpaRepository<UserChapterAccess, Long> {
 
@@ -18,10 +21,13 @@ public interface UserChapterAccessRepository extends JpaRepository<UserChapterAc
     // Admin: xem danh sách user đã mở khóa 1 chương cụ thể
     Page<UserChapterAccess> findByChapterIdOrderByAccessedAtDesc(Long chapterId, Pageable pageable);
 
-    // VIP stats: tổng xu đã tiêu thụ từ tất cả user
-    @Query("SELECT COALESCE(SUM(a.coinsSpent), 0) FROM UserChapterAccess a")
-    long sumTotalCoinsSpent();
+    // Toàn bộ chương user đã mở khóa (build bitmap quyền đọc)
+    @Query("SELECT a.chapter.id FROM UserChapterAccess a WHERE a.user.username = :username")
+    List<Long> findChapterIdsByUsername(@Param("username") String username);
 
-    // VIP stats: tổng số lượt mở khóa
-    long count();
+    // Các chương trong danh sách mà user đã mở khóa (1 query cho cả trang mục lục)
+    @Query("SELECT a.chapter.id FROM UserChapterAccess a " +
+            "WHERE a.user.username = :username AND a.chapter.id IN :chapterIds")
+    List<Long> findUnlockedChapterIds(@Param("username") String username,
+            @Param("chapterIds") Collection<Long> chapterIds);
 }
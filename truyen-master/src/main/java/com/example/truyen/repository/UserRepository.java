@@ -31,6 +31,11 @@ public interface UserRepository extends JpaRepository<User, Long> {
 
         Optional<User> findByUsername(String username);
 
+        // Kiểm tra token: version trạng thái hiện tại, -1 nếu tài khoản bị khóa
+        @Query("SELECT CASE WHEN u.isActive = false THEN -1 ELSE COALESCE(u.statusVersion, 0) END " +
+                        "FROM User u WHERE u.id = :id")
+        Optional<Integer> findStatusVersionById(@Param("id") Long id);
+
         Optional<User> findByEmail(String email);
 
         Boolean existsByUsername(String username);
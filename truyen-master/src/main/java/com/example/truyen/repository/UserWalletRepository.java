@@ -1,10 +1,7 @@
 package com.example.truyen.repository;
 
 import com.example.truyen.entity.UserWallet;
-import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Lock;
-import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
@@ -13,8 +10,4 @@ import java.util.Optional;
 public interface UserWalletRepository extends JpaRepository<UserWallet, Long> {
 
     Optional<UserWallet> findByUserId(Long userId);
-
-    @Lock(LockModeType.PESSIMISTIC_WRITE)
-    @Query("SELECT w FROM UserWallet w WHERE w.user.id = :userId")
-    Optional<UserWallet> findByUserIdForUpdate(Long userId);
 }
@@ -0,0 +1,22 @@
+package com.example.truyen.repository;
+
+import com.example.truyen.entity.WalletTransactionArchive;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface WalletTransactionArchiveRepository extends JpaRepository<WalletTransactionArchive, Long> {
+
+    // Keyset theo (created_at, id) giảm dần, dùng index (user_id, created_at, id)
+    @Query("SELECT t FROM WalletTransactionArchive t WHERE t.userId = :userId " +
+            "AND (t.createdAt < :createdAt OR (t.createdAt = :createdAt AND t.id < :id)) " +
+            "ORDER BY t.createdAt DESC, t.id DESC")
+    List<WalletTransactionArchive> findByUserIdBefore(@Param("userId") Long userId,
+            @Param("createdAt") LocalDateTime createdAt, @Param("id") Long id, Pageable pageable);
+}
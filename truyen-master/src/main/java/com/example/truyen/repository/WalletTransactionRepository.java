@@ -4,10 +4,36 @@ import com.example.truyen.entity.WalletTransaction;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.List;
+
 @Repository
 public interface WalletTransactionRepository extends JpaRepository<WalletTransaction, Long> {
 
     Page<WalletTransaction> findByUserIdOrderByCreatedAtDesc(Long userId, Pageable pageable);
+
+    // Keyset theo (created_at, id) giảm dần, dùng index (user_id, created_at, id)
+    @Query("SELECT t FROM WalletTransaction t WHERE t.user.id = :userId " +
+            "AND (t.createdAt < :createdAt OR (t.createdAt = :createdAt AND t.id < :id)) " +
+            "ORDER BY t.createdAt DESC, t.id DESC")
+    List<WalletTransaction> findByUserIdBefore(@Param("userId") Long userId,
+            @Param("createdAt") LocalDateTime createdAt, @Param("id") Long id, Pageable pageable);
+
+    // Admin: keyset trên toàn bảng, dùng index (created_at, id)
+    @Query("SELECT t FROM WalletTransaction t " +
+            "WHERE t.createdAt < :createdAt OR (t.createdAt = :createdAt AND t.id < :id) " +
+            "ORDER BY t.createdAt DESC, t.id DESC")
+    List<WalletTransaction> findAllBefore(@Param("createdAt") LocalDateTime createdAt, @Param("id") Long id,
+            Pageable pageable);
+
+    // Admin: trang theo offset nhưng không COUNT (tổng lấy ước lượng)
+    @Query("SELECT t FROM WalletTransaction t ORDER BY t.createdAt DESC, t.id DESC")
+    List<WalletTransaction> findPageWithoutCount(Pageable pageable);
+
+    // Khôi phục reservation: giao dịch đã commit hay chưa
+    boolean existsByReservationId(String reservationId);
 }
@@ -3,14 +3,11 @@ package com.example.truyen.security;
 import com.example.truyen.entity.User;
 import com.example.truyen.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
-import java.util.Collections;
-
 @Service
 @RequiredArgsConstructor
 public class CustomUserDetailsService implements UserDetailsService {
@@ -24,10 +21,6 @@ public class CustomUserDetailsService implements UserDetailsService {
         if (!user.getIsActive()) {
             throw new UsernameNotFoundException("Tài khoản đã bị khóa: " + username);
         }
-        return new org.springframework.security.core.userdetails.User(
-                user.getUsername(),
-                user.getPassword(),
-                Collections.singletonList(new SimpleGrantedAuthority("ROLE_" + user.getRole().name()))
-        );
+        return UserPrincipal.from(user);
     }
 }
\ No newline at end of file
@@ -1,6 +1,8 @@
 package com.example.truyen.security;
 
 import com.example.truyen.service.TokenBlacklistService;
+import com.example.truyen.service.UserStatusService;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -8,7 +10,6 @@ import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
@@ -23,6 +24,7 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     private final JwtTokenProvider jwtTokenProvider;
     private final CustomUserDetailsService customUserDetailsService;
     private final TokenBlacklistService tokenBlacklistService;
+    private final UserStatusService userStatusService;
 
     @Override
     protected void doFilterInternal(HttpServletRequest request,
@@ -40,15 +42,16 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                 }
 
                 // Xác thực token
-                if (jwtTokenProvider.validateToken(jwt)) {
-                    String username = jwtTokenProvider.getUsernameFromToken(jwt);
+                Claims claims = jwtTokenProvider.parseClaims(jwt);
+                if (claims != null) {
+                    UserPrincipal principal = resolvePrincipal(claims);
+                    if (principal != null) {
+                        UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
+                                principal, null, principal.getAuthorities());
+                        authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
 
-                    UserDetails userDetails = customUserDetailsService.loadUserByUsername(username);
-                    UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
-                            userDetails, null, userDetails.getAuthorities());
-                    authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-
-                    SecurityContextHolder.getContext().setAuthentication(authentication);
+                        SecurityContextHolder.getContext().setAuthentication(authentication);
+                    }
                 }
             }
         } catch (Exception ex) {
@@ -58,6 +61,20 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
 
+    // Token mới: dựng principal từ claims, chỉ đối chiếu version trạng thái (cache);
+    // token cũ không có claims: load từ DB như trước
+    private UserPrincipal resolvePrincipal(Claims claims) {
+        UserPrincipal principal = jwtTokenProvider.getPrincipalFromClaims(claims);
+        if (principal == null) {
+            return (UserPrincipal) customUserDetailsService.loadUserByUsername(claims.getSubject());
+        }
+        if (!userStatusService.isTokenCurrent(principal.getId(), principal.getStatusVersion())) {
+            logger.debug("Token of user " + principal.getId() + " has been revoked");
+            return null;
+        }
+        return principal;
+    }
+
     private String getJwtFromRequest(HttpServletRequest request) {
         String bearerToken = request.getHeader("Authorization");
         if (StringUtils.hasText(bearerToken) && bearerToken.startsWith("Bearer ")) {
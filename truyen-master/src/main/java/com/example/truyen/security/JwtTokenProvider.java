@@ -1,5 +1,6 @@
 package com.example.truyen.security;
 
+import com.example.truyen.entity.User;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
 import org.springframework.beans.factory.annotation.Value;
@@ -12,6 +13,10 @@ import java.util.Date;
 @Component
 public class JwtTokenProvider {
 
+    private static final String CLAIM_USER_ID = "uid";
+    private static final String CLAIM_ROLE = "role";
+    private static final String CLAIM_STATUS_VERSION = "sv";
+
     @Value("${app.jwt.secret}")
     private String jwtSecret;
 
@@ -22,18 +27,46 @@ public class JwtTokenProvider {
         return Keys.hmacShaKeyFor(jwtSecret.getBytes());
     }
 
-    // Tạo JWT token
+    // Tạo JWT token (kèm id, role, version trạng thái để filter không phải query user)
     public String generateToken(Authentication authentication) {
         String username = authentication.getName();
         Date now = new Date();
         Date expiryDate = new Date(now.getTime() + jwtExpiration);
 
-        return Jwts.builder()
+        JwtBuilder builder = Jwts.builder()
                 .subject(username)
                 .issuedAt(now)
-                .expiration(expiryDate)
-                .signWith(getSigningKey())
-                .compact();
+                .expiration(expiryDate);
+        if (authentication.getPrincipal() instanceof UserPrincipal principal) {
+            builder.claim(CLAIM_USER_ID, principal.getId())
+                    .claim(CLAIM_ROLE, principal.getRole().name())
+                    .claim(CLAIM_STATUS_VERSION, principal.getStatusVersion());
+        }
+        return builder.signWith(getSigningKey()).compact();
+    }
+
+    // Parse + xác thực chữ ký 1 lần, null nếu token không hợp lệ
+    public Claims parseClaims(String token) {
+        try {
+            return Jwts.parser()
+                    .verifyWith(getSigningKey())
+                    .build()
+                    .parseSignedClaims(token)
+                    .getPayload();
+        } catch (JwtException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    // Principal từ claims; null với token cấp trước khi có claims (phải load từ DB)
+    public UserPrincipal getPrincipalFromClaims(Claims claims) {
+        Long userId = claims.get(CLAIM_USER_ID, Long.class);
+        String role = claims.get(CLAIM_ROLE, String.class);
+        Integer statusVersion = claims.get(CLAIM_STATUS_VERSION, Integer.class);
+        if (userId == null || role == null || statusVersion == null) {
+            return null;
+        }
+        return new UserPrincipal(userId, claims.getSubject(), null, User.Role.valueOf(role), statusVersion);
     }
 
     // Lấy tên đăng nhập từ token
@@ -0,0 +1,36 @@
+package com.example.truyen.security;
+
+import com.example.truyen.entity.User;
+import com.example.truyen.exception.ResourceNotFoundException;
+import com.example.truyen.repository.UserRepository;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+// Đọc user hiện tại từ SecurityContext (principal đã có sẵn id, không query DB)
+public final class SecurityUtils {
+
+    private SecurityUtils() {
+    }
+
+    // null nếu chưa đăng nhập
+    public static UserPrincipal getCurrentPrincipal() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth != null && auth.isAuthenticated() && auth.getPrincipal() instanceof UserPrincipal principal) {
+            return principal;
+        }
+        return null;
+    }
+
+    public static Long getCurrentUserId() {
+        UserPrincipal principal = getCurrentPrincipal();
+        if (principal == null) {
+            throw new ResourceNotFoundException("User not found");
+        }
+        return principal.getId();
+    }
+
+    // Reference tới user hiện tại để gán quan hệ (user_id), không query bảng users
+    public static User getCurrentUserReference(UserRepository userRepository) {
+        return userRepository.getReferenceById(getCurrentUserId());
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.truyen.security;
+
+import com.example.truyen.entity.User;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+import java.util.List;
+
+// Principal dựng từ claims của JWT (hoặc từ DB khi đăng nhập): đủ id/role để
+// các service không phải query lại bảng users trong mỗi request
+@Getter
+@AllArgsConstructor
+public class UserPrincipal implements UserDetails {
+
+    private final Long id;
+    private final String username;
+    // Chỉ có khi load từ DB lúc đăng nhập, principal dựng từ token không có mật khẩu
+    private final String password;
+    private final User.Role role;
+    private final int statusVersion;
+
+    public static UserPrincipal from(User user) {
+        return new UserPrincipal(user.getId(), user.getUsername(), user.getPassword(), user.getRole(),
+                user.getStatusVersion() != null ? user.getStatusVersion() : 0);
+    }
+
+    public boolean isAdmin() {
+        return role == User.Role.ADMIN || role == User.Role.SUPER_ADMIN;
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return List.of(new SimpleGrantedAuthority("ROLE_" + role.name()));
+    }
+}
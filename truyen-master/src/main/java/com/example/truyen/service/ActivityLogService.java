@@ -13,6 +13,10 @@ public interface ActivityLogService {
         void logActivity(String action, String entityType, Long entityId,
                         String entityName, Long userId, String username, String details, String ipAddress);
 
+        // Ghi nhật ký lỗi trong transaction riêng để không mất theo transaction đang rollback
+        void logError(String action, String entityType, Long entityId,
+                        String entityName, Long userId, String username, String details, String ipAddress);
+
         // Lấy nhật ký theo người dùng
         Page<ActivityLog> getLogsByUser(Long userId, Pageable pageable);
 
@@ -0,0 +1,17 @@
+package com.example.truyen.service;
+
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.Collection;
+
+public interface ChapterAccessBitmapService {
+
+    // Bitmap id các chương user đã mở khóa (không được sửa bitmap trả về)
+    RoaringBitmap getUnlockedChapters(String username);
+
+    // Kiểm tra 1 chương bằng bit test, chỉ về DB khi id vượt quá phạm vi bitmap
+    boolean isUnlocked(String username, Long chapterId);
+
+    // Thêm các chương vừa mở khóa vào bitmap ở mọi tầng cache
+    void recordUnlocks(String username, Collection<Long> chapterIds);
+}
@@ -1,16 +1,36 @@
 package com.example.truyen.service;
 
+import com.example.truyen.dto.request.BulkUnlockRequest;
+import com.example.truyen.dto.response.BulkUnlockResponse;
 import com.example.truyen.dto.response.UnlockedChapterResponse;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
+import java.util.Collection;
+import java.util.Set;
+
 public interface ChapterAccessService {
 
     boolean hasAccess(Long chapterId);
 
+    // Như hasAccess nhưng cho chương đã biết là bị khóa (không query lại chương)
+    boolean hasLockedChapterAccess(Long chapterId);
+
     void unlockChapter(Long chapterId);
 
+    // Báo giá mở khóa nhiều chương (khoảng số chương hoặc danh sách id), không trừ xu
+    BulkUnlockResponse quoteBulkUnlock(Long storyId, BulkUnlockRequest request);
+
+    // Mở khóa nhiều chương trong 1 giao dịch ví
+    BulkUnlockResponse unlockChapters(Long storyId, BulkUnlockRequest request);
+
     Page<UnlockedChapterResponse> getMyUnlockedChapters(Pageable pageable);
 
     Page<UnlockedChapterResponse> getUnlockedUsersByChapterId(Long chapterId, Pageable pageable);
+
+    // Lọc ra các chương (trong danh sách chương bị khóa) mà user hiện tại được đọc
+    Set<Long> resolveAccessibleChapterIds(Collection<Long> lockedChapterIds);
+
+    // Dấu vân tay quyền đọc của user hiện tại trên 1 truyện (dùng cho ETag)
+    String getAccessFingerprint(Long storyId);
 }
@@ -0,0 +1,19 @@
+package com.example.truyen.service;
+
+import java.util.function.Supplier;
+
+// Interface ChapterContentCacheService
+public interface ChapterContentCacheService {
+
+    // Lấy nội dung chương theo (id, version) từ cache L1 → L2, miss thì load và ghi lại cả 2 tầng
+    String getOrLoad(Long chapterId, long version, Supplier<String> loader);
+
+    // Như getOrLoad nhưng trả về mảng UTF-8 dùng chung trong cache L1 (chỉ đọc, không được sửa)
+    byte[] getBytesOrLoad(Long chapterId, long version, Supplier<String> loader);
+
+    // Nội dung (id, version) đã có sẵn ở cache L1 của node hiện tại hay chưa
+    boolean isCachedLocally(Long chapterId, long version);
+
+    // Xóa nội dung của 1 version chương khỏi cả 2 tầng (khi sửa/xóa chương)
+    void evict(Long chapterId, long version);
+}
@@ -0,0 +1,29 @@
+package com.example.truyen.service;
+
+import java.util.Collection;
+import java.util.Map;
+
+// Interface ChapterContentService
+public interface ChapterContentService {
+
+    // Đọc nội dung 1 chương (giải nén)
+    String getContent(Long chapterId);
+
+    // Đọc nội dung nhiều chương trong 1 query
+    Map<Long, String> getContents(Collection<Long> chapterIds);
+
+    // Lưu (tạo mới hoặc ghi đè) nội dung chương
+    void saveContent(Long chapterId, String content);
+
+    // Thêm nội dung cho các chương mới tạo (JDBC batch, dùng cho import hàng loạt)
+    void insertContents(Map<Long, String> contents);
+
+    // Xóa nội dung chương
+    void deleteContent(Long chapterId);
+
+    // Xóa nội dung mọi chương của các truyện (gọi trước khi xóa truyện/tác giả)
+    void deleteContentsByStoryIds(Collection<Long> storyIds);
+
+    // Chuyển nội dung cũ từ cột chapters.content sang bảng chapter_contents
+    void migrateLegacyContent();
+}
@@ -0,0 +1,17 @@
+package com.example.truyen.service;
+
+import com.example.truyen.dto.request.ChapterImportItem;
+import com.example.truyen.dto.response.ChapterImportResponse;
+
+import java.io.InputStream;
+import java.util.List;
+
+// Interface ChapterImportService
+public interface ChapterImportService {
+
+    // Import danh sách chương (JSON array): kiểm tra toàn bộ trước rồi mới ghi
+    ChapterImportResponse importChapters(Long storyId, List<ChapterImportItem> chapters);
+
+    // Import chương dạng NDJSON (mỗi dòng 1 chương), đọc và ghi dần theo từng chunk
+    ChapterImportResponse importChaptersNdjson(Long storyId, InputStream body);
+}
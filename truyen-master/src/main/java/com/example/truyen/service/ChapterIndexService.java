@@ -0,0 +1,26 @@
+package com.example.truyen.service;
+
+import com.example.truyen.dto.projection.ChapterIndex;
+import com.example.truyen.dto.response.ChapterNavigationResponse;
+
+import java.util.Collection;
+import java.util.Optional;
+
+// Interface ChapterIndexService
+public interface ChapterIndexService {
+
+    // Lấy index chương của truyện từ cache L1 → L2; chưa có thì build nền và trả về null
+    ChapterIndex getIndex(Long storyId);
+
+    // Chương trước/sau của 1 chương (không đọc MySQL khi index đã có trong cache)
+    ChapterNavigationResponse getNavigation(Long storyId, Integer chapterNumber);
+
+    // Như getNavigation nhưng trả về rỗng thay vì báo lỗi khi không có chương
+    Optional<ChapterNavigationResponse> findNavigation(Long storyId, Integer chapterNumber);
+
+    // Cập nhật index đã cache theo các chương vừa tạo/sửa/xóa (không build lại cả index)
+    void applyChapterChanges(Long storyId, Collection<Long> chapterIds);
+
+    // Xóa index L2 và báo tất cả các node xóa L1
+    void evict(Collection<Long> storyIds);
+}
@@ -0,0 +1,11 @@
+package com.example.truyen.service;
+
+// Interface ChapterPrefetchService
+public interface ChapterPrefetchService {
+
+    // Nạp trước nội dung các chương tiếp theo vào cache (bất đồng bộ, không chặn request)
+    void prefetchAfter(Long storyId, Integer chapterNumber);
+
+    // Ghi nhận 1 lượt đọc chương để tính tỉ lệ prefetch trúng
+    void recordRead(Long chapterId);
+}
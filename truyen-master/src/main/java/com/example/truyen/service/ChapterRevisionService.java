@@ -0,0 +1,24 @@
+package com.example.truyen.service;
+
+import com.example.truyen.dto.response.ChapterRevisionResponse;
+
+import java.util.Collection;
+import java.util.List;
+
+// Interface ChapterRevisionService
+public interface ChapterRevisionService {
+
+    // Ghi phiên bản mới khi nội dung chương thay đổi (chương chưa có lịch sử thì lưu cả bản cũ)
+    void recordRevision(Long chapterId, String previousContent, String newContent);
+
+    // Danh sách phiên bản (không kèm nội dung), mới nhất trước
+    List<ChapterRevisionResponse> getRevisions(Long chapterId);
+
+    // Dựng lại toàn văn của 1 phiên bản
+    ChapterRevisionResponse getRevision(Long chapterId, Integer revisionNumber);
+
+    // Xóa lịch sử khi xóa chương / truyện
+    void deleteRevisions(Long chapterId);
+
+    void deleteRevisionsByStoryIds(Collection<Long> storyIds);
+}
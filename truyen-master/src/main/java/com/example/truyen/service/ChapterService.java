@@ -1,7 +1,9 @@
 package com.example.truyen.service;
 
+import com.example.truyen.dto.projection.ChapterContentStream;
 import com.example.truyen.dto.request.ChapterRequest;
 import com.example.truyen.dto.response.ChapterResponse;
+import com.example.truyen.dto.response.ChapterTocPageResponse;
 
 import java.util.List;
 
@@ -11,18 +13,36 @@ public interface ChapterService {
     // Lấy danh sách chương của truyện
     List<ChapterResponse> getChaptersByStoryId(Long storyId);
 
-    // Lấy chi tiết chương và tăng lượt xem
+    // Mục lục chương (không có content), phân trang theo cursor là số chương cuối của trang trước
+    ChapterTocPageResponse getChapterToc(Long storyId, Integer afterNumber, int size);
+
+    // Lấy chi tiết chương và ghi nhận lượt xem
     ChapterResponse getChapterById(Long id);
 
-    // Lấy chi tiết chương theo số thứ tự và tăng lượt xem
+    // Lấy chi tiết chương theo số thứ tự và ghi nhận lượt xem
     ChapterResponse getChapterByStoryAndNumber(Long storyId, Integer chapterNumber);
 
+    // Mở nội dung chương dạng stream (đã kiểm tra quyền đọc); countView = ghi nhận lượt xem
+    ChapterContentStream openChapterContent(Long id, boolean countView);
+
     // Tạo chương mới và cập nhật tổng số chương của truyện
     ChapterResponse createChapter(ChapterRequest request);
 
     // Cập nhật nội dung chương
     ChapterResponse updateChapter(Long id, ChapterRequest request);
 
+    // Khôi phục nội dung chương về 1 phiên bản cũ
+    ChapterResponse restoreRevision(Long id, Integer revisionNumber);
+
     // Xóa chương và cập nhật tổng số chương của truyện
     void deleteChapter(Long id);
+
+    // ETag của chương theo ID (chỉ đọc metadata, không đọc content)
+    String getChapterETag(Long id);
+
+    // ETag của chương theo ID truyện và số thứ tự chương
+    String getChapterETag(Long storyId, Integer chapterNumber);
+
+    // ETag của danh sách chương của truyện
+    String getChapterListETag(Long storyId);
 }
\ No newline at end of file
@@ -0,0 +1,16 @@
+package com.example.truyen.service;
+
+import java.util.Collection;
+
+// Interface ChapterSnapshotService
+public interface ChapterSnapshotService {
+
+    // URL bản JSON tĩnh của chương miễn phí, null nếu chưa có snapshot
+    String getSnapshotUrl(Long chapterId, Long snapshotVersion);
+
+    // Render và đẩy snapshot của các chương lên MinIO (chương bị khóa/đã xóa thì gỡ snapshot)
+    void publish(Collection<Long> chapterIds);
+
+    // Render snapshot cho các chương miễn phí chưa có (dữ liệu cũ, lần publish trước bị lỗi)
+    void backfillSnapshots();
+}
@@ -0,0 +1,17 @@
+package com.example.truyen.service;
+
+// Interface ChapterViewService
+public interface ChapterViewService {
+
+    // Ghi nhận 1 lượt xem chương (chỉ tăng bộ đếm trong bộ nhớ)
+    void recordView(Long chapterId);
+
+    // Ghi nhận lượt xem do client đọc snapshot tĩnh gửi lên (kiểm tra chương, chống trùng theo IP)
+    void recordSnapshotView(Long chapterId, String clientIp);
+
+    // Đẩy bộ đếm trong bộ nhớ lên Redis
+    void flushToRedis();
+
+    // Cộng dồn lượt xem đang chờ trong Redis vào MySQL theo batch
+    void applyToDatabase();
+}
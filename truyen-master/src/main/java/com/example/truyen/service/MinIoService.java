@@ -2,6 +2,8 @@ package com.example.truyen.service;
 
 import org.springframework.web.multipart.MultipartFile;
 
+import java.util.Map;
+
 // Interface MinIoService
 public interface MinIoService {
 
@@ -10,4 +12,13 @@ public interface MinIoService {
 
     // Tải file lên MinIO vào thư mục cụ thể và trả về URL
     String uploadFile(MultipartFile file, String folder);
+
+    // Ghi object với tên cố định (ghi đè nếu đã có) kèm header HTTP, trả về URL
+    String uploadObject(String objectName, byte[] data, String contentType, Map<String, String> headers);
+
+    // Xóa các object có cùng prefix, trừ object keepObjectName (có thể null)
+    void deleteObjects(String prefix, String keepObjectName);
+
+    // URL public của object
+    String getObjectUrl(String objectName);
 }
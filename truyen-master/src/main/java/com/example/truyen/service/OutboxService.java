@@ -0,0 +1,19 @@
+package com.example.truyen.service;
+
+public interface OutboxService {
+
+    /**
+     * Ghi event vào outbox trong transaction hiện tại (không có transaction thì ghi ngay).
+     * Event chỉ được gửi Kafka khi transaction commit.
+     */
+    void publish(String topic, String key, Object event);
+
+    /**
+     * Ghi event trong transaction riêng, commit ngay kể cả khi transaction hiện tại rollback
+     * (vd. nhật ký lỗi của chính thao tác đang thất bại).
+     */
+    void publishIndependently(String topic, String key, Object event);
+
+    // Đọc outbox theo lô, gửi Kafka và xóa các dòng đã được ack
+    void relay();
+}
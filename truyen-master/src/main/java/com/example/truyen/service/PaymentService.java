@@ -15,8 +15,18 @@ public interface PaymentService {
 
     String handleVNPayIPN(Map<String, String> params);
 
+    // Hủy từng đơn đúng hạn theo ZSet hết hạn trên Redis
+    void expireDueOrders();
+
+    // Quét dự phòng: hủy đơn PENDING quá hạn bị sót (Redis mất dữ liệu/lỗi khi đăng ký)
     void cancelExpiredOrders();
 
+    // Worker: xử lý các callback VNPay đã ghi nhận (cập nhật đơn + cộng xu) theo lô
+    void settleCallbacks();
+
+    // Admin: đưa callback FAILED về hàng đợi để worker xử lý lại (orderCode null = tất cả)
+    int retryFailedCallbacks(String orderCode);
+
     PaymentOrderResponse getOrderStatus(String orderCode);
 
     Page<PaymentOrderResponse> getMyOrders(Pageable pageable);
@@ -20,4 +20,7 @@ public interface RatingService {
 
     // Lấy thông tin đánh giá tổng hợp của truyện
     RatingResponse getStoryRatingInfo(Long storyId);
+
+    // Đối soát aggregate đánh giá lưu trên bảng stories
+    void reconcileRatingAggregates();
 }
\ No newline at end of file
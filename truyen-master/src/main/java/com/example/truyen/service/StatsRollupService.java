@@ -0,0 +1,27 @@
+package com.example.truyen.service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+public interface StatsRollupService {
+
+    // Cộng 1 đơn SUCCESS vào daily_revenue (gọi trong transaction cập nhật đơn)
+    void recordRevenue(BigDecimal amount, LocalDateTime completedAt);
+
+    // Cộng lượt mở khóa vào daily_unlocks (gọi trong transaction lưu quyền đọc)
+    void recordUnlocks(int unlocks, long coinsSpent, LocalDateTime unlockedAt);
+
+    long sumRevenue(LocalDate from, LocalDate toExclusive);
+
+    long getTotalRevenue();
+
+    long getTotalSuccessOrders();
+
+    long getTotalUnlocks();
+
+    long getTotalCoinsSpent();
+
+    // Tính lại các ngày gần nhất (đã qua) từ bảng gốc
+    void reconcileRecentDays();
+}
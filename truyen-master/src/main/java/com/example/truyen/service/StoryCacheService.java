@@ -0,0 +1,19 @@
+package com.example.truyen.service;
+
+import com.example.truyen.dto.response.StoryResponse;
+
+import java.util.Collection;
+import java.util.function.Supplier;
+
+// Interface StoryCacheService
+public interface StoryCacheService {
+
+    // Lấy chi tiết truyện từ cache L1 → L2, nếu miss thì load và ghi lại cả 2 tầng
+    StoryResponse getOrLoad(Long storyId, Supplier<StoryResponse> loader);
+
+    // Xóa cache L2 và báo tất cả các node xóa cache L1
+    void evict(Collection<Long> storyIds);
+
+    // Chỉ xóa cache L1 của node hiện tại
+    void evictLocal(Collection<Long> storyIds);
+}
@@ -2,6 +2,7 @@ package com.example.truyen.service;
 
 import com.example.truyen.dto.request.StoryFilterCriteria;
 import com.example.truyen.dto.request.StoryRequest;
+import com.example.truyen.dto.response.StoryCardResponse;
 import com.example.truyen.dto.response.StoryResponse;
 import org.springframework.data.domain.Page;
 
@@ -46,6 +47,27 @@ public interface StoryService {
     // Lấy danh sách truyện của tác giả
     List<StoryResponse> getStoriesByAuthor(Long authorId);
 
+    // Lấy danh sách thẻ truyện (view=card, không có description)
+    Page<StoryCardResponse> getAllStoryCards(int page, int size);
+
+    // Tìm kiếm thẻ truyện và gửi event tracking
+    Page<StoryCardResponse> searchStoryCards(String keyword, int page, int size);
+
+    // Lấy thẻ truyện theo danh mục
+    Page<StoryCardResponse> getStoryCardsByCategory(Long categoryId, int page, int size);
+
+    // Lấy thẻ truyện HOT
+    Page<StoryCardResponse> getHotStoryCards(int page, int size);
+
+    // Lấy thẻ truyện mới nhất
+    Page<StoryCardResponse> getLatestStoryCards(int page, int size);
+
+    // Lọc truyện nâng cao, trả về thẻ truyện
+    Page<StoryCardResponse> filterStoryCards(StoryFilterCriteria criteria);
+
+    // Lấy thẻ truyện của tác giả
+    List<StoryCardResponse> getStoryCardsByAuthor(Long authorId);
+
     // Kiểm tra truyện có chương VIP không
     boolean hasVipChapters(Long storyId);
 }
@@ -0,0 +1,15 @@
+package com.example.truyen.service;
+
+import com.example.truyen.entity.User;
+
+public interface UserStatusService {
+
+    // Token còn hiệu lực khi version trong token trùng version hiện tại của user
+    boolean isTokenCurrent(Long userId, int statusVersion);
+
+    // Tăng version (gọi trong transaction sửa user): mọi token đã cấp hết hiệu lực
+    void bumpStatusVersion(User user);
+
+    // User bị xóa: thu hồi mọi token
+    void revokeAll(Long userId);
+}
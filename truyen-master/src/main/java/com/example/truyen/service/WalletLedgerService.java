@@ -0,0 +1,22 @@
+package com.example.truyen.service;
+
+public interface WalletLedgerService {
+
+    // Số dư hiện tại (Redis, nạp lại từ snapshot + ledger nếu chưa có)
+    long getBalance(Long userId);
+
+    /**
+     * Cộng/trừ số dư trên Redis một cách nguyên tử (delta âm là chi tiêu) và trả về số dư mới.
+     * Phải gọi trong transaction ghi dòng ledger tương ứng: rollback thì tự hoàn lại.
+     */
+    long reserve(Long userId, long delta, String reservationId);
+
+    // Gộp các dòng ledger chưa settle vào user_wallets
+    void settleLedger();
+
+    // Hoàn lại các reservation treo quá lâu (node chết giữa transaction)
+    void recoverReservations();
+
+    // Chuyển giao dịch đã settle quá hạn lưu sang wallet_transactions_archive
+    void archiveTransactions();
+}
@@ -1,7 +1,9 @@
 package com.example.truyen.service;
 
 import com.example.truyen.dto.response.WalletResponse;
+import com.example.truyen.dto.response.WalletTransactionPageResponse;
 import com.example.truyen.dto.response.WalletTransactionResponse;
+import com.example.truyen.entity.WalletTransaction;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
@@ -9,9 +11,10 @@ public interface WalletService {
 
     WalletResponse getMyWallet();
 
-    void addCoins(Long userId, int amount, String description, Long refId);
+    void addCoins(Long userId, int amount, String description, WalletTransaction.RefType refType, Long refId);
 
-    void spendCoins(Long userId, int amount, String description, Long refId);
+    // Trả về số dư sau khi trừ
+    int spendCoins(Long userId, int amount, String description, WalletTransaction.RefType refType, Long refId);
 
     Page<WalletTransactionResponse> getMyTransactions(Pageable pageable);
 
@@ -19,6 +22,14 @@ public interface WalletService {
 
     Page<WalletTransactionResponse> getTransactionsByUserId(Long userId, Pageable pageable);
 
-    // Admin: xem tất cả giao dịch (phân trang)
-    Page<WalletTransactionResponse> getAllTransactions(Pageable pageable);
+    // Admin: xem tất cả giao dịch (phân trang); approximateCount: tổng lấy ước lượng thay vì COUNT
+    Page<WalletTransactionResponse> getAllTransactions(Pageable pageable, boolean approximateCount);
+
+    // Lịch sử giao dịch theo cursor (mới nhất trước), gồm cả phần đã lưu trữ
+    WalletTransactionPageResponse getMyTransactionHistory(String cursor, int size);
+
+    WalletTransactionPageResponse getTransactionHistoryByUserId(Long userId, String cursor, int size);
+
+    // Admin: toàn bộ giao dịch theo cursor (chỉ bảng chính)
+    WalletTransactionPageResponse getAllTransactionHistory(String cursor, int size);
 }
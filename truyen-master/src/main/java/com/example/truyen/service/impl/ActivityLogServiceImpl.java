@@ -23,7 +23,7 @@ public class ActivityLogServiceImpl implements ActivityLogService {
     private final ActivityLogRepository activityLogRepository;
     private final ActivityLogProducer activityLogProducer;
 
-    // Ghi lại hoạt động vào Kafka
+    // Ghi lại hoạt động vào outbox (relay gửi Kafka)
     @Override
     public void logActivity(String action, String entityType, Long entityId,
             String entityName, Long userId, String username, String details, String ipAddress) {
@@ -33,13 +33,29 @@ public class ActivityLogServiceImpl implements ActivityLogService {
 
         try {
             activityLogProducer.sendActivityLog(event);
-            log.debug("Activity log event sent to Kafka: {} {}", action, entityType);
+            log.debug("Activity log event queued: {} {}", action, entityType);
         } catch (Exception e) {
-            log.error("Failed to send activity log event to Kafka: {}. Fallback to direct DB save.", e.getMessage());
+            log.error("Failed to queue activity log event: {}. Fallback to direct DB save.", e.getMessage());
             saveLogDirectly(event);
         }
     }
 
+    // Nhật ký lỗi: gọi từ trong transaction sắp rollback nên phải commit riêng
+    @Override
+    public void logError(String action, String entityType, Long entityId,
+            String entityName, Long userId, String username, String details, String ipAddress) {
+
+        ActivityLogEvent event = ActivityLogEvent.create(
+                action, entityType, entityId, entityName, userId, username, details, ipAddress);
+
+        try {
+            activityLogProducer.sendErrorLog(event);
+            log.debug("Error log event queued: {} {}", action, entityType);
+        } catch (Exception e) {
+            log.error("Failed to queue error log event: {}", e.getMessage());
+        }
+    }
+
     private void saveLogDirectly(ActivityLogEvent event) {
         try {
             ActivityLog activityLog = ActivityLog.builder()
@@ -9,6 +9,7 @@ import com.example.truyen.repository.UserRepository;
 import com.example.truyen.security.JwtTokenProvider;
 import com.example.truyen.service.AuthService;
 import com.example.truyen.service.TokenBlacklistService;
+import com.example.truyen.service.UserStatusService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -31,6 +32,7 @@ public class AuthServiceImpl implements AuthService {
     private final JwtTokenProvider jwtTokenProvider;
     private final AuthenticationManager authenticationManager;
     private final TokenBlacklistService tokenBlacklistService;
+    private final UserStatusService userStatusService;
 
     // Xác thực người dùng và tạo token JWT
     @Override
@@ -124,6 +126,7 @@ public class AuthServiceImpl implements AuthService {
         user.setPassword(passwordEncoder.encode(newPassword));
         user.setResetPasswordToken(null);
         user.setResetPasswordTokenExpiry(null);
+        userStatusService.bumpStatusVersion(user);
         userRepository.save(user);
     }
 }
@@ -1,17 +1,25 @@
 package com.example.truyen.service.impl;
 
+import com.example.truyen.dto.event.ChapterChangedEvent;
+import com.example.truyen.dto.event.StoryChangedEvent;
 import com.example.truyen.dto.request.AuthorRequest;
 import com.example.truyen.dto.response.AuthorResponse;
 import com.example.truyen.entity.Author;
 import com.example.truyen.exception.BadRequestException;
 import com.example.truyen.exception.ResourceNotFoundException;
 import com.example.truyen.repository.AuthorRepository;
+import com.example.truyen.repository.ChapterRepository;
+import com.example.truyen.repository.StoryRepository;
 import com.example.truyen.service.AuthorService;
+import com.example.truyen.service.ChapterContentService;
+import com.example.truyen.service.ChapterRevisionService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Service
@@ -19,6 +27,11 @@ import java.util.stream.Collectors;
 public class AuthorServiceImpl implements AuthorService {
 
     private final AuthorRepository authorRepository;
+    private final StoryRepository storyRepository;
+    private final ChapterRepository chapterRepository;
+    private final ChapterContentService chapterContentService;
+    private final ChapterRevisionService chapterRevisionService;
+    private final ApplicationEventPublisher eventPublisher;
 
     // Lấy tất cả tác giả
     @Transactional(readOnly = true)
@@ -80,6 +93,7 @@ public class AuthorServiceImpl implements AuthorService {
         }
 
         Author updatedAuthor = authorRepository.save(author);
+        eventPublisher.publishEvent(StoryChangedEvent.of(storyRepository.findIdsByAuthorId(id)));
         return convertToResponse(updatedAuthor);
     }
 
@@ -89,7 +103,18 @@ public class AuthorServiceImpl implements AuthorService {
     public void deleteAuthor(Long id) {
         Author author = authorRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Author", "id", id));
+        var storyIds = storyRepository.findIdsByAuthorId(id);
+        // Gỡ snapshot tĩnh và index của các chương bị xóa theo truyện (xử lý sau commit)
+        Map<Long, List<Long>> chapterIdsByStory = storyIds.isEmpty() ? Map.of()
+                : chapterRepository.findIdsByStoryIds(storyIds).stream()
+                        .collect(Collectors.groupingBy(row -> (Long) row[0],
+                                Collectors.mapping(row -> (Long) row[1], Collectors.toList())));
+        chapterContentService.deleteContentsByStoryIds(storyIds);
+        chapterRevisionService.deleteRevisionsByStoryIds(storyIds);
         authorRepository.delete(author);
+        eventPublisher.publishEvent(StoryChangedEvent.of(storyIds));
+        chapterIdsByStory.forEach((storyId, chapterIds) ->
+                eventPublisher.publishEvent(ChapterChangedEvent.of(storyId, chapterIds)));
     }
 
     // Tìm kiếm tác giả theo tên
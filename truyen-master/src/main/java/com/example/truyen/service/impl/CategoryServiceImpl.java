@@ -1,13 +1,16 @@
 package com.example.truyen.service.impl;
 
+import com.example.truyen.dto.event.StoryChangedEvent;
 import com.example.truyen.dto.request.CategoryRequest;
 import com.example.truyen.dto.response.CategoryResponse;
 import com.example.truyen.entity.Category;
 import com.example.truyen.exception.BadRequestException;
 import com.example.truyen.exception.ResourceNotFoundException;
 import com.example.truyen.repository.CategoryRepository;
+import com.example.truyen.repository.StoryRepository;
 import com.example.truyen.service.CategoryService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -19,6 +22,8 @@ import java.util.stream.Collectors;
 public class CategoryServiceImpl implements CategoryService {
 
     private final CategoryRepository categoryRepository;
+    private final StoryRepository storyRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
     // Lấy tất cả danh mục
     @Transactional(readOnly = true)
@@ -75,6 +80,7 @@ public class CategoryServiceImpl implements CategoryService {
         }
 
         Category updatedCategory = categoryRepository.save(category);
+        eventPublisher.publishEvent(StoryChangedEvent.of(storyRepository.findIdsByCategoryId(id)));
         return convertToResponse(updatedCategory);
     }
 
@@ -84,7 +90,9 @@ public class CategoryServiceImpl implements CategoryService {
     public void deleteCategory(Long id) {
         Category category = categoryRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Category", "id", id));
+        var storyIds = storyRepository.findIdsByCategoryId(id);
         categoryRepository.delete(category);
+        eventPublisher.publishEvent(StoryChangedEvent.of(storyIds));
     }
 
     // Chuyển đổi từ Category entity sang CategoryResponse DTO
@@ -0,0 +1,200 @@
+package com.example.truyen.service.impl;
+
+import com.example.truyen.config.RedisKeyConstants;
+import com.example.truyen.dto.event.ChapterUnlockedEvent;
+import com.example.truyen.repository.UserChapterAccessRepository;
+import com.example.truyen.service.ChapterAccessBitmapService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * Bitmap id các chương user đã mở khóa (RoaringBitmap: vài byte/chương kể cả khi id rải rác).
+ * L1 Caffeine giới hạn theo byte, L2 Redis gồm bitmap gốc + Set các chương mở khóa sau đó.
+ * Mở khóa chỉ thêm quyền nên ghi vào Set bằng SADD là đủ nguyên tử: bitmap gốc có bị
+ * node khác ghi đè bằng bản cũ thì chương mới vẫn nằm trong Set và được gộp khi đọc.
+ * Bitmap trong L1 coi như bất biến: cập nhật bằng cách thay bản sao (copy-on-write).
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ChapterAccessBitmapServiceImpl implements ChapterAccessBitmapService, MessageListener {
+
+    // Ước lượng overhead của key/entry/object header trên heap
+    private static final int ENTRY_OVERHEAD_BYTES = 128;
+
+    private final UserChapterAccessRepository accessRepository;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.cache.chapter-access.local-max-bytes:64MB}")
+    private DataSize localMaxBytes;
+
+    @Value("${app.cache.chapter-access.local-ttl:10m}")
+    private Duration localTtl;
+
+    @Value("${app.cache.chapter-access.redis-ttl:24h}")
+    private Duration redisTtl;
+
+    private Cache<String, RoaringBitmap> localCache;
+
+    @PostConstruct
+    void init() {
+        localCache = Caffeine.newBuilder()
+                .maximumWeight(localMaxBytes.toBytes())
+                .weigher((String username, RoaringBitmap bitmap) ->
+                        ENTRY_OVERHEAD_BYTES + 2 * username.length() + (int) bitmap.getLongSizeInBytes())
+                .expireAfterWrite(localTtl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, localCache, "chapterAccessBitmap");
+        listenerContainer.addMessageListener(this,
+                new ChannelTopic(RedisKeyConstants.CHAPTER_ACCESS_INVALIDATION_CHANNEL));
+    }
+
+    // L1 (in-process) → L2 (Redis: bitmap gốc ∪ Set bổ sung) → DB (1 query chỉ đọc id)
+    @Override
+    public RoaringBitmap getUnlockedChapters(String username) {
+        return localCache.get(username, this::loadBitmap);
+    }
+
+    @Override
+    public boolean isUnlocked(String username, Long chapterId) {
+        if (!fitsBitmap(chapterId)) {
+            return !accessRepository.findUnlockedChapterIds(username, Set.of(chapterId)).isEmpty();
+        }
+        return getUnlockedChapters(username).contains(chapterId.intValue());
+    }
+
+    @Override
+    public void recordUnlocks(String username, Collection<Long> chapterIds) {
+        if (chapterIds == null || chapterIds.isEmpty()) {
+            return;
+        }
+
+        // Node hiện tại: thay bằng bản sao đã thêm bit (chỉ khi đang có trong L1)
+        localCache.asMap().computeIfPresent(username, (key, current) -> {
+            RoaringBitmap copy = current.clone();
+            chapterIds.stream().filter(this::fitsBitmap).forEach(id -> copy.add(id.intValue()));
+            copy.runOptimize();
+            return copy;
+        });
+
+        try {
+            String addedKey = RedisKeyConstants.CHAPTER_ACCESS_ADDED + username;
+            stringRedisTemplate.opsForSet().add(addedKey,
+                    chapterIds.stream().map(String::valueOf).toArray(String[]::new));
+            // Set bổ sung luôn sống lâu hơn bitmap gốc
+            stringRedisTemplate.expire(addedKey, redisTtl);
+            stringRedisTemplate.convertAndSend(RedisKeyConstants.CHAPTER_ACCESS_INVALIDATION_CHANNEL, username);
+        } catch (Exception e) {
+            // Redis lỗi: xóa bitmap gốc để lần đọc sau build lại từ DB
+            log.error("Failed to record unlocked chapters {} for {}: {}", chapterIds, username, e.getMessage());
+            evictQuietly(username);
+        }
+    }
+
+    // Chỉ cập nhật bitmap khi việc trừ xu + lưu quyền đã commit
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onChapterUnlocked(ChapterUnlockedEvent event) {
+        recordUnlocks(event.getUsername(), event.getChapterIds());
+    }
+
+    // Nhận tín hiệu từ node khác: bỏ bản L1, lần đọc sau lấy lại từ Redis
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        localCache.invalidate(new String(message.getBody(), StandardCharsets.UTF_8));
+    }
+
+    private RoaringBitmap loadBitmap(String username) {
+        String baseKey = RedisKeyConstants.CHAPTER_ACCESS_BITMAP + username;
+        String addedKey = RedisKeyConstants.CHAPTER_ACCESS_ADDED + username;
+        try {
+            String encoded = stringRedisTemplate.opsForValue().get(baseKey);
+            if (encoded != null) {
+                RoaringBitmap bitmap = deserialize(Base64.getDecoder().decode(encoded));
+                Set<String> added = stringRedisTemplate.opsForSet().members(addedKey);
+                if (added != null) {
+                    added.stream().map(Long::valueOf).filter(this::fitsBitmap)
+                            .forEach(id -> bitmap.add(id.intValue()));
+                }
+                bitmap.runOptimize();
+                return bitmap;
+            }
+        } catch (Exception e) {
+            log.warn("Failed to read chapter access bitmap of {} from Redis: {}", username, e.getMessage());
+        }
+
+        RoaringBitmap bitmap = new RoaringBitmap();
+        accessRepository.findChapterIdsByUsername(username).stream()
+                .filter(this::fitsBitmap)
+                .forEach(id -> bitmap.add(id.intValue()));
+        bitmap.runOptimize();
+        try {
+            stringRedisTemplate.opsForValue().set(baseKey,
+                    Base64.getEncoder().encodeToString(serialize(bitmap)), redisTtl);
+            stringRedisTemplate.expire(addedKey, redisTtl);
+        } catch (Exception e) {
+            log.warn("Failed to cache chapter access bitmap of {} to Redis: {}", username, e.getMessage());
+        }
+        return bitmap;
+    }
+
+    private void evictQuietly(String username) {
+        localCache.invalidate(username);
+        try {
+            stringRedisTemplate.delete(RedisKeyConstants.CHAPTER_ACCESS_BITMAP + username);
+        } catch (Exception e) {
+            log.warn("Failed to evict chapter access bitmap of {}: {}", username, e.getMessage());
+        }
+    }
+
+    // RoaringBitmap là bitmap 32-bit; id lớn hơn (không xảy ra với AUTO_INCREMENT hiện tại) đi DB
+    private boolean fitsBitmap(Long chapterId) {
+        return chapterId != null && chapterId >= 0 && chapterId <= Integer.MAX_VALUE;
+    }
+
+    private static byte[] serialize(RoaringBitmap bitmap) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bitmap.serializedSizeInBytes());
+        try (DataOutputStream data = new DataOutputStream(out)) {
+            bitmap.serialize(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static RoaringBitmap deserialize(byte[] bytes) throws IOException {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        bitmap.deserialize(new DataInputStream(new ByteArrayInputStream(bytes)));
+        return bitmap;
+    }
+}
@@ -1,25 +1,51 @@
 package com.example.truyen.service.impl;
 
+import com.example.truyen.dto.event.ChapterUnlockedEvent;
+import com.example.truyen.dto.request.BulkUnlockRequest;
+import com.example.truyen.dto.response.BulkUnlockResponse;
 import com.example.truyen.dto.response.UnlockedChapterResponse;
 import com.example.truyen.entity.Chapter;
+import com.example.truyen.entity.Story;
 import com.example.truyen.entity.User;
 import com.example.truyen.entity.UserChapterAccess;
+import com.example.truyen.entity.WalletTransaction;
 import com.example.truyen.exception.BadRequestException;
 import com.example.truyen.exception.ResourceNotFoundException;
 import com.example.truyen.repository.ChapterRepository;
+import com.example.truyen.repository.StoryRepository;
 import com.example.truyen.repository.UserChapterAccessRepository;
 import com.example.truyen.repository.UserRepository;
+import com.example.truyen.security.SecurityUtils;
+import com.example.truyen.security.UserPrincipal;
+import com.example.truyen.service.ChapterAccessBitmapService;
 import com.example.truyen.service.ChapterAccessService;
+import com.example.truyen.service.StatsRollupService;
 import com.example.truyen.service.WalletService;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
 @Service
 @RequiredArgsConstructor
 @Slf4j
@@ -29,35 +55,74 @@ public class ChapterAccessServiceImpl implements ChapterAccessService {
     private final ChapterRepository chapterRepository;
     private final UserRepository userRepository;
     private final WalletService walletService;
+    private final ChapterAccessBitmapService chapterAccessBitmapService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final StoryRepository storyRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final StatsRollupService statsRollupService;
+
+    private static final String INSERT_ACCESS_SQL = "INSERT INTO user_chapter_access " +
+            "(user_id, chapter_id, coins_spent, accessed_at) VALUES (?, ?, ?, ?)";
+
+    @Value("${app.chapter-unlock.max-batch-size:200}")
+    private int maxBatchSize;
+
+    // Dạng "số-chương-tối-thiểu:%giảm", cách nhau bởi dấu phẩy, vd "10:5,30:10"
+    @Value("${app.chapter-unlock.bundle-discounts:}")
+    private String bundleDiscountsConfig;
+
+    private final NavigableMap<Integer, Integer> bundleDiscounts = new TreeMap<>();
+
+    private record UnlockItem(Long chapterId, int chapterNumber, int coinsSpent) {
+    }
+
+    private record UnlockPlan(List<UnlockItem> items, int alreadyUnlocked, int totalPrice,
+            int discountPercent, int coinsCharged) {
+    }
+
+    @PostConstruct
+    void init() {
+        for (String tier : bundleDiscountsConfig.split(",")) {
+            if (tier.isBlank()) {
+                continue;
+            }
+            String[] parts = tier.trim().split(":");
+            int percent = Integer.parseInt(parts[1].trim());
+            if (percent < 0 || percent > 100) {
+                throw new IllegalStateException("Invalid bundle discount: " + tier);
+            }
+            bundleDiscounts.put(Integer.parseInt(parts[0].trim()), percent);
+        }
+    }
 
     @Transactional(readOnly = true)
     @Override
     public boolean hasAccess(Long chapterId) {
-        Chapter chapter = chapterRepository.findById(chapterId)
+        Boolean locked = chapterRepository.findIsLockedById(chapterId)
                 .orElseThrow(() -> new ResourceNotFoundException("Chapter", "id", chapterId));
 
-        if (!chapter.getIsLocked())
-            return true;
+        return !Boolean.TRUE.equals(locked) || hasLockedChapterAccess(chapterId);
+    }
 
+    // Chương đã biết là bị khóa: admin đọc được tất cả, user thường tra bitmap
+    @Override
+    public boolean hasLockedChapterAccess(Long chapterId) {
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
         if (auth == null || !auth.isAuthenticated() || "anonymousUser".equals(auth.getName())) {
             return false;
         }
 
-        User user = userRepository.findByUsername(auth.getName())
-                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
-
-        if (user.getRole() == User.Role.ADMIN || user.getRole() == User.Role.SUPER_ADMIN) {
+        if (isAdmin(auth)) {
             return true;
         }
 
-        return accessRepository.existsByUserIdAndChapterId(user.getId(), chapterId);
+        return chapterAccessBitmapService.isUnlocked(auth.getName(), chapterId);
     }
 
     @Transactional
     @Override
     public void unlockChapter(Long chapterId) {
-        User user = getCurrentUser();
+        User user = SecurityUtils.getCurrentUserReference(userRepository);
 
         Chapter chapter = chapterRepository.findById(chapterId)
                 .orElseThrow(() -> new ResourceNotFoundException("Chapter", "id", chapterId));
@@ -75,6 +140,7 @@ public class ChapterAccessServiceImpl implements ChapterAccessService {
                 user.getId(),
                 chapter.getCoinsPrice(),
                 "Mo khoa chuong " + chapter.getChapterNumber() + " - " + chapter.getStory().getTitle(),
+                WalletTransaction.RefType.CHAPTER,
                 chapterId);
 
         // Lưu quyền truy cập — nếu bước này lỗi, @Transactional sẽ rollback
@@ -86,6 +152,8 @@ public class ChapterAccessServiceImpl implements ChapterAccessService {
                     .coinsSpent(chapter.getCoinsPrice())
                     .build();
             accessRepository.save(access);
+            statsRollupService.recordUnlocks(1, chapter.getCoinsPrice(), LocalDateTime.now());
+            eventPublisher.publishEvent(new ChapterUnlockedEvent(SecurityUtils.getCurrentPrincipal().getUsername(), Set.of(chapterId)));
         } catch (Exception e) {
             // Transaction sẽ rollback — xu sẽ được hoàn tự động
             log.error("Failed to save chapter access for user {} chapter {}: {}",
@@ -94,10 +162,64 @@ public class ChapterAccessServiceImpl implements ChapterAccessService {
         }
     }
 
+    // Báo giá mở khóa hàng loạt (không trừ xu)
+    @Transactional(readOnly = true)
+    @Override
+    public BulkUnlockResponse quoteBulkUnlock(Long storyId, BulkUnlockRequest request) {
+        UserPrincipal principal = requirePrincipal();
+        if (!storyRepository.existsById(storyId)) {
+            throw new ResourceNotFoundException("Story", "id", storyId);
+        }
+        return toBulkResponse(storyId, planBulkUnlock(storyId, request, principal.getUsername()), null);
+    }
+
+    // Mở khóa hàng loạt: khóa ví 1 lần, 1 giao dịch trừ xu, batch insert quyền đọc
+    @Transactional
+    @Override
+    public BulkUnlockResponse unlockChapters(Long storyId, BulkUnlockRequest request) {
+        UserPrincipal principal = requirePrincipal();
+        Story story = storyRepository.findById(storyId)
+                .orElseThrow(() -> new ResourceNotFoundException("Story", "id", storyId));
+
+        UnlockPlan plan = planBulkUnlock(storyId, request, principal.getUsername());
+        if (plan.items().isEmpty()) {
+            throw new BadRequestException("You already unlocked all selected chapters");
+        }
+
+        List<UnlockItem> items = plan.items();
+        int balanceAfter = walletService.spendCoins(
+                principal.getId(),
+                plan.coinsCharged(),
+                "Mo khoa " + items.size() + " chuong (" + items.get(0).chapterNumber() + "-"
+                        + items.get(items.size() - 1).chapterNumber() + ") - " + story.getTitle(),
+                WalletTransaction.RefType.STORY,
+                storyId);
+
+        // 2 request song song cùng mở 1 chương: request sau vi phạm unique (user, chapter),
+        // cả transaction rollback và số xu đã trừ trên Redis được hoàn lại
+        LocalDateTime now = LocalDateTime.now();
+        try {
+            jdbcTemplate.batchUpdate(INSERT_ACCESS_SQL, items, items.size(), (ps, item) -> {
+                ps.setLong(1, principal.getId());
+                ps.setLong(2, item.chapterId());
+                ps.setInt(3, item.coinsSpent());
+                ps.setObject(4, now);
+            });
+        } catch (DuplicateKeyException e) {
+            throw new BadRequestException("Some chapters were unlocked by another request, please try again");
+        }
+        statsRollupService.recordUnlocks(items.size(),
+                items.stream().mapToLong(UnlockItem::coinsSpent).sum(), now);
+
+        eventPublisher.publishEvent(new ChapterUnlockedEvent(principal.getUsername(),
+                items.stream().map(UnlockItem::chapterId).collect(Collectors.toSet())));
+        return toBulkResponse(storyId, plan, balanceAfter);
+    }
+
     @Transactional(readOnly = true)
     @Override
     public Page<UnlockedChapterResponse> getMyUnlockedChapters(Pageable pageable) {
-        User user = getCurrentUser();
+        User user = SecurityUtils.getCurrentUserReference(userRepository);
         return accessRepository.findByUserIdOrderByAccessedAtDesc(user.getId(), pageable)
                 .map(access -> {
                     Chapter chapter = access.getChapter();
@@ -116,10 +238,117 @@ public class ChapterAccessServiceImpl implements ChapterAccessService {
                 });
     }
 
-    private User getCurrentUser() {
-        String username = SecurityContextHolder.getContext().getAuthentication().getName();
-        return userRepository.findByUsername(username)
-                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
+    // Quyền đọc cho cả trang chương: không load lại chương/user, admin đọc được tất cả
+    @Override
+    public Set<Long> resolveAccessibleChapterIds(Collection<Long> lockedChapterIds) {
+        if (lockedChapterIds.isEmpty()) {
+            return Set.of();
+        }
+
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth == null || !auth.isAuthenticated() || "anonymousUser".equals(auth.getName())) {
+            return Set.of();
+        }
+
+        if (isAdmin(auth)) {
+            return Set.copyOf(lockedChapterIds);
+        }
+
+        String username = auth.getName();
+        return lockedChapterIds.stream()
+                .filter(id -> chapterAccessBitmapService.isUnlocked(username, id))
+                .collect(Collectors.toSet());
+    }
+
+    // anon: chưa đăng nhập; admin: đọc được mọi chương; còn lại: username + tổng số
+    // chương đã mở khóa (quyền chỉ tăng thêm nên số đếm đủ để nhận biết thay đổi)
+    @Override
+    public String getAccessFingerprint(Long storyId) {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth == null || !auth.isAuthenticated() || "anonymousUser".equals(auth.getName())) {
+            return "anon";
+        }
+
+        if (isAdmin(auth)) {
+            return "admin";
+        }
+
+        RoaringBitmap unlocked = chapterAccessBitmapService.getUnlockedChapters(auth.getName());
+        return auth.getName() + ":" + unlocked.getLongCardinality();
+    }
+
+    // Các chương bị khóa trong lựa chọn, bỏ các chương đã mở, áp giảm giá theo số chương
+    private UnlockPlan planBulkUnlock(Long storyId, BulkUnlockRequest request, String username) {
+        boolean byIds = request.getChapterIds() != null && !request.getChapterIds().isEmpty();
+        boolean byRange = request.getFromChapter() != null || request.getToChapter() != null;
+        if (byIds == byRange) {
+            throw new BadRequestException("Provide either chapterIds or fromChapter/toChapter");
+        }
+
+        List<Object[]> rows;
+        if (byIds) {
+            if (request.getChapterIds().size() > maxBatchSize) {
+                throw new BadRequestException("At most " + maxBatchSize + " chapters can be unlocked at once");
+            }
+            rows = chapterRepository.findLockedPricesByStoryIdAndIds(storyId, Set.copyOf(request.getChapterIds()));
+        } else {
+            if (request.getFromChapter() == null || request.getToChapter() == null
+                    || request.getFromChapter() > request.getToChapter()) {
+                throw new BadRequestException("Invalid chapter range");
+            }
+            rows = chapterRepository.findLockedPricesByStoryIdAndNumberRange(storyId,
+                    request.getFromChapter(), request.getToChapter(), PageRequest.of(0, maxBatchSize + 1));
+            if (rows.size() > maxBatchSize) {
+                throw new BadRequestException("At most " + maxBatchSize + " chapters can be unlocked at once");
+            }
+        }
+        if (rows.isEmpty()) {
+            throw new BadRequestException("No locked chapters in the selection");
+        }
+
+        Set<Long> unlocked = Set.copyOf(accessRepository.findUnlockedChapterIds(username,
+                rows.stream().map(row -> (Long) row[0]).toList()));
+        List<Object[]> remaining = rows.stream().filter(row -> !unlocked.contains((Long) row[0])).toList();
+
+        var tier = bundleDiscounts.floorEntry(remaining.size());
+        int percent = tier != null ? tier.getValue() : 0;
+        int totalPrice = 0;
+        int charged = 0;
+        List<UnlockItem> items = new ArrayList<>(remaining.size());
+        for (Object[] row : remaining) {
+            int price = row[2] != null ? (Integer) row[2] : 0;
+            // Giảm giá tính trên từng chương để coins_spent cộng lại đúng bằng số xu đã trừ
+            int spent = price - price * percent / 100;
+            items.add(new UnlockItem((Long) row[0], (Integer) row[1], spent));
+            totalPrice += price;
+            charged += spent;
+        }
+        return new UnlockPlan(items, rows.size() - remaining.size(), totalPrice, percent, charged);
+    }
+
+    private BulkUnlockResponse toBulkResponse(Long storyId, UnlockPlan plan, Integer balanceAfter) {
+        return BulkUnlockResponse.builder()
+                .storyId(storyId)
+                .chapterIds(plan.items().stream().map(UnlockItem::chapterId).toList())
+                .alreadyUnlocked(plan.alreadyUnlocked())
+                .totalPrice(plan.totalPrice())
+                .discountPercent(plan.discountPercent())
+                .coinsCharged(plan.coinsCharged())
+                .balanceAfter(balanceAfter)
+                .build();
+    }
+
+    private UserPrincipal requirePrincipal() {
+        UserPrincipal principal = SecurityUtils.getCurrentPrincipal();
+        if (principal == null) {
+            throw new ResourceNotFoundException("User not found");
+        }
+        return principal;
+    }
+
+    private boolean isAdmin(Authentication auth) {
+        return auth.getAuthorities().stream()
+                .anyMatch(a -> "ROLE_ADMIN".equals(a.getAuthority()) || "ROLE_SUPER_ADMIN".equals(a.getAuthority()));
     }
 
     @Transactional(readOnly = true)
@@ -0,0 +1,138 @@
+package com.example.truyen.service.impl;
+
+import com.example.truyen.config.RedisKeyConstants;
+import com.example.truyen.service.ChapterContentCacheService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * Cache nội dung chương 2 tầng. L1 (Caffeine) giới hạn theo tổng số byte thay vì
+ * số entry vì độ dài chương chênh lệch rất lớn; L2 là Redis dùng chung giữa các node.
+ * Key gồm cả version (updated_at của chương) nên node khác không bao giờ trả về
+ * nội dung cũ sau khi chương được sửa, entry cũ tự hết hạn.
+ * L1 giữ mảng UTF-8 (nhỏ hơn String UTF-16 với tiếng Việt) và trả thẳng mảng đó cho
+ * endpoint streaming, nên mỗi request không phải copy lại toàn bộ nội dung.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ChapterContentCacheServiceImpl implements ChapterContentCacheService {
+
+    // Ước lượng phần overhead của key/entry/array header trên heap
+    private static final int ENTRY_OVERHEAD_BYTES = 96;
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.cache.chapter-content.local-max-bytes:256MB}")
+    private DataSize localMaxBytes;
+
+    @Value("${app.cache.chapter-content.redis-ttl:6h}")
+    private Duration redisTtl;
+
+    private Cache<String, byte[]> localCache;
+    private Counter redisHits;
+    private Counter redisMisses;
+
+    @PostConstruct
+    void init() {
+        localCache = Caffeine.newBuilder()
+                .maximumWeight(localMaxBytes.toBytes())
+                .weigher((String key, byte[] content) -> ENTRY_OVERHEAD_BYTES + 2 * key.length() + content.length)
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, localCache, "chapterContent");
+        Gauge.builder("chapter.content.cache.local.bytes", localCache,
+                        cache -> cache.policy().eviction()
+                                .map(eviction -> eviction.weightedSize().orElse(0L))
+                                .orElse(0L))
+                .description("Resident bytes of the in-process chapter content cache")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        redisHits = Counter.builder("chapter.content.cache.redis")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        redisMisses = Counter.builder("chapter.content.cache.redis")
+                .tag("result", "miss")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public String getOrLoad(Long chapterId, long version, Supplier<String> loader) {
+        byte[] content = getBytesOrLoad(chapterId, version, loader);
+        return content != null ? new String(content, StandardCharsets.UTF_8) : null;
+    }
+
+    // L1 (in-process) → L2 (Redis) → loader (DB)
+    @Override
+    public byte[] getBytesOrLoad(Long chapterId, long version, Supplier<String> loader) {
+        String key = buildKey(chapterId, version);
+        byte[] local = localCache.getIfPresent(key);
+        if (local != null) {
+            return local;
+        }
+
+        String redisKey = RedisKeyConstants.CHAPTER_CONTENT_CACHE + key;
+        try {
+            String cached = stringRedisTemplate.opsForValue().get(redisKey);
+            if (cached != null) {
+                redisHits.increment();
+                byte[] bytes = cached.getBytes(StandardCharsets.UTF_8);
+                localCache.put(key, bytes);
+                return bytes;
+            }
+            redisMisses.increment();
+        } catch (Exception e) {
+            log.warn("Failed to read chapter {} content from Redis cache: {}", chapterId, e.getMessage());
+        }
+
+        String content = loader.get();
+        if (content == null) {
+            return null;
+        }
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        localCache.put(key, bytes);
+        try {
+            stringRedisTemplate.opsForValue().set(redisKey, content, redisTtl);
+        } catch (Exception e) {
+            log.warn("Failed to cache chapter {} content to Redis: {}", chapterId, e.getMessage());
+        }
+        return bytes;
+    }
+
+    @Override
+    public boolean isCachedLocally(Long chapterId, long version) {
+        return localCache.asMap().containsKey(buildKey(chapterId, version));
+    }
+
+    @Override
+    public void evict(Long chapterId, long version) {
+        String key = buildKey(chapterId, version);
+        localCache.invalidate(key);
+        try {
+            stringRedisTemplate.delete(RedisKeyConstants.CHAPTER_CONTENT_CACHE + key);
+        } catch (Exception e) {
+            log.warn("Failed to evict chapter {} content from Redis cache: {}", chapterId, e.getMessage());
+        }
+    }
+
+    private String buildKey(Long chapterId, long version) {
+        return chapterId + ":" + version;
+    }
+}
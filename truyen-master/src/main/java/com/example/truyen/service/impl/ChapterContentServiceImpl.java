@@ -0,0 +1,224 @@
+package com.example.truyen.service.impl;
+
+import com.example.truyen.entity.ChapterContent;
+import com.example.truyen.repository.ChapterContentRepository;
+import com.example.truyen.service.ChapterContentService;
+import com.example.truyen.util.CompressionUtils;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Nội dung chương được nén deflate và lưu ở bảng chapter_contents, tách khỏi
+ * các cột metadata của bảng chapters. Dữ liệu cũ trong cột chapters.content
+ * được job chuyển dần sang bảng mới; trong lúc chuyển, chương chưa chuyển vẫn
+ * được đọc từ cột cũ.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ChapterContentServiceImpl implements ChapterContentService {
+
+    private final ChapterContentRepository contentRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.chapter-content.migration-batch-size:200}")
+    private int migrationBatchSize;
+
+    // Cột chapters.content còn tồn tại (DB cũ) và còn dữ liệu chưa chuyển
+    private volatile boolean legacyColumnPresent;
+
+    // Cho phép chapters.content NULL để chương mới không còn ghi vào cột cũ
+    @PostConstruct
+    public void prepareLegacyColumn() {
+        List<String> nullable = jdbcTemplate.queryForList(
+                "SELECT IS_NULLABLE FROM information_schema.COLUMNS " +
+                        "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'chapters' AND COLUMN_NAME = 'content'",
+                String.class);
+        legacyColumnPresent = !nullable.isEmpty();
+        if (legacyColumnPresent && "NO".equals(nullable.get(0))) {
+            jdbcTemplate.execute("ALTER TABLE chapters MODIFY content LONGTEXT NULL");
+            log.info("Column chapters.content is now nullable");
+        }
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public String getContent(Long chapterId) {
+        return contentRepository.findById(chapterId)
+                .map(ChapterContentServiceImpl::decode)
+                .orElseGet(() -> readLegacyContent(chapterId));
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public Map<Long, String> getContents(Collection<Long> chapterIds) {
+        Map<Long, String> contents = new HashMap<>();
+        if (chapterIds.isEmpty()) {
+            return contents;
+        }
+
+        contentRepository.findAllById(chapterIds)
+                .forEach(content -> contents.put(content.getChapterId(), decode(content)));
+        for (Long chapterId : chapterIds) {
+            if (!contents.containsKey(chapterId)) {
+                contents.put(chapterId, readLegacyContent(chapterId));
+            }
+        }
+        return contents;
+    }
+
+    @Transactional
+    @Override
+    public void saveContent(Long chapterId, String content) {
+        byte[] raw = content.getBytes(StandardCharsets.UTF_8);
+        byte[] compressed = CompressionUtils.deflate(raw);
+
+        ChapterContent chapterContent = contentRepository.findById(chapterId)
+                .orElseGet(() -> ChapterContent.builder().chapterId(chapterId).build());
+        chapterContent.setEncoding(ChapterContent.Encoding.DEFLATE);
+        chapterContent.setData(compressed);
+        chapterContent.setOriginalSize(raw.length);
+        chapterContent.setStoredSize(compressed.length);
+        contentRepository.save(chapterContent);
+
+        // Bỏ bản cũ để job chuyển dữ liệu không ghi đè nội dung mới
+        if (legacyColumnPresent) {
+            jdbcTemplate.update("UPDATE chapters SET content = NULL WHERE id = ? AND content IS NOT NULL", chapterId);
+        }
+    }
+
+    @Transactional
+    @Override
+    public void insertContents(Map<Long, String> contents) {
+        if (contents.isEmpty()) {
+            return;
+        }
+
+        List<Object[]> inserts = new ArrayList<>(contents.size());
+        contents.forEach((chapterId, content) -> {
+            byte[] raw = content.getBytes(StandardCharsets.UTF_8);
+            byte[] compressed = CompressionUtils.deflate(raw);
+            inserts.add(new Object[] { chapterId, ChapterContent.Encoding.DEFLATE.name(), compressed,
+                    raw.length, compressed.length });
+        });
+        jdbcTemplate.batchUpdate("INSERT INTO chapter_contents " +
+                "(chapter_id, encoding, data, original_size, stored_size, updated_at) " +
+                "VALUES (?, ?, ?, ?, ?, NOW())", inserts);
+    }
+
+    @Transactional
+    @Override
+    public void deleteContent(Long chapterId) {
+        contentRepository.deleteById(chapterId);
+    }
+
+    @Transactional
+    @Override
+    public void deleteContentsByStoryIds(Collection<Long> storyIds) {
+        if (!storyIds.isEmpty()) {
+            contentRepository.deleteByStoryIds(storyIds);
+        }
+    }
+
+    // Chạy nền sau khi ứng dụng khởi động, mỗi batch 1 transaction riêng nên có
+    // thể dừng giữa chừng và chạy tiếp ở lần khởi động sau
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    @Override
+    public void migrateLegacyContent() {
+        if (!legacyColumnPresent) {
+            return;
+        }
+
+        long startedAt = System.currentTimeMillis();
+        long migrated = 0;
+        long originalBytes = 0;
+        long storedBytes = 0;
+
+        while (true) {
+            long[] batch = transactionTemplate.execute(status -> migrateBatch());
+            if (batch == null || batch[0] == 0) {
+                break;
+            }
+            migrated += batch[0];
+            originalBytes += batch[1];
+            storedBytes += batch[2];
+        }
+        legacyColumnPresent = false;
+
+        if (migrated > 0) {
+            log.info("Migrated {} chapter contents in {} ms: {} bytes -> {} bytes ({}%)",
+                    migrated, System.currentTimeMillis() - startedAt, originalBytes, storedBytes,
+                    originalBytes > 0 ? storedBytes * 100 / originalBytes : 0);
+            // InnoDB giữ các trang đã giải phóng trong file bảng cho tới khi bảng được dựng lại
+            log.info("Run OPTIMIZE TABLE chapters off-peak to return the space freed by the migration");
+        }
+
+        Object[] stats = contentRepository.getStorageStats().get(0);
+        log.info("Chapter content storage: {} chapters, {} bytes original, {} bytes stored",
+                stats[0], stats[1], stats[2]);
+    }
+
+    // Trả về [số chương, byte gốc, byte đã nén] của batch vừa chuyển
+    private long[] migrateBatch() {
+        List<Object[]> rows = jdbcTemplate.query(
+                "SELECT id, content FROM chapters WHERE content IS NOT NULL ORDER BY id LIMIT ?",
+                (rs, rowNum) -> new Object[] { rs.getLong(1), rs.getString(2) },
+                migrationBatchSize);
+        if (rows.isEmpty()) {
+            return new long[] { 0, 0, 0 };
+        }
+
+        long originalBytes = 0;
+        long storedBytes = 0;
+        List<Object[]> inserts = new ArrayList<>(rows.size());
+        List<Object[]> clears = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            byte[] raw = ((String) row[1]).getBytes(StandardCharsets.UTF_8);
+            byte[] compressed = CompressionUtils.deflate(raw);
+            inserts.add(new Object[] { row[0], ChapterContent.Encoding.DEFLATE.name(), compressed,
+                    raw.length, compressed.length });
+            clears.add(new Object[] { row[0] });
+            originalBytes += raw.length;
+            storedBytes += compressed.length;
+        }
+
+        // INSERT IGNORE: chương đã được lưu theo đường mới thì giữ bản mới
+        jdbcTemplate.batchUpdate("INSERT IGNORE INTO chapter_contents " +
+                "(chapter_id, encoding, data, original_size, stored_size, updated_at) " +
+                "VALUES (?, ?, ?, ?, ?, NOW())", inserts);
+        jdbcTemplate.batchUpdate("UPDATE chapters SET content = NULL WHERE id = ?", clears);
+
+        return new long[] { rows.size(), originalBytes, storedBytes };
+    }
+
+    private String readLegacyContent(Long chapterId) {
+        if (!legacyColumnPresent) {
+            return null;
+        }
+        List<String> legacy = jdbcTemplate.queryForList(
+                "SELECT content FROM chapters WHERE id = ?", String.class, chapterId);
+        return legacy.isEmpty() ? null : legacy.get(0);
+    }
+
+    private static String decode(ChapterContent content) {
+        return new String(CompressionUtils.inflate(content.getData(), content.getOriginalSize()), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,213 @@
+package com.example.truyen.service.impl;
+
+import com.example.truyen.dto.event.ChapterChangedEvent;
+import com.example.truyen.dto.event.StoryChangedEvent;
+import com.example.truyen.dto.request.ChapterImportItem;
+import com.example.truyen.dto.response.ChapterImportResponse;
+import com.example.truyen.exception.BadRequestException;
+import com.example.truyen.exception.ResourceNotFoundException;
+import com.example.truyen.repository.ChapterRepository;
+import com.example.truyen.repository.StoryRepository;
+import com.example.truyen.service.ChapterContentService;
+import com.example.truyen.service.ChapterImportService;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Import chương hàng loạt: kiểm tra số chương trong bộ nhớ, ghi bằng JDBC batch
+ * theo từng chunk (mỗi chunk 1 transaction) và cập nhật totalChapters 1 lần.
+ * Chương đã tồn tại được bỏ qua nên khi lỗi giữa chừng chỉ cần gửi lại đúng
+ * payload đó, các chunk đã commit sẽ không bị ghi trùng.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ChapterImportServiceImpl implements ChapterImportService {
+
+    private static final String INSERT_CHAPTER_SQL = "INSERT INTO chapters " +
+            "(story_id, chapter_number, title, views, is_locked, coins_price, created_at, updated_at) " +
+            "VALUES (?, ?, ?, 0, ?, ?, ?, ?)";
+
+    private final StoryRepository storyRepository;
+    private final ChapterRepository chapterRepository;
+    private final ChapterContentService chapterContentService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${app.chapter-import.chunk-size:200}")
+    private int chunkSize;
+
+    @Override
+    public ChapterImportResponse importChapters(Long storyId, List<ChapterImportItem> chapters) {
+        if (chapters == null || chapters.isEmpty()) {
+            throw new BadRequestException("Chapter list is empty");
+        }
+
+        // Payload đã nằm trọn trong bộ nhớ: kiểm tra hết trước khi ghi chunk đầu tiên
+        Set<Integer> numbers = new HashSet<>();
+        for (int i = 0; i < chapters.size(); i++) {
+            validate(chapters.get(i), i + 1, numbers);
+        }
+        return runImport(storyId, chapters.iterator());
+    }
+
+    @Override
+    public ChapterImportResponse importChaptersNdjson(Long storyId, InputStream body) {
+        try (MappingIterator<ChapterImportItem> items = objectMapper.readerFor(ChapterImportItem.class)
+                .readValues(body)) {
+            return runImport(storyId, items);
+        } catch (IOException e) {
+            throw new BadRequestException("Invalid NDJSON payload: " + e.getMessage());
+        }
+    }
+
+    private ChapterImportResponse runImport(Long storyId, Iterator<ChapterImportItem> items) {
+        long startedAt = System.currentTimeMillis();
+        if (!storyRepository.existsById(storyId)) {
+            throw new ResourceNotFoundException("Story", "id", storyId);
+        }
+
+        Set<Integer> existing = new HashSet<>(chapterRepository.findChapterNumbersByStoryId(storyId));
+        Set<Integer> seen = new HashSet<>();
+        List<ChapterImportItem> chunk = new ArrayList<>(chunkSize);
+        int imported = 0;
+        int skipped = 0;
+        int line = 0;
+
+        try {
+            while (hasNext(items, line + 1)) {
+                ChapterImportItem item = next(items, ++line);
+                validate(item, line, seen);
+                if (existing.contains(item.getChapterNumber())) {
+                    skipped++;
+                    continue;
+                }
+
+                chunk.add(item);
+                if (chunk.size() >= chunkSize) {
+                    imported += insertChunk(storyId, chunk);
+                    chunk.clear();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                imported += insertChunk(storyId, chunk);
+            }
+        } finally {
+            // Kể cả khi lỗi giữa chừng, các chunk đã commit vẫn phải được tính vào truyện
+            if (imported > 0) {
+                refreshTotalChapters(storyId);
+            }
+        }
+
+        int totalChapters = chapterRepository.countByStoryId(storyId).intValue();
+        long elapsed = System.currentTimeMillis() - startedAt;
+        log.info("Imported {} chapters into story {} ({} skipped) in {} ms", imported, storyId, skipped, elapsed);
+        return ChapterImportResponse.builder()
+                .storyId(storyId)
+                .imported(imported)
+                .skipped(skipped)
+                .totalChapters(totalChapters)
+                .elapsedMillis(elapsed)
+                .build();
+    }
+
+    // 1 transaction: batch insert chapters → lấy id theo số chương → batch insert nội dung
+    private int insertChunk(Long storyId, List<ChapterImportItem> chunk) {
+        Integer inserted = transactionTemplate.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            jdbcTemplate.batchUpdate(INSERT_CHAPTER_SQL, chunk, chunk.size(), (ps, item) -> {
+                boolean locked = Boolean.TRUE.equals(item.getIsLocked());
+                ps.setLong(1, storyId);
+                ps.setInt(2, item.getChapterNumber());
+                ps.setString(3, item.getTitle());
+                ps.setBoolean(4, locked);
+                ps.setInt(5, locked ? item.getCoinsPrice() : 0);
+                ps.setObject(6, now);
+                ps.setObject(7, now);
+            });
+
+            Map<Integer, String> contentByNumber = new HashMap<>();
+            chunk.forEach(item -> contentByNumber.put(item.getChapterNumber(), item.getContent()));
+
+            Map<Long, String> contentById = new HashMap<>();
+            for (Object[] row : chapterRepository.findIdsByStoryIdAndChapterNumbers(storyId,
+                    contentByNumber.keySet())) {
+                contentById.put((Long) row[1], contentByNumber.get((Integer) row[0]));
+            }
+            chapterContentService.insertContents(contentById);
+            // Snapshot tĩnh của các chương miễn phí được đẩy lên sau khi chunk commit
+            eventPublisher.publishEvent(ChapterChangedEvent.of(storyId, contentById.keySet()));
+            return chunk.size();
+        });
+        return inserted != null ? inserted : 0;
+    }
+
+    private void refreshTotalChapters(Long storyId) {
+        transactionTemplate.executeWithoutResult(status -> storyRepository.findById(storyId).ifPresent(story -> {
+            story.setTotalChapters(chapterRepository.countByStoryId(storyId).intValue());
+            storyRepository.save(story);
+        }));
+        eventPublisher.publishEvent(StoryChangedEvent.of(storyId));
+    }
+
+    private void validate(ChapterImportItem item, int line, Set<Integer> seen) {
+        if (item == null) {
+            throw new BadRequestException("Chapter #" + line + ": empty entry");
+        }
+        if (item.getChapterNumber() == null || item.getChapterNumber() <= 0) {
+            throw new BadRequestException("Chapter #" + line + ": chapterNumber must be > 0");
+        }
+        if (!seen.add(item.getChapterNumber())) {
+            throw new BadRequestException("Chapter #" + line + ": duplicate chapterNumber " + item.getChapterNumber());
+        }
+        if (item.getTitle() == null || item.getTitle().isBlank()) {
+            throw new BadRequestException("Chapter #" + line + ": title is required");
+        }
+        if (item.getTitle().length() > 500) {
+            throw new BadRequestException("Chapter #" + line + ": title is longer than 500 characters");
+        }
+        if (item.getContent() == null || item.getContent().isBlank()) {
+            throw new BadRequestException("Chapter #" + line + ": content is required");
+        }
+        if (Boolean.TRUE.equals(item.getIsLocked()) && (item.getCoinsPrice() == null || item.getCoinsPrice() <= 0)) {
+            throw new BadRequestException("Chapter #" + line + ": Chương VIP phải có giá xu > 0");
+        }
+    }
+
+    // MappingIterator ném RuntimeException khi 1 dòng NDJSON sai cú pháp
+    private boolean hasNext(Iterator<ChapterImportItem> items, int line) {
+        try {
+            return items.hasNext();
+        } catch (RuntimeException e) {
+            throw new BadRequestException("Chapter #" + line + ": invalid JSON (" + e.getMessage() + ")");
+        }
+    }
+
+    private ChapterImportItem next(Iterator<ChapterImportItem> items, int line) {
+        try {
+            return items.next();
+        } catch (RuntimeException e) {
+            throw new BadRequestException("Chapter #" + line + ": invalid JSON (" + e.getMessage() + ")");
+        }
+    }
+}
@@ -0,0 +1,388 @@
+package com.example.truyen.service.impl;
+
+import com.example.truyen.config.RedisKeyConstants;
+import com.example.truyen.dto.event.ChapterChangedEvent;
+import com.example.truyen.dto.projection.ChapterIndex;
+import com.example.truyen.dto.response.ChapterNavigationResponse;
+import com.example.truyen.exception.ResourceNotFoundException;
+import com.example.truyen.repository.ChapterRepository;
+import com.example.truyen.service.ChapterIndexService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Index chương theo truyện: mảng số chương tăng dần + id + cờ khóa (~13 byte/chương).
+ * L1 là Caffeine, L2 là Redis hash (mỗi chương 1 field) nên khi tạo/sửa/xóa chương chỉ
+ * cần HSET/HDEL đúng các chương đó sau commit, không phải build lại cả index.
+ * Index chưa có thì được build ở pool nền; trong lúc chờ, prev/next đọc thẳng 2 chương
+ * lân cận từ MySQL (dùng index story_id + chapter_number), không quét cả truyện trên request.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ChapterIndexServiceImpl implements ChapterIndexService, MessageListener {
+
+    private static final String BUILT_FIELD = "_built";
+
+    // Chỉ ghi index vừa build nếu không có lần sửa nào xen vào kể từ lúc đọc DB
+    private static final RedisScript<Long> BUILD_SCRIPT = new DefaultRedisScript<>("""
+            local current = redis.call('GET', KEYS[2]) or ''
+            if current ~= ARGV[1] then return 0 end
+            redis.call('DEL', KEYS[1])
+            for i = 3, #ARGV, 2 do
+                redis.call('HSET', KEYS[1], ARGV[i], ARGV[i + 1])
+            end
+            redis.call('EXPIRE', KEYS[1], ARGV[2])
+            return 1
+            """, Long.class);
+
+    // ARGV[1] = số chương cần ghi (cặp field/value), phần còn lại là chương cần xóa.
+    // Chỉ ghi đè khi updatedAt mới hơn, để 2 lần sửa commit gần nhau không ghi ngược thứ tự
+    private static final RedisScript<Long> PATCH_SCRIPT = new DefaultRedisScript<>("""
+            redis.call('INCR', KEYS[2])
+            redis.call('EXPIRE', KEYS[2], 86400)
+            if redis.call('EXISTS', KEYS[1]) == 0 then return 0 end
+            local sets = tonumber(ARGV[1])
+            for i = 0, sets - 1 do
+                local field, value = ARGV[2 + 2 * i], ARGV[3 + 2 * i]
+                local old = redis.call('HGET', KEYS[1], field)
+                if not old or tonumber(string.match(old, '([^:]+)$')) <= tonumber(string.match(value, '([^:]+)$')) then
+                    redis.call('HSET', KEYS[1], field, value)
+                end
+            end
+            for i = 2 + 2 * sets, #ARGV do
+                redis.call('HDEL', KEYS[1], ARGV[i])
+            end
+            return 1
+            """, Long.class);
+
+    private final ChapterRepository chapterRepository;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+
+    @Value("${app.cache.chapter-index.local-max-size:5000}")
+    private long localMaxSize;
+
+    @Value("${app.cache.chapter-index.redis-ttl:6h}")
+    private Duration redisTtl;
+
+    @Value("${app.cache.chapter-index.build-threads:2}")
+    private int buildThreads;
+
+    @Value("${app.cache.chapter-index.build-queue-capacity:100}")
+    private int buildQueueCapacity;
+
+    private Cache<Long, ChapterIndex> localCache;
+
+    // Truyện đang được build index, tránh build trùng khi nhiều request cùng miss
+    private final Set<Long> building = ConcurrentHashMap.newKeySet();
+
+    private ThreadPoolExecutor buildExecutor;
+
+    @PostConstruct
+    void init() {
+        localCache = Caffeine.newBuilder()
+                .maximumSize(localMaxSize)
+                .expireAfterAccess(Duration.ofMinutes(30))
+                .build();
+        listenerContainer.addMessageListener(this,
+                new ChannelTopic(RedisKeyConstants.CHAPTER_INDEX_INVALIDATION_CHANNEL));
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("chapter-index-");
+        threadFactory.setDaemon(true);
+        buildExecutor = new ThreadPoolExecutor(buildThreads, buildThreads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(buildQueueCapacity), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+        buildExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        buildExecutor.shutdownNow();
+    }
+
+    // L1 (in-process) → L2 (Redis hash); chưa có thì build nền và trả về null
+    @Override
+    public ChapterIndex getIndex(Long storyId) {
+        var local = localCache.getIfPresent(storyId);
+        if (local != null) {
+            return local;
+        }
+
+        try {
+            Map<Object, Object> entries = stringRedisTemplate.opsForHash()
+                    .entries(RedisKeyConstants.CHAPTER_INDEX_CACHE + storyId);
+            if (entries.containsKey(BUILT_FIELD)) {
+                var index = decode(storyId, entries);
+                localCache.put(storyId, index);
+                return index;
+            }
+        } catch (Exception e) {
+            log.warn("Failed to read chapter index of story {} from Redis: {}", storyId, e.getMessage());
+        }
+
+        scheduleBuild(storyId);
+        return null;
+    }
+
+    @Override
+    public ChapterNavigationResponse getNavigation(Long storyId, Integer chapterNumber) {
+        return findNavigation(storyId, chapterNumber).orElseThrow(() -> new ResourceNotFoundException(
+                "Chapter " + chapterNumber + " not found for story ID " + storyId));
+    }
+
+    @Override
+    public Optional<ChapterNavigationResponse> findNavigation(Long storyId, Integer chapterNumber) {
+        ChapterIndex index = getIndex(storyId);
+        if (index == null) {
+            return findNavigationFromDatabase(storyId, chapterNumber);
+        }
+
+        int position = index.positionOf(chapterNumber);
+        if (position < 0) {
+            return Optional.empty();
+        }
+
+        var builder = ChapterNavigationResponse.builder()
+                .storyId(storyId)
+                .chapterId(index.getChapterIds()[position])
+                .chapterNumber(chapterNumber)
+                .totalChapters(index.size());
+        if (position > 0) {
+            builder.prevChapterId(index.getChapterIds()[position - 1])
+                    .prevChapterNumber(index.getChapterNumbers()[position - 1])
+                    .prevLocked(index.getLocked()[position - 1]);
+        }
+        if (position < index.size() - 1) {
+            builder.nextChapterId(index.getChapterIds()[position + 1])
+                    .nextChapterNumber(index.getChapterNumbers()[position + 1])
+                    .nextLocked(index.getLocked()[position + 1]);
+        }
+        return Optional.of(builder.build());
+    }
+
+    /**
+     * Đọc lại đúng các chương vừa đổi rồi HSET/HDEL vào hash trên Redis (hash chưa có thì
+     * bỏ qua, lần build sau đọc thẳng DB); version tăng để lần build đang chạy dở không
+     * ghi đè bản cũ. L1 của mọi node được xóa và nạp lại từ hash ở lần đọc tiếp theo.
+     */
+    @Override
+    public void applyChapterChanges(Long storyId, Collection<Long> chapterIds) {
+        if (storyId == null || chapterIds == null || chapterIds.isEmpty()) {
+            return;
+        }
+
+        List<Object[]> rows = chapterRepository.findIndexRowsByStoryIdAndIds(storyId, chapterIds);
+        Set<Long> removed = new HashSet<>(chapterIds);
+        List<String> args = new ArrayList<>(1 + rows.size() * 2 + chapterIds.size());
+        args.add(String.valueOf(rows.size()));
+        for (Object[] row : rows) {
+            removed.remove((Long) row[1]);
+            args.add(String.valueOf(row[1]));
+            args.add(encode(row));
+        }
+        removed.forEach(id -> args.add(String.valueOf(id)));
+
+        try {
+            stringRedisTemplate.execute(PATCH_SCRIPT,
+                    List.of(RedisKeyConstants.CHAPTER_INDEX_CACHE + storyId,
+                            RedisKeyConstants.CHAPTER_INDEX_VERSION + storyId),
+                    args.toArray());
+        } catch (Exception e) {
+            // Không sửa được hash: xóa hẳn để lần đọc sau build lại thay vì giữ index sai
+            log.warn("Failed to patch chapter index of story {}: {}", storyId, e.getMessage());
+            evict(List.of(storyId));
+            return;
+        }
+        invalidateLocal(List.of(storyId));
+    }
+
+    // Xóa L2 rồi phát tín hiệu pub/sub để mọi node (kể cả node này) xóa L1
+    @Override
+    public void evict(Collection<Long> storyIds) {
+        if (storyIds == null || storyIds.isEmpty()) {
+            return;
+        }
+
+        localCache.invalidateAll(storyIds);
+        try {
+            storyIds.forEach(id -> stringRedisTemplate.opsForValue()
+                    .increment(RedisKeyConstants.CHAPTER_INDEX_VERSION + id));
+            stringRedisTemplate.delete(storyIds.stream()
+                    .map(id -> RedisKeyConstants.CHAPTER_INDEX_CACHE + id)
+                    .toList());
+            stringRedisTemplate.convertAndSend(RedisKeyConstants.CHAPTER_INDEX_INVALIDATION_CHANNEL,
+                    storyIds.stream().map(String::valueOf).collect(Collectors.joining(",")));
+        } catch (Exception e) {
+            log.error("Failed to invalidate chapter index for {}: {}", storyIds, e.getMessage());
+        }
+    }
+
+    // Tạo/sửa/xóa/import chương đều phát ChapterChangedEvent
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onChapterChanged(ChapterChangedEvent event) {
+        applyChapterChanges(event.getStoryId(), event.getChapterIds());
+    }
+
+    // Nhận tín hiệu xóa L1 từ các node khác qua Redis pub/sub
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            String body = new String(message.getBody(), StandardCharsets.UTF_8);
+            List<Long> storyIds = Arrays.stream(body.split(","))
+                    .map(String::trim)
+                    .filter(s -> !s.isEmpty())
+                    .map(Long::parseLong)
+                    .toList();
+            localCache.invalidateAll(storyIds);
+        } catch (Exception e) {
+            log.warn("Invalid chapter index invalidation message: {}", e.getMessage());
+        }
+    }
+
+    private void invalidateLocal(List<Long> storyIds) {
+        localCache.invalidateAll(storyIds);
+        try {
+            stringRedisTemplate.convertAndSend(RedisKeyConstants.CHAPTER_INDEX_INVALIDATION_CHANNEL,
+                    storyIds.stream().map(String::valueOf).collect(Collectors.joining(",")));
+        } catch (Exception e) {
+            log.warn("Failed to broadcast chapter index invalidation for {}: {}", storyIds, e.getMessage());
+        }
+    }
+
+    private void scheduleBuild(Long storyId) {
+        if (!building.add(storyId)) {
+            return;
+        }
+        try {
+            buildExecutor.execute(() -> {
+                try {
+                    build(storyId);
+                } catch (Exception e) {
+                    log.warn("Failed to build chapter index of story {}: {}", storyId, e.getMessage());
+                } finally {
+                    building.remove(storyId);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Pool đầy: request sau sẽ thử lại, trong lúc chờ prev/next vẫn đọc từ DB
+            building.remove(storyId);
+        }
+    }
+
+    private void build(Long storyId) {
+        String versionKey = RedisKeyConstants.CHAPTER_INDEX_VERSION + storyId;
+        String version = stringRedisTemplate.opsForValue().get(versionKey);
+
+        List<Object[]> rows = chapterRepository.findIndexRowsByStoryId(storyId);
+        List<String> args = new ArrayList<>(4 + rows.size() * 2);
+        args.add(version != null ? version : "");
+        args.add(String.valueOf(redisTtl.toSeconds()));
+        args.add(BUILT_FIELD);
+        args.add("1");
+        for (Object[] row : rows) {
+            args.add(String.valueOf(row[1]));
+            args.add(encode(row));
+        }
+
+        Long written = stringRedisTemplate.execute(BUILD_SCRIPT,
+                List.of(RedisKeyConstants.CHAPTER_INDEX_CACHE + storyId, versionKey), args.toArray());
+        if (Long.valueOf(1L).equals(written)) {
+            localCache.put(storyId, toIndex(storyId, rows));
+        }
+    }
+
+    // [chapterNumber, id, isLocked, updatedAt] → "chapterNumber:0|1:updatedAtMillis"
+    private String encode(Object[] row) {
+        long updatedAt = row[3] != null ? ((LocalDateTime) row[3]).toInstant(ZoneOffset.UTC).toEpochMilli() : 0L;
+        return row[0] + ":" + (Boolean.TRUE.equals(row[2]) ? 1 : 0) + ":" + updatedAt;
+    }
+
+    private ChapterIndex decode(Long storyId, Map<Object, Object> entries) {
+        List<Object[]> rows = new ArrayList<>(entries.size());
+        entries.forEach((field, value) -> {
+            if (BUILT_FIELD.equals(field)) {
+                return;
+            }
+            String[] parts = value.toString().split(":");
+            rows.add(new Object[] { Integer.parseInt(parts[0]), Long.parseLong(field.toString()), "1".equals(parts[1]) });
+        });
+        rows.sort((a, b) -> Integer.compare((Integer) a[0], (Integer) b[0]));
+        return toIndex(storyId, rows);
+    }
+
+    // rows: [chapterNumber, id, isLocked, ...] đã sắp xếp theo số chương
+    private ChapterIndex toIndex(Long storyId, List<Object[]> rows) {
+        int[] numbers = new int[rows.size()];
+        long[] ids = new long[rows.size()];
+        boolean[] locked = new boolean[rows.size()];
+        for (int i = 0; i < rows.size(); i++) {
+            Object[] row = rows.get(i);
+            numbers[i] = (Integer) row[0];
+            ids[i] = (Long) row[1];
+            locked[i] = Boolean.TRUE.equals(row[2]);
+        }
+        return new ChapterIndex(storyId, numbers, ids, locked);
+    }
+
+    private Optional<ChapterNavigationResponse> findNavigationFromDatabase(Long storyId, Integer chapterNumber) {
+        List<Object[]> current = chapterRepository.findNavigationRowsFrom(storyId, chapterNumber, PageRequest.of(0, 2));
+        if (current.isEmpty() || !chapterNumber.equals(current.get(0)[0])) {
+            return Optional.empty();
+        }
+
+        var builder = ChapterNavigationResponse.builder()
+                .storyId(storyId)
+                .chapterId((Long) current.get(0)[1])
+                .chapterNumber(chapterNumber)
+                .totalChapters(chapterRepository.countByStoryId(storyId).intValue());
+        List<Object[]> previous = chapterRepository.findNavigationRowsBefore(storyId, chapterNumber,
+                PageRequest.of(0, 1));
+        if (!previous.isEmpty()) {
+            builder.prevChapterId((Long) previous.get(0)[1])
+                    .prevChapterNumber((Integer) previous.get(0)[0])
+                    .prevLocked(Boolean.TRUE.equals(previous.get(0)[2]));
+        }
+        if (current.size() > 1) {
+            builder.nextChapterId((Long) current.get(1)[1])
+                    .nextChapterNumber((Integer) current.get(1)[0])
+                    .nextLocked(Boolean.TRUE.equals(current.get(1)[2]));
+        }
+        return Optional.of(builder.build());
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.truyen.service.impl;
+
+import com.example.truyen.dto.projection.ChapterIndex;
+import com.example.truyen.dto.projection.ChapterVersion;
+import com.example.truyen.repository.ChapterRepository;
+import com.example.truyen.service.ChapterContentCacheService;
+import com.example.truyen.service.ChapterContentService;
+import com.example.truyen.service.ChapterIndexService;
+import com.example.truyen.service.ChapterPrefetchService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Người đọc gần như luôn mở chương N+1 ngay sau chương N, nên khi chương N được
+ * đọc thì nạp trước nội dung N+1..N+depth vào cache nội dung chương.
+ * Dùng pool riêng, nhỏ, hàng đợi có giới hạn và thread ưu tiên thấp: khi quá tải
+ * thì bỏ qua prefetch chứ không tranh tài nguyên với request chính.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ChapterPrefetchServiceImpl implements ChapterPrefetchService {
+
+    private final ChapterRepository chapterRepository;
+    private final ChapterContentService chapterContentService;
+    private final ChapterContentCacheService chapterContentCacheService;
+    private final ChapterIndexService chapterIndexService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.chapter-prefetch.depth:2}")
+    private int depth;
+
+    @Value("${app.chapter-prefetch.threads:2}")
+    private int threads;
+
+    @Value("${app.chapter-prefetch.queue-capacity:200}")
+    private int queueCapacity;
+
+    // Chương đang được prefetch, tránh nạp trùng khi nhiều người đọc cùng lúc
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+
+    // Chương đã được prefetch nhưng chưa có ai đọc; hết hạn = prefetch thừa
+    private Cache<Long, Boolean> prefetched;
+
+    private ThreadPoolExecutor executor;
+    private Counter loadedCounter;
+    private Counter usedCounter;
+    private Counter droppedCounter;
+
+    @PostConstruct
+    void init() {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("chapter-prefetch-");
+        threadFactory.setDaemon(true);
+        threadFactory.setThreadPriority(Thread.MIN_PRIORITY);
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+
+        prefetched = Caffeine.newBuilder()
+                .maximumSize(100_000)
+                .expireAfterWrite(Duration.ofMinutes(30))
+                .build();
+
+        // Tỉ lệ prefetch trúng = used / loaded
+        loadedCounter = Counter.builder("chapter.prefetch").tag("result", "loaded").register(meterRegistry);
+        usedCounter = Counter.builder("chapter.prefetch").tag("result", "used").register(meterRegistry);
+        droppedCounter = Counter.builder("chapter.prefetch").tag("result", "dropped").register(meterRegistry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // Chương tiếp theo lấy từ index chương nên không bị lệch khi số chương bị nhảy cóc
+    @Override
+    public void prefetchAfter(Long storyId, Integer chapterNumber) {
+        ChapterIndex index = chapterIndexService.getIndex(storyId);
+        // Index đang được build nền: bỏ qua lần prefetch này
+        int position = index != null ? index.positionOf(chapterNumber) : -1;
+        if (position < 0) {
+            return;
+        }
+
+        for (int next = position + 1; next <= position + depth && next < index.size(); next++) {
+            long chapterId = index.getChapterIds()[next];
+            if (!inFlight.add(chapterId)) {
+                continue;
+            }
+            try {
+                executor.execute(() -> {
+                    try {
+                        warmUp(chapterId);
+                    } finally {
+                        inFlight.remove(chapterId);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                inFlight.remove(chapterId);
+                droppedCounter.increment();
+            }
+        }
+    }
+
+    @Override
+    public void recordRead(Long chapterId) {
+        if (prefetched.asMap().remove(chapterId) != null) {
+            usedCounter.increment();
+        }
+    }
+
+    private void warmUp(Long chapterId) {
+        try {
+            ChapterVersion version = chapterRepository.findVersionById(chapterId).orElse(null);
+            if (version == null) {
+                return;
+            }
+
+            // Cùng version với ChapterServiceImpl (updated_at, hoặc created_at nếu chưa sửa)
+            long contentVersion = version.getChapterUpdatedAt() != null
+                    ? version.getChapterUpdatedAt().toInstant(ZoneOffset.UTC).toEpochMilli()
+                    : 0L;
+            if (chapterContentCacheService.isCachedLocally(version.getId(), contentVersion)) {
+                return;
+            }
+
+            chapterContentCacheService.getBytesOrLoad(version.getId(), contentVersion,
+                    () -> chapterContentService.getContent(version.getId()));
+            prefetched.put(version.getId(), Boolean.TRUE);
+            loadedCounter.increment();
+        } catch (Exception e) {
+            log.warn("Failed to prefetch chapter {}: {}", chapterId, e.getMessage());
+        }
+    }
+}
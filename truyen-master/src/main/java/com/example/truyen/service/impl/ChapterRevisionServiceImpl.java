@@ -0,0 +1,235 @@
+package com.example.truyen.service.impl;
+
+import com.example.truyen.dto.response.ChapterRevisionResponse;
+import com.example.truyen.entity.ChapterRevision;
+import com.example.truyen.exception.ResourceNotFoundException;
+import com.example.truyen.repository.ChapterRevisionRepository;
+import com.example.truyen.service.ChapterRevisionService;
+import com.example.truyen.util.CompressionUtils;
+import com.github.difflib.DiffUtils;
+import com.github.difflib.patch.AbstractDelta;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * Lịch sử nội dung chương. Phiên bản 1 và mỗi snapshot-interval phiên bản lưu toàn văn
+ * (FULL), các phiên bản còn lại lưu diff theo dòng so với phiên bản liền trước (DELTA),
+ * tất cả đều nén deflate. Dựng lại 1 phiên bản = bản FULL gần nhất + tối đa
+ * (snapshot-interval - 1) diff.
+ */
+@Service
+@RequiredArgsConstructor
+public class ChapterRevisionServiceImpl implements ChapterRevisionService {
+
+    private final ChapterRevisionRepository revisionRepository;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.chapter-revision.snapshot-interval:10}")
+    private int snapshotInterval;
+
+    // Caller phải giữ khóa row chương (ChapterRepository.findByIdForUpdate) để số phiên bản không bị trùng
+    @Transactional
+    @Override
+    public void recordRevision(Long chapterId, String previousContent, String newContent) {
+        if (Objects.equals(previousContent, newContent)) {
+            return;
+        }
+
+        int latest = revisionRepository.findLatestRevisionNumber(chapterId).orElse(0);
+        if (latest == 0 && previousContent != null) {
+            // Chương có từ trước khi có lịch sử: lưu bản hiện tại làm phiên bản 1
+            saveRevision(chapterId, 1, previousContent, null, null);
+            latest = 1;
+        }
+
+        int revisionNumber = latest + 1;
+        boolean snapshot = previousContent == null || isSnapshot(revisionNumber, snapshotInterval);
+        saveRevision(chapterId, revisionNumber, newContent, snapshot ? null : previousContent, currentUsername());
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public List<ChapterRevisionResponse> getRevisions(Long chapterId) {
+        return revisionRepository.findSummariesByChapterId(chapterId).stream()
+                .map(row -> ChapterRevisionResponse.builder()
+                        .chapterId(chapterId)
+                        .revisionNumber((Integer) row[0])
+                        .type(((ChapterRevision.Type) row[1]).name())
+                        .contentSize((Integer) row[2])
+                        .storedSize((Integer) row[3])
+                        .createdBy((String) row[4])
+                        .createdAt((LocalDateTime) row[5])
+                        .build())
+                .collect(Collectors.toList());
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public ChapterRevisionResponse getRevision(Long chapterId, Integer revisionNumber) {
+        int base = revisionRepository.findBaseRevisionNumber(chapterId, revisionNumber)
+                .orElseThrow(() -> new ResourceNotFoundException(
+                        "Revision " + revisionNumber + " not found for chapter ID " + chapterId));
+        List<ChapterRevision> chain = revisionRepository
+                .findByChapterIdAndRevisionNumberBetweenOrderByRevisionNumberAsc(chapterId, base, revisionNumber);
+        ChapterRevision target = chain.get(chain.size() - 1);
+        if (!target.getRevisionNumber().equals(revisionNumber)) {
+            throw new ResourceNotFoundException(
+                    "Revision " + revisionNumber + " not found for chapter ID " + chapterId);
+        }
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String content = reconstruct(chain);
+        sample.stop(meterRegistry.timer("chapter.revision.reconstruct"));
+
+        return ChapterRevisionResponse.builder()
+                .chapterId(chapterId)
+                .revisionNumber(revisionNumber)
+                .type(target.getType().name())
+                .contentSize(target.getContentSize())
+                .storedSize(target.getStoredSize())
+                .createdBy(target.getCreatedBy())
+                .createdAt(target.getCreatedAt())
+                .content(content)
+                .build();
+    }
+
+    @Transactional
+    @Override
+    public void deleteRevisions(Long chapterId) {
+        revisionRepository.deleteByChapterId(chapterId);
+    }
+
+    @Transactional
+    @Override
+    public void deleteRevisionsByStoryIds(Collection<Long> storyIds) {
+        if (!storyIds.isEmpty()) {
+            revisionRepository.deleteByStoryIds(storyIds);
+        }
+    }
+
+    // Phiên bản 1, 1 + interval, 1 + 2*interval... lưu FULL (interval = 1: mọi phiên bản đều FULL)
+    static boolean isSnapshot(int revisionNumber, int snapshotInterval) {
+        return (revisionNumber - 1) % snapshotInterval == 0;
+    }
+
+    // previousContent == null → lưu FULL; ngược lại lưu DELTA (trừ khi diff còn lớn hơn bản FULL)
+    private void saveRevision(Long chapterId, int revisionNumber, String content, String previousContent,
+            String createdBy) {
+        byte[] raw = content.getBytes(StandardCharsets.UTF_8);
+        byte[] full = CompressionUtils.deflate(raw);
+        ChapterRevision.Type type = ChapterRevision.Type.FULL;
+        byte[] data = full;
+        if (previousContent != null) {
+            byte[] delta = CompressionUtils.deflate(encodeDelta(previousContent, content)
+                    .getBytes(StandardCharsets.UTF_8));
+            if (delta.length < full.length) {
+                type = ChapterRevision.Type.DELTA;
+                data = delta;
+            }
+        }
+
+        revisionRepository.save(ChapterRevision.builder()
+                .chapterId(chapterId)
+                .revisionNumber(revisionNumber)
+                .type(type)
+                .data(data)
+                .contentSize(raw.length)
+                .storedSize(data.length)
+                .createdBy(createdBy)
+                .build());
+        DistributionSummary.builder("chapter.revision.stored.bytes")
+                .tag("type", type.name())
+                .baseUnit("bytes")
+                .register(meterRegistry)
+                .record(data.length);
+    }
+
+    // chain: bản FULL đầu tiên + các DELTA liên tiếp
+    static String reconstructFrom(List<ChapterRevision.Type> types, List<byte[]> data, List<Integer> sizes) {
+        String content = null;
+        for (int i = 0; i < types.size(); i++) {
+            if (types.get(i) == ChapterRevision.Type.FULL) {
+                content = new String(CompressionUtils.inflate(data.get(i), sizes.get(i)), StandardCharsets.UTF_8);
+            } else {
+                content = applyDelta(content,
+                        new String(CompressionUtils.inflate(data.get(i)), StandardCharsets.UTF_8));
+            }
+        }
+        return content;
+    }
+
+    private String reconstruct(List<ChapterRevision> chain) {
+        return reconstructFrom(
+                chain.stream().map(ChapterRevision::getType).toList(),
+                chain.stream().map(ChapterRevision::getData).toList(),
+                chain.stream().map(ChapterRevision::getContentSize).toList());
+    }
+
+    /**
+     * Diff theo dòng, mỗi thay đổi ghi thành: "vị trí số-dòng-bị-thay số-dòng-mới"
+     * rồi tới các dòng mới. Dòng không chứa '\n' nên định dạng không bị nhập nhằng.
+     */
+    static String encodeDelta(String previous, String current) {
+        List<String> source = splitLines(previous);
+        List<String> target = splitLines(current);
+        StringBuilder out = new StringBuilder();
+        for (AbstractDelta<String> delta : DiffUtils.diff(source, target).getDeltas()) {
+            List<String> lines = delta.getTarget().getLines();
+            out.append(delta.getSource().getPosition()).append(' ')
+                    .append(delta.getSource().size()).append(' ')
+                    .append(lines.size()).append('\n');
+            for (String line : lines) {
+                out.append(line).append('\n');
+            }
+        }
+        return out.toString();
+    }
+
+    static String applyDelta(String previous, String encodedDelta) {
+        List<String> lines = new ArrayList<>(splitLines(previous));
+        List<String> encoded = splitLines(encodedDelta);
+
+        // Đọc hết các thay đổi rồi áp dụng từ cuối lên để vị trí phía trước không bị lệch
+        List<int[]> headers = new ArrayList<>();
+        List<List<String>> replacements = new ArrayList<>();
+        int i = 0;
+        while (i < encoded.size() && !encoded.get(i).isEmpty()) {
+            int[] header = Arrays.stream(encoded.get(i).split(" ")).mapToInt(Integer::parseInt).toArray();
+            headers.add(header);
+            replacements.add(encoded.subList(i + 1, i + 1 + header[2]));
+            i += 1 + header[2];
+        }
+        for (int d = headers.size() - 1; d >= 0; d--) {
+            int[] header = headers.get(d);
+            List<String> window = lines.subList(header[0], header[0] + header[1]);
+            window.clear();
+            window.addAll(replacements.get(d));
+        }
+        return String.join("\n", lines);
+    }
+
+    private static List<String> splitLines(String text) {
+        return Arrays.asList(text.split("\n", -1));
+    }
+
+    private String currentUsername() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        return auth != null ? auth.getName() : null;
+    }
+}
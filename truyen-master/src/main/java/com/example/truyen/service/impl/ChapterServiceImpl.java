@@ -1,7 +1,14 @@
 package com.example.truyen.service.impl;
 
+import com.example.truyen.dto.event.ChapterChangedEvent;
+import com.example.truyen.dto.event.StoryChangedEvent;
+import com.example.truyen.dto.projection.ChapterContentStream;
+import com.example.truyen.dto.projection.ChapterTocItem;
+import com.example.truyen.dto.projection.ChapterVersion;
 import com.example.truyen.dto.request.ChapterRequest;
 import com.example.truyen.dto.response.ChapterResponse;
+import com.example.truyen.dto.response.ChapterTocPageResponse;
+import com.example.truyen.dto.response.ChapterTocResponse;
 import com.example.truyen.entity.Chapter;
 import com.example.truyen.entity.Story;
 import com.example.truyen.exception.BadRequestException;
@@ -9,12 +16,26 @@ import com.example.truyen.exception.ResourceNotFoundException;
 import com.example.truyen.repository.ChapterRepository;
 import com.example.truyen.repository.StoryRepository;
 import com.example.truyen.service.ChapterAccessService;
+import com.example.truyen.service.ChapterContentCacheService;
+import com.example.truyen.service.ChapterContentService;
+import com.example.truyen.service.ChapterIndexService;
+import com.example.truyen.service.ChapterPrefetchService;
+import com.example.truyen.service.ChapterRevisionService;
+import com.example.truyen.service.ChapterSnapshotService;
 import com.example.truyen.service.ChapterService;
+import com.example.truyen.service.ChapterViewService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.ByteArrayInputStream;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
@@ -24,6 +45,16 @@ public class ChapterServiceImpl implements ChapterService {
     private final ChapterRepository chapterRepository;
     private final StoryRepository storyRepository;
     private final ChapterAccessService chapterAccessService;
+    private final ChapterViewService chapterViewService;
+    private final ChapterContentService chapterContentService;
+    private final ChapterContentCacheService chapterContentCacheService;
+    private final ChapterPrefetchService chapterPrefetchService;
+    private final ChapterIndexService chapterIndexService;
+    private final ChapterSnapshotService chapterSnapshotService;
+    private final ChapterRevisionService chapterRevisionService;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private static final int MAX_TOC_PAGE_SIZE = 500;
 
     // Lấy danh sách chương của truyện
     @Transactional(readOnly = true)
@@ -32,38 +63,129 @@ public class ChapterServiceImpl implements ChapterService {
         storyRepository.findById(storyId)
                 .orElseThrow(() -> new ResourceNotFoundException("Story", "id", storyId));
 
-        return chapterRepository.findByStoryIdOrderByChapterNumberAsc(storyId).stream()
-                .map(this::convertToResponse)
+        List<Chapter> chapters = chapterRepository.findByStoryIdOrderByChapterNumberAsc(storyId);
+        Set<Long> accessibleIds = chapterAccessService.resolveAccessibleChapterIds(chapters.stream()
+                .filter(Chapter::getIsLocked)
+                .map(Chapter::getId)
+                .collect(Collectors.toList()));
+        Map<Long, String> contents = chapterContentService.getContents(chapters.stream()
+                .filter(chapter -> !chapter.getIsLocked() || accessibleIds.contains(chapter.getId()))
+                .map(Chapter::getId)
+                .collect(Collectors.toList()));
+
+        return chapters.stream()
+                .map(chapter -> convertToResponse(chapter,
+                        !chapter.getIsLocked() || accessibleIds.contains(chapter.getId()),
+                        contents.get(chapter.getId())))
                 .collect(Collectors.toList());
     }
 
-    // Lấy chi tiết chương và tăng lượt xem
-    @Transactional
+    // Mục lục chương: chỉ đọc metadata + 1 query quyền đọc cho cả trang
+    @Transactional(readOnly = true)
+    @Override
+    public ChapterTocPageResponse getChapterToc(Long storyId, Integer afterNumber, int size) {
+        if (!storyRepository.existsById(storyId)) {
+            throw new ResourceNotFoundException("Story", "id", storyId);
+        }
+        if (size < 1 || size > MAX_TOC_PAGE_SIZE) {
+            throw new BadRequestException("Page size must be between 1 and " + MAX_TOC_PAGE_SIZE);
+        }
+
+        // Lấy dư 1 dòng để biết còn trang sau hay không mà không cần COUNT
+        List<ChapterTocItem> rows = chapterRepository.findTocByStoryId(
+                storyId, afterNumber != null ? afterNumber : 0, PageRequest.of(0, size + 1));
+        boolean hasMore = rows.size() > size;
+        List<ChapterTocItem> items = hasMore ? rows.subList(0, size) : rows;
+
+        Set<Long> accessibleIds = chapterAccessService.resolveAccessibleChapterIds(items.stream()
+                .filter(ChapterTocItem::getIsLocked)
+                .map(ChapterTocItem::getId)
+                .collect(Collectors.toList()));
+
+        List<ChapterTocResponse> responses = items.stream()
+                .map(item -> ChapterTocResponse.builder()
+                        .id(item.getId())
+                        .chapterNumber(item.getChapterNumber())
+                        .title(item.getTitle())
+                        .isLocked(item.getIsLocked())
+                        .coinsPrice(item.getCoinsPrice())
+                        .hasAccess(!item.getIsLocked() || accessibleIds.contains(item.getId()))
+                        .createdAt(item.getCreatedAt())
+                        .snapshotUrl(item.getIsLocked() ? null
+                                : chapterSnapshotService.getSnapshotUrl(item.getId(), item.getSnapshotVersion()))
+                        .build())
+                .collect(Collectors.toList());
+
+        return ChapterTocPageResponse.builder()
+                .items(responses)
+                .nextCursor(hasMore ? items.get(items.size() - 1).getChapterNumber() : null)
+                .hasMore(hasMore)
+                .build();
+    }
+
+    // Lấy chi tiết chương và ghi nhận lượt xem (read-only, lượt xem qua bộ đếm đệm)
+    @Transactional(readOnly = true)
     @Override
     public ChapterResponse getChapterById(Long id) {
         Chapter chapter = chapterRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Chapter", "id", id));
 
-        chapter.setViews(chapter.getViews() + 1);
-        chapterRepository.save(chapter);
-
+        chapterViewService.recordView(chapter.getId());
+        chapterPrefetchService.recordRead(chapter.getId());
+        chapterPrefetchService.prefetchAfter(chapter.getStory().getId(), chapter.getChapterNumber());
         return convertToResponse(chapter);
     }
 
-    // Lấy chi tiết chương theo số thứ tự và tăng lượt xem
-    @Transactional
+    // Lấy chi tiết chương theo số thứ tự và ghi nhận lượt xem (read-only)
+    @Transactional(readOnly = true)
     @Override
     public ChapterResponse getChapterByStoryAndNumber(Long storyId, Integer chapterNumber) {
         Chapter chapter = chapterRepository.findByStoryIdAndChapterNumber(storyId, chapterNumber)
                 .orElseThrow(() -> new ResourceNotFoundException(
                         "Chapter " + chapterNumber + " not found for story ID " + storyId));
 
-        chapter.setViews(chapter.getViews() + 1);
-        chapterRepository.save(chapter);
-
+        chapterViewService.recordView(chapter.getId());
+        chapterPrefetchService.recordRead(chapter.getId());
+        chapterPrefetchService.prefetchAfter(chapter.getStory().getId(), chapter.getChapterNumber());
         return convertToResponse(chapter);
     }
 
+    // Khôi phục nội dung chương về 1 phiên bản cũ (tạo thành phiên bản mới nhất)
+    @Transactional
+    @Override
+    public ChapterResponse restoreRevision(Long id, Integer revisionNumber) {
+        String content = chapterRevisionService.getRevision(id, revisionNumber).getContent();
+        ChapterRequest request = ChapterRequest.builder()
+                .content(content)
+                .isLocked(null)
+                .coinsPrice(null)
+                .build();
+        return updateChapter(id, request);
+    }
+
+    // Nội dung chương cho endpoint streaming: chỉ đọc metadata + nội dung từ cache, không dựng DTO
+    @Transactional(readOnly = true)
+    @Override
+    public ChapterContentStream openChapterContent(Long id, boolean countView) {
+        ChapterVersion version = chapterRepository.findVersionById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Chapter", "id", id));
+        if (version.getIsLocked() && !chapterAccessService.hasLockedChapterAccess(id)) {
+            throw new BadRequestException("This chapter is locked, please unlock it first");
+        }
+
+        // Đi qua cùng cache nội dung với endpoint chi tiết (key id + version), miss mới đọc DB.
+        // Stream đọc thẳng mảng UTF-8 dùng chung trong cache L1, request không copy nội dung
+        byte[] content = chapterContentCacheService.getBytesOrLoad(id,
+                toEpochMillis(version.getChapterUpdatedAt()), () -> chapterContentService.getContent(id));
+        if (content == null) {
+            throw new ResourceNotFoundException("Chapter content", "id", id);
+        }
+        if (countView) {
+            chapterViewService.recordView(id);
+        }
+        return new ChapterContentStream(id, content.length, () -> new ByteArrayInputStream(content));
+    }
+
     // Tạo chương mới và cập nhật tổng số chương của truyện
     @Transactional
     @Override
@@ -84,17 +206,19 @@ public class ChapterServiceImpl implements ChapterService {
                 .story(story)
                 .chapterNumber(request.getChapterNumber())
                 .title(request.getTitle())
-                .content(request.getContent())
                 .views(0)
                 .isLocked(locked)
                 .coinsPrice(locked ? price : 0)
                 .build();
 
         Chapter savedChapter = chapterRepository.save(chapter);
+        chapterContentService.saveContent(savedChapter.getId(), request.getContent());
 
         Long totalChapters = chapterRepository.countByStoryId(request.getStoryId());
         story.setTotalChapters(totalChapters.intValue());
         storyRepository.save(story);
+        eventPublisher.publishEvent(StoryChangedEvent.of(story.getId()));
+        eventPublisher.publishEvent(ChapterChangedEvent.of(story.getId(), savedChapter.getId()));
 
         return convertToResponse(savedChapter);
     }
@@ -103,8 +227,9 @@ public class ChapterServiceImpl implements ChapterService {
     @Transactional
     @Override
     public ChapterResponse updateChapter(Long id, ChapterRequest request) {
-        Chapter chapter = chapterRepository.findById(id)
+        Chapter chapter = chapterRepository.findByIdForUpdate(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Chapter", "id", id));
+        long previousVersion = contentVersion(chapter);
 
         if (request.getChapterNumber() != null && !chapter.getChapterNumber().equals(request.getChapterNumber())) {
             if (chapterRepository.existsByStoryIdAndChapterNumber(
@@ -116,8 +241,13 @@ public class ChapterServiceImpl implements ChapterService {
 
         if (request.getTitle() != null)
             chapter.setTitle(request.getTitle());
-        if (request.getContent() != null)
-            chapter.setContent(request.getContent());
+        if (request.getContent() != null) {
+            chapterRevisionService.recordRevision(chapter.getId(),
+                    chapterContentService.getContent(chapter.getId()), request.getContent());
+            chapterContentService.saveContent(chapter.getId(), request.getContent());
+            // Nội dung ở bảng riêng nên phải tự đánh dấu chương đã sửa (ETag dựa vào updated_at)
+            chapter.setUpdatedAt(LocalDateTime.now());
+        }
 
         // Cập nhật trạng thái VIP
         if (request.getIsLocked() != null) {
@@ -136,7 +266,14 @@ public class ChapterServiceImpl implements ChapterService {
             chapter.setCoinsPrice(request.getCoinsPrice());
         }
 
-        return convertToResponse(chapterRepository.save(chapter));
+        // Snapshot tĩnh cũ không còn đúng: client đọc qua API cho tới khi snapshot mới được đẩy lên
+        chapter.setSnapshotVersion(null);
+
+        Chapter savedChapter = chapterRepository.save(chapter);
+        chapterContentCacheService.evict(id, previousVersion);
+        eventPublisher.publishEvent(StoryChangedEvent.of(savedChapter.getStory().getId()));
+        eventPublisher.publishEvent(ChapterChangedEvent.of(savedChapter.getStory().getId(), id));
+        return convertToResponse(savedChapter);
     }
 
     // Xóa chương và cập nhật tổng số chương của truyện
@@ -147,6 +284,9 @@ public class ChapterServiceImpl implements ChapterService {
                 .orElseThrow(() -> new ResourceNotFoundException("Chapter", "id", id));
 
         Long storyId = chapter.getStory().getId();
+        chapterContentService.deleteContent(id);
+        chapterRevisionService.deleteRevisions(id);
+        chapterContentCacheService.evict(id, contentVersion(chapter));
         chapterRepository.delete(chapter);
 
         Long totalChapters = chapterRepository.countByStoryId(storyId);
@@ -154,23 +294,97 @@ public class ChapterServiceImpl implements ChapterService {
             story.setTotalChapters(totalChapters.intValue());
             storyRepository.save(story);
         });
+        eventPublisher.publishEvent(StoryChangedEvent.of(storyId));
+        eventPublisher.publishEvent(ChapterChangedEvent.of(storyId, id));
+    }
+
+    // ETag của chương: thời điểm sửa chương + thời điểm sửa truyện (storyTitle)
+    // + biến thể quyền đọc (content bị ẩn khi chưa mở khóa)
+    @Transactional(readOnly = true)
+    @Override
+    public String getChapterETag(Long id) {
+        ChapterVersion version = chapterRepository.findVersionById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Chapter", "id", id));
+        return buildChapterETag(version);
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public String getChapterETag(Long storyId, Integer chapterNumber) {
+        ChapterVersion version = chapterRepository.findVersionByStoryIdAndChapterNumber(storyId, chapterNumber)
+                .orElseThrow(() -> new ResourceNotFoundException(
+                        "Chapter " + chapterNumber + " not found for story ID " + storyId));
+        return buildChapterETag(version);
+    }
+
+    // ETag danh sách chương: số chương + lần sửa gần nhất + truyện + quyền đọc của user
+    @Transactional(readOnly = true)
+    @Override
+    public String getChapterListETag(Long storyId) {
+        var storyUpdatedAt = storyRepository.findById(storyId)
+                .orElseThrow(() -> new ResourceNotFoundException("Story", "id", storyId))
+                .getUpdatedAt();
+        Object[] row = chapterRepository.findListVersionByStoryId(storyId).get(0);
+
+        return "\"l" + storyId + "-" + row[0] + "-" + toEpochMillis((LocalDateTime) row[1])
+                + "-" + toEpochMillis(storyUpdatedAt)
+                + "-" + Integer.toHexString(chapterAccessService.getAccessFingerprint(storyId).hashCode()) + "\"";
+    }
+
+    private String buildChapterETag(ChapterVersion version) {
+        boolean hasAccess = !version.getIsLocked() || chapterAccessService.hasLockedChapterAccess(version.getId());
+        return "\"c" + version.getId() + "-" + toEpochMillis(version.getChapterUpdatedAt())
+                + "-" + toEpochMillis(version.getStoryUpdatedAt())
+                + (hasAccess ? "-a" : "-n") + "\"";
+    }
+
+    // Version nội dung dùng làm key cache: lần sửa cuối của chương
+    private long contentVersion(Chapter chapter) {
+        return toEpochMillis(chapter.getUpdatedAt() != null ? chapter.getUpdatedAt() : chapter.getCreatedAt());
+    }
+
+    private long toEpochMillis(LocalDateTime time) {
+        return time != null ? time.toInstant(ZoneOffset.UTC).toEpochMilli() : 0L;
     }
 
     // Chuyển đổi từ entity sang DTO response
     private ChapterResponse convertToResponse(Chapter chapter) {
-        boolean hasAccess = chapterAccessService.hasAccess(chapter.getId());
+        boolean hasAccess = !chapter.getIsLocked() || chapterAccessService.hasLockedChapterAccess(chapter.getId());
+        String content = !chapter.getIsLocked() || hasAccess
+                ? chapterContentCacheService.getOrLoad(chapter.getId(), contentVersion(chapter),
+                        () -> chapterContentService.getContent(chapter.getId()))
+                : null;
+        ChapterResponse response = convertToResponse(chapter, hasAccess, content);
+        applyNavigation(response);
+        return response;
+    }
+
+    // Chương trước/sau lấy từ index (index chưa build xong thì đọc 2 chương lân cận từ DB)
+    private void applyNavigation(ChapterResponse response) {
+        chapterIndexService.findNavigation(response.getStoryId(), response.getChapterNumber())
+                .ifPresent(navigation -> {
+                    response.setPrevChapterId(navigation.getPrevChapterId());
+                    response.setPrevChapterNumber(navigation.getPrevChapterNumber());
+                    response.setNextChapterId(navigation.getNextChapterId());
+                    response.setNextChapterNumber(navigation.getNextChapterNumber());
+                });
+    }
+
+    private ChapterResponse convertToResponse(Chapter chapter, boolean hasAccess, String content) {
         return ChapterResponse.builder()
                 .id(chapter.getId())
                 .storyId(chapter.getStory().getId())
                 .storyTitle(chapter.getStory().getTitle())
                 .chapterNumber(chapter.getChapterNumber())
                 .title(chapter.getTitle())
-                .content(chapter.getIsLocked() && !hasAccess ? null : chapter.getContent())
+                .content(chapter.getIsLocked() && !hasAccess ? null : content)
                 .views(chapter.getViews())
                 .isLocked(chapter.getIsLocked())
                 .coinsPrice(chapter.getCoinsPrice())
                 .hasAccess(hasAccess)
                 .createdAt(chapter.getCreatedAt())
+                .snapshotUrl(chapter.getIsLocked() ? null
+                        : chapterSnapshotService.getSnapshotUrl(chapter.getId(), chapter.getSnapshotVersion()))
                 .build();
     }
 }
@@ -0,0 +1,204 @@
+package com.example.truyen.service.impl;
+
+import com.example.truyen.config.RedisKeyConstants;
+import com.example.truyen.dto.event.ChapterChangedEvent;
+import com.example.truyen.dto.response.ChapterResponse;
+import com.example.truyen.entity.Chapter;
+import com.example.truyen.repository.ChapterRepository;
+import com.example.truyen.service.ChapterContentService;
+import com.example.truyen.service.ChapterSnapshotService;
+import com.example.truyen.service.MinIoService;
+import com.example.truyen.util.RedisLockUtils;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Chương miễn phí giống nhau với mọi người đọc nên được render sẵn thành JSON
+ * (gzip) trên MinIO. Tên object chứa version nên nội dung bất biến và cache được
+ * lâu; chapters.snapshot_version chỉ được ghi khi chương chưa bị sửa kể từ lúc
+ * render, và bị xóa về null ngay trong transaction sửa chương. Chương chưa có
+ * snapshot (dữ liệu trước khi có tính năng, upload lỗi) được job backfill bổ sung.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ChapterSnapshotServiceImpl implements ChapterSnapshotService {
+
+    private static final String SNAPSHOT_PREFIX = "snapshots/chapters/";
+
+    // 1 lượt backfill dừng trước khi lock hết hạn, phần còn lại để lượt sau
+    private static final Duration BACKFILL_LOCK_TTL = Duration.ofMinutes(30);
+    private static final Duration BACKFILL_MAX_RUN = Duration.ofMinutes(25);
+
+    private static final Map<String, String> SNAPSHOT_HEADERS = Map.of(
+            "Content-Encoding", "gzip",
+            "Cache-Control", "public, max-age=31536000, immutable");
+
+    private final ChapterRepository chapterRepository;
+    private final ChapterContentService chapterContentService;
+    private final MinIoService minIoService;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final StringRedisTemplate stringRedisTemplate;
+
+    @Value("${app.chapter-snapshot.backfill-enabled:true}")
+    private boolean backfillEnabled;
+
+    @Value("${app.chapter-snapshot.backfill-batch-size:200}")
+    private int backfillBatchSize;
+
+    @Override
+    public String getSnapshotUrl(Long chapterId, Long snapshotVersion) {
+        return snapshotVersion != null ? minIoService.getObjectUrl(objectName(chapterId, snapshotVersion)) : null;
+    }
+
+    // Chạy nền sau commit: upload MinIO không nằm trong transaction của request
+    @Async
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onChapterChanged(ChapterChangedEvent event) {
+        publish(event.getChapterIds());
+    }
+
+    @Override
+    public void publish(Collection<Long> chapterIds) {
+        for (Long chapterId : chapterIds) {
+            try {
+                publishOne(chapterId);
+            } catch (Exception e) {
+                log.warn("Failed to publish snapshot of chapter {}: {}", chapterId, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Duyệt các chương miễn phí có snapshot_version IS NULL theo id, mỗi lô đọc 1 query ngắn rồi
+     * publish từng chương. Chương đã publish có snapshot_version nên không bị chọn lại: dừng giữa
+     * chừng (tắt node, mất lock) thì lần chạy sau tiếp tục từ phần còn lại; chương lỗi được thử
+     * lại ở lần chạy sau. Lock Redis để chỉ 1 node chạy.
+     */
+    @Scheduled(fixedDelayString = "${app.chapter-snapshot.backfill-interval:1800000}",
+            initialDelayString = "${app.chapter-snapshot.backfill-initial-delay:60000}")
+    @Override
+    public void backfillSnapshots() {
+        if (!backfillEnabled) {
+            return;
+        }
+        String lockToken = RedisLockUtils.tryLock(stringRedisTemplate,
+                RedisKeyConstants.CHAPTER_SNAPSHOT_BACKFILL_LOCK, BACKFILL_LOCK_TTL);
+        if (lockToken == null) {
+            return;
+        }
+        try {
+            long startedAt = System.currentTimeMillis();
+            long scanned = 0;
+            long afterId = 0;
+            List<Long> chapterIds;
+            do {
+                chapterIds = chapterRepository.findSnapshotBackfillIds(afterId, PageRequest.of(0, backfillBatchSize));
+                if (chapterIds.isEmpty()) {
+                    break;
+                }
+                publish(chapterIds);
+                scanned += chapterIds.size();
+                afterId = chapterIds.get(chapterIds.size() - 1);
+            } while (chapterIds.size() == backfillBatchSize
+                    && System.currentTimeMillis() - startedAt < BACKFILL_MAX_RUN.toMillis());
+            if (scanned > 0) {
+                log.info("Snapshot backfill published up to {} chapters in {} ms (last id {})",
+                        scanned, System.currentTimeMillis() - startedAt, afterId);
+            }
+        } catch (Exception e) {
+            log.error("Failed to backfill chapter snapshots: {}", e.getMessage());
+        } finally {
+            RedisLockUtils.unlock(stringRedisTemplate, RedisKeyConstants.CHAPTER_SNAPSHOT_BACKFILL_LOCK, lockToken);
+        }
+    }
+
+    private void publishOne(Long chapterId) {
+        // Đọc dữ liệu trong 1 transaction ngắn, upload nằm ngoài transaction
+        Snapshot snapshot = transactionTemplate.execute(status -> render(chapterId));
+        String prefix = SNAPSHOT_PREFIX + chapterId + "/";
+        if (snapshot == null) {
+            minIoService.deleteObjects(prefix, null);
+            return;
+        }
+        if (snapshot.body() == null) {
+            return;
+        }
+
+        String objectName = objectName(chapterId, snapshot.version());
+        minIoService.uploadObject(objectName, snapshot.body(), "application/json; charset=utf-8", SNAPSHOT_HEADERS);
+
+        Integer marked = transactionTemplate.execute(status ->
+                chapterRepository.markSnapshotPublished(chapterId, snapshot.version(), snapshot.renderedAt()));
+        if (marked != null && marked > 0) {
+            minIoService.deleteObjects(prefix, objectName);
+        }
+    }
+
+    // null: chương đã xóa hoặc bị khóa → gỡ snapshot; body null: snapshot hiện tại đã mới nhất
+    private Snapshot render(Long chapterId) {
+        Chapter chapter = chapterRepository.findById(chapterId).orElse(null);
+        if (chapter == null || chapter.getIsLocked()) {
+            return null;
+        }
+
+        LocalDateTime renderedAt = chapter.getUpdatedAt() != null ? chapter.getUpdatedAt() : chapter.getCreatedAt();
+        long version = renderedAt.toInstant(ZoneOffset.UTC).toEpochMilli();
+        if (Objects.equals(chapter.getSnapshotVersion(), version)) {
+            return new Snapshot(version, renderedAt, null);
+        }
+
+        // Chỉ gồm phần tĩnh của chương; lượt xem, tên truyện, prev/next lấy qua API
+        ChapterResponse response = ChapterResponse.builder()
+                .id(chapter.getId())
+                .storyId(chapter.getStory().getId())
+                .chapterNumber(chapter.getChapterNumber())
+                .title(chapter.getTitle())
+                .content(chapterContentService.getContent(chapterId))
+                .isLocked(false)
+                .coinsPrice(0)
+                .hasAccess(true)
+                .createdAt(chapter.getCreatedAt())
+                .build();
+        return new Snapshot(version, renderedAt, gzip(response));
+    }
+
+    private byte[] gzip(ChapterResponse response) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            objectMapper.writeValue(gzip, response);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot render chapter snapshot", e);
+        }
+        return out.toByteArray();
+    }
+
+    private String objectName(Long chapterId, long version) {
+        return SNAPSHOT_PREFIX + chapterId + "/" + version + ".json";
+    }
+
+    private record Snapshot(long version, LocalDateTime renderedAt, byte[] body) {
+    }
+}
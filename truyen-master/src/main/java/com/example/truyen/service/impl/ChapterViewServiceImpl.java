@@ -0,0 +1,215 @@
+package com.example.truyen.service.impl;
+
+import com.example.truyen.config.RedisKeyConstants;
+import com.example.truyen.exception.BadRequestException;
+import com.example.truyen.exception.ResourceNotFoundException;
+import com.example.truyen.repository.ChapterRepository;
+import com.example.truyen.service.ChapterViewService;
+import com.example.truyen.util.RedisLockUtils;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bộ đếm lượt xem chương 3 tầng:
+ * bộ đếm CAS trong bộ nhớ (không lock, không I/O trên request) → Redis hash dùng
+ * chung giữa các node (mỗi 5 giây) → MySQL bằng 1 JDBC batch (mỗi phút).
+ * Nhờ đó đường đọc chương không còn ghi vào row chứa LONGTEXT content.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ChapterViewServiceImpl implements ChapterViewService {
+
+    private static final Duration APPLY_LOCK_TTL = Duration.ofMinutes(5);
+
+    // Giá trị đánh dấu bộ đếm đã bị bỏ khỏi map: lượt xem sau đó phải vào bộ đếm mới
+    private static final long RETIRED = Long.MIN_VALUE;
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ChapterRepository chapterRepository;
+
+    @Value("${app.chapter-view.max-tracked-chapters:100000}")
+    private int maxTrackedChapters;
+
+    @Value("${app.chapter-view.snapshot-dedupe-window:10m}")
+    private Duration snapshotDedupeWindow;
+
+    @Value("${app.chapter-view.snapshot-max-per-minute:60}")
+    private int snapshotMaxPerMinute;
+
+    private final Map<Long, AtomicLong> counters = new ConcurrentHashMap<>();
+
+    // chapterId → còn tồn tại và miễn phí (rỗng: không có chương)
+    private Cache<Long, Optional<Boolean>> freeChapters;
+    // ip:chapterId đã được tính lượt xem trong cửa sổ chống trùng
+    private Cache<String, Boolean> recentSnapshotViews;
+    // ip → số lượt gửi trong phút hiện tại
+    private Cache<String, AtomicInteger> snapshotViewsPerClient;
+
+    @PostConstruct
+    void init() {
+        freeChapters = Caffeine.newBuilder()
+                .maximumSize(100_000)
+                .expireAfterWrite(Duration.ofMinutes(5))
+                .build();
+        recentSnapshotViews = Caffeine.newBuilder()
+                .maximumSize(500_000)
+                .expireAfterWrite(snapshotDedupeWindow)
+                .build();
+        snapshotViewsPerClient = Caffeine.newBuilder()
+                .maximumSize(100_000)
+                .expireAfterWrite(Duration.ofMinutes(1))
+                .build();
+    }
+
+    @Override
+    public void recordView(Long chapterId) {
+        if (!counters.containsKey(chapterId) && counters.size() >= maxTrackedChapters) {
+            // Map đã đầy: ghi thẳng lên Redis thay vì để bộ nhớ tăng không giới hạn
+            try {
+                stringRedisTemplate.opsForHash().increment(RedisKeyConstants.CHAPTER_VIEWS_PENDING,
+                        chapterId.toString(), 1);
+            } catch (Exception e) {
+                log.warn("Failed to record view of chapter {}: {}", chapterId, e.getMessage());
+            }
+            return;
+        }
+        add(chapterId, 1);
+    }
+
+    /**
+     * Endpoint công khai nên không tin chapterId từ client: chỉ chương còn tồn tại và miễn phí
+     * mới được tính (kết quả tra cứu được cache ngắn), mỗi IP tối đa 1 lượt/chương trong
+     * cửa sổ chống trùng và tối đa snapshot-max-per-minute lượt/phút.
+     */
+    @Override
+    public void recordSnapshotView(Long chapterId, String clientIp) {
+        AtomicInteger sent = snapshotViewsPerClient.get(clientIp, ip -> new AtomicInteger());
+        if (sent.incrementAndGet() > snapshotMaxPerMinute) {
+            throw new BadRequestException("Too many view requests, please try again later");
+        }
+
+        Optional<Boolean> free = freeChapters.get(chapterId, id -> chapterRepository.findVersionById(id)
+                .map(version -> !Boolean.TRUE.equals(version.getIsLocked())));
+        if (free.isEmpty()) {
+            throw new ResourceNotFoundException("Chapter", "id", chapterId);
+        }
+        if (!free.get()) {
+            throw new BadRequestException("Views of locked chapters are recorded when the chapter is read");
+        }
+
+        if (recentSnapshotViews.asMap().putIfAbsent(clientIp + ":" + chapterId, Boolean.TRUE) == null) {
+            recordView(chapterId);
+        }
+    }
+
+    // Đẩy phần chênh lệch của từng chương lên Redis (HINCRBY)
+    @Scheduled(fixedDelay = 5000)
+    @PreDestroy
+    @Override
+    public synchronized void flushToRedis() {
+        Map<Long, Long> deltas = new HashMap<>();
+        for (var entry : counters.entrySet()) {
+            AtomicLong counter = entry.getValue();
+            long delta = counter.getAndSet(0);
+            if (delta != 0) {
+                deltas.merge(entry.getKey(), delta, Long::sum);
+            } else if (counter.compareAndSet(0, RETIRED)) {
+                // Chương không có lượt xem mới trong chu kỳ → bỏ khỏi map để giới hạn bộ nhớ.
+                // CAS 0 → RETIRED thành công nghĩa là không lượt cộng nào lọt vào bộ đếm cũ
+                counters.remove(entry.getKey(), counter);
+            }
+        }
+
+        deltas.forEach((chapterId, delta) -> {
+            try {
+                stringRedisTemplate.opsForHash().increment(RedisKeyConstants.CHAPTER_VIEWS_PENDING,
+                        chapterId.toString(), delta);
+            } catch (Exception e) {
+                // Redis lỗi: trả lại bộ đếm để lần sau đẩy tiếp
+                add(chapterId, delta);
+                log.warn("Failed to flush {} views of chapter {} to Redis: {}", delta, chapterId, e.getMessage());
+            }
+        });
+    }
+
+    private void add(Long chapterId, long delta) {
+        while (true) {
+            AtomicLong counter = counters.computeIfAbsent(chapterId, id -> new AtomicLong());
+            long current = counter.get();
+            if (current == RETIRED) {
+                // Bộ đếm vừa bị bỏ: gỡ nốt khỏi map (nếu chưa) rồi thử lại với bộ đếm mới
+                counters.remove(chapterId, counter);
+            } else if (counter.compareAndSet(current, current + delta)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Chỉ 1 node chạy nhờ lock trong Redis. Hash pending được RENAME sang key
+     * applying (atomic) nên các HINCRBY mới sẽ vào hash pending mới; key applying chỉ
+     * bị xóa sau khi batch đã commit, nếu lần chạy trước lỗi giữa chừng thì key
+     * applying còn lại sẽ được xử lý trước.
+     */
+    @Scheduled(fixedDelay = 60000)
+    @Override
+    public void applyToDatabase() {
+        String lockToken = RedisLockUtils.tryLock(stringRedisTemplate,
+                RedisKeyConstants.CHAPTER_VIEWS_APPLY_LOCK, APPLY_LOCK_TTL);
+        if (lockToken == null) {
+            return;
+        }
+
+        try {
+            if (!Boolean.TRUE.equals(stringRedisTemplate.hasKey(RedisKeyConstants.CHAPTER_VIEWS_APPLYING))) {
+                if (!Boolean.TRUE.equals(stringRedisTemplate.hasKey(RedisKeyConstants.CHAPTER_VIEWS_PENDING))) {
+                    return;
+                }
+                stringRedisTemplate.rename(RedisKeyConstants.CHAPTER_VIEWS_PENDING,
+                        RedisKeyConstants.CHAPTER_VIEWS_APPLYING);
+            }
+
+            Map<Object, Object> pending = stringRedisTemplate.opsForHash()
+                    .entries(RedisKeyConstants.CHAPTER_VIEWS_APPLYING);
+            List<Object[]> batchArgs = new ArrayList<>(pending.size());
+            pending.forEach((chapterId, delta) -> batchArgs.add(new Object[] {
+                    Long.parseLong(delta.toString()), Long.parseLong(chapterId.toString()) }));
+
+            if (!batchArgs.isEmpty()) {
+                transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(
+                        "UPDATE chapters SET views = COALESCE(views, 0) + ? WHERE id = ?", batchArgs));
+                log.info("Applied buffered views for {} chapters", batchArgs.size());
+            }
+
+            stringRedisTemplate.delete(RedisKeyConstants.CHAPTER_VIEWS_APPLYING);
+        } catch (Exception e) {
+            log.error("Failed to apply buffered chapter views: {}", e.getMessage());
+            throw e;
+        } finally {
+            RedisLockUtils.unlock(stringRedisTemplate, RedisKeyConstants.CHAPTER_VIEWS_APPLY_LOCK, lockToken);
+        }
+    }
+}
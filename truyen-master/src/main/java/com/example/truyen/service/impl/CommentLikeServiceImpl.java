@@ -7,10 +7,9 @@ import com.example.truyen.exception.ResourceNotFoundException;
 import com.example.truyen.repository.CommentLikeRepository;
 import com.example.truyen.repository.CommentRepository;
 import com.example.truyen.repository.UserRepository;
+import com.example.truyen.security.SecurityUtils;
 import com.example.truyen.service.CommentLikeService;
 import lombok.RequiredArgsConstructor;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -28,7 +27,7 @@ public class CommentLikeServiceImpl implements CommentLikeService {
     @Transactional
     @Override
     public void toggleLike(Long commentId) {
-        User currentUser = getCurrentUser();
+        User currentUser = SecurityUtils.getCurrentUserReference(userRepository);
         Comment comment = commentRepository.findById(commentId)
                 .orElseThrow(() -> new ResourceNotFoundException("Comment", "id", commentId));
 
@@ -48,10 +47,4 @@ public class CommentLikeServiceImpl implements CommentLikeService {
         }
         commentRepository.save(comment);
     }
-
-    private User getCurrentUser() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        return userRepository.findByUsername(authentication.getName())
-                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
-    }
 }
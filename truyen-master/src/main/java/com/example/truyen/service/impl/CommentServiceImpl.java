@@ -9,12 +9,12 @@ import com.example.truyen.entity.User;
 import com.example.truyen.exception.BadRequestException;
 import com.example.truyen.exception.ResourceNotFoundException;
 import com.example.truyen.repository.*;
+import com.example.truyen.security.SecurityUtils;
+import com.example.truyen.security.UserPrincipal;
 import com.example.truyen.service.CommentService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -55,7 +55,7 @@ public class CommentServiceImpl implements CommentService {
     @Transactional
     @Override
     public CommentResponse createComment(CommentRequest request) {
-        User currentUser = getCurrentUser();
+        User currentUser = SecurityUtils.getCurrentUserReference(userRepository);
 
         if (request.getStoryId() == null && request.getChapterId() == null) {
             throw new BadRequestException("Story ID or Chapter ID must be provided");
@@ -92,7 +92,7 @@ public class CommentServiceImpl implements CommentService {
     @Transactional
     @Override
     public CommentResponse updateComment(Long commentId, CommentRequest request) {
-        User currentUser = getCurrentUser();
+        User currentUser = SecurityUtils.getCurrentUserReference(userRepository);
         Comment comment = commentRepository.findById(commentId)
                 .orElseThrow(() -> new ResourceNotFoundException("Comment", "id", commentId));
 
@@ -109,12 +109,14 @@ public class CommentServiceImpl implements CommentService {
     @Override
     public void deleteComment(Long commentId) {
         log.debug("Attempting to delete comment with ID: {}", commentId);
-        User currentUser = getCurrentUser();
+        UserPrincipal currentUser = SecurityUtils.getCurrentPrincipal();
+        if (currentUser == null) {
+            throw new ResourceNotFoundException("User not found");
+        }
         Comment comment = commentRepository.findById(commentId)
                 .orElseThrow(() -> new ResourceNotFoundException("Comment", "id", commentId));
 
-        boolean isAdmin = currentUser.getRole().equals(User.Role.ADMIN)
-                || currentUser.getRole().equals(User.Role.SUPER_ADMIN);
+        boolean isAdmin = currentUser.isAdmin();
 
         log.debug("User {} (role: {}) is attempting to delete comment by {}",
                 currentUser.getUsername(), currentUser.getRole(), comment.getUser().getUsername());
@@ -147,24 +149,13 @@ public class CommentServiceImpl implements CommentService {
         return commentRepository.countByChapterId(chapterId);
     }
 
-    // Lấy thông tin người dùng hiện tại từ Security Context
-    private User getCurrentUser() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        return userRepository.findByUsername(authentication.getName())
-                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
-    }
-
     // Chuyển đổi Comment entity thành CommentResponse DTO
     private CommentResponse convertToResponse(Comment comment) {
         boolean isLiked = false;
         try {
-            org.springframework.security.core.Authentication auth = org.springframework.security.core.context.SecurityContextHolder
-                    .getContext().getAuthentication();
-            if (auth != null && auth.isAuthenticated() && !auth.getPrincipal().equals("anonymousUser")) {
-                User currentUser = userRepository.findByUsername(auth.getName()).orElse(null);
-                if (currentUser != null) {
-                    isLiked = commentLikeRepository.existsByUserIdAndCommentId(currentUser.getId(), comment.getId());
-                }
+            UserPrincipal currentUser = SecurityUtils.getCurrentPrincipal();
+            if (currentUser != null) {
+                isLiked = commentLikeRepository.existsByUserIdAndCommentId(currentUser.getId(), comment.getId());
             }
         } catch (Exception e) {
             log.error("Error checking like status: {}", e.getMessage());
@@ -7,6 +7,7 @@ import com.example.truyen.entity.Author;
 import com.example.truyen.entity.User;
 import com.example.truyen.repository.*;
 import com.example.truyen.service.DashboardService;
+import com.example.truyen.service.StatsRollupService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
@@ -29,9 +30,8 @@ public class DashboardServiceImpl implements DashboardService {
     private final AuthorRepository authorRepository;
     private final ActivityLogRepository activityLogRepository;
     private final StoryViewRepository storyViewRepository;
-    private final PaymentOrderRepository paymentOrderRepository;
     private final ChapterRepository chapterRepository;
-    private final UserChapterAccessRepository userChapterAccessRepository;
+    private final StatsRollupService statsRollupService;
 
     @Transactional(readOnly = true)
     @Override
@@ -76,13 +76,13 @@ public class DashboardServiceImpl implements DashboardService {
         // Hoạt động gần đây
         stats.setRecentActivities(getRecentActivities());
 
-        // Doanh thu
-        long totalRevenue = paymentOrderRepository.sumRevenueByPeriod(
-                LocalDateTime.of(2000, 1, 1, 0, 0), LocalDateTime.now());
-        long currentRevenue = paymentOrderRepository.sumRevenueByPeriod(currentPeriodStart, LocalDateTime.now());
-        long previousRevenue = paymentOrderRepository.sumRevenueByPeriod(previousPeriodStart, previousPeriodEnd);
-        long totalSuccessOrders = paymentOrderRepository.countSuccessOrdersByPeriod(
-                LocalDateTime.of(2000, 1, 1, 0, 0), LocalDateTime.now());
+        // Doanh thu (SUM trên bảng tổng hợp theo ngày, kỳ tính theo ngày trọn vẹn)
+        LocalDate tomorrow = LocalDate.now().plusDays(1);
+        long totalRevenue = statsRollupService.getTotalRevenue();
+        long currentRevenue = statsRollupService.sumRevenue(currentPeriodStart.toLocalDate(), tomorrow);
+        long previousRevenue = statsRollupService.sumRevenue(previousPeriodStart.toLocalDate(),
+                previousPeriodEnd.toLocalDate());
+        long totalSuccessOrders = statsRollupService.getTotalSuccessOrders();
 
         stats.setTotalRevenue(totalRevenue);
         stats.setTotalSuccessOrders(totalSuccessOrders);
@@ -90,8 +90,8 @@ public class DashboardServiceImpl implements DashboardService {
 
         // VIP stats
         stats.setTotalVipChapters(chapterRepository.countByIsLockedTrue());
-        stats.setTotalUnlocks(userChapterAccessRepository.count());
-        stats.setTotalCoinsConsumed(userChapterAccessRepository.sumTotalCoinsSpent());
+        stats.setTotalUnlocks(statsRollupService.getTotalUnlocks());
+        stats.setTotalCoinsConsumed(statsRollupService.getTotalCoinsSpent());
 
         return stats;
     }
@@ -9,11 +9,11 @@ import com.example.truyen.exception.ResourceNotFoundException;
 import com.example.truyen.repository.FavoriteRepository;
 import com.example.truyen.repository.StoryRepository;
 import com.example.truyen.repository.UserRepository;
+import com.example.truyen.security.SecurityUtils;
 import com.example.truyen.service.FavoriteService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -31,7 +31,7 @@ public class FavoriteServiceImpl implements FavoriteService {
     @Transactional(readOnly = true)
     @Override
     public Page<FavoriteResponse> getMyFavorites(int page, int size) {
-        User currentUser = getCurrentUser();
+        User currentUser = SecurityUtils.getCurrentUserReference(userRepository);
         return favoriteRepository
                 .findByUserIdOrderByCreatedAtDesc(currentUser.getId(), PageRequest.of(page, size))
                 .map(this::convertToResponse);
@@ -41,7 +41,7 @@ public class FavoriteServiceImpl implements FavoriteService {
     @Transactional(readOnly = true)
     @Override
     public boolean isFavorite(Long storyId) {
-        User currentUser = getCurrentUser();
+        User currentUser = SecurityUtils.getCurrentUserReference(userRepository);
         return favoriteRepository.existsByUserIdAndStoryId(currentUser.getId(), storyId);
     }
 
@@ -49,7 +49,7 @@ public class FavoriteServiceImpl implements FavoriteService {
     @Transactional
     @Override
     public FavoriteResponse addFavorite(Long storyId) {
-        User currentUser = getCurrentUser();
+        User currentUser = SecurityUtils.getCurrentUserReference(userRepository);
         Story story = storyRepository.findById(storyId)
                 .orElseThrow(() -> new ResourceNotFoundException("Story", "id", storyId));
 
@@ -69,7 +69,7 @@ public class FavoriteServiceImpl implements FavoriteService {
     @Transactional
     @Override
     public void removeFavorite(Long storyId) {
-        User currentUser = getCurrentUser();
+        User currentUser = SecurityUtils.getCurrentUserReference(userRepository);
         Favorite favorite = favoriteRepository.findByUserIdAndStoryId(currentUser.getId(), storyId)
                 .orElseThrow(() -> new ResourceNotFoundException("Favorite not found"));
         favoriteRepository.delete(favorite);
@@ -82,13 +82,6 @@ public class FavoriteServiceImpl implements FavoriteService {
         return favoriteRepository.countByStoryId(storyId);
     }
 
-    // Lấy thông tin người dùng hiện tại
-    private User getCurrentUser() {
-        var authentication = SecurityContextHolder.getContext().getAuthentication();
-        return userRepository.findByUsername(authentication.getName())
-                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
-    }
-
     // Chuyển đổi entity sang DTO
     private FavoriteResponse convertToResponse(Favorite favorite) {
         var categoryNames = favorite.getStory().getCategories().stream()
@@ -1,14 +1,20 @@
 package com.example.truyen.service.impl;
 
 import com.example.truyen.service.MinIoService;
+import io.minio.ListObjectsArgs;
 import io.minio.MinioClient;
 import io.minio.PutObjectArgs;
+import io.minio.RemoveObjectArgs;
+import io.minio.Result;
+import io.minio.messages.Item;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.ByteArrayInputStream;
+import java.util.Map;
 import java.util.UUID;
 
 @Service
@@ -59,4 +65,44 @@ public class MinIoServiceImpl implements MinIoService {
             throw new RuntimeException("Error uploading file: " + e.getMessage());
         }
     }
+
+    // Ghi object với tên cố định kèm header HTTP (Content-Encoding, Cache-Control...)
+    @Override
+    public String uploadObject(String objectName, byte[] data, String contentType, Map<String, String> headers) {
+        try {
+            minioClient.putObject(
+                    PutObjectArgs.builder()
+                            .bucket(bucketName)
+                            .object(objectName)
+                            .stream(new ByteArrayInputStream(data), data.length, -1)
+                            .contentType(contentType)
+                            .headers(headers)
+                            .build());
+            return getObjectUrl(objectName);
+        } catch (Exception e) {
+            throw new RuntimeException("Error uploading object: " + e.getMessage());
+        }
+    }
+
+    // Xóa các object theo prefix, giữ lại keepObjectName
+    @Override
+    public void deleteObjects(String prefix, String keepObjectName) {
+        try {
+            for (Result<Item> result : minioClient.listObjects(
+                    ListObjectsArgs.builder().bucket(bucketName).prefix(prefix).recursive(true).build())) {
+                String objectName = result.get().objectName();
+                if (!objectName.equals(keepObjectName)) {
+                    minioClient.removeObject(
+                            RemoveObjectArgs.builder().bucket(bucketName).object(objectName).build());
+                }
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Error deleting objects: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public String getObjectUrl(String objectName) {
+        return minioUrl + "/" + bucketName + "/" + objectName;
+    }
 }
@@ -0,0 +1,220 @@
+package com.example.truyen.service.impl;
+
+import com.example.truyen.service.OutboxService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transactional outbox cho mọi event Kafka:
+ * - Request chỉ INSERT 1 dòng outbox_events (cùng transaction nghiệp vụ, rollback thì mất theo).
+ * - Relay nhận lô trong 1 transaction ngắn (FOR UPDATE SKIP LOCKED + ghi claim_token/claimed_until)
+ *   rồi commit ngay, nên không giữ row lock hay connection trong lúc chờ Kafka.
+ * - Gửi ngoài transaction, flush producer, rồi 1 transaction riêng xóa các dòng đã được broker ack
+ *   và trả lại các dòng chưa gửi được. Node chết giữa chừng: hết claim-timeout relay khác nhận lại.
+ * - Gửi lỗi thì dừng lô, dòng còn nguyên để lần sau gửi lại (at-least-once, consumer phải chịu được trùng).
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OutboxServiceImpl implements OutboxService {
+
+    private static final String INSERT_SQL = "INSERT INTO outbox_events " +
+            "(topic, message_key, event_type, payload, created_at) VALUES (?, ?, ?, ?, ?)";
+
+    private static final String CLAIM_SQL = "SELECT id, topic, message_key, event_type, payload " +
+            "FROM outbox_events WHERE claimed_until IS NULL OR claimed_until < ? " +
+            "ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED";
+
+    private static final String MARK_CLAIMED_SQL = "UPDATE outbox_events SET claim_token = ?, claimed_until = ? " +
+            "WHERE id IN (%s)";
+
+    // Chỉ đụng tới dòng còn thuộc lượt claim này (quá hạn và bị relay khác nhận thì bỏ qua)
+    private static final String DELETE_SENT_SQL = "DELETE FROM outbox_events WHERE id = ? AND claim_token = ?";
+
+    private static final String RELEASE_SQL = "UPDATE outbox_events SET claim_token = NULL, claimed_until = NULL " +
+            "WHERE id = ? AND claim_token = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.outbox.batch-size:500}")
+    private int batchSize;
+
+    @Value("${app.outbox.send-timeout:10s}")
+    private Duration sendTimeout;
+
+    // Phải dài hơn thời gian gửi tối đa 1 lô (delivery-timeout + send-timeout)
+    @Value("${app.outbox.claim-timeout:2m}")
+    private Duration claimTimeout;
+
+    private TransactionTemplate requiresNewTemplate;
+    private Counter sentCounter;
+    private Counter failedCounter;
+
+    @PostConstruct
+    void init() {
+        requiresNewTemplate = new TransactionTemplate(transactionManager);
+        requiresNewTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        sentCounter = Counter.builder("outbox.relay").tag("result", "sent").register(meterRegistry);
+        failedCounter = Counter.builder("outbox.relay").tag("result", "failed").register(meterRegistry);
+    }
+
+    @Override
+    public void publish(String topic, String key, Object event) {
+        Object[] args = insertArgs(topic, key, event);
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            // Transaction chỉ đọc (vd. tìm kiếm) không ghi được: dùng transaction riêng
+            requiresNewTemplate.executeWithoutResult(status -> jdbcTemplate.update(INSERT_SQL, args));
+        } else {
+            jdbcTemplate.update(INSERT_SQL, args);
+        }
+    }
+
+    @Override
+    public void publishIndependently(String topic, String key, Object event) {
+        Object[] args = insertArgs(topic, key, event);
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            requiresNewTemplate.executeWithoutResult(status -> jdbcTemplate.update(INSERT_SQL, args));
+        } else {
+            jdbcTemplate.update(INSERT_SQL, args);
+        }
+    }
+
+    private Object[] insertArgs(String topic, String key, Object event) {
+        String payload;
+        try {
+            payload = objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Cannot serialize outbox event " + event.getClass().getName(), e);
+        }
+        return new Object[] { topic, key, event.getClass().getName(), payload, LocalDateTime.now() };
+    }
+
+    @Scheduled(fixedDelayString = "${app.outbox.relay-interval:500}")
+    @Override
+    public void relay() {
+        try {
+            int sent;
+            do {
+                sent = relayBatch();
+            } while (sent == batchSize);
+        } catch (Exception e) {
+            log.error("Failed to relay outbox events: {}", e.getMessage());
+        }
+    }
+
+    // Trả về số dòng đã xử lý; gặp lỗi gửi thì trả 0 để dừng vòng lặp, chờ lượt sau
+    private int relayBatch() {
+        String claimToken = UUID.randomUUID().toString();
+        List<OutboxRow> rows = transactionTemplate.execute(status -> claim(claimToken));
+        if (rows == null || rows.isEmpty()) {
+            return 0;
+        }
+
+        List<Long> done = new ArrayList<>(rows.size());
+        List<Long> sentIds = new ArrayList<>(rows.size());
+        List<CompletableFuture<?>> futures = new ArrayList<>(rows.size());
+        boolean failed = false;
+        for (OutboxRow row : rows) {
+            Object event;
+            try {
+                event = objectMapper.readValue(row.payload(), Class.forName(row.eventType()));
+            } catch (Exception e) {
+                // Không dựng lại được event (class đã đổi/xóa): bỏ dòng để không chặn outbox
+                log.error("Dropping undecodable outbox event {} ({}): {}", row.id(), row.eventType(), e.getMessage());
+                done.add(row.id());
+                continue;
+            }
+            try {
+                // send chỉ chặn tối đa max.block.ms (metadata/buffer đầy)
+                futures.add(kafkaTemplate.send(row.topic(), row.key(), event));
+                sentIds.add(row.id());
+            } catch (Exception e) {
+                failed = true;
+                log.warn("Outbox event {} not sent, will retry: {}", row.id(), e.getMessage());
+                break;
+            }
+        }
+        // Sau flush mọi record đã gửi đều đã có kết quả: xóa hết các dòng được ack kể cả khi lô bị dừng
+        kafkaTemplate.flush();
+
+        int acked = 0;
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                futures.get(i).get(sendTimeout.toMillis(), TimeUnit.MILLISECONDS);
+                done.add(sentIds.get(i));
+                acked++;
+            } catch (Exception e) {
+                failed = true;
+                log.warn("Outbox event {} not acknowledged, will retry: {}", sentIds.get(i), e.getMessage());
+            }
+        }
+
+        Set<Long> doneIds = new HashSet<>(done);
+        List<Long> pending = rows.stream().map(OutboxRow::id).filter(id -> !doneIds.contains(id)).toList();
+        transactionTemplate.executeWithoutResult(status -> finish(claimToken, done, pending));
+        sentCounter.increment(acked);
+        failedCounter.increment(rows.size() - done.size());
+        return failed ? 0 : rows.size();
+    }
+
+    // Transaction ngắn: khóa lô chưa ai nhận (hoặc claim đã quá hạn) rồi ghi claim
+    private List<OutboxRow> claim(String claimToken) {
+        LocalDateTime now = LocalDateTime.now();
+        List<OutboxRow> rows = jdbcTemplate.query(CLAIM_SQL, (rs, i) -> new OutboxRow(
+                rs.getLong(1), rs.getString(2), rs.getString(3), rs.getString(4), rs.getString(5)), now, batchSize);
+        if (rows.isEmpty()) {
+            return rows;
+        }
+
+        List<Object> args = new ArrayList<>(rows.size() + 2);
+        args.add(claimToken);
+        args.add(now.plus(claimTimeout));
+        rows.forEach(row -> args.add(row.id()));
+        jdbcTemplate.update(String.format(MARK_CLAIMED_SQL,
+                String.join(",", Collections.nCopies(rows.size(), "?"))), args.toArray());
+        return rows;
+    }
+
+    // Xóa dòng đã ack, trả lại dòng chưa gửi được để lượt sau gửi ngay (không chờ hết claim-timeout)
+    private void finish(String claimToken, List<Long> done, List<Long> pending) {
+        if (!done.isEmpty()) {
+            jdbcTemplate.batchUpdate(DELETE_SENT_SQL, done.stream().map(id -> new Object[] { id, claimToken }).toList());
+        }
+        if (!pending.isEmpty()) {
+            jdbcTemplate.batchUpdate(RELEASE_SQL, pending.stream().map(id -> new Object[] { id, claimToken }).toList());
+        }
+    }
+
+    private record OutboxRow(Long id, String topic, String key, String eventType, String payload) {
+    }
+}
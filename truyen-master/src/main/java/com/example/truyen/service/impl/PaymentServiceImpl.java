@@ -1,46 +1,110 @@
 package com.example.truyen.service.impl;
 
+import com.example.truyen.config.RedisKeyConstants;
 import com.example.truyen.dto.request.CreatePaymentOrderRequest;
 import com.example.truyen.dto.response.PaymentOrderResponse;
 import com.example.truyen.entity.CoinPackage;
+import com.example.truyen.entity.PaymentCallback;
 import com.example.truyen.entity.PaymentOrder;
 import com.example.truyen.entity.User;
+import com.example.truyen.entity.WalletTransaction;
 import com.example.truyen.exception.BadRequestException;
 import com.example.truyen.exception.ResourceNotFoundException;
+import com.example.truyen.exception.WalletBusyException;
 import com.example.truyen.repository.CoinPackageRepository;
+import com.example.truyen.repository.PaymentCallbackRepository;
 import com.example.truyen.repository.PaymentOrderRepository;
 import com.example.truyen.repository.UserRepository;
+import com.example.truyen.security.SecurityUtils;
 import com.example.truyen.service.PaymentService;
+import com.example.truyen.service.StatsRollupService;
 import com.example.truyen.service.VNPayService;
 import com.example.truyen.service.WalletService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.redis.RedisSystemException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionException;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class PaymentServiceImpl implements PaymentService {
 
+    private static final String INSERT_CALLBACK_SQL = "INSERT IGNORE INTO payment_callbacks " +
+            "(vnp_transaction_no, order_code, response_code, amount, status, attempts, failures, received_at) " +
+            "VALUES (?, ?, ?, ?, 'RECEIVED', 0, 0, ?)";
+
+    private static final int EXPIRY_BATCH_SIZE = 200;
+    private static final Duration EXPIRY_SWEEP_GRACE = Duration.ofMinutes(1);
+
     private final PaymentOrderRepository paymentOrderRepository;
     private final CoinPackageRepository coinPackageRepository;
     private final UserRepository userRepository;
     private final VNPayService vnPayService;
     private final WalletService walletService;
+    private final PaymentCallbackRepository callbackRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final StatsRollupService statsRollupService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.payment.order-ttl:15m}")
+    private Duration orderTtl;
+
+    @Value("${app.payment.settle-batch-size:100}")
+    private int settleBatchSize;
+
+    @Value("${app.payment.max-attempts:10}")
+    private int maxAttempts;
+
+    @Value("${app.payment.retry-initial-backoff:5s}")
+    private Duration retryInitialBackoff;
+
+    @Value("${app.payment.retry-max-backoff:10m}")
+    private Duration retryMaxBackoff;
+
+    private Counter gaveUpCounter;
+
+    @PostConstruct
+    void init() {
+        gaveUpCounter = Counter.builder("payment.callback.failed")
+                .description("VNPay callbacks moved to FAILED after exhausting retries")
+                .register(meterRegistry);
+    }
 
     @Transactional
     @Override
     public PaymentOrderResponse createOrder(CreatePaymentOrderRequest request, String ipAddress) {
-        User user = getCurrentUser();
+        User user = SecurityUtils.getCurrentUserReference(userRepository);
 
         CoinPackage pkg = coinPackageRepository.findById(request.getPackageId())
                 .orElseThrow(() -> new ResourceNotFoundException("CoinPackage", "id", request.getPackageId()));
@@ -63,6 +127,7 @@ public class PaymentServiceImpl implements PaymentService {
                 .build();
 
         order = paymentOrderRepository.save(order);
+        scheduleExpiry(orderCode);
 
         String paymentUrl = vnPayService.createPaymentUrl(order, ipAddress);
         order.setVnpTxnRef(orderCode);
@@ -71,52 +136,31 @@ public class PaymentServiceImpl implements PaymentService {
         return toResponse(order, paymentUrl);
     }
 
-    @Transactional
+    /**
+     * Return URL: trình duyệt user quay về. Không cộng xu ở đây, chỉ ghi nhận callback
+     * (phòng khi IPN đến trễ) và báo kết quả theo mã VNPay; worker cộng xu sau vài giây.
+     */
     @Override
     public String handleVNPayReturn(Map<String, String> params) {
         if (!vnPayService.verifyCallback(params)) {
             return "INVALID_SIGNATURE";
         }
 
-        String responseCode = params.get("vnp_ResponseCode");
         String txnRef = params.get("vnp_TxnRef");
-        String transactionNo = params.get("vnp_TransactionNo");
-
-        PaymentOrder order = paymentOrderRepository.findByOrderCodeForUpdate(txnRef)
+        PaymentOrder order = paymentOrderRepository.findByOrderCode(txnRef)
                 .orElseThrow(() -> new ResourceNotFoundException("PaymentOrder", "orderCode", txnRef));
-
-        if (order.getStatus() != PaymentOrder.Status.PENDING) {
-            return "ALREADY_PROCESSED";
+        if (!matchesAmount(order, params.get("vnp_Amount"))) {
+            return "INVALID_AMOUNT";
         }
 
-        if (paymentOrderRepository.existsByVnpTransactionNo(transactionNo)) {
-            return "DUPLICATE_TRANSACTION";
-        }
-
-        order.setVnpTransactionNo(transactionNo);
-
-        if ("00".equals(responseCode)) {
-            order.setStatus(PaymentOrder.Status.SUCCESS);
-            order.setCompletedAt(LocalDateTime.now());
-            paymentOrderRepository.save(order);
-
-            walletService.addCoins(
-                    order.getUser().getId(),
-                    order.getCoinsToAdd(),
-                    "Nap xu - don hang " + order.getOrderCode(),
-                    order.getId());
-            return "SUCCESS";
-        } else {
-            order.setStatus(PaymentOrder.Status.FAILED);
-            paymentOrderRepository.save(order);
-            return "FAILED";
-        }
+        recordCallback(params);
+        return "00".equals(params.get("vnp_ResponseCode")) ? "SUCCESS" : "FAILED";
     }
 
     @Transactional(readOnly = true)
     @Override
     public Page<PaymentOrderResponse> getMyOrders(Pageable pageable) {
-        User user = getCurrentUser();
+        User user = SecurityUtils.getCurrentUserReference(userRepository);
         return paymentOrderRepository.findByUserIdOrderByCreatedAtDesc(user.getId(), pageable)
                 .map(o -> toResponse(o, null));
     }
@@ -131,8 +175,9 @@ public class PaymentServiceImpl implements PaymentService {
     /**
      * IPN handler: VNPay gọi server-to-server ngay sau khi thanh toán xong.
      * Phải trả về đúng định dạng JSON: {"RspCode": "00", "Message": "OK"}
+     * Chỉ xác thực + ghi callback (1 câu INSERT IGNORE, không khóa đơn, không transaction dài)
+     * rồi trả lời ngay; cập nhật đơn và cộng xu do worker settleCallbacks đảm nhận.
      */
-    @Transactional
     @Override
     public String handleVNPayIPN(Map<String, String> params) {
         if (!vnPayService.verifyCallback(params)) {
@@ -141,69 +186,123 @@ public class PaymentServiceImpl implements PaymentService {
         }
 
         String txnRef = params.get("vnp_TxnRef");
-        String transactionNo = params.get("vnp_TransactionNo");
-        String responseCode = params.get("vnp_ResponseCode");
-
-        PaymentOrder order = paymentOrderRepository.findByOrderCodeForUpdate(txnRef).orElse(null);
+        PaymentOrder order = paymentOrderRepository.findByOrderCode(txnRef).orElse(null);
         if (order == null) {
             log.warn("IPN: order not found for txnRef={}", txnRef);
             return "01"; // Order not found
         }
 
-        if (order.getStatus() != PaymentOrder.Status.PENDING) {
+        if (order.getStatus() == PaymentOrder.Status.SUCCESS || order.getStatus() == PaymentOrder.Status.FAILED) {
             log.info("IPN: order {} already processed (status={})", txnRef, order.getStatus());
             return "02"; // Already confirmed
         }
 
-        if (paymentOrderRepository.existsByVnpTransactionNo(transactionNo)) {
-            log.warn("IPN: duplicate transaction {}", transactionNo);
+        if (!matchesAmount(order, params.get("vnp_Amount"))) {
+            log.warn("IPN: amount mismatch for order {}: {}", txnRef, params.get("vnp_Amount"));
+            return "04"; // Invalid amount
+        }
+
+        if (!recordCallback(params)) {
+            log.info("IPN: duplicate callback {} for order {}", params.get("vnp_TransactionNo"), txnRef);
             return "02"; // Duplicate
         }
 
-        order.setVnpTransactionNo(transactionNo);
+        log.info("IPN: order {} received, responseCode={}", txnRef, params.get("vnp_ResponseCode"));
+        return "00"; // VNPay yêu cầu luôn trả 00 dù thành công hay thất bại
+    }
 
-        if ("00".equals(responseCode)) {
-            order.setStatus(PaymentOrder.Status.SUCCESS);
-            order.setCompletedAt(LocalDateTime.now());
-            paymentOrderRepository.save(order);
-            walletService.addCoins(
-                    order.getUser().getId(),
-                    order.getCoinsToAdd(),
-                    "Nap xu - don hang " + order.getOrderCode(),
-                    order.getId());
-            log.info("IPN: order {} SUCCESS, added {} coins to user {}",
-                    txnRef, order.getCoinsToAdd(), order.getUser().getId());
-            return "00";
-        } else {
-            order.setStatus(PaymentOrder.Status.FAILED);
-            paymentOrderRepository.save(order);
-            log.info("IPN: order {} FAILED, responseCode={}", txnRef, responseCode);
-            return "00"; // VNPay yêu cầu luôn trả 00 dù thành công hay thất bại
-        }
+    /**
+     * Worker: nhận 1 lô callback (SKIP LOCKED), khóa các đơn liên quan bằng 1 query và xử lý
+     * cả lô trong 1 transaction. Lô lỗi thì chạy lại từng callback trong transaction riêng
+     * để 1 callback hỏng không chặn cả lô. Callback lỗi được thử lại với backoff tăng dần;
+     * lỗi tạm thời (DB/Redis, ví đang đồng bộ) không bị tính vào max-attempts, chỉ lỗi khác
+     * mới tính và quá max-attempts thì chuyển FAILED (admin đưa lại hàng đợi qua retryFailedCallbacks).
+     */
+    @Scheduled(fixedDelayString = "${app.payment.settle-interval:2000}")
+    @Override
+    public void settleCallbacks() {
+        int settled;
+        do {
+            try {
+                settled = transactionTemplate.execute(status -> {
+                    List<PaymentCallback> callbacks = callbackRepository.lockReceived(settleBatchSize, LocalDateTime.now());
+                    settle(callbacks);
+                    return callbacks.size();
+                });
+            } catch (Exception e) {
+                log.warn("Failed to settle payment callback batch, retrying one by one: {}", e.getMessage());
+                settleOneByOne();
+                return;
+            }
+        } while (settled == settleBatchSize);
     }
 
     /**
-     * Scheduled: chạy mỗi phút, hủy hàng loạt đơn PENDING quá 15 phút.
-     * Dùng bulk UPDATE thay vì load từng entity.
+     * Đơn mới được đăng ký vào ZSet theo thời điểm hết hạn; job này chạy mỗi giây, lấy các
+     * đơn đến hạn (O(log N), không quét bảng) và hủy từng đơn. ZREM trả về 1 nghĩa là node
+     * hiện tại giành được đơn đó nên nhiều node chạy cùng lúc không hủy trùng.
      */
-    @Scheduled(fixedRate = 60_000)
+    @Scheduled(fixedDelayString = "${app.payment.expiry-poll-interval:1000}")
+    @Override
+    public void expireDueOrders() {
+        Set<String> due;
+        do {
+            due = stringRedisTemplate.opsForZSet().rangeByScore(RedisKeyConstants.PAYMENT_ORDER_EXPIRY,
+                    0, System.currentTimeMillis(), 0, EXPIRY_BATCH_SIZE);
+            if (due == null || due.isEmpty()) {
+                return;
+            }
+            for (String orderCode : due) {
+                Long claimed = stringRedisTemplate.opsForZSet().remove(RedisKeyConstants.PAYMENT_ORDER_EXPIRY, orderCode);
+                if (claimed == null || claimed == 0) {
+                    continue;
+                }
+                try {
+                    // Đơn đã SUCCESS/FAILED thì câu UPDATE không đụng tới
+                    Integer cancelled = transactionTemplate.execute(status ->
+                            paymentOrderRepository.cancelPendingOrder(orderCode));
+                    if (cancelled != null && cancelled > 0) {
+                        log.info("Cancelled expired PENDING order {}", orderCode);
+                    }
+                } catch (Exception e) {
+                    // Đã bỏ khỏi ZSet: quét dự phòng sẽ hủy sau
+                    log.error("Failed to cancel expired order {}: {}", orderCode, e.getMessage());
+                }
+            }
+        } while (due.size() == EXPIRY_BATCH_SIZE);
+    }
+
+    /**
+     * Quét dự phòng (mặc định 15 phút/lần) cho các đơn không có trong ZSet hoặc hủy lỗi.
+     * Cho thêm 1 khoảng trễ để không giành việc của expireDueOrders.
+     */
+    @Scheduled(fixedDelayString = "${app.payment.expiry-sweep-interval:900000}",
+            initialDelayString = "${app.payment.expiry-sweep-interval:900000}")
     @Transactional
     @Override
     public void cancelExpiredOrders() {
-        LocalDateTime cutoff = LocalDateTime.now().minusMinutes(15);
+        LocalDateTime cutoff = LocalDateTime.now().minus(orderTtl).minus(EXPIRY_SWEEP_GRACE);
         int cancelled = paymentOrderRepository.cancelPendingOrdersBefore(cutoff);
         if (cancelled > 0) {
-            log.info("Cancelled {} expired PENDING orders (older than 15 minutes)", cancelled);
+            log.warn("Expiry sweep cancelled {} PENDING orders missed by the expiry timer", cancelled);
         }
     }
 
+    @Transactional
+    @Override
+    public int retryFailedCallbacks(String orderCode) {
+        int requeued = callbackRepository.requeueFailed(orderCode);
+        log.info("Requeued {} FAILED payment callbacks (orderCode={})", requeued, orderCode);
+        return requeued;
+    }
+
     @Transactional(readOnly = true)
     @Override
     public PaymentOrderResponse getOrderStatus(String orderCode) {
         PaymentOrder order = paymentOrderRepository.findByOrderCode(orderCode)
                 .orElseThrow(() -> new ResourceNotFoundException("PaymentOrder", "orderCode", orderCode));
 
-        User currentUser = getCurrentUser();
+        User currentUser = SecurityUtils.getCurrentUserReference(userRepository);
         if (!order.getUser().getId().equals(currentUser.getId())) {
             throw new BadRequestException("You do not have permission to view this order");
         }
@@ -211,10 +310,154 @@ public class PaymentServiceImpl implements PaymentService {
         return toResponse(order, null);
     }
 
-    private User getCurrentUser() {
-        String username = SecurityContextHolder.getContext().getAuthentication().getName();
-        return userRepository.findByUsername(username)
-                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
+    // Đăng ký hạn hủy đơn sau khi commit; Redis lỗi thì để quét dự phòng xử lý
+    private void scheduleExpiry(String orderCode) {
+        long expireAt = System.currentTimeMillis() + orderTtl.toMillis();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                try {
+                    stringRedisTemplate.opsForZSet().add(RedisKeyConstants.PAYMENT_ORDER_EXPIRY, orderCode, expireAt);
+                } catch (Exception e) {
+                    log.warn("Failed to schedule expiry of order {}: {}", orderCode, e.getMessage());
+                }
+            }
+        });
+    }
+
+    // Ghi callback; false nếu đã có (VNPay gửi lại)
+    private boolean recordCallback(Map<String, String> params) {
+        String amount = params.get("vnp_Amount");
+        return jdbcTemplate.update(INSERT_CALLBACK_SQL,
+                params.get("vnp_TransactionNo"),
+                params.get("vnp_TxnRef"),
+                params.get("vnp_ResponseCode"),
+                amount != null ? Long.valueOf(amount) : null,
+                LocalDateTime.now()) > 0;
+    }
+
+    private void settleOneByOne() {
+        for (Long id : callbackRepository.findReceivedIds(LocalDateTime.now(), PageRequest.of(0, settleBatchSize))) {
+            try {
+                transactionTemplate.executeWithoutResult(status ->
+                        callbackRepository.lockReceivedById(id).ifPresent(callback -> settle(List.of(callback))));
+            } catch (Exception e) {
+                log.error("Failed to settle payment callback {}: {}", id, e.getMessage());
+                transactionTemplate.executeWithoutResult(status -> recordFailure(id, e));
+            }
+        }
+    }
+
+    private void settle(List<PaymentCallback> callbacks) {
+        if (callbacks.isEmpty()) {
+            return;
+        }
+
+        Map<String, PaymentOrder> orders = paymentOrderRepository.findByOrderCodeInForUpdate(
+                        callbacks.stream().map(PaymentCallback::getOrderCode).collect(Collectors.toSet()))
+                .stream()
+                .collect(Collectors.toMap(PaymentOrder::getOrderCode, Function.identity()));
+
+        LocalDateTime now = LocalDateTime.now();
+        for (PaymentCallback callback : callbacks) {
+            callback.setResult(apply(callback, orders.get(callback.getOrderCode()), now));
+            callback.setStatus(PaymentCallback.Status.PROCESSED);
+            callback.setProcessedAt(now);
+        }
+        callbackRepository.saveAll(callbacks);
+    }
+
+    private String apply(PaymentCallback callback, PaymentOrder order, LocalDateTime now) {
+        if (order == null) {
+            return "ORDER_NOT_FOUND";
+        }
+        // Đơn CANCELLED (hết hạn) vẫn nhận thanh toán thành công: tiền đã bị trừ phía VNPay
+        if (order.getStatus() == PaymentOrder.Status.SUCCESS || order.getStatus() == PaymentOrder.Status.FAILED) {
+            return "ALREADY_PROCESSED";
+        }
+        if (!matchesAmount(order, callback.getAmount() != null ? String.valueOf(callback.getAmount()) : null)) {
+            return "INVALID_AMOUNT";
+        }
+
+        if ("00".equals(callback.getResponseCode())) {
+            order.setVnpTransactionNo(callback.getVnpTransactionNo());
+            order.setStatus(PaymentOrder.Status.SUCCESS);
+            order.setCompletedAt(now);
+            statsRollupService.recordRevenue(order.getAmount(), now);
+            walletService.addCoins(
+                    order.getUser().getId(),
+                    order.getCoinsToAdd(),
+                    "Nap xu - don hang " + order.getOrderCode(),
+                    WalletTransaction.RefType.PAYMENT_ORDER,
+                    order.getId());
+            log.info("Payment: order {} SUCCESS, added {} coins to user {}",
+                    order.getOrderCode(), order.getCoinsToAdd(), order.getUser().getId());
+            return "SUCCESS";
+        }
+
+        if (order.getStatus() == PaymentOrder.Status.PENDING) {
+            // vnp_TransactionNo = 0 với giao dịch bị hủy nên không lưu vào đơn (cột unique)
+            order.setStatus(PaymentOrder.Status.FAILED);
+            log.info("Payment: order {} FAILED, responseCode={}", order.getOrderCode(), callback.getResponseCode());
+            return "FAILED";
+        }
+        return "ALREADY_PROCESSED";
+    }
+
+    private void recordFailure(Long id, Exception e) {
+        callbackRepository.findById(id).ifPresent(callback -> {
+            callback.setAttempts(callback.getAttempts() + 1);
+            String error = String.valueOf(e.getMessage());
+            callback.setLastError(error.length() > 255 ? error.substring(0, 255) : error);
+            if (!isTransient(e)) {
+                callback.setFailures(callback.getFailures() + 1);
+            }
+            if (callback.getFailures() >= maxAttempts) {
+                // Dừng thử lại, chờ admin kiểm tra rồi gọi retryFailedCallbacks
+                callback.setStatus(PaymentCallback.Status.FAILED);
+                gaveUpCounter.increment();
+                log.error("Payment callback {} for order {} FAILED after {} attempts, manual retry required: {}",
+                        id, callback.getOrderCode(), callback.getAttempts(), callback.getLastError());
+            } else {
+                callback.setNextAttemptAt(LocalDateTime.now().plus(
+                        backoff(callback.getAttempts(), retryInitialBackoff, retryMaxBackoff)));
+            }
+            callbackRepository.save(callback);
+        });
+    }
+
+    // initial x 2^(attempts-1), tối đa max
+    static Duration backoff(int attempts, Duration initial, Duration max) {
+        int shift = Math.min(Math.max(attempts - 1, 0), 30);
+        Duration delay = initial.multipliedBy(1L << shift);
+        return delay.compareTo(max) > 0 ? max : delay;
+    }
+
+    // Lỗi hạ tầng hoặc ví đang đồng bộ: tự hết sau một lúc, không phải lỗi của callback
+    static boolean isTransient(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause() == t ? null : t.getCause()) {
+            if (t instanceof WalletBusyException
+                    || t instanceof TransientDataAccessException
+                    || t instanceof RecoverableDataAccessException
+                    || t instanceof DataAccessResourceFailureException
+                    || t instanceof RedisSystemException
+                    || t instanceof TransactionException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // vnp_Amount = số tiền x 100
+    private boolean matchesAmount(PaymentOrder order, String vnpAmount) {
+        if (vnpAmount == null) {
+            return false;
+        }
+        try {
+            return order.getAmount().multiply(BigDecimal.valueOf(100)).longValue() == Long.parseLong(vnpAmount);
+        } catch (NumberFormatException e) {
+            return false;
+        }
     }
 
     private PaymentOrderResponse toResponse(PaymentOrder order, String paymentUrl) {
@@ -1,5 +1,7 @@
 package com.example.truyen.service.impl;
 
+import com.example.truyen.config.RedisKeyConstants;
+import com.example.truyen.dto.event.StoryChangedEvent;
 import com.example.truyen.dto.request.RatingRequest;
 import com.example.truyen.dto.response.RatingResponse;
 import com.example.truyen.entity.Rating;
@@ -10,25 +12,45 @@ import com.example.truyen.exception.ResourceNotFoundException;
 import com.example.truyen.repository.RatingRepository;
 import com.example.truyen.repository.StoryRepository;
 import com.example.truyen.repository.UserRepository;
+import com.example.truyen.security.SecurityUtils;
 import com.example.truyen.service.RatingService;
+import com.example.truyen.util.RedisLockUtils;
 import lombok.RequiredArgsConstructor;
-import org.springframework.security.core.context.SecurityContextHolder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
 
 @Service
 @RequiredArgsConstructor
+@Slf4j
 public class RatingServiceImpl implements RatingService {
 
+    private static final Duration RECONCILE_LOCK_TTL = Duration.ofMinutes(30);
+
     private final RatingRepository ratingRepository;
     private final StoryRepository storyRepository;
     private final UserRepository userRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.rating.reconcile-batch-size:1000}")
+    private int reconcileBatchSize;
 
     // Đánh giá truyện
     @Transactional
     @Override
     public RatingResponse rateStory(RatingRequest request) {
-        User currentUser = getCurrentUser();
+        User currentUser = SecurityUtils.getCurrentUserReference(userRepository);
         Story story = storyRepository.findById(request.getStoryId())
                 .orElseThrow(() -> new ResourceNotFoundException("Story", "id", request.getStoryId()));
 
@@ -47,14 +69,17 @@ public class RatingServiceImpl implements RatingService {
                 .rating(ratingValue)
                 .build();
 
-        return convertToResponse(ratingRepository.save(rating));
+        Rating savedRating = ratingRepository.save(rating);
+        storyRepository.adjustRatingAggregate(story.getId(), ratingValue, 1);
+        eventPublisher.publishEvent(StoryChangedEvent.of(story.getId()));
+        return convertToResponse(savedRating);
     }
 
     // Cập nhật đánh giá
     @Transactional
     @Override
     public RatingResponse updateRating(Long storyId, RatingRequest request) {
-        User currentUser = getCurrentUser();
+        User currentUser = SecurityUtils.getCurrentUserReference(userRepository);
         Rating rating = ratingRepository.findByUserIdAndStoryId(currentUser.getId(), storyId)
                 .orElseThrow(() -> new ResourceNotFoundException("Rating not found for this story"));
 
@@ -63,25 +88,31 @@ public class RatingServiceImpl implements RatingService {
             throw new BadRequestException("Rating score must be between 1 and 5");
         }
 
+        int previousValue = rating.getRating();
         rating.setRating(ratingValue);
-        return convertToResponse(ratingRepository.save(rating));
+        Rating savedRating = ratingRepository.save(rating);
+        storyRepository.adjustRatingAggregate(storyId, ratingValue - previousValue, 0);
+        eventPublisher.publishEvent(StoryChangedEvent.of(storyId));
+        return convertToResponse(savedRating);
     }
 
     // Xóa đánh giá
     @Transactional
     @Override
     public void deleteRating(Long storyId) {
-        User currentUser = getCurrentUser();
+        User currentUser = SecurityUtils.getCurrentUserReference(userRepository);
         Rating rating = ratingRepository.findByUserIdAndStoryId(currentUser.getId(), storyId)
                 .orElseThrow(() -> new ResourceNotFoundException("Rating not found for this story"));
         ratingRepository.delete(rating);
+        storyRepository.adjustRatingAggregate(storyId, -rating.getRating(), -1);
+        eventPublisher.publishEvent(StoryChangedEvent.of(storyId));
     }
 
     // Lấy đánh giá của người dùng hiện tại cho truyện
     @Transactional(readOnly = true)
     @Override
     public RatingResponse getMyRatingForStory(Long storyId) {
-        User currentUser = getCurrentUser();
+        User currentUser = SecurityUtils.getCurrentUserReference(userRepository);
         Rating rating = ratingRepository.findByUserIdAndStoryId(currentUser.getId(), storyId)
                 .orElseThrow(() -> new ResourceNotFoundException("Rating not found for this story"));
         return convertToResponse(rating);
@@ -94,20 +125,53 @@ public class RatingServiceImpl implements RatingService {
         Story story = storyRepository.findById(storyId)
                 .orElseThrow(() -> new ResourceNotFoundException("Story", "id", storyId));
 
-        Double averageRating = ratingRepository.getAverageRating(storyId);
-
         return RatingResponse.builder()
                 .storyId(storyId)
                 .storyTitle(story.getTitle())
-                .rating(averageRating != null ? (int) Math.round(averageRating) : 0)
+                .rating((int) Math.round(story.getAverageRating()))
                 .build();
     }
 
-    // Lấy thông tin người dùng hiện tại
-    private User getCurrentUser() {
-        var authentication = SecurityContextHolder.getContext().getAuthentication();
-        return userRepository.findByUsername(authentication.getName())
-                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
+    /**
+     * Đối soát rating_sum / rating_count với bảng ratings hằng đêm, chỉ 1 node chạy (lock Redis).
+     * Duyệt truyện theo lô id: đọc phát hiện lệch không khóa, rồi mỗi lô 1 transaction ngắn chỉ
+     * cập nhật các truyện lệch và xóa cache của chúng.
+     */
+    @Scheduled(cron = "${app.rating.reconcile-cron:0 30 3 * * *}")
+    @Override
+    public void reconcileRatingAggregates() {
+        String lockToken = RedisLockUtils.tryLock(stringRedisTemplate,
+                RedisKeyConstants.RATING_RECONCILE_LOCK, RECONCILE_LOCK_TTL);
+        if (lockToken == null) {
+            return;
+        }
+        try {
+            long fixed = 0;
+            long afterId = 0;
+            List<Long> storyIds;
+            do {
+                storyIds = storyRepository.findIdsAfter(afterId, PageRequest.of(0, reconcileBatchSize));
+                if (storyIds.isEmpty()) {
+                    break;
+                }
+                afterId = storyIds.get(storyIds.size() - 1);
+                List<Long> drifted = storyRepository.findRatingDriftIds(storyIds);
+                if (!drifted.isEmpty()) {
+                    fixed += transactionTemplate.execute(status -> {
+                        int updated = storyRepository.recomputeRatingAggregates(drifted);
+                        eventPublisher.publishEvent(StoryChangedEvent.of(drifted));
+                        return updated;
+                    });
+                }
+            } while (storyIds.size() == reconcileBatchSize);
+            if (fixed > 0) {
+                log.warn("Reconciled rating aggregates for {} stories", fixed);
+            }
+        } catch (Exception e) {
+            log.error("Failed to reconcile rating aggregates: {}", e.getMessage());
+        } finally {
+            RedisLockUtils.unlock(stringRedisTemplate, RedisKeyConstants.RATING_RECONCILE_LOCK, lockToken);
+        }
     }
 
     // Chuyển đổi entity sang DTO
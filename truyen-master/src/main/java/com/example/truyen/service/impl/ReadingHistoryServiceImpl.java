@@ -10,11 +10,11 @@ import com.example.truyen.repository.ChapterRepository;
 import com.example.truyen.repository.ReadingHistoryRepository;
 import com.example.truyen.repository.StoryRepository;
 import com.example.truyen.repository.UserRepository;
+import com.example.truyen.security.SecurityUtils;
 import com.example.truyen.service.ReadingHistoryService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -31,7 +31,7 @@ public class ReadingHistoryServiceImpl implements ReadingHistoryService {
     @Transactional(readOnly = true)
     @Override
     public Page<ReadingHistoryResponse> getMyReadingHistory(int page, int size) {
-        User currentUser = getCurrentUser();
+        User currentUser = SecurityUtils.getCurrentUserReference(userRepository);
         return readingHistoryRepository
                 .findByUserIdOrderByReadAtDesc(currentUser.getId(), PageRequest.of(page, size))
                 .map(this::convertToResponse);
@@ -41,7 +41,7 @@ public class ReadingHistoryServiceImpl implements ReadingHistoryService {
     @Transactional(readOnly = true)
     @Override
     public ReadingHistoryResponse getReadingHistoryForStory(Long storyId) {
-        User currentUser = getCurrentUser();
+        User currentUser = SecurityUtils.getCurrentUserReference(userRepository);
         ReadingHistory history = readingHistoryRepository
                 .findByUserIdAndStoryId(currentUser.getId(), storyId)
                 .orElse(null);
@@ -52,7 +52,7 @@ public class ReadingHistoryServiceImpl implements ReadingHistoryService {
     @Transactional
     @Override
     public ReadingHistoryResponse saveReadingHistory(Long storyId, Long chapterId, Integer chapterNumber) {
-        User currentUser = getCurrentUser();
+        User currentUser = SecurityUtils.getCurrentUserReference(userRepository);
         Story story = storyRepository.findById(storyId)
                 .orElseThrow(() -> new ResourceNotFoundException("Story", "id", storyId));
 
@@ -85,7 +85,7 @@ public class ReadingHistoryServiceImpl implements ReadingHistoryService {
     @Transactional
     @Override
     public void deleteReadingHistory(Long storyId) {
-        User currentUser = getCurrentUser();
+        User currentUser = SecurityUtils.getCurrentUserReference(userRepository);
         ReadingHistory history = readingHistoryRepository
                 .findByUserIdAndStoryId(currentUser.getId(), storyId)
                 .orElseThrow(() -> new ResourceNotFoundException("Reading history not found"));
@@ -96,19 +96,12 @@ public class ReadingHistoryServiceImpl implements ReadingHistoryService {
     @Transactional
     @Override
     public void deleteAllReadingHistory() {
-        User currentUser = getCurrentUser();
+        User currentUser = SecurityUtils.getCurrentUserReference(userRepository);
         readingHistoryRepository.deleteAll(
                 readingHistoryRepository.findByUserIdOrderByReadAtDesc(currentUser.getId(),
                         PageRequest.of(0, Integer.MAX_VALUE)).getContent());
     }
 
-    // Lấy thông tin người dùng hiện tại
-    private User getCurrentUser() {
-        var authentication = SecurityContextHolder.getContext().getAuthentication();
-        return userRepository.findByUsername(authentication.getName())
-                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
-    }
-
     // Chuyển đổi entity sang DTO
     private ReadingHistoryResponse convertToResponse(ReadingHistory history) {
         return ReadingHistoryResponse.builder()
@@ -0,0 +1,165 @@
+package com.example.truyen.service.impl;
+
+import com.example.truyen.config.RedisKeyConstants;
+import com.example.truyen.repository.DailyRevenueRepository;
+import com.example.truyen.repository.DailyUnlocksRepository;
+import com.example.truyen.service.StatsRollupService;
+import com.example.truyen.util.RedisLockUtils;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Bảng tổng hợp theo ngày cho dashboard: daily_revenue (đơn SUCCESS) và daily_unlocks.
+ * - Cập nhật bằng UPSERT trong chính transaction nghiệp vụ; mỗi ngày chia N shard chọn ngẫu
+ *   nhiên để các giao dịch song song không xếp hàng chờ khóa cùng 1 dòng.
+ * - Dashboard chỉ SUM vài trăm dòng thay vì quét payment_orders/user_chapter_access.
+ * - Đêm nào cũng tính lại các ngày đã qua từ bảng gốc (ngày đã đóng nên không tranh với ghi mới);
+ *   lần đầu chạy (bảng rỗng) thì dựng lại toàn bộ lịch sử.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StatsRollupServiceImpl implements StatsRollupService {
+
+    private static final Duration RECONCILE_LOCK_TTL = Duration.ofMinutes(30);
+
+    private static final String UPSERT_REVENUE_SQL = "INSERT INTO daily_revenue " +
+            "(stat_date, shard, success_orders, revenue) VALUES (?, ?, 1, ?) " +
+            "ON DUPLICATE KEY UPDATE success_orders = success_orders + 1, revenue = revenue + VALUES(revenue)";
+
+    private static final String UPSERT_UNLOCKS_SQL = "INSERT INTO daily_unlocks " +
+            "(stat_date, shard, unlocks, coins_spent) VALUES (?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE unlocks = unlocks + VALUES(unlocks), coins_spent = coins_spent + VALUES(coins_spent)";
+
+    // Tính lại: dồn cả ngày vào shard 0
+    private static final String REBUILD_REVENUE_SQL = "INSERT INTO daily_revenue " +
+            "(stat_date, shard, success_orders, revenue) " +
+            "SELECT DATE(completed_at), 0, COUNT(*), COALESCE(SUM(amount), 0) FROM payment_orders " +
+            "WHERE status = 'SUCCESS' AND completed_at >= ? AND completed_at < ? GROUP BY DATE(completed_at)";
+
+    private static final String REBUILD_UNLOCKS_SQL = "INSERT INTO daily_unlocks " +
+            "(stat_date, shard, unlocks, coins_spent) " +
+            "SELECT DATE(accessed_at), 0, COUNT(*), COALESCE(SUM(coins_spent), 0) FROM user_chapter_access " +
+            "WHERE accessed_at >= ? AND accessed_at < ? GROUP BY DATE(accessed_at)";
+
+    private final DailyRevenueRepository dailyRevenueRepository;
+    private final DailyUnlocksRepository dailyUnlocksRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final StringRedisTemplate stringRedisTemplate;
+
+    @Value("${app.stats.rollup-shards:8}")
+    private int rollupShards;
+
+    @Value("${app.stats.reconcile-days:3}")
+    private int reconcileDays;
+
+    @Override
+    public void recordRevenue(BigDecimal amount, LocalDateTime completedAt) {
+        jdbcTemplate.update(UPSERT_REVENUE_SQL, completedAt.toLocalDate(), randomShard(), amount);
+    }
+
+    @Override
+    public void recordUnlocks(int unlocks, long coinsSpent, LocalDateTime unlockedAt) {
+        if (unlocks <= 0) {
+            return;
+        }
+        jdbcTemplate.update(UPSERT_UNLOCKS_SQL, unlockedAt.toLocalDate(), randomShard(), unlocks, coinsSpent);
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public long sumRevenue(LocalDate from, LocalDate toExclusive) {
+        return dailyRevenueRepository.sumRevenueBetween(from, toExclusive).longValue();
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public long getTotalRevenue() {
+        return dailyRevenueRepository.sumTotalRevenue().longValue();
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public long getTotalSuccessOrders() {
+        return dailyRevenueRepository.sumTotalSuccessOrders();
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public long getTotalUnlocks() {
+        return dailyUnlocksRepository.sumTotalUnlocks();
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public long getTotalCoinsSpent() {
+        return dailyUnlocksRepository.sumTotalCoinsSpent();
+    }
+
+    @Scheduled(cron = "${app.stats.reconcile-cron:0 15 0 * * *}")
+    @Override
+    public void reconcileRecentDays() {
+        LocalDate today = LocalDate.now();
+        withReconcileLock(() -> rebuild(today.minusDays(reconcileDays), today));
+    }
+
+    // Lần đầu triển khai: bảng tổng hợp rỗng thì dựng lại từ toàn bộ lịch sử
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillIfEmpty() {
+        try {
+            if (dailyRevenueRepository.count() > 0 || dailyUnlocksRepository.count() > 0) {
+                return;
+            }
+            withReconcileLock(() -> rebuild(LocalDate.of(2000, 1, 1), LocalDate.now().plusDays(1)));
+        } catch (Exception e) {
+            log.error("Failed to backfill daily stats rollups: {}", e.getMessage());
+        }
+    }
+
+    private void withReconcileLock(Runnable task) {
+        String lockToken = RedisLockUtils.tryLock(stringRedisTemplate,
+                RedisKeyConstants.STATS_ROLLUP_RECONCILE_LOCK, RECONCILE_LOCK_TTL);
+        if (lockToken == null) {
+            return;
+        }
+        try {
+            task.run();
+        } catch (Exception e) {
+            log.error("Failed to reconcile daily stats rollups: {}", e.getMessage());
+        } finally {
+            RedisLockUtils.unlock(stringRedisTemplate, RedisKeyConstants.STATS_ROLLUP_RECONCILE_LOCK, lockToken);
+        }
+    }
+
+    // Thay các dòng tổng hợp trong [from, to) bằng kết quả tính từ bảng gốc, trong 1 transaction
+    private void rebuild(LocalDate from, LocalDate to) {
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update("DELETE FROM daily_revenue WHERE stat_date >= ? AND stat_date < ?", from, to);
+            int revenueDays = jdbcTemplate.update(REBUILD_REVENUE_SQL, from.atStartOfDay(), to.atStartOfDay());
+            jdbcTemplate.update("DELETE FROM daily_unlocks WHERE stat_date >= ? AND stat_date < ?", from, to);
+            int unlockDays = jdbcTemplate.update(REBUILD_UNLOCKS_SQL, from.atStartOfDay(), to.atStartOfDay());
+            log.info("Reconciled daily stats rollups {} → {}: {} revenue days, {} unlock days",
+                    from, to, revenueDays, unlockDays);
+        });
+    }
+
+    private int randomShard() {
+        return ThreadLocalRandom.current().nextInt(rollupShards);
+    }
+}
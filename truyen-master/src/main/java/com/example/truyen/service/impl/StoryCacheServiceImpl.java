@@ -0,0 +1,158 @@
+package com.example.truyen.service.impl;
+
+import com.example.truyen.config.RedisKeyConstants;
+import com.example.truyen.dto.event.StoryChangedEvent;
+import com.example.truyen.dto.response.StoryResponse;
+import com.example.truyen.service.StoryCacheService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StoryCacheServiceImpl implements StoryCacheService, MessageListener {
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+
+    @Value("${app.cache.story.local-max-size:10000}")
+    private long localMaxSize;
+
+    @Value("${app.cache.story.local-ttl:5m}")
+    private Duration localTtl;
+
+    @Value("${app.cache.story.redis-ttl:30m}")
+    private Duration redisTtl;
+
+    private Cache<Long, StoryResponse> localCache;
+
+    @PostConstruct
+    void init() {
+        localCache = Caffeine.newBuilder()
+                .maximumSize(localMaxSize)
+                .expireAfterWrite(localTtl)
+                .build();
+        listenerContainer.addMessageListener(this,
+                new ChannelTopic(RedisKeyConstants.STORY_CACHE_INVALIDATION_CHANNEL));
+    }
+
+    // Lấy chi tiết truyện: L1 (in-process) → L2 (Redis) → loader (DB)
+    @Override
+    public StoryResponse getOrLoad(Long storyId, Supplier<StoryResponse> loader) {
+        var local = localCache.getIfPresent(storyId);
+        if (local != null) {
+            return local;
+        }
+
+        String key = RedisKeyConstants.STORY_DETAIL_CACHE + storyId;
+        try {
+            Object cached = redisTemplate.opsForValue().get(key);
+            if (cached instanceof StoryResponse response) {
+                localCache.put(storyId, response);
+                return response;
+            }
+        } catch (Exception e) {
+            log.warn("Failed to read story {} from Redis cache: {}", storyId, e.getMessage());
+        }
+
+        // Đọc version trước khi load: nếu có evict xen giữa (dữ liệu vừa load có thể là bản cũ)
+        // thì version đổi và kết quả load không được giữ lại trong cache
+        String versionKey = RedisKeyConstants.STORY_DETAIL_VERSION + storyId;
+        String versionBefore;
+        try {
+            versionBefore = stringRedisTemplate.opsForValue().get(versionKey);
+        } catch (Exception e) {
+            log.warn("Failed to read story {} cache version: {}", storyId, e.getMessage());
+            return loader.get();
+        }
+
+        var response = loader.get();
+        // Ghi cả 2 tầng rồi mới kiểm tra version: evict nào đến sau lần kiểm tra thì
+        // tự xóa được bản vừa ghi (pub/sub xóa L1 luôn tới sau khi version tăng)
+        localCache.put(storyId, response);
+        try {
+            redisTemplate.opsForValue().set(key, response, redisTtl);
+            if (!Objects.equals(versionBefore, stringRedisTemplate.opsForValue().get(versionKey))) {
+                localCache.invalidate(storyId);
+                redisTemplate.delete(key);
+            }
+        } catch (Exception e) {
+            localCache.invalidate(storyId);
+            log.warn("Failed to cache story {} to Redis: {}", storyId, e.getMessage());
+        }
+        return response;
+    }
+
+    // Xóa L2 rồi phát tín hiệu pub/sub để mọi node (kể cả node này) xóa L1
+    @Override
+    public void evict(Collection<Long> storyIds) {
+        if (storyIds == null || storyIds.isEmpty()) {
+            return;
+        }
+
+        evictLocal(storyIds);
+        try {
+            // Tăng version trước khi xóa để lần load đang chạy dở không ghi lại bản cũ
+            storyIds.forEach(id -> stringRedisTemplate.opsForValue()
+                    .increment(RedisKeyConstants.STORY_DETAIL_VERSION + id));
+            redisTemplate.delete(storyIds.stream()
+                    .map(id -> RedisKeyConstants.STORY_DETAIL_CACHE + id)
+                    .toList());
+            stringRedisTemplate.convertAndSend(RedisKeyConstants.STORY_CACHE_INVALIDATION_CHANNEL,
+                    storyIds.stream().map(String::valueOf).collect(Collectors.joining(",")));
+        } catch (Exception e) {
+            log.error("Failed to invalidate story cache for {}: {}", storyIds, e.getMessage());
+        }
+    }
+
+    @Override
+    public void evictLocal(Collection<Long> storyIds) {
+        localCache.invalidateAll(storyIds);
+    }
+
+    // Chỉ xóa cache khi transaction đã commit, tránh cache lại dữ liệu cũ khi
+    // rollback hoặc xóa quá sớm khi dữ liệu mới chưa được ghi
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onStoryChanged(StoryChangedEvent event) {
+        evict(event.getStoryIds());
+    }
+
+    // Nhận tín hiệu xóa L1 từ các node khác qua Redis pub/sub
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            String body = new String(message.getBody(), StandardCharsets.UTF_8);
+            List<Long> storyIds = Arrays.stream(body.split(","))
+                    .map(String::trim)
+                    .filter(s -> !s.isEmpty())
+                    .map(Long::parseLong)
+                    .toList();
+            evictLocal(storyIds);
+        } catch (Exception e) {
+            log.warn("Invalid story cache invalidation message: {}", e.getMessage());
+        }
+    }
+}
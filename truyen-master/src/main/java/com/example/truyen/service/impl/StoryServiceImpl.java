@@ -1,18 +1,27 @@
 package com.example.truyen.service.impl;
 
+import com.example.truyen.dto.event.ChapterChangedEvent;
 import com.example.truyen.dto.event.SearchEvent;
+import com.example.truyen.dto.event.StoryChangedEvent;
+import com.example.truyen.dto.projection.StoryCardItem;
+import com.example.truyen.dto.projection.StoryListItem;
 import com.example.truyen.dto.request.StoryFilterCriteria;
 import com.example.truyen.dto.request.StoryRequest;
+import com.example.truyen.dto.response.StoryCardResponse;
 import com.example.truyen.dto.response.StoryResponse;
 import com.example.truyen.entity.*;
 import com.example.truyen.exception.BadRequestException;
 import com.example.truyen.exception.ResourceNotFoundException;
 import com.example.truyen.kafka.producer.SearchProducer;
 import com.example.truyen.repository.*;
+import com.example.truyen.service.ChapterContentService;
+import com.example.truyen.service.ChapterRevisionService;
 import com.example.truyen.service.MinIoService;
+import com.example.truyen.service.StoryCacheService;
 import com.example.truyen.service.StoryService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
@@ -33,44 +42,38 @@ public class StoryServiceImpl implements StoryService {
     private final CategoryRepository categoryRepository;
     private final SearchProducer searchProducer;
     private final MinIoService minIoService;
-    private final RatingRepository ratingRepository;
     private final ChapterRepository chapterRepository;
+    private final ChapterContentService chapterContentService;
+    private final ChapterRevisionService chapterRevisionService;
+    private final StoryCacheService storyCacheService;
+    private final ApplicationEventPublisher eventPublisher;
 
-    // Lấy danh sách truyện (batch rating query)
+    // Lấy danh sách truyện (projection + batch category query)
     @Transactional(readOnly = true)
     @Override
     public Page<StoryResponse> getAllStories(int page, int size) {
-        var storiesPage = storyRepository.findAll(PageRequest.of(page, size));
+        var storiesPage = storyRepository.findAllListItems(PageRequest.of(page, size));
         return convertToResponsePage(storiesPage);
     }
 
-    // Lấy chi tiết truyện theo ID (single query vẫn OK)
-    @Transactional(readOnly = true)
+    // Lấy chi tiết truyện theo ID (cache L1 + L2). Không mở transaction để cache
+    // hit không phải lấy connection; khi miss thì fetch join author + categories
     @Override
     public StoryResponse getStoryById(Long id) {
-        var story = storyRepository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Story", "id", id));
-        return convertToResponse(story);
+        return storyCacheService.getOrLoad(id, () -> {
+            var story = storyRepository.findByIdWithDetails(id)
+                    .orElseThrow(() -> new ResourceNotFoundException("Story", "id", id));
+            return convertToResponse(story);
+        });
     }
 
     // Tìm kiếm truyện và gửi event tracking
     @Transactional(readOnly = true)
     @Override
     public Page<StoryResponse> searchStories(String keyword, int page, int size) {
-        var storiesPage = storyRepository.searchByTitle(keyword, PageRequest.of(page, size));
+        var storiesPage = storyRepository.searchListItemsByTitle(keyword, PageRequest.of(page, size));
         var results = convertToResponsePage(storiesPage);
-
-        // Gửi event search vào Kafka
-        try {
-            var searchEvent = SearchEvent.create(
-                    keyword,
-                    null,
-                    (int) results.getTotalElements());
-            searchProducer.sendSearchEvent(searchEvent);
-        } catch (Exception e) {
-            log.warn("Failed to send search event: {}", e.getMessage());
-        }
-
+        sendSearchEvent(keyword, results.getTotalElements());
         return results;
     }
 
@@ -78,14 +81,15 @@ public class StoryServiceImpl implements StoryService {
     @Transactional(readOnly = true)
     @Override
     public Page<StoryResponse> getStoriesByCategory(Long categoryId, int page, int size) {
-        var storiesPage = storyRepository.findByCategoryId(categoryId, PageRequest.of(page, size));
+        var storiesPage = storyRepository.findListItemsByCategoryId(categoryId, PageRequest.of(page, size));
         return convertToResponsePage(storiesPage);
     }
 
     // Lấy danh sách truyện HOT
+    @Transactional(readOnly = true)
     @Override
     public Page<StoryResponse> getHotStories(int page, int size) {
-        var storiesPage = storyRepository.findByIsHotTrue(PageRequest.of(page, size));
+        var storiesPage = storyRepository.findHotListItems(PageRequest.of(page, size));
         return convertToResponsePage(storiesPage);
     }
 
@@ -93,7 +97,7 @@ public class StoryServiceImpl implements StoryService {
     @Transactional(readOnly = true)
     @Override
     public Page<StoryResponse> getLatestStories(int page, int size) {
-        var storiesPage = storyRepository.findAllOrderByCreatedAtDesc(PageRequest.of(page, size));
+        var storiesPage = storyRepository.findLatestListItems(PageRequest.of(page, size));
         return convertToResponsePage(storiesPage);
     }
 
@@ -181,7 +185,9 @@ public class StoryServiceImpl implements StoryService {
             }
         }
 
-        return convertToResponse(storyRepository.save(story));
+        var saved = storyRepository.save(story);
+        eventPublisher.publishEvent(StoryChangedEvent.of(id));
+        return convertToResponse(saved);
     }
 
     // Xóa truyện
@@ -190,96 +196,203 @@ public class StoryServiceImpl implements StoryService {
     public void deleteStory(Long id) {
         var story = storyRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Story", "id", id));
+        // Gỡ snapshot tĩnh và index của các chương bị xóa theo truyện (xử lý sau commit)
+        List<Long> chapterIds = chapterRepository.findIdsByStoryIds(List.of(id)).stream()
+                .map(row -> (Long) row[1])
+                .toList();
+        chapterContentService.deleteContentsByStoryIds(List.of(id));
+        chapterRevisionService.deleteRevisionsByStoryIds(List.of(id));
         storyRepository.delete(story);
+        eventPublisher.publishEvent(StoryChangedEvent.of(id));
+        if (!chapterIds.isEmpty()) {
+            eventPublisher.publishEvent(ChapterChangedEvent.of(id, chapterIds));
+        }
     }
 
-    // Tăng lượt xem truyện
+    // Tăng lượt xem truyện bằng bulk update (không đổi updated_at, vốn dùng cho ETag)
     @Transactional
     @Override
     public void increaseView(Long id) {
-        var story = storyRepository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Story", "id", id));
-        story.setTotalViews(story.getTotalViews() + 1);
-        storyRepository.save(story);
+        if (storyRepository.incrementTotalViews(id, 1) == 0) {
+            throw new ResourceNotFoundException("Story", "id", id);
+        }
     }
 
     // Lọc truyện nâng cao
     @Transactional(readOnly = true)
     @Override
     public Page<StoryResponse> filterStories(StoryFilterCriteria criteria) {
+        var storiesPage = storyRepository.filterListItems(
+                criteria.getKeyword(),
+                criteria.getAuthorId(),
+                parseFilterStatus(criteria),
+                criteria.getMinChapters(),
+                criteria.getMaxChapters(),
+                criteria.getStartDate(),
+                criteria.getEndDate(),
+                criteria.getCategoryIds(),
+                filterCategoryCount(criteria),
+                buildFilterPageable(criteria));
+        return convertToResponsePage(storiesPage);
+    }
+
+    // Lấy danh sách truyện của tác giả
+    @Transactional(readOnly = true)
+    @Override
+    public List<StoryResponse> getStoriesByAuthor(Long authorId) {
+        var stories = storyRepository.findListItemsByAuthorId(authorId);
+        return convertToResponseList(stories);
+    }
+
+    // ===== STORY CARD (view=card) =====
+
+    // Lấy danh sách thẻ truyện
+    @Transactional(readOnly = true)
+    @Override
+    public Page<StoryCardResponse> getAllStoryCards(int page, int size) {
+        return storyRepository.findAllCardItems(PageRequest.of(page, size)).map(this::convertToCardResponse);
+    }
+
+    // Tìm kiếm thẻ truyện và gửi event tracking
+    @Transactional(readOnly = true)
+    @Override
+    public Page<StoryCardResponse> searchStoryCards(String keyword, int page, int size) {
+        var results = storyRepository.searchCardItemsByTitle(keyword, PageRequest.of(page, size))
+                .map(this::convertToCardResponse);
+        sendSearchEvent(keyword, results.getTotalElements());
+        return results;
+    }
+
+    // Lấy thẻ truyện theo danh mục
+    @Transactional(readOnly = true)
+    @Override
+    public Page<StoryCardResponse> getStoryCardsByCategory(Long categoryId, int page, int size) {
+        return storyRepository.findCardItemsByCategoryId(categoryId, PageRequest.of(page, size))
+                .map(this::convertToCardResponse);
+    }
+
+    // Lấy thẻ truyện HOT
+    @Transactional(readOnly = true)
+    @Override
+    public Page<StoryCardResponse> getHotStoryCards(int page, int size) {
+        return storyRepository.findHotCardItems(PageRequest.of(page, size)).map(this::convertToCardResponse);
+    }
+
+    // Lấy thẻ truyện mới nhất
+    @Transactional(readOnly = true)
+    @Override
+    public Page<StoryCardResponse> getLatestStoryCards(int page, int size) {
+        return storyRepository.findLatestCardItems(PageRequest.of(page, size)).map(this::convertToCardResponse);
+    }
+
+    // Lọc truyện nâng cao, trả về thẻ truyện
+    @Transactional(readOnly = true)
+    @Override
+    public Page<StoryCardResponse> filterStoryCards(StoryFilterCriteria criteria) {
+        return storyRepository.filterCardItems(
+                criteria.getKeyword(),
+                criteria.getAuthorId(),
+                parseFilterStatus(criteria),
+                criteria.getMinChapters(),
+                criteria.getMaxChapters(),
+                criteria.getStartDate(),
+                criteria.getEndDate(),
+                criteria.getCategoryIds(),
+                filterCategoryCount(criteria),
+                buildFilterPageable(criteria))
+                .map(this::convertToCardResponse);
+    }
+
+    // Lấy thẻ truyện của tác giả
+    @Transactional(readOnly = true)
+    @Override
+    public List<StoryCardResponse> getStoryCardsByAuthor(Long authorId) {
+        return storyRepository.findCardItemsByAuthorId(authorId).stream()
+                .map(this::convertToCardResponse)
+                .toList();
+    }
+
+    private StoryCardResponse convertToCardResponse(StoryCardItem item) {
+        return StoryCardResponse.builder()
+                .id(item.getId())
+                .title(item.getTitle())
+                .image(item.getImage())
+                .authorName(item.getAuthorName())
+                .status(item.getStatus().name())
+                .totalChapters(item.getTotalChapters())
+                .totalViews(item.getTotalViews())
+                .averageRating(Math.round(item.getAverageRating() * 10.0) / 10.0)
+                .hasVipChapters(Boolean.TRUE.equals(item.getHasVipChapters()))
+                .build();
+    }
+
+    // ===== FILTER / SEARCH HELPERS =====
+
+    private PageRequest buildFilterPageable(StoryFilterCriteria criteria) {
         var sortParams = criteria.getSort().split(",");
         var sortField = sortParams[0];
         var sortDir = sortParams.length > 1 ? sortParams[1] : "asc";
 
         var direction = sortDir.equalsIgnoreCase("desc") ? Sort.Direction.DESC : Sort.Direction.ASC;
-        var pageable = PageRequest.of(criteria.getPage(), criteria.getSize(), Sort.by(direction, sortField));
+        return PageRequest.of(criteria.getPage(), criteria.getSize(), Sort.by(direction, sortField));
+    }
 
-        Story.Status storyStatus = null;
+    private Story.Status parseFilterStatus(StoryFilterCriteria criteria) {
         if (criteria.getStatus() != null && !criteria.getStatus().trim().isEmpty()) {
             try {
-                storyStatus = Story.Status.valueOf(criteria.getStatus().toUpperCase());
+                return Story.Status.valueOf(criteria.getStatus().toUpperCase());
             } catch (IllegalArgumentException e) {
 
             }
         }
+        return null;
+    }
 
-        var categoryCount = (criteria.getCategoryIds() != null && !criteria.getCategoryIds().isEmpty())
+    private Integer filterCategoryCount(StoryFilterCriteria criteria) {
+        return (criteria.getCategoryIds() != null && !criteria.getCategoryIds().isEmpty())
                 ? criteria.getCategoryIds().size()
                 : null;
-
-        var storiesPage = storyRepository.filterStories(
-                criteria.getKeyword(),
-                criteria.getAuthorId(),
-                storyStatus,
-                criteria.getMinChapters(),
-                criteria.getMaxChapters(),
-                criteria.getStartDate(),
-                criteria.getEndDate(),
-                criteria.getCategoryIds(),
-                categoryCount,
-                pageable);
-        return convertToResponsePage(storiesPage);
     }
 
-    // Lấy danh sách truyện của tác giả
-    @Transactional(readOnly = true)
-    @Override
-    public List<StoryResponse> getStoriesByAuthor(Long authorId) {
-        var stories = storyRepository.findByAuthorId(authorId);
-        return convertToResponseList(stories);
+    // Gửi event search vào Kafka (qua outbox)
+    private void sendSearchEvent(String keyword, long totalResults) {
+        try {
+            var searchEvent = SearchEvent.create(
+                    keyword,
+                    null,
+                    (int) totalResults);
+            searchProducer.sendSearchEvent(searchEvent);
+        } catch (Exception e) {
+            log.warn("Failed to send search event: {}", e.getMessage());
+        }
     }
 
     // ===== BATCH CONVERSION (tránh N+1 query) =====
 
-    // Chuyển đổi Page<Story> sang Page<StoryResponse> với batch rating query
-    private Page<StoryResponse> convertToResponsePage(Page<Story> storiesPage) {
-        var stories = storiesPage.getContent();
-        var responses = convertToResponseList(stories);
+    // Chuyển đổi Page<StoryListItem> sang Page<StoryResponse>
+    private Page<StoryResponse> convertToResponsePage(Page<StoryListItem> storiesPage) {
+        var responses = convertToResponseList(storiesPage.getContent());
         return new PageImpl<>(responses, storiesPage.getPageable(), storiesPage.getTotalElements());
     }
 
-    // Chuyển đổi List<Story> sang List<StoryResponse> — chỉ 2 queries cho rating
-    private List<StoryResponse> convertToResponseList(List<Story> stories) {
-        if (stories.isEmpty()) {
+    // Chuyển đổi List<StoryListItem> sang List<StoryResponse> — chỉ 1 query cho
+    // toàn bộ danh mục, rating và VIP flag đã có sẵn trong projection
+    private List<StoryResponse> convertToResponseList(List<StoryListItem> items) {
+        if (items.isEmpty()) {
             return Collections.emptyList();
         }
 
-        // 1 query lấy toàn bộ averageRating cho tất cả stories
-        var storyIds = stories.stream().map(Story::getId).toList();
-        Map<Long, Double> avgRatingMap = buildAvgRatingMap(storyIds);
-        Map<Long, Long> countRatingMap = buildCountRatingMap(storyIds);
+        var storyIds = items.stream().map(StoryListItem::getId).toList();
+        Map<Long, Set<String>> categoryMap = buildCategoryNameMap(storyIds);
 
-        // Map kết quả cho từng story (không cần query thêm)
-        return stories.stream()
-                .map(story -> buildStoryResponse(story, avgRatingMap, countRatingMap))
+        return items.stream()
+                .map(item -> buildStoryResponse(item, categoryMap))
                 .toList();
     }
 
     // Chuyển đổi 1 Story (dùng cho getById, create, update — chỉ 1 story nên N+1
     // không ảnh hưởng)
     private StoryResponse convertToResponse(Story story) {
-        var averageRating = ratingRepository.getAverageRating(story.getId());
-        var totalRatingsCount = ratingRepository.countByStoryId(story.getId());
         boolean hasVip = chapterRepository.existsByStoryIdAndIsLockedTrue(story.getId());
 
         return StoryResponse.builder()
@@ -296,53 +409,40 @@ public class StoryServiceImpl implements StoryService {
                 .categories(story.getCategories().stream().map(Category::getName).collect(Collectors.toSet()))
                 .createdAt(story.getCreatedAt())
                 .updatedAt(story.getUpdatedAt())
-                .averageRating(averageRating != null ? Math.round(averageRating * 10.0) / 10.0 : 0.0)
-                .totalRatings(totalRatingsCount != null ? totalRatingsCount.intValue() : 0)
+                .averageRating(Math.round(story.getAverageRating() * 10.0) / 10.0)
+                .totalRatings(story.getRatingCount())
                 .hasVipChapters(hasVip)
                 .build();
     }
 
-    // Build StoryResponse từ pre-fetched rating maps
-    private StoryResponse buildStoryResponse(Story story, Map<Long, Double> avgRatingMap,
-            Map<Long, Long> countRatingMap) {
-        var avgRating = avgRatingMap.getOrDefault(story.getId(), 0.0);
-        var totalRatings = countRatingMap.getOrDefault(story.getId(), 0L);
-        boolean hasVip = chapterRepository.existsByStoryIdAndIsLockedTrue(story.getId());
-
+    // Build StoryResponse từ projection và map danh mục đã batch
+    private StoryResponse buildStoryResponse(StoryListItem item, Map<Long, Set<String>> categoryMap) {
         return StoryResponse.builder()
-                .id(story.getId())
-                .title(story.getTitle())
-                .authorName(story.getAuthor() != null ? story.getAuthor().getName() : null)
-                .authorId(story.getAuthor() != null ? story.getAuthor().getId() : null)
-                .description(story.getDescription())
-                .image(story.getImage())
-                .status(story.getStatus().name())
-                .totalChapters(story.getTotalChapters())
-                .totalViews(story.getTotalViews())
-                .isHot(story.getIsHot())
-                .categories(story.getCategories().stream().map(Category::getName).collect(Collectors.toSet()))
-                .createdAt(story.getCreatedAt())
-                .updatedAt(story.getUpdatedAt())
-                .averageRating(Math.round(avgRating * 10.0) / 10.0)
-                .totalRatings(totalRatings.intValue())
-                .hasVipChapters(hasVip)
+                .id(item.getId())
+                .title(item.getTitle())
+                .authorName(item.getAuthorName())
+                .authorId(item.getAuthorId())
+                .description(item.getDescription())
+                .image(item.getImage())
+                .status(item.getStatus().name())
+                .totalChapters(item.getTotalChapters())
+                .totalViews(item.getTotalViews())
+                .isHot(item.getIsHot())
+                .categories(categoryMap.getOrDefault(item.getId(), new HashSet<>()))
+                .createdAt(item.getCreatedAt())
+                .updatedAt(item.getUpdatedAt())
+                .averageRating(Math.round(item.getAverageRating() * 10.0) / 10.0)
+                .totalRatings(item.getRatingCount())
+                .hasVipChapters(Boolean.TRUE.equals(item.getHasVipChapters()))
                 .build();
     }
 
-    // Build map storyId → averageRating từ batch query
-    private Map<Long, Double> buildAvgRatingMap(List<Long> storyIds) {
-        return ratingRepository.getAverageRatingsByStoryIds(storyIds).stream()
-                .collect(Collectors.toMap(
-                        row -> (Long) row[0],
-                        row -> (Double) row[1]));
-    }
-
-    // Build map storyId → totalRatings từ batch query
-    private Map<Long, Long> buildCountRatingMap(List<Long> storyIds) {
-        return ratingRepository.countByStoryIds(storyIds).stream()
-                .collect(Collectors.toMap(
+    // Build map storyId → tên danh mục từ batch query
+    private Map<Long, Set<String>> buildCategoryNameMap(List<Long> storyIds) {
+        return storyRepository.findCategoryNamesByStoryIds(storyIds).stream()
+                .collect(Collectors.groupingBy(
                         row -> (Long) row[0],
-                        row -> (Long) row[1]));
+                        Collectors.mapping(row -> (String) row[1], Collectors.toSet())));
     }
 
     @Override
@@ -40,7 +40,6 @@ public class TrendingServiceImpl implements TrendingService {
 
     private final RedisTemplate<String, Object> redisTemplate;
     private final StoryRepository storyRepository;
-    private final RatingRepository ratingRepository;
     private final FavoriteRepository favoriteRepository;
     private final CommentRepository commentRepository;
     private final RankingRepository rankingRepository;
@@ -57,13 +56,12 @@ public class TrendingServiceImpl implements TrendingService {
             double viewScore = maxViews > 0 ? (recentViews * VIEW_WEIGHT / maxViews) : 0;
 
             // 2. Điểm đánh giá (20%)
-            Double avgRating = ratingRepository.getAverageRating(story.getId());
-            double ratingScore = avgRating != null ? (avgRating / 5.0 * RATING_WEIGHT) : 0;
+            double ratingScore = story.getAverageRating() / 5.0 * RATING_WEIGHT;
 
             // 3. Điểm tương tác (30%): yêu thích, bình luận, đánh giá
             Long favoriteCount = favoriteRepository.countByStoryId(story.getId());
             Long commentCount = commentRepository.countByStoryId(story.getId());
-            Long ratingCount = ratingRepository.countByStoryId(story.getId());
+            long ratingCount = story.getRatingCount();
 
             double engagement = (favoriteCount * FAVORITE_SCORE) + (commentCount * COMMENT_SCORE)
                     + (ratingCount * RATING_SCORE);
@@ -140,7 +138,6 @@ public class TrendingServiceImpl implements TrendingService {
                     .map(story -> {
                         try {
                             double score = calculateTrendingScore(story, days);
-                            var avgRating = ratingRepository.getAverageRating(story.getId());
                             var favoriteCount = favoriteRepository.countByStoryId(story.getId());
                             var commentCount = commentRepository.countByStoryId(story.getId());
 
@@ -159,7 +156,7 @@ public class TrendingServiceImpl implements TrendingService {
                                     .authorName(story.getAuthor() != null ? story.getAuthor().getName() : null)
                                     .authorId(story.getAuthor() != null ? story.getAuthor().getId() : null)
                                     .categories(categoryNames)
-                                    .averageRating(avgRating != null ? Math.round(avgRating * 10.0) / 10.0 : 0.0)
+                                    .averageRating(Math.round(story.getAverageRating() * 10.0) / 10.0)
                                     .favoriteCount(favoriteCount)
                                     .commentCount(commentCount)
                                     .trendingScore(score)
@@ -297,7 +294,6 @@ public class TrendingServiceImpl implements TrendingService {
                     .map(ranking -> {
                         try {
                             var story = ranking.getStory();
-                            var avgRating = ratingRepository.getAverageRating(story.getId());
                             var favoriteCount = favoriteRepository.countByStoryId(story.getId());
                             var commentCount = commentRepository.countByStoryId(story.getId());
 
@@ -316,7 +312,7 @@ public class TrendingServiceImpl implements TrendingService {
                                     .authorName(story.getAuthor() != null ? story.getAuthor().getName() : null)
                                     .authorId(story.getAuthor() != null ? story.getAuthor().getId() : null)
                                     .categories(categoryNames)
-                                    .averageRating(avgRating != null ? Math.round(avgRating * 10.0) / 10.0 : 0.0)
+                                    .averageRating(Math.round(story.getAverageRating() * 10.0) / 10.0)
                                     .favoriteCount(favoriteCount)
                                     .commentCount(commentCount)
                                     .rank(ranking.getRankPosition())
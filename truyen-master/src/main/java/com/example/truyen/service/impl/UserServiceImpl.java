@@ -9,12 +9,13 @@ import com.example.truyen.entity.User;
 import com.example.truyen.exception.BadRequestException;
 import com.example.truyen.exception.ResourceNotFoundException;
 import com.example.truyen.repository.UserRepository;
+import com.example.truyen.security.SecurityUtils;
 import com.example.truyen.service.UserService;
+import com.example.truyen.service.UserStatusService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -26,6 +27,7 @@ public class UserServiceImpl implements UserService {
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
     private final MinIoService minIoService;
+    private final UserStatusService userStatusService;
 
     // Lấy danh sách tất cả người dùng
     @Transactional(readOnly = true)
@@ -84,14 +86,23 @@ public class UserServiceImpl implements UserService {
             user.setPhone(request.getPhone());
         }
 
+        // Đổi mật khẩu hoặc trạng thái: thu hồi các token đã cấp
+        boolean revokeTokens = false;
         if (request.getPassword() != null && !request.getPassword().trim().isEmpty()) {
             user.setPassword(passwordEncoder.encode(request.getPassword()));
+            revokeTokens = true;
         }
 
         if (request.getIsActive() != null &&
                 (currentUser.getRole().equals(User.Role.SUPER_ADMIN) ||
-                        currentUser.getRole().equals(User.Role.ADMIN))) {
+                        currentUser.getRole().equals(User.Role.ADMIN))
+                && !request.getIsActive().equals(user.getIsActive())) {
             user.setIsActive(request.getIsActive());
+            revokeTokens = true;
+        }
+
+        if (revokeTokens) {
+            userStatusService.bumpStatusVersion(user);
         }
 
         return convertToResponse(userRepository.save(user));
@@ -130,6 +141,7 @@ public class UserServiceImpl implements UserService {
         }
 
         targetUser.setRole(newRole);
+        userStatusService.bumpStatusVersion(targetUser);
         return convertToResponse(userRepository.save(targetUser));
     }
 
@@ -159,6 +171,7 @@ public class UserServiceImpl implements UserService {
         }
 
         targetUser.setIsActive(!targetUser.getIsActive());
+        userStatusService.bumpStatusVersion(targetUser);
         return convertToResponse(userRepository.save(targetUser));
     }
 
@@ -187,6 +200,7 @@ public class UserServiceImpl implements UserService {
             throw new BadRequestException("ADMIN cannot delete another ADMIN");
         }
         userRepository.delete(targetUser);
+        userStatusService.revokeAll(userId);
     }
 
     @Transactional(readOnly = true)
@@ -233,8 +247,7 @@ public class UserServiceImpl implements UserService {
 
     @Override
     public User getCurrentUserEntity() {
-        var authentication = SecurityContextHolder.getContext().getAuthentication();
-        return userRepository.findByUsername(authentication.getName())
+        return userRepository.findById(SecurityUtils.getCurrentUserId())
                 .orElseThrow(() -> new ResourceNotFoundException("User not found"));
     }
 
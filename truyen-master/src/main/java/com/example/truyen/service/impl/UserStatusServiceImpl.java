@@ -0,0 +1,130 @@
+package com.example.truyen.service.impl;
+
+import com.example.truyen.config.RedisKeyConstants;
+import com.example.truyen.dto.event.UserStatusChangedEvent;
+import com.example.truyen.entity.User;
+import com.example.truyen.repository.UserRepository;
+import com.example.truyen.service.UserStatusService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+/**
+ * Version trạng thái tài khoản dùng để thu hồi JWT mà không phải load user mỗi request.
+ * L1 Caffeine (TTL ngắn, làm lưới an toàn nếu lỡ mất tin pub/sub) → L2 Redis → DB.
+ * Khi user đổi trạng thái, giá trị mới được SET thẳng vào Redis sau commit, còn lúc đọc
+ * từ DB chỉ ghi bằng SETNX: một lần đọc cũ chạy song song không thể ghi đè version mới.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class UserStatusServiceImpl implements UserStatusService, MessageListener {
+
+    private static final int REVOKED = -1;
+
+    private final UserRepository userRepository;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${app.cache.user-status.local-max-size:100000}")
+    private long localMaxSize;
+
+    @Value("${app.cache.user-status.local-ttl:30s}")
+    private Duration localTtl;
+
+    @Value("${app.cache.user-status.redis-ttl:24h}")
+    private Duration redisTtl;
+
+    private Cache<Long, Integer> localCache;
+
+    @PostConstruct
+    void init() {
+        localCache = Caffeine.newBuilder()
+                .maximumSize(localMaxSize)
+                .expireAfterWrite(localTtl)
+                .build();
+        listenerContainer.addMessageListener(this,
+                new ChannelTopic(RedisKeyConstants.USER_STATUS_INVALIDATION_CHANNEL));
+    }
+
+    @Override
+    public boolean isTokenCurrent(Long userId, int statusVersion) {
+        int current = localCache.get(userId, this::loadVersion);
+        return current != REVOKED && current == statusVersion;
+    }
+
+    @Override
+    public void bumpStatusVersion(User user) {
+        int next = (user.getStatusVersion() != null ? user.getStatusVersion() : 0) + 1;
+        user.setStatusVersion(next);
+        eventPublisher.publishEvent(new UserStatusChangedEvent(user.getId(),
+                Boolean.FALSE.equals(user.getIsActive()) ? REVOKED : next));
+    }
+
+    @Override
+    public void revokeAll(Long userId) {
+        eventPublisher.publishEvent(new UserStatusChangedEvent(userId, REVOKED));
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onUserStatusChanged(UserStatusChangedEvent event) {
+        Long userId = event.getUserId();
+        localCache.put(userId, event.getStatusVersion());
+        try {
+            stringRedisTemplate.opsForValue().set(RedisKeyConstants.USER_STATUS_VERSION + userId,
+                    String.valueOf(event.getStatusVersion()), redisTtl);
+            stringRedisTemplate.convertAndSend(RedisKeyConstants.USER_STATUS_INVALIDATION_CHANNEL,
+                    String.valueOf(userId));
+        } catch (Exception e) {
+            // Node khác tự nhận version mới khi L1 hết hạn (local-ttl) và Redis hết hạn/đọc lại
+            log.error("Failed to publish status version of user {}: {}", userId, e.getMessage());
+        }
+    }
+
+    // Nhận tín hiệu từ node khác: bỏ bản L1, lần kiểm tra sau đọc lại từ Redis
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            localCache.invalidate(Long.parseLong(new String(message.getBody(), StandardCharsets.UTF_8)));
+        } catch (NumberFormatException e) {
+            log.warn("Invalid user status invalidation message: {}", e.getMessage());
+        }
+    }
+
+    private int loadVersion(Long userId) {
+        String key = RedisKeyConstants.USER_STATUS_VERSION + userId;
+        try {
+            String cached = stringRedisTemplate.opsForValue().get(key);
+            if (cached != null) {
+                return Integer.parseInt(cached);
+            }
+        } catch (Exception e) {
+            log.warn("Failed to read status version of user {} from Redis: {}", userId, e.getMessage());
+        }
+
+        // User không còn tồn tại cũng coi như đã thu hồi
+        int version = userRepository.findStatusVersionById(userId).orElse(REVOKED);
+        try {
+            stringRedisTemplate.opsForValue().setIfAbsent(key, String.valueOf(version), redisTtl);
+        } catch (Exception e) {
+            log.warn("Failed to cache status version of user {} to Redis: {}", userId, e.getMessage());
+        }
+        return version;
+    }
+}
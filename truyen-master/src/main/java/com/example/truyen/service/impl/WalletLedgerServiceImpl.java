@@ -0,0 +1,396 @@
+package com.example.truyen.service.impl;
+
+import com.example.truyen.config.RedisKeyConstants;
+import com.example.truyen.exception.BadRequestException;
+import com.example.truyen.exception.WalletBusyException;
+import com.example.truyen.repository.WalletTransactionRepository;
+import com.example.truyen.service.WalletLedgerService;
+import com.example.truyen.util.RedisLockUtils;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Ví không dùng row lock trên đường chi tiêu:
+ * - Duyệt chi/cộng xu bằng Lua trên Redis (kiểm tra số dư + INCRBY + ghi reservation, nguyên tử).
+ * - wallet_transactions là ledger chỉ ghi thêm; user_wallets.balance là snapshot đã gộp các
+ *   dòng settled, job nền gộp dần các dòng chưa settle (khóa từng dòng user_wallets rất ngắn).
+ * - Số dư Redis mất (restart/flush) thì nạp lại = snapshot + tổng các dòng chưa settle. Chỉ nạp khi
+ *   user không có reservation dở (wallet:inflight): dòng ledger của reservation chưa commit không có
+ *   trong kết quả SELECT nên số dư nạp lúc đó sẽ thiếu khoản chi đó.
+ * - Node chết giữa transaction: reservation còn trong ZSet, job khôi phục dựa vào việc có
+ *   dòng ledger mang reservationId hay không để giữ hoặc hoàn lại.
+ * - Dòng đã settle cũ hơn archive-after được chuyển sang bảng lưu trữ để bảng chính
+ *   (và các index của nó) không phình theo thời gian.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class WalletLedgerServiceImpl implements WalletLedgerService {
+
+    private static final Duration SETTLE_LOCK_TTL = Duration.ofMinutes(5);
+    private static final Duration ARCHIVE_LOCK_TTL = Duration.ofHours(1);
+
+    // Kết quả script reserve: {trạng thái, số dư}
+    private static final long STATUS_NOT_LOADED = 0;
+    private static final long STATUS_INSUFFICIENT = 1;
+
+    // Kết quả script load: {trạng thái, số dư}
+    private static final long LOAD_REFUSED = 0;
+
+    // KEYS: balance, reservations, inflight
+    private static final RedisScript<List> RESERVE_SCRIPT = new DefaultRedisScript<>("""
+            local balance = redis.call('GET', KEYS[1])
+            if not balance then return {0, 0} end
+            balance = tonumber(balance)
+            local delta = tonumber(ARGV[1])
+            if delta < 0 and balance + delta < 0 then return {1, balance} end
+            balance = redis.call('INCRBY', KEYS[1], delta)
+            if redis.call('ZADD', KEYS[2], ARGV[3], ARGV[2]) == 1 then
+                redis.call('HINCRBY', KEYS[3], 'pending', 1)
+            end
+            return {2, balance}
+            """, List.class);
+
+    // Transaction đã commit: bỏ reservation (KEYS: reservations, inflight).
+    // pending không xuống dưới 0 (reservation tạo trước khi có wallet:inflight không được đếm)
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('ZREM', KEYS[1], ARGV[1]) == 1 then
+                if tonumber(redis.call('HGET', KEYS[2], 'pending') or '0') > 0 then
+                    redis.call('HINCRBY', KEYS[2], 'pending', -1)
+                end
+                redis.call('HINCRBY', KEYS[2], 'releases', 1)
+                return 1
+            end
+            return 0
+            """, Long.class);
+
+    // Chỉ hoàn lại nếu chính lời gọi này xóa được reservation (rollback và job khôi phục không hoàn 2 lần)
+    // KEYS: balance, reservations, inflight
+    private static final RedisScript<Long> COMPENSATE_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('ZREM', KEYS[2], ARGV[1]) == 1 then
+                if tonumber(redis.call('HGET', KEYS[3], 'pending') or '0') > 0 then
+                    redis.call('HINCRBY', KEYS[3], 'pending', -1)
+                end
+                redis.call('HINCRBY', KEYS[3], 'releases', 1)
+                if redis.call('EXISTS', KEYS[1]) == 1 then
+                    redis.call('INCRBY', KEYS[1], ARGV[2])
+                end
+                return 1
+            end
+            return 0
+            """, Long.class);
+
+    /**
+     * Ghi số dư vừa đọc từ DB (KEYS: balance, inflight; ARGV: số dư, releases đọc trước câu SELECT).
+     * Từ chối nếu còn reservation dở hoặc có reservation kết thúc trong lúc đọc DB, vì khi đó
+     * kết quả SELECT có thể thiếu (hoặc thừa) khoản của reservation đó.
+     */
+    private static final RedisScript<List> LOAD_SCRIPT = new DefaultRedisScript<>("""
+            local current = redis.call('GET', KEYS[1])
+            if current then return {1, tonumber(current)} end
+            local pending = tonumber(redis.call('HGET', KEYS[2], 'pending') or '0')
+            local releases = redis.call('HGET', KEYS[2], 'releases') or '0'
+            if pending > 0 or releases ~= ARGV[2] then return {0, 0} end
+            redis.call('SET', KEYS[1], ARGV[1])
+            return {1, tonumber(ARGV[1])}
+            """, List.class);
+
+    private static final String LOAD_BALANCE_SQL = "SELECT " +
+            "COALESCE((SELECT balance FROM user_wallets WHERE user_id = ?), 0) + " +
+            "COALESCE((SELECT SUM(CASE WHEN type = 'SPEND' THEN -amount ELSE amount END) " +
+            "FROM wallet_transactions WHERE user_id = ? AND settled = false), 0)";
+
+    private static final String UNSETTLED_SQL = "SELECT id, user_id, " +
+            "CASE WHEN type = 'SPEND' THEN -amount ELSE amount END " +
+            "FROM wallet_transactions WHERE settled = false ORDER BY id LIMIT ? FOR UPDATE";
+
+    private static final String APPLY_SNAPSHOT_SQL = "INSERT INTO user_wallets (user_id, balance, version, updated_at) " +
+            "VALUES (?, ?, 0, ?) ON DUPLICATE KEY UPDATE balance = balance + VALUES(balance), " +
+            "version = version + 1, updated_at = VALUES(updated_at)";
+
+    private static final String ARCHIVABLE_SQL = "SELECT id FROM wallet_transactions " +
+            "WHERE created_at < ? AND (settled IS NULL OR settled = true) " +
+            "ORDER BY created_at, id LIMIT ? FOR UPDATE";
+
+    private static final String COPY_TO_ARCHIVE_SQL = "INSERT IGNORE INTO wallet_transactions_archive " +
+            "(id, user_id, type, amount, balance_after, description, ref_type, ref_id, reservation_id, created_at, archived_at) " +
+            "SELECT id, user_id, type, amount, balance_after, description, ref_type, ref_id, reservation_id, created_at, ? " +
+            "FROM wallet_transactions WHERE id IN (%s)";
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final WalletTransactionRepository transactionRepository;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.wallet.settle-batch-size:1000}")
+    private int settleBatchSize;
+
+    @Value("${app.wallet.reservation-timeout:10m}")
+    private Duration reservationTimeout;
+
+    @Value("${app.wallet.archive-after:180d}")
+    private Duration archiveAfter;
+
+    @Value("${app.wallet.archive-batch-size:5000}")
+    private int archiveBatchSize;
+
+    private Counter insufficientCounter;
+    private Counter compensatedCounter;
+    private Counter recoveredCounter;
+
+    @PostConstruct
+    void init() {
+        insufficientCounter = Counter.builder("wallet.reservation").tag("result", "insufficient")
+                .register(meterRegistry);
+        compensatedCounter = Counter.builder("wallet.reservation").tag("result", "compensated")
+                .register(meterRegistry);
+        recoveredCounter = Counter.builder("wallet.reservation").tag("result", "recovered")
+                .register(meterRegistry);
+        checkEvictionPolicy();
+    }
+
+    // Số dư và wallet:inflight không có TTL: chỉ an toàn khi Redis không evict key không TTL
+    private void checkEvictionPolicy() {
+        try {
+            Properties config = stringRedisTemplate.execute((RedisCallback<Properties>) connection ->
+                    connection.serverCommands().getConfig("maxmemory-policy"));
+            String policy = config != null ? config.getProperty("maxmemory-policy") : null;
+            if (policy != null && policy.startsWith("allkeys-")) {
+                log.warn("Redis maxmemory-policy is {}: wallet balances may be evicted and reloaded; "
+                        + "use noeviction or a volatile-* policy", policy);
+            }
+        } catch (Exception e) {
+            log.debug("Could not read Redis maxmemory-policy: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public long getBalance(Long userId) {
+        String cached = stringRedisTemplate.opsForValue().get(RedisKeyConstants.WALLET_BALANCE + userId);
+        if (cached != null) {
+            return Long.parseLong(cached);
+        }
+        List<?> loaded = loadBalance(userId);
+        // Đang có reservation dở: trả số dư đọc từ DB nhưng không cache
+        return ((Number) loaded.get(1)).longValue();
+    }
+
+    @Override
+    public long reserve(Long userId, long delta, String reservationId) {
+        String member = reservationId + ":" + userId + ":" + delta;
+        List<String> keys = List.of(RedisKeyConstants.WALLET_BALANCE + userId,
+                RedisKeyConstants.WALLET_RESERVATIONS, RedisKeyConstants.WALLET_INFLIGHT + userId);
+
+        List<?> result = stringRedisTemplate.execute(RESERVE_SCRIPT, keys,
+                String.valueOf(delta), member, String.valueOf(System.currentTimeMillis()));
+        if (((Number) result.get(0)).longValue() == STATUS_NOT_LOADED) {
+            if (((Number) loadBalance(userId).get(0)).longValue() == LOAD_REFUSED) {
+                throw new WalletBusyException("Wallet is being synchronized, please try again");
+            }
+            result = stringRedisTemplate.execute(RESERVE_SCRIPT, keys,
+                    String.valueOf(delta), member, String.valueOf(System.currentTimeMillis()));
+        }
+
+        long status = ((Number) result.get(0)).longValue();
+        long balance = ((Number) result.get(1)).longValue();
+        if (status == STATUS_INSUFFICIENT) {
+            insufficientCounter.increment();
+            throw new BadRequestException("Insufficient coins. Required: " + -delta + ", available: " + balance);
+        }
+        if (status == STATUS_NOT_LOADED) {
+            throw new IllegalStateException("Wallet balance of user " + userId + " is not loaded");
+        }
+
+        // Commit: chỉ bỏ reservation; rollback: hoàn lại số xu đã cộng/trừ
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int completionStatus) {
+                if (completionStatus == STATUS_COMMITTED) {
+                    release(userId, member);
+                } else if (compensate(userId, member, delta)) {
+                    compensatedCounter.increment();
+                }
+            }
+        });
+        return balance;
+    }
+
+    /**
+     * Gộp ledger theo lô: khóa các dòng chưa settle (chỉ job này đụng tới), cộng dồn theo user
+     * vào user_wallets rồi đánh dấu settled, tất cả trong 1 transaction ngắn.
+     * Chỉ dòng đã commit mới được đọc thấy nên thứ tự commit khác thứ tự id không làm sót dòng.
+     */
+    @Scheduled(fixedDelayString = "${app.wallet.settle-interval:30000}")
+    @Override
+    public void settleLedger() {
+        String lockToken = RedisLockUtils.tryLock(stringRedisTemplate,
+                RedisKeyConstants.WALLET_SETTLE_LOCK, SETTLE_LOCK_TTL);
+        if (lockToken == null) {
+            return;
+        }
+
+        try {
+            int settled;
+            do {
+                settled = transactionTemplate.execute(status -> settleBatch());
+            } while (settled == settleBatchSize);
+        } catch (Exception e) {
+            log.error("Failed to settle wallet ledger: {}", e.getMessage());
+        } finally {
+            RedisLockUtils.unlock(stringRedisTemplate, RedisKeyConstants.WALLET_SETTLE_LOCK, lockToken);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.wallet.recovery-interval:60000}")
+    @Override
+    public void recoverReservations() {
+        long cutoff = System.currentTimeMillis() - reservationTimeout.toMillis();
+        Set<String> stale = stringRedisTemplate.opsForZSet()
+                .rangeByScore(RedisKeyConstants.WALLET_RESERVATIONS, 0, cutoff);
+        if (stale == null || stale.isEmpty()) {
+            return;
+        }
+
+        for (String member : stale) {
+            String[] parts = member.split(":");
+            try {
+                if (transactionRepository.existsByReservationId(parts[0])) {
+                    // Transaction đã commit nhưng node chết trước afterCompletion
+                    release(Long.parseLong(parts[1]), member);
+                } else if (compensate(Long.parseLong(parts[1]), member, Long.parseLong(parts[2]))) {
+                    recoveredCounter.increment();
+                    log.warn("Recovered orphan wallet reservation {}", member);
+                }
+            } catch (Exception e) {
+                log.error("Failed to recover wallet reservation {}: {}", member, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Mỗi lô: khóa các dòng đủ điều kiện, copy sang bảng lưu trữ rồi xóa khỏi bảng chính trong
+     * cùng 1 transaction. Chỉ chuyển dòng đã settle nên số dư nạp lại (snapshot + chưa settle) không đổi.
+     */
+    @Scheduled(cron = "${app.wallet.archive-cron:0 0 4 * * *}")
+    @Override
+    public void archiveTransactions() {
+        String lockToken = RedisLockUtils.tryLock(stringRedisTemplate,
+                RedisKeyConstants.WALLET_ARCHIVE_LOCK, ARCHIVE_LOCK_TTL);
+        if (lockToken == null) {
+            return;
+        }
+
+        LocalDateTime cutoff = LocalDateTime.now().minus(archiveAfter);
+        long total = 0;
+        try {
+            int moved;
+            do {
+                moved = transactionTemplate.execute(status -> archiveBatch(cutoff));
+                total += moved;
+            } while (moved == archiveBatchSize);
+            if (total > 0) {
+                log.info("Archived {} wallet transactions older than {}", total, cutoff);
+            }
+        } catch (Exception e) {
+            log.error("Failed to archive wallet transactions (moved {}): {}", total, e.getMessage());
+        } finally {
+            RedisLockUtils.unlock(stringRedisTemplate, RedisKeyConstants.WALLET_ARCHIVE_LOCK, lockToken);
+        }
+    }
+
+    private int archiveBatch(LocalDateTime cutoff) {
+        List<Long> ids = jdbcTemplate.queryForList(ARCHIVABLE_SQL, Long.class, cutoff, archiveBatchSize);
+        if (ids.isEmpty()) {
+            return 0;
+        }
+
+        String placeholders = String.join(",", Collections.nCopies(ids.size(), "?"));
+        List<Object> args = new ArrayList<>(ids.size() + 1);
+        args.add(LocalDateTime.now());
+        args.addAll(ids);
+        jdbcTemplate.update(String.format(COPY_TO_ARCHIVE_SQL, placeholders), args.toArray());
+        jdbcTemplate.update("DELETE FROM wallet_transactions WHERE id IN (" + placeholders + ")", ids.toArray());
+        return ids.size();
+    }
+
+    private int settleBatch() {
+        List<Long> ids = new ArrayList<>();
+        Map<Long, Long> deltaByUser = new HashMap<>();
+        jdbcTemplate.query(UNSETTLED_SQL, rs -> {
+            ids.add(rs.getLong(1));
+            deltaByUser.merge(rs.getLong(2), rs.getLong(3), Long::sum);
+        }, settleBatchSize);
+        if (ids.isEmpty()) {
+            return 0;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        List<Object[]> snapshots = new ArrayList<>(deltaByUser.size());
+        deltaByUser.forEach((userId, delta) -> snapshots.add(new Object[] { userId, delta, now }));
+        jdbcTemplate.batchUpdate(APPLY_SNAPSHOT_SQL, snapshots);
+        jdbcTemplate.batchUpdate("UPDATE wallet_transactions SET settled = true WHERE id = ?",
+                ids.stream().map(id -> new Object[] { id }).toList());
+        log.debug("Settled {} ledger entries into {} wallets", ids.size(), deltaByUser.size());
+        return ids.size();
+    }
+
+    /**
+     * Snapshot + các dòng chưa settle trong 1 câu lệnh (cùng 1 read view) rồi ghi bằng LOAD_SCRIPT.
+     * releases được đọc trước câu SELECT: nếu có reservation kết thúc sau đó thì script từ chối.
+     * Trả về {trạng thái, số dư}; bị từ chối thì số dư là giá trị đọc từ DB (không được cache).
+     */
+    private List<?> loadBalance(Long userId) {
+        String inflightKey = RedisKeyConstants.WALLET_INFLIGHT + userId;
+        Object releases = stringRedisTemplate.opsForHash().get(inflightKey, "releases");
+        Long balance = jdbcTemplate.queryForObject(LOAD_BALANCE_SQL, Long.class, userId, userId);
+        long value = balance != null ? balance : 0L;
+
+        List<?> result = stringRedisTemplate.execute(LOAD_SCRIPT,
+                List.of(RedisKeyConstants.WALLET_BALANCE + userId, inflightKey),
+                String.valueOf(value), releases != null ? releases.toString() : "0");
+        if (((Number) result.get(0)).longValue() == LOAD_REFUSED) {
+            log.debug("Wallet balance of user {} not cached: reservations in flight", userId);
+            return List.of(LOAD_REFUSED, value);
+        }
+        return result;
+    }
+
+    private void release(Long userId, String member) {
+        stringRedisTemplate.execute(RELEASE_SCRIPT,
+                List.of(RedisKeyConstants.WALLET_RESERVATIONS, RedisKeyConstants.WALLET_INFLIGHT + userId),
+                member);
+    }
+
+    private boolean compensate(Long userId, String member, long delta) {
+        Long result = stringRedisTemplate.execute(COMPENSATE_SCRIPT,
+                List.of(RedisKeyConstants.WALLET_BALANCE + userId, RedisKeyConstants.WALLET_RESERVATIONS,
+                        RedisKeyConstants.WALLET_INFLIGHT + userId),
+                member, String.valueOf(-delta));
+        return Long.valueOf(1L).equals(result);
+    }
+}
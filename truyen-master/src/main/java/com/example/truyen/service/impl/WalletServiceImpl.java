@@ -1,82 +1,89 @@
 package com.example.truyen.service.impl;
 
 import com.example.truyen.dto.response.WalletResponse;
+import com.example.truyen.dto.response.WalletTransactionPageResponse;
 import com.example.truyen.dto.response.WalletTransactionResponse;
 import com.example.truyen.entity.User;
-import com.example.truyen.entity.UserWallet;
 import com.example.truyen.entity.WalletTransaction;
+import com.example.truyen.entity.WalletTransactionArchive;
 import com.example.truyen.exception.BadRequestException;
 import com.example.truyen.exception.ResourceNotFoundException;
 import com.example.truyen.repository.UserRepository;
-import com.example.truyen.repository.UserWalletRepository;
+import com.example.truyen.repository.WalletTransactionArchiveRepository;
 import com.example.truyen.repository.WalletTransactionRepository;
+import com.example.truyen.security.SecurityUtils;
+import com.example.truyen.service.WalletLedgerService;
 import com.example.truyen.service.WalletService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
-import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+
 @Service
 @RequiredArgsConstructor
 public class WalletServiceImpl implements WalletService {
 
-    private final UserWalletRepository walletRepository;
+    private static final int MAX_HISTORY_PAGE_SIZE = 100;
+
+    private static final String ESTIMATE_ROWS_SQL = "SELECT TABLE_ROWS FROM information_schema.TABLES " +
+            "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'wallet_transactions'";
+
     private final WalletTransactionRepository transactionRepository;
     private final UserRepository userRepository;
+    private final WalletLedgerService walletLedgerService;
+    private final WalletTransactionArchiveRepository archiveRepository;
+    private final JdbcTemplate jdbcTemplate;
 
     @Transactional(readOnly = true)
     @Override
     public WalletResponse getMyWallet() {
-        User user = getCurrentUser();
-        UserWallet wallet = getOrCreateWallet(user);
+        Long userId = SecurityUtils.getCurrentUserId();
         return WalletResponse.builder()
-                .userId(user.getId())
-                .username(user.getUsername())
-                .balance(wallet.getBalance())
+                .userId(userId)
+                .username(SecurityUtils.getCurrentPrincipal().getUsername())
+                .balance((int) walletLedgerService.getBalance(userId))
                 .build();
     }
 
+    // Cộng xu: duyệt trên Redis + ghi 1 dòng ledger, không khóa dòng user_wallets
     @Transactional
     @Override
-    public void addCoins(Long userId, int amount, String description, Long refId) {
-        UserWallet wallet = walletRepository.findByUserIdForUpdate(userId)
-                .orElseGet(() -> {
-                    User user = userRepository.findById(userId)
-                            .orElseThrow(() -> new ResourceNotFoundException("User", "id", userId));
-                    return walletRepository.save(UserWallet.builder().user(user).balance(0).build());
-                });
-
-        int newBalance = wallet.getBalance() + amount;
-        wallet.setBalance(newBalance);
-        walletRepository.save(wallet);
-
-        saveTransaction(wallet.getUser(), WalletTransaction.Type.DEPOSIT, amount, newBalance, description, refId);
+    public void addCoins(Long userId, int amount, String description, WalletTransaction.RefType refType, Long refId) {
+        if (!userRepository.existsById(userId)) {
+            throw new ResourceNotFoundException("User", "id", userId);
+        }
+        String reservationId = UUID.randomUUID().toString();
+        long newBalance = walletLedgerService.reserve(userId, amount, reservationId);
+        saveTransaction(userRepository.getReferenceById(userId), WalletTransaction.Type.DEPOSIT, amount,
+                (int) newBalance, description, refType, refId, reservationId);
     }
 
+    // Trừ xu: Lua kiểm tra + trừ nguyên tử trên Redis, rollback thì tự hoàn lại
     @Transactional
     @Override
-    public void spendCoins(Long userId, int amount, String description, Long refId) {
-        UserWallet wallet = walletRepository.findByUserIdForUpdate(userId)
-                .orElseThrow(() -> new ResourceNotFoundException("Wallet", "userId", userId));
-
-        if (wallet.getBalance() < amount) {
-            throw new BadRequestException(
-                    "Insufficient coins. Required: " + amount + ", available: " + wallet.getBalance());
-        }
-
-        int newBalance = wallet.getBalance() - amount;
-        wallet.setBalance(newBalance);
-        walletRepository.save(wallet);
-
-        saveTransaction(wallet.getUser(), WalletTransaction.Type.SPEND, amount, newBalance, description, refId);
+    public int spendCoins(Long userId, int amount, String description, WalletTransaction.RefType refType, Long refId) {
+        String reservationId = UUID.randomUUID().toString();
+        long newBalance = walletLedgerService.reserve(userId, -amount, reservationId);
+        saveTransaction(userRepository.getReferenceById(userId), WalletTransaction.Type.SPEND, amount,
+                (int) newBalance, description, refType, refId, reservationId);
+        return (int) newBalance;
     }
 
     @Transactional(readOnly = true)
     @Override
     public Page<WalletTransactionResponse> getMyTransactions(Pageable pageable) {
-        User user = getCurrentUser();
+        User user = SecurityUtils.getCurrentUserReference(userRepository);
         return transactionRepository.findByUserIdOrderByCreatedAtDesc(user.getId(), pageable)
                 .map(this::toTransactionResponse);
     }
@@ -86,11 +93,10 @@ public class WalletServiceImpl implements WalletService {
     public WalletResponse getWalletByUserId(Long userId) {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new ResourceNotFoundException("User", "id", userId));
-        UserWallet wallet = getOrCreateWallet(user);
         return WalletResponse.builder()
                 .userId(user.getId())
                 .username(user.getUsername())
-                .balance(wallet.getBalance())
+                .balance((int) walletLedgerService.getBalance(userId))
                 .build();
     }
 
@@ -104,37 +110,100 @@ public class WalletServiceImpl implements WalletService {
                 .map(this::toTransactionResponse);
     }
 
+    // Ledger chỉ ghi thêm; job settle gộp vào user_wallets sau
     private void saveTransaction(User user, WalletTransaction.Type type, int amount, int balanceAfter,
-            String description, Long refId) {
+            String description, WalletTransaction.RefType refType, Long refId, String reservationId) {
         WalletTransaction tx = WalletTransaction.builder()
                 .user(user)
                 .type(type)
                 .amount(amount)
                 .balanceAfter(balanceAfter)
                 .description(description)
+                .refType(refType)
                 .refId(refId)
+                .reservationId(reservationId)
                 .build();
         transactionRepository.save(tx);
     }
 
-    private UserWallet getOrCreateWallet(User user) {
-        return walletRepository.findByUserId(user.getId()).orElseGet(() -> {
-            UserWallet wallet = UserWallet.builder().user(user).build();
-            return walletRepository.save(wallet);
-        });
+    @Transactional(readOnly = true)
+    @Override
+    public Page<WalletTransactionResponse> getAllTransactions(Pageable pageable, boolean approximateCount) {
+        if (!approximateCount) {
+            return transactionRepository.findAll(pageable)
+                    .map(this::toTransactionResponse);
+        }
+
+        // Bỏ COUNT(*) trên bảng rất lớn: tổng lấy từ thống kê của InnoDB (có thể lệch vài %)
+        List<WalletTransactionResponse> content = transactionRepository.findPageWithoutCount(pageable).stream()
+                .map(this::toTransactionResponse)
+                .toList();
+        Long estimate = jdbcTemplate.queryForObject(ESTIMATE_ROWS_SQL, Long.class);
+        long total = Math.max(estimate != null ? estimate : 0L, pageable.getOffset() + content.size());
+        return new PageImpl<>(content, pageable, total);
     }
 
-    private User getCurrentUser() {
-        String username = SecurityContextHolder.getContext().getAuthentication().getName();
-        return userRepository.findByUsername(username)
-                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
+    @Transactional(readOnly = true)
+    @Override
+    public WalletTransactionPageResponse getMyTransactionHistory(String cursor, int size) {
+        return getUserHistory(SecurityUtils.getCurrentUserId(), cursor, size);
     }
 
     @Transactional(readOnly = true)
     @Override
-    public Page<WalletTransactionResponse> getAllTransactions(Pageable pageable) {
-        return transactionRepository.findAll(pageable)
-                .map(this::toTransactionResponse);
+    public WalletTransactionPageResponse getTransactionHistoryByUserId(Long userId, String cursor, int size) {
+        if (!userRepository.existsById(userId)) {
+            throw new ResourceNotFoundException("User", "id", userId);
+        }
+        return getUserHistory(userId, cursor, size);
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public WalletTransactionPageResponse getAllTransactionHistory(String cursor, int size) {
+        validateHistorySize(size);
+        HistoryCursor from = HistoryCursor.decode(cursor);
+        List<WalletTransactionResponse> rows = transactionRepository
+                .findAllBefore(from.createdAt(), from.id(), PageRequest.of(0, size + 1)).stream()
+                .map(this::toTransactionResponse)
+                .toList();
+        return toHistoryPage(rows, size);
+    }
+
+    // Đọc bảng chính trước, hết thì đọc tiếp bảng lưu trữ (dòng lưu trữ luôn cũ hơn)
+    private WalletTransactionPageResponse getUserHistory(Long userId, String cursor, int size) {
+        validateHistorySize(size);
+        HistoryCursor from = HistoryCursor.decode(cursor);
+
+        // Lấy dư 1 dòng để biết còn trang sau hay không mà không cần COUNT
+        List<WalletTransactionResponse> rows = new ArrayList<>(transactionRepository
+                .findByUserIdBefore(userId, from.createdAt(), from.id(), PageRequest.of(0, size + 1)).stream()
+                .map(this::toTransactionResponse)
+                .toList());
+        if (rows.size() <= size) {
+            HistoryCursor archiveFrom = rows.isEmpty() ? from : HistoryCursor.of(rows.get(rows.size() - 1));
+            archiveRepository.findByUserIdBefore(userId, archiveFrom.createdAt(), archiveFrom.id(),
+                            PageRequest.of(0, size + 1 - rows.size())).stream()
+                    .map(this::toTransactionResponse)
+                    .forEach(rows::add);
+        }
+        return toHistoryPage(rows, size);
+    }
+
+    private WalletTransactionPageResponse toHistoryPage(List<WalletTransactionResponse> rows, int size) {
+        boolean hasMore = rows.size() > size;
+        List<WalletTransactionResponse> items = hasMore ? rows.subList(0, size) : rows;
+        return WalletTransactionPageResponse.builder()
+                .items(items)
+                .nextCursor(hasMore ? HistoryCursor.of(items.get(items.size() - 1)).encode() : null)
+                .hasMore(hasMore)
+                .build();
+    }
+
+    private void validateHistorySize(int size) {
+        if (size < 1 || size > MAX_HISTORY_PAGE_SIZE) {
+            throw new BadRequestException("Page size must be between 1 and " + MAX_HISTORY_PAGE_SIZE);
+        }
     }
 
     private WalletTransactionResponse toTransactionResponse(WalletTransaction tx) {
@@ -147,4 +216,43 @@ public class WalletServiceImpl implements WalletService {
                 .createdAt(tx.getCreatedAt())
                 .build();
     }
+
+    private WalletTransactionResponse toTransactionResponse(WalletTransactionArchive tx) {
+        return WalletTransactionResponse.builder()
+                .id(tx.getId())
+                .type(tx.getType())
+                .amount(tx.getAmount())
+                .balanceAfter(tx.getBalanceAfter())
+                .description(tx.getDescription())
+                .createdAt(tx.getCreatedAt())
+                .build();
+    }
+
+    // Cursor = (created_at, id) của dòng cuối trang trước, mã hóa Base64 URL-safe
+    private record HistoryCursor(LocalDateTime createdAt, Long id) {
+
+        // Trang đầu: mốc lớn hơn mọi dòng
+        private static final HistoryCursor FIRST = new HistoryCursor(LocalDateTime.of(9999, 12, 31, 0, 0), Long.MAX_VALUE);
+
+        static HistoryCursor of(WalletTransactionResponse tx) {
+            return new HistoryCursor(tx.getCreatedAt(), tx.getId());
+        }
+
+        static HistoryCursor decode(String cursor) {
+            if (cursor == null || cursor.isBlank()) {
+                return FIRST;
+            }
+            try {
+                String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|");
+                return new HistoryCursor(LocalDateTime.parse(parts[0]), Long.parseLong(parts[1]));
+            } catch (RuntimeException e) {
+                throw new BadRequestException("Invalid cursor");
+            }
+        }
+
+        String encode() {
+            return Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString((createdAt + "|" + id).getBytes(StandardCharsets.UTF_8));
+        }
+    }
 }
@@ -0,0 +1,77 @@
+package com.example.truyen.util;
+
+import java.io.ByteArrayOutputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// Nén/giải nén deflate cho nội dung chương và lịch sử phiên bản
+public final class CompressionUtils {
+
+    private CompressionUtils() {
+    }
+
+    public static byte[] deflate(byte[] raw) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, raw.length / 2));
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                int length = deflater.deflate(buffer);
+                out.write(buffer, 0, length);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    // originalSize: kích thước trước khi nén (đã lưu kèm dữ liệu)
+    public static byte[] inflate(byte[] data, int originalSize) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            byte[] out = new byte[originalSize];
+            int offset = 0;
+            while (offset < originalSize && !inflater.finished()) {
+                int length = inflater.inflate(out, offset, originalSize - offset);
+                if (length == 0 && inflater.needsInput()) {
+                    break;
+                }
+                offset += length;
+            }
+            if (offset != originalSize) {
+                throw new IllegalStateException("Compressed data is truncated");
+            }
+            return out;
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Compressed data is corrupted", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    // Giải nén khi không biết trước kích thước
+    public static byte[] inflate(byte[] data) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 3);
+            byte[] buffer = new byte[8192];
+            while (!inflater.finished()) {
+                int length = inflater.inflate(buffer);
+                if (length == 0 && inflater.needsInput()) {
+                    throw new IllegalStateException("Compressed data is truncated");
+                }
+                out.write(buffer, 0, length);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Compressed data is corrupted", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.truyen.util;
+
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+// Lock phân tán trên Redis có token sở hữu: chỉ node đang giữ lock mới xóa được lock
+public final class RedisLockUtils {
+
+    // So token rồi xóa trong cùng 1 script: lock đã hết hạn và bị node khác lấy thì không bị xóa nhầm
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+                return redis.call('DEL', KEYS[1])
+            end
+            return 0
+            """, Long.class);
+
+    private RedisLockUtils() {
+    }
+
+    // Trả về token sở hữu, hoặc null nếu node khác đang giữ lock
+    public static String tryLock(StringRedisTemplate redis, String key, Duration ttl) {
+        String token = UUID.randomUUID().toString();
+        return Boolean.TRUE.equals(redis.opsForValue().setIfAbsent(key, token, ttl)) ? token : null;
+    }
+
+    public static boolean unlock(StringRedisTemplate redis, String key, String token) {
+        return Long.valueOf(1L).equals(redis.execute(RELEASE_SCRIPT, List.of(key), token));
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.truyen.service.impl;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.endsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@SuppressWarnings("unchecked")
+class ChapterContentCacheServiceImplTest {
+
+    private ValueOperations<String, String> valueOps;
+    private ChapterContentCacheServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        StringRedisTemplate redis = mock(StringRedisTemplate.class);
+        valueOps = mock(ValueOperations.class);
+        when(redis.opsForValue()).thenReturn(valueOps);
+        service = new ChapterContentCacheServiceImpl(redis, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(service, "localMaxBytes", DataSize.ofMegabytes(1));
+        ReflectionTestUtils.setField(service, "redisTtl", Duration.ofHours(1));
+        service.init();
+    }
+
+    @Test
+    void streamingReadsShareOneCachedArray() {
+        AtomicInteger loads = new AtomicInteger();
+
+        byte[] first = service.getBytesOrLoad(1L, 10L, () -> {
+            loads.incrementAndGet();
+            return "Chương một";
+        });
+        byte[] second = service.getBytesOrLoad(1L, 10L, () -> "unused");
+
+        assertThat(second).isSameAs(first);
+        assertThat(new String(first, StandardCharsets.UTF_8)).isEqualTo("Chương một");
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void redisHitIsEncodedOnceIntoLocalCache() {
+        when(valueOps.get(endsWith("1:10"))).thenReturn("Nội dung");
+
+        byte[] first = service.getBytesOrLoad(1L, 10L, () -> null);
+
+        assertThat(service.getOrLoad(1L, 10L, () -> null)).isEqualTo("Nội dung");
+        assertThat(service.getBytesOrLoad(1L, 10L, () -> null)).isSameAs(first);
+        assertThat(service.isCachedLocally(1L, 10L)).isTrue();
+    }
+}
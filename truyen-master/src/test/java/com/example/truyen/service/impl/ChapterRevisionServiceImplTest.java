@@ -0,0 +1,179 @@
+package com.example.truyen.service.impl;
+
+import com.example.truyen.entity.ChapterRevision;
+import com.example.truyen.repository.ChapterRevisionRepository;
+import com.example.truyen.util.CompressionUtils;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ChapterRevisionServiceImplTest {
+
+    private ChapterRevisionRepository repository;
+    private ChapterRevisionServiceImpl service;
+
+    // Các phiên bản đã lưu của chương 1, theo thứ tự revisionNumber
+    private final List<ChapterRevision> saved = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(ChapterRevisionRepository.class);
+        when(repository.save(any(ChapterRevision.class))).thenAnswer(invocation -> {
+            ChapterRevision revision = invocation.getArgument(0);
+            saved.add(revision);
+            return revision;
+        });
+        when(repository.findLatestRevisionNumber(anyLong())).thenAnswer(invocation -> saved.isEmpty()
+                ? Optional.empty() : Optional.of(saved.get(saved.size() - 1).getRevisionNumber()));
+        when(repository.findBaseRevisionNumber(anyLong(), anyInt())).thenAnswer(invocation -> {
+            int revisionNumber = invocation.getArgument(1);
+            return saved.stream()
+                    .filter(r -> r.getRevisionNumber() <= revisionNumber && r.getType() == ChapterRevision.Type.FULL)
+                    .map(ChapterRevision::getRevisionNumber)
+                    .max(Integer::compare);
+        });
+        when(repository.findByChapterIdAndRevisionNumberBetweenOrderByRevisionNumberAsc(anyLong(), anyInt(), anyInt()))
+                .thenAnswer(invocation -> {
+                    int from = invocation.getArgument(1);
+                    int to = invocation.getArgument(2);
+                    return saved.stream()
+                            .filter(r -> r.getRevisionNumber() >= from && r.getRevisionNumber() <= to)
+                            .toList();
+                });
+
+        service = new ChapterRevisionServiceImpl(repository, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(service, "snapshotInterval", 3);
+    }
+
+    @Test
+    void deltaRoundTripsEmptyContent() {
+        assertRoundTrip("", "");
+        assertRoundTrip("", "first line\nsecond line");
+        assertRoundTrip("first line\nsecond line", "");
+    }
+
+    @Test
+    void identicalContentEncodesToEmptyDelta() {
+        String text = lines(50, i -> "line " + i);
+
+        assertThat(ChapterRevisionServiceImpl.encodeDelta(text, text)).isEmpty();
+        assertThat(ChapterRevisionServiceImpl.applyDelta(text, "")).isEqualTo(text);
+    }
+
+    @Test
+    void deltaRoundTripsMultiHunkEdits() {
+        String previous = lines(200, i -> "line " + i);
+        String current = lines(200, i -> switch (i) {
+            case 0 -> "changed first";
+            case 50 -> "changed middle\nwith an inserted line";
+            case 120, 121, 122 -> "";
+            case 199 -> "changed last";
+            default -> "line " + i;
+        }) + "\nappended tail\n";
+
+        String delta = ChapterRevisionServiceImpl.encodeDelta(previous, current);
+
+        assertThat(delta.lines().filter(l -> l.matches("\\d+ \\d+ \\d+")).count()).isGreaterThan(1);
+        assertThat(ChapterRevisionServiceImpl.applyDelta(previous, delta)).isEqualTo(current);
+    }
+
+    @Test
+    void deltaKeepsTrailingNewlinesAndBlankLines() {
+        assertRoundTrip("a\n\nb\n", "a\n\n\nb");
+        assertRoundTrip("a\r\nb\r\n", "a\r\nc\r\n");
+    }
+
+    @Test
+    void snapshotIsStoredAtFirstRevisionAndEveryInterval() {
+        assertThat(IntStream.rangeClosed(1, 10)
+                .filter(r -> ChapterRevisionServiceImpl.isSnapshot(r, 3)).boxed().toList())
+                .containsExactly(1, 4, 7, 10);
+        assertThat(IntStream.rangeClosed(1, 3)
+                .allMatch(r -> ChapterRevisionServiceImpl.isSnapshot(r, 1))).isTrue();
+    }
+
+    @Test
+    void everyRevisionIsReconstructedAcrossSnapshotBoundaries() {
+        List<String> versions = new ArrayList<>();
+        String content = lines(300, i -> "paragraph " + i + " of a long enough chapter to make deltas worthwhile");
+        versions.add(content);
+        service.recordRevision(1L, null, content);
+        for (int edit = 1; edit <= 8; edit++) {
+            int changed = edit * 31;
+            String next = content.replace("paragraph " + changed + " ", "edited paragraph " + changed + " ");
+            service.recordRevision(1L, content, next);
+            versions.add(next);
+            content = next;
+        }
+
+        assertThat(saved).extracting(ChapterRevision::getType).containsExactly(
+                ChapterRevision.Type.FULL, ChapterRevision.Type.DELTA, ChapterRevision.Type.DELTA,
+                ChapterRevision.Type.FULL, ChapterRevision.Type.DELTA, ChapterRevision.Type.DELTA,
+                ChapterRevision.Type.FULL, ChapterRevision.Type.DELTA, ChapterRevision.Type.DELTA);
+        for (int revision = 1; revision <= versions.size(); revision++) {
+            assertThat(service.getRevision(1L, revision).getContent())
+                    .as("revision %d", revision)
+                    .isEqualTo(versions.get(revision - 1));
+        }
+    }
+
+    @Test
+    void legacyContentBecomesFirstRevision() {
+        service.recordRevision(1L, "legacy", "edited");
+
+        assertThat(saved).extracting(ChapterRevision::getRevisionNumber).containsExactly(1, 2);
+        assertThat(service.getRevision(1L, 1).getContent()).isEqualTo("legacy");
+        assertThat(service.getRevision(1L, 2).getContent()).isEqualTo("edited");
+    }
+
+    @Test
+    void reconstructFromStartsOverAtEachFullRevision() {
+        String first = "a\nb\nc";
+        String second = "a\nB\nc";
+        String third = "x\ny";
+        List<ChapterRevision.Type> types = List.of(
+                ChapterRevision.Type.FULL, ChapterRevision.Type.DELTA, ChapterRevision.Type.FULL);
+        List<byte[]> data = List.of(
+                deflate(first),
+                deflate(ChapterRevisionServiceImpl.encodeDelta(first, second)),
+                deflate(third));
+        List<Integer> sizes = List.of(utf8Length(first), utf8Length(second), utf8Length(third));
+
+        assertThat(ChapterRevisionServiceImpl.reconstructFrom(types.subList(0, 2), data.subList(0, 2),
+                sizes.subList(0, 2))).isEqualTo(second);
+        assertThat(ChapterRevisionServiceImpl.reconstructFrom(types, data, sizes)).isEqualTo(third);
+    }
+
+    private static void assertRoundTrip(String previous, String current) {
+        String delta = ChapterRevisionServiceImpl.encodeDelta(previous, current);
+        assertThat(ChapterRevisionServiceImpl.applyDelta(previous, delta)).isEqualTo(current);
+    }
+
+    private static String lines(int count, IntFunction<String> line) {
+        return IntStream.range(0, count).mapToObj(line).collect(Collectors.joining("\n"));
+    }
+
+    private static byte[] deflate(String text) {
+        return CompressionUtils.deflate(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static int utf8Length(String text) {
+        return text.getBytes(StandardCharsets.UTF_8).length;
+    }
+}
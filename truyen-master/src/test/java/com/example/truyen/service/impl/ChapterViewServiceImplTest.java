@@ -0,0 +1,275 @@
+package com.example.truyen.service.impl;
+
+import com.example.truyen.config.RedisKeyConstants;
+import com.example.truyen.dto.projection.ChapterVersion;
+import com.example.truyen.exception.BadRequestException;
+import com.example.truyen.exception.ResourceNotFoundException;
+import com.example.truyen.repository.ChapterRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@SuppressWarnings("unchecked")
+class ChapterViewServiceImplTest {
+
+    private StringRedisTemplate redis;
+    private HashOperations<String, Object, Object> hashOps;
+    private ValueOperations<String, String> valueOps;
+    private JdbcTemplate jdbcTemplate;
+    private PlatformTransactionManager transactionManager;
+    private ChapterRepository chapterRepository;
+    private ChapterViewServiceImpl service;
+
+    private String lockToken;
+
+    // Tổng đã HINCRBY lên Redis theo chương
+    private final Map<String, Long> flushed = new ConcurrentHashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        redis = mock(StringRedisTemplate.class);
+        hashOps = mock(HashOperations.class);
+        valueOps = mock(ValueOperations.class);
+        jdbcTemplate = mock(JdbcTemplate.class);
+        transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenReturn(mock(TransactionStatus.class));
+        when(redis.opsForHash()).thenReturn(hashOps);
+        when(redis.opsForValue()).thenReturn(valueOps);
+        when(hashOps.increment(eq(RedisKeyConstants.CHAPTER_VIEWS_PENDING), any(), anyLong()))
+                .thenAnswer(invocation -> flushed.merge(invocation.getArgument(1), invocation.getArgument(2), Long::sum));
+
+        chapterRepository = mock(ChapterRepository.class);
+        service = new ChapterViewServiceImpl(redis, jdbcTemplate, new TransactionTemplate(transactionManager),
+                chapterRepository);
+        ReflectionTestUtils.setField(service, "maxTrackedChapters", 100_000);
+        ReflectionTestUtils.setField(service, "snapshotDedupeWindow", Duration.ofMinutes(10));
+        ReflectionTestUtils.setField(service, "snapshotMaxPerMinute", 3);
+        service.init();
+    }
+
+    @Test
+    void flushPushesBufferedDeltasPerChapter() {
+        service.recordView(1L);
+        service.recordView(1L);
+        service.recordView(2L);
+
+        service.flushToRedis();
+
+        assertThat(flushed).containsExactlyInAnyOrderEntriesOf(Map.of("1", 2L, "2", 1L));
+    }
+
+    @Test
+    void idleCountersAreDroppedWithoutLosingLateIncrements() {
+        service.recordView(7L);
+        service.flushToRedis();
+        // Chu kỳ không có lượt xem mới: bộ đếm bị bỏ khỏi map
+        service.flushToRedis();
+        service.recordView(7L);
+        service.flushToRedis();
+        service.flushToRedis();
+
+        assertThat(flushed).containsExactly(Map.entry("7", 2L));
+    }
+
+    @Test
+    void concurrentViewsAreNeverLostAcrossFlushes() throws Exception {
+        int threads = 8;
+        int viewsPerThread = 20_000;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean done = new AtomicBoolean();
+        for (int t = 0; t < threads; t++) {
+            pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < viewsPerThread; i++) {
+                    // Ít chương, nhiều lượt xen kẽ để bộ đếm liên tục bị bỏ rồi tạo lại
+                    service.recordView((long) (i % 3));
+                }
+                return null;
+            });
+        }
+
+        Thread flusher = new Thread(() -> {
+            while (!done.get()) {
+                service.flushToRedis();
+            }
+        });
+        flusher.start();
+        start.countDown();
+        pool.shutdown();
+        assertThat(pool.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+        done.set(true);
+        flusher.join();
+        service.flushToRedis();
+        service.flushToRedis();
+
+        long total = flushed.values().stream().mapToLong(Long::longValue).sum();
+        assertThat(total).isEqualTo((long) threads * viewsPerThread);
+    }
+
+    @Test
+    void failedFlushIsRetriedOnNextCycle() {
+        when(hashOps.increment(eq(RedisKeyConstants.CHAPTER_VIEWS_PENDING), eq("3"), anyLong()))
+                .thenThrow(new RedisConnectionFailureException("down"))
+                .thenAnswer(invocation -> flushed.merge("3", invocation.getArgument(2), Long::sum));
+
+        service.recordView(3L);
+        service.recordView(3L);
+        service.flushToRedis();
+        assertThat(flushed).isEmpty();
+
+        service.flushToRedis();
+        assertThat(flushed).containsExactly(Map.entry("3", 2L));
+    }
+
+    @Test
+    void applyingHashIsDeletedOnlyAfterCommit() {
+        givenLockAcquired();
+        when(redis.hasKey(RedisKeyConstants.CHAPTER_VIEWS_APPLYING)).thenReturn(true);
+        when(hashOps.entries(RedisKeyConstants.CHAPTER_VIEWS_APPLYING)).thenReturn(Map.of("5", "4"));
+
+        service.applyToDatabase();
+
+        InOrder order = inOrder(jdbcTemplate, transactionManager, redis);
+        order.verify(jdbcTemplate).batchUpdate(anyString(), anyList());
+        order.verify(transactionManager).commit(any());
+        order.verify(redis).delete(RedisKeyConstants.CHAPTER_VIEWS_APPLYING);
+        order.verify(redis).execute(any(RedisScript.class), eq(List.of(RedisKeyConstants.CHAPTER_VIEWS_APPLY_LOCK)),
+                eq(lockToken));
+    }
+
+    @Test
+    void applyingHashIsKeptWhenBatchFails() {
+        givenLockAcquired();
+        when(redis.hasKey(RedisKeyConstants.CHAPTER_VIEWS_APPLYING)).thenReturn(true);
+        when(hashOps.entries(RedisKeyConstants.CHAPTER_VIEWS_APPLYING)).thenReturn(Map.of("5", "4"));
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenThrow(new DataAccessResourceFailureException("db"));
+
+        assertThatThrownBy(() -> service.applyToDatabase()).isInstanceOf(DataAccessResourceFailureException.class);
+
+        verify(transactionManager).rollback(any());
+        verify(redis, never()).delete(RedisKeyConstants.CHAPTER_VIEWS_APPLYING);
+        verify(redis).execute(any(RedisScript.class), eq(List.of(RedisKeyConstants.CHAPTER_VIEWS_APPLY_LOCK)),
+                eq(lockToken));
+    }
+
+    @Test
+    void skipsWhenAnotherNodeHoldsTheLock() {
+        when(valueOps.setIfAbsent(eq(RedisKeyConstants.CHAPTER_VIEWS_APPLY_LOCK), anyString(), any(Duration.class)))
+                .thenReturn(false);
+
+        service.applyToDatabase();
+
+        verify(redis, never()).rename(anyString(), anyString());
+        verify(redis, never()).execute(any(RedisScript.class), anyList(), any());
+    }
+
+    // Lock lấy được với token cố định để kiểm tra lúc nhả lock
+    private void givenLockAcquired() {
+        when(valueOps.setIfAbsent(eq(RedisKeyConstants.CHAPTER_VIEWS_APPLY_LOCK), anyString(), any(Duration.class)))
+                .thenAnswer(invocation -> {
+                    lockToken = invocation.getArgument(1);
+                    return true;
+                });
+        when(redis.execute(any(RedisScript.class), anyList(), any()))
+                .thenAnswer(invocation -> invocation.getArgument(2).equals(lockToken) ? 1L : 0L);
+    }
+
+    @Test
+    void snapshotViewCountsOncePerClientWithinDedupeWindow() {
+        when(chapterRepository.findVersionById(1L)).thenReturn(Optional.of(version(1L, false)));
+
+        service.recordSnapshotView(1L, "10.0.0.1");
+        service.recordSnapshotView(1L, "10.0.0.1");
+        service.recordSnapshotView(1L, "10.0.0.2");
+        service.flushToRedis();
+
+        assertThat(flushed).containsExactlyEntriesOf(Map.of("1", 2L));
+        // Kết quả tra cứu chương được cache
+        verify(chapterRepository, times(1)).findVersionById(1L);
+    }
+
+    @Test
+    void snapshotViewRejectsMissingAndLockedChapters() {
+        when(chapterRepository.findVersionById(1L)).thenReturn(Optional.empty());
+        when(chapterRepository.findVersionById(2L)).thenReturn(Optional.of(version(2L, true)));
+
+        assertThatThrownBy(() -> service.recordSnapshotView(1L, "10.0.0.1"))
+                .isInstanceOf(ResourceNotFoundException.class);
+        assertThatThrownBy(() -> service.recordSnapshotView(2L, "10.0.0.1"))
+                .isInstanceOf(BadRequestException.class);
+        service.flushToRedis();
+
+        assertThat(flushed).isEmpty();
+    }
+
+    @Test
+    void snapshotViewIsRateLimitedPerClient() {
+        when(chapterRepository.findVersionById(anyLong()))
+                .thenAnswer(invocation -> Optional.of(version(invocation.getArgument(0), false)));
+
+        for (long id = 1; id <= 3; id++) {
+            service.recordSnapshotView(id, "10.0.0.1");
+        }
+        assertThatThrownBy(() -> service.recordSnapshotView(4L, "10.0.0.1"))
+                .isInstanceOf(BadRequestException.class);
+        service.recordSnapshotView(4L, "10.0.0.2");
+        service.flushToRedis();
+
+        assertThat(flushed).containsExactlyInAnyOrderEntriesOf(Map.of("1", 1L, "2", 1L, "3", 1L, "4", 1L));
+    }
+
+    @Test
+    void viewsBeyondTrackedLimitGoStraightToRedis() {
+        ReflectionTestUtils.setField(service, "maxTrackedChapters", 1);
+
+        service.recordView(1L);
+        service.recordView(2L);
+        service.recordView(2L);
+
+        // Chương 2 không được giữ trong bộ nhớ
+        assertThat(flushed).containsExactlyEntriesOf(Map.of("2", 2L));
+        service.flushToRedis();
+        assertThat(flushed).containsExactlyInAnyOrderEntriesOf(Map.of("1", 1L, "2", 2L));
+    }
+
+    private static ChapterVersion version(Long id, boolean locked) {
+        return new ChapterVersion(id, locked, null, null);
+    }
+}
@@ -0,0 +1,215 @@
+package com.example.truyen.service.impl;
+
+import com.example.truyen.aspect.LoggingAspect;
+import com.example.truyen.kafka.producer.ActivityLogProducer;
+import com.example.truyen.repository.ActivityLogRepository;
+import com.example.truyen.support.IntegrationTestSupport;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.common.errors.TimeoutException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionManager;
+import org.springframework.transaction.annotation.AnnotationTransactionAttributeSource;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionInterceptor;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Chạy trên MySQL thật (xem IntegrationTestSupport), Kafka được giả lập. Bỏ qua nếu không
+ * kết nối được MySQL; bảng outbox_events tạo lại từ entity.
+ */
+@SuppressWarnings("unchecked")
+class OutboxServiceImplTest {
+
+    private static JdbcTemplate jdbcTemplate;
+    private static DataSourceTransactionManager transactionManager;
+
+    private KafkaTemplate<String, Object> kafkaTemplate;
+    private OutboxServiceImpl service;
+
+    // Key các event đã gửi, kèm việc lúc gửi có transaction đang mở hay không
+    private final List<String> sentKeys = new ArrayList<>();
+    private final List<Boolean> sentInTransaction = new ArrayList<>();
+
+    record TestEvent(String name) {
+    }
+
+    @BeforeAll
+    static void connect() {
+        DataSource dataSource = IntegrationTestSupport.mysql();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionManager = new DataSourceTransactionManager(dataSource);
+    }
+
+    @BeforeEach
+    void setUp() {
+        IntegrationTestSupport.recreateTables(jdbcTemplate, "outbox_events");
+
+        kafkaTemplate = mock(KafkaTemplate.class);
+        when(kafkaTemplate.send(anyString(), anyString(), any())).thenAnswer(invocation -> {
+            sentKeys.add(invocation.getArgument(1));
+            sentInTransaction.add(TransactionSynchronizationManager.isActualTransactionActive());
+            return CompletableFuture.completedFuture(null);
+        });
+
+        service = new OutboxServiceImpl(jdbcTemplate, new TransactionTemplate(transactionManager), transactionManager,
+                kafkaTemplate, new ObjectMapper().findAndRegisterModules(), new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(service, "batchSize", 2);
+        ReflectionTestUtils.setField(service, "sendTimeout", Duration.ofSeconds(1));
+        ReflectionTestUtils.setField(service, "claimTimeout", Duration.ofMinutes(2));
+        service.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        IntegrationTestSupport.dropTables(jdbcTemplate, "outbox_events");
+    }
+
+    @Test
+    void relaySendsOutsideTransactionAndDeletesAckedRows() {
+        publish("a", "b", "c", "d", "e");
+
+        service.relay();
+
+        assertThat(sentKeys).containsExactly("a", "b", "c", "d", "e");
+        assertThat(sentInTransaction).containsOnly(false);
+        assertThat(remainingKeys()).isEmpty();
+        verify(kafkaTemplate, times(3)).flush();
+    }
+
+    @Test
+    void synchronousSendFailureStopsBatchAndReleasesRest() {
+        publish("a", "b", "c", "d");
+        when(kafkaTemplate.send(anyString(), anyString(), any()))
+                .thenReturn(CompletableFuture.completedFuture(null))
+                .thenThrow(new TimeoutException("metadata not available after 5000ms"));
+
+        service.relay();
+
+        // Dừng ngay sau lỗi: không gửi tiếp c, d trong cùng lượt
+        verify(kafkaTemplate, times(2)).send(anyString(), anyString(), any());
+        assertThat(remainingKeys()).containsExactly("b", "c", "d");
+        assertThat(claimedCount()).isZero();
+    }
+
+    @Test
+    void unacknowledgedEventIsRetriedOnNextRelay() {
+        publish("a", "b", "c");
+        when(kafkaTemplate.send(anyString(), anyString(), any()))
+                .thenReturn(CompletableFuture.failedFuture(new TimeoutException("expired")))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        service.relay();
+
+        // Lô đầu [a, b]: a lỗi, b đã ack vẫn được xóa; lô có lỗi thì không nhận lô tiếp theo
+        assertThat(remainingKeys()).containsExactly("a", "c");
+        assertThat(claimedCount()).isZero();
+
+        service.relay();
+
+        assertThat(remainingKeys()).isEmpty();
+    }
+
+    @Test
+    void rowsClaimedByAnotherRelayAreSkippedUntilClaimExpires() {
+        publish("a", "b", "c");
+        jdbcTemplate.update("UPDATE outbox_events SET claim_token = 'other', claimed_until = ? WHERE message_key = 'a'",
+                LocalDateTime.now().plusMinutes(1));
+        jdbcTemplate.update("UPDATE outbox_events SET claim_token = 'dead', claimed_until = ? WHERE message_key = 'b'",
+                LocalDateTime.now().minusMinutes(1));
+
+        service.relay();
+
+        assertThat(sentKeys).containsExactly("b", "c");
+        assertThat(remainingKeys()).containsExactly("a");
+        assertThat(jdbcTemplate.queryForObject("SELECT claim_token FROM outbox_events", String.class))
+                .isEqualTo("other");
+    }
+
+    @Test
+    void undecodableEventIsDropped() {
+        publish("a");
+        jdbcTemplate.update("INSERT INTO outbox_events (topic, message_key, event_type, payload, created_at) " +
+                "VALUES ('topic', 'gone', 'com.example.Missing', '{}', ?)", LocalDateTime.now());
+
+        service.relay();
+
+        assertThat(sentKeys).containsExactly("a");
+        assertThat(remainingKeys()).isEmpty();
+    }
+
+    @Test
+    void errorLogSurvivesRollbackOfFailedTransactionalCall() {
+        ActivityLogServiceImpl activityLogService = new ActivityLogServiceImpl(
+                mock(ActivityLogRepository.class), new ActivityLogProducer(service));
+        AspectJProxyFactory factory = new AspectJProxyFactory(new DemoService(service));
+        factory.addAspect(new LoggingAspect(activityLogService, new ObjectMapper()));
+        // Transaction bọc ngoài aspect: nhật ký lỗi được ghi khi transaction đang rollback
+        factory.addAdvice(0, new TransactionInterceptor((TransactionManager) transactionManager,
+                new AnnotationTransactionAttributeSource()));
+        DemoService proxy = factory.getProxy();
+
+        assertThatThrownBy(() -> proxy.createDemo("business")).isInstanceOf(IllegalStateException.class);
+
+        assertThat(remainingKeys()).containsExactly("system");
+        assertThat(jdbcTemplate.queryForObject("SELECT payload FROM outbox_events", String.class))
+                .contains("DemoService.createDemo [ERROR]");
+    }
+
+    // Service nghiệp vụ giả: ghi 1 event trong transaction rồi lỗi
+    static class DemoService {
+
+        private final OutboxServiceImpl outboxService;
+
+        DemoService(OutboxServiceImpl outboxService) {
+            this.outboxService = outboxService;
+        }
+
+        @Transactional
+        public void createDemo(String key) {
+            outboxService.publish("topic", key, new TestEvent(key));
+            throw new IllegalStateException("demo failed");
+        }
+    }
+
+    private void publish(String... keys) {
+        for (String key : keys) {
+            service.publish("topic", key, new TestEvent(key));
+        }
+    }
+
+    private static List<String> remainingKeys() {
+        return jdbcTemplate.queryForList("SELECT message_key FROM outbox_events ORDER BY id", String.class);
+    }
+
+    private static int claimedCount() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM outbox_events WHERE claim_token IS NOT NULL",
+                Integer.class);
+    }
+
+}
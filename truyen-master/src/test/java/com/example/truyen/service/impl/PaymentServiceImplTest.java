@@ -0,0 +1,130 @@
+package com.example.truyen.service.impl;
+
+import com.example.truyen.entity.PaymentCallback;
+import com.example.truyen.entity.PaymentOrder;
+import com.example.truyen.entity.User;
+import com.example.truyen.exception.WalletBusyException;
+import com.example.truyen.repository.CoinPackageRepository;
+import com.example.truyen.repository.PaymentCallbackRepository;
+import com.example.truyen.repository.PaymentOrderRepository;
+import com.example.truyen.repository.UserRepository;
+import com.example.truyen.service.StatsRollupService;
+import com.example.truyen.service.VNPayService;
+import com.example.truyen.service.WalletService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PaymentServiceImplTest {
+
+    private PaymentCallbackRepository callbackRepository;
+    private PaymentOrderRepository orderRepository;
+    private WalletService walletService;
+    private SimpleMeterRegistry meterRegistry;
+    private PaymentServiceImpl service;
+
+    private PaymentCallback callback;
+
+    @BeforeEach
+    void setUp() {
+        callbackRepository = mock(PaymentCallbackRepository.class);
+        orderRepository = mock(PaymentOrderRepository.class);
+        walletService = mock(WalletService.class);
+        meterRegistry = new SimpleMeterRegistry();
+
+        callback = PaymentCallback.builder().id(1L).vnpTransactionNo("14000001").orderCode("TRU1")
+                .responseCode("00").amount(1_000_000L).build();
+        // Lô lỗi để worker chuyển sang xử lý từng callback
+        when(callbackRepository.lockReceived(anyInt(), any())).thenThrow(new IllegalStateException("batch failed"));
+        when(callbackRepository.findReceivedIds(any(), any())).thenAnswer(invocation ->
+                callback.getStatus() == PaymentCallback.Status.RECEIVED ? List.of(1L) : List.of());
+        when(callbackRepository.lockReceivedById(1L)).thenAnswer(invocation -> Optional.of(callback));
+        when(callbackRepository.findById(1L)).thenAnswer(invocation -> Optional.of(callback));
+        // Mỗi lần đọc là 1 đơn PENDING mới, như sau khi transaction lỗi bị rollback
+        when(orderRepository.findByOrderCodeInForUpdate(any())).thenAnswer(invocation -> List.of(PaymentOrder.builder()
+                .id(10L).orderCode("TRU1").user(User.builder().id(7L).build())
+                .amount(BigDecimal.valueOf(10_000)).coinsToAdd(100).status(PaymentOrder.Status.PENDING).build()));
+
+        service = new PaymentServiceImpl(orderRepository, mock(CoinPackageRepository.class), mock(UserRepository.class),
+                mock(VNPayService.class), walletService, callbackRepository, mock(JdbcTemplate.class),
+                new TransactionTemplate(mock(PlatformTransactionManager.class)), mock(StringRedisTemplate.class),
+                mock(StatsRollupService.class), meterRegistry);
+        ReflectionTestUtils.setField(service, "settleBatchSize", 100);
+        ReflectionTestUtils.setField(service, "maxAttempts", 3);
+        ReflectionTestUtils.setField(service, "retryInitialBackoff", Duration.ofSeconds(5));
+        ReflectionTestUtils.setField(service, "retryMaxBackoff", Duration.ofMinutes(10));
+        service.init();
+    }
+
+    @Test
+    void transientFailuresBackOffWithoutGivingUp() {
+        doThrow(new WalletBusyException("Wallet is being synchronized, please try again"))
+                .when(walletService).addCoins(anyLong(), anyInt(), anyString(), any(), anyLong());
+
+        for (int i = 0; i < 10; i++) {
+            service.settleCallbacks();
+        }
+
+        assertThat(callback.getStatus()).isEqualTo(PaymentCallback.Status.RECEIVED);
+        assertThat(callback.getAttempts()).isEqualTo(10);
+        assertThat(callback.getFailures()).isZero();
+        assertThat(callback.getNextAttemptAt()).isAfter(LocalDateTime.now().plusMinutes(9));
+        assertThat(meterRegistry.counter("payment.callback.failed").count()).isZero();
+    }
+
+    @Test
+    void permanentFailuresGiveUpAndCount() {
+        doThrow(new IllegalStateException("broken"))
+                .when(walletService).addCoins(anyLong(), anyInt(), anyString(), any(), anyLong());
+
+        for (int i = 0; i < 5; i++) {
+            service.settleCallbacks();
+        }
+
+        assertThat(callback.getStatus()).isEqualTo(PaymentCallback.Status.FAILED);
+        assertThat(callback.getFailures()).isEqualTo(3);
+        assertThat(callback.getLastError()).isEqualTo("broken");
+        assertThat(meterRegistry.counter("payment.callback.failed").count()).isEqualTo(1);
+    }
+
+    @Test
+    void classifiesInfrastructureErrorsAsTransient() {
+        assertThat(PaymentServiceImpl.isTransient(new RedisConnectionFailureException("down"))).isTrue();
+        assertThat(PaymentServiceImpl.isTransient(new QueryTimeoutException("timeout"))).isTrue();
+        assertThat(PaymentServiceImpl.isTransient(
+                new RuntimeException("wrapped", new WalletBusyException("busy")))).isTrue();
+        assertThat(PaymentServiceImpl.isTransient(new IllegalStateException("broken"))).isFalse();
+    }
+
+    @Test
+    void backoffDoublesUpToMax() {
+        Duration initial = Duration.ofSeconds(5);
+        Duration max = Duration.ofMinutes(10);
+
+        assertThat(PaymentServiceImpl.backoff(1, initial, max)).isEqualTo(Duration.ofSeconds(5));
+        assertThat(PaymentServiceImpl.backoff(4, initial, max)).isEqualTo(Duration.ofSeconds(40));
+        assertThat(PaymentServiceImpl.backoff(50, initial, max)).isEqualTo(max);
+    }
+}
@@ -0,0 +1,390 @@
+package com.example.truyen.service.impl;
+
+import com.example.truyen.config.RedisKeyConstants;
+import com.example.truyen.exception.BadRequestException;
+import com.example.truyen.repository.WalletTransactionRepository;
+import com.example.truyen.support.IntegrationTestSupport;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.when;
+
+/**
+ * Chạy trên Redis và MySQL thật (xem IntegrationTestSupport), bỏ qua nếu không kết nối được.
+ * Dùng Redis database 15 và tự tạo lại các bảng ví từ entity.
+ */
+class WalletLedgerServiceImplTest {
+
+    private static final long USER = 1L;
+    private static final long OTHER_USER = 2L;
+    private static final String[] TABLES = { "wallet_transactions_archive", "wallet_transactions", "user_wallets" };
+
+    private static LettuceConnectionFactory connectionFactory;
+    private static StringRedisTemplate redis;
+    private static JdbcTemplate jdbcTemplate;
+    private static TransactionTemplate transactionTemplate;
+
+    private JdbcTemplate serviceJdbc;
+    private WalletLedgerServiceImpl service;
+
+    @BeforeAll
+    static void connect() {
+        connectionFactory = IntegrationTestSupport.redis();
+        redis = new StringRedisTemplate(connectionFactory);
+        DataSource dataSource = IntegrationTestSupport.mysql();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    }
+
+    @AfterAll
+    static void disconnect() {
+        if (connectionFactory != null) {
+            connectionFactory.destroy();
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        redis.execute(connection -> {
+            connection.serverCommands().flushDb();
+            return null;
+        }, true);
+        IntegrationTestSupport.recreateTables(jdbcTemplate, TABLES);
+
+        WalletTransactionRepository transactionRepository = mock(WalletTransactionRepository.class);
+        when(transactionRepository.existsByReservationId(anyString())).thenAnswer(invocation -> jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM wallet_transactions WHERE reservation_id = ?", Integer.class,
+                invocation.<String>getArgument(0)) > 0);
+
+        serviceJdbc = spy(jdbcTemplate);
+        service = new WalletLedgerServiceImpl(redis, serviceJdbc, transactionTemplate, transactionRepository,
+                new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(service, "settleBatchSize", 2);
+        ReflectionTestUtils.setField(service, "reservationTimeout", Duration.ofMinutes(10));
+        ReflectionTestUtils.setField(service, "archiveAfter", Duration.ofDays(180));
+        ReflectionTestUtils.setField(service, "archiveBatchSize", 2);
+        service.init();
+
+        jdbcTemplate.update("INSERT INTO user_wallets (user_id, balance, version) VALUES (?, 100, 0)", USER);
+    }
+
+    @AfterEach
+    void tearDown() {
+        IntegrationTestSupport.dropTables(jdbcTemplate, TABLES);
+    }
+
+    @Test
+    void balanceLoadsSnapshotPlusUnsettledLedger() {
+        insertLedger(USER, "SPEND", 30, false, null);
+        insertLedger(USER, "DEPOSIT", 5, true, null);
+
+        assertThat(service.getBalance(USER)).isEqualTo(70);
+        assertThat(redis.opsForValue().get(balanceKey(USER))).isEqualTo("70");
+    }
+
+    @Test
+    void committedSpendKeepsBalanceAndClearsReservation() {
+        assertThat(spend(USER, 30)).isEqualTo(70);
+
+        assertThat(redis.opsForValue().get(balanceKey(USER))).isEqualTo("70");
+        assertThat(redis.opsForZSet().size(RedisKeyConstants.WALLET_RESERVATIONS)).isZero();
+        assertThat(redis.opsForHash().get(inflightKey(USER), "pending")).isEqualTo("0");
+        // Số dư nạp lại từ DB khớp với Redis
+        redis.delete(balanceKey(USER));
+        assertThat(service.getBalance(USER)).isEqualTo(70);
+    }
+
+    @Test
+    void insufficientBalanceIsRejectedWithoutReservation() {
+        assertThatThrownBy(() -> spend(USER, 101)).isInstanceOf(BadRequestException.class);
+
+        assertThat(redis.opsForValue().get(balanceKey(USER))).isEqualTo("100");
+        assertThat(redis.opsForZSet().size(RedisKeyConstants.WALLET_RESERVATIONS)).isZero();
+    }
+
+    @Test
+    void rollbackCompensatesReservation() {
+        assertThatThrownBy(() -> transactionTemplate.executeWithoutResult(status -> {
+            service.reserve(USER, -30, UUID.randomUUID().toString());
+            throw new IllegalStateException("boom");
+        })).isInstanceOf(IllegalStateException.class);
+
+        assertThat(redis.opsForValue().get(balanceKey(USER))).isEqualTo("100");
+        assertThat(redis.opsForZSet().size(RedisKeyConstants.WALLET_RESERVATIONS)).isZero();
+        assertThat(redis.opsForHash().get(inflightKey(USER), "pending")).isEqualTo("0");
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM wallet_transactions", Integer.class)).isZero();
+    }
+
+    @Test
+    void concurrentSpendsNeverOverdraw() throws Exception {
+        AtomicInteger succeeded = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 150; i++) {
+                futures.add(executor.submit(() -> {
+                    try {
+                        spend(USER, 1);
+                        succeeded.incrementAndGet();
+                    } catch (BadRequestException e) {
+                        // hết xu
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(succeeded.get()).isEqualTo(100);
+        assertThat(redis.opsForValue().get(balanceKey(USER))).isEqualTo("0");
+        redis.delete(balanceKey(USER));
+        assertThat(service.getBalance(USER)).isZero();
+    }
+
+    @Test
+    void reloadIsRefusedWhileReservationInFlight() throws Exception {
+        CountDownLatch reserved = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            service.getBalance(USER);
+            Future<?> inFlight = executor.submit(() -> transactionTemplate.executeWithoutResult(status -> {
+                String reservationId = UUID.randomUUID().toString();
+                long balance = service.reserve(USER, -30, reservationId);
+                insertLedger(USER, "SPEND", 30, false, reservationId, balance);
+                reserved.countDown();
+                await(commit);
+            }));
+            await(reserved);
+
+            // Key số dư bị evict trong lúc giao dịch chưa commit
+            redis.delete(balanceKey(USER));
+            assertThat(service.getBalance(USER)).isEqualTo(100);
+            assertThat(redis.hasKey(balanceKey(USER))).isFalse();
+            assertThatThrownBy(() -> spend(USER, 80)).isInstanceOf(BadRequestException.class);
+
+            commit.countDown();
+            inFlight.get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(service.getBalance(USER)).isEqualTo(70);
+        assertThat(redis.opsForValue().get(balanceKey(USER))).isEqualTo("70");
+        assertThatThrownBy(() -> spend(USER, 80)).isInstanceOf(BadRequestException.class);
+    }
+
+    @Test
+    void reloadIsRefusedWhenReservationCommitsDuringRead() throws Exception {
+        CountDownLatch reserved = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            service.getBalance(USER);
+            Future<?> inFlight = executor.submit(() -> transactionTemplate.executeWithoutResult(status -> {
+                String reservationId = UUID.randomUUID().toString();
+                long balance = service.reserve(USER, -30, reservationId);
+                insertLedger(USER, "SPEND", 30, false, reservationId, balance);
+                reserved.countDown();
+                await(commit);
+            }));
+            await(reserved);
+            redis.delete(balanceKey(USER));
+
+            // Giao dịch commit ngay sau khi câu SELECT số dư đọc xong (kết quả chưa có khoản chi 30 xu)
+            doAnswer(invocation -> {
+                Object stale = invocation.callRealMethod();
+                commit.countDown();
+                inFlight.get(10, TimeUnit.SECONDS);
+                return stale;
+            }).when(serviceJdbc).queryForObject(anyString(), eq(Long.class), eq(USER), eq(USER));
+
+            assertThat(service.getBalance(USER)).isEqualTo(100);
+            assertThat(redis.hasKey(balanceKey(USER))).isFalse();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        reset(serviceJdbc);
+        assertThat(service.getBalance(USER)).isEqualTo(70);
+    }
+
+    @Test
+    void recoveryCompensatesOrphanAndReleasesCommitted() {
+        service.getBalance(USER);
+        String orphan = UUID.randomUUID().toString();
+        String committed = UUID.randomUUID().toString();
+        transactionTemplate.executeWithoutResult(status -> {
+            service.reserve(USER, -10, orphan);
+            service.reserve(USER, -20, committed);
+            insertLedger(USER, "SPEND", 20, false, committed, 70);
+            // Node chết trước afterCompletion: giả lập bằng cách bỏ các synchronization đã đăng ký
+            TransactionSynchronizationManager.clearSynchronization();
+            TransactionSynchronizationManager.initSynchronization();
+        });
+        assertThat(redis.opsForValue().get(balanceKey(USER))).isEqualTo("70");
+        ageReservations();
+
+        service.recoverReservations();
+        service.recoverReservations();
+
+        // Khoản 10 xu chưa có dòng ledger được hoàn đúng 1 lần, khoản 20 xu giữ nguyên
+        assertThat(redis.opsForValue().get(balanceKey(USER))).isEqualTo("80");
+        assertThat(redis.opsForZSet().size(RedisKeyConstants.WALLET_RESERVATIONS)).isZero();
+        assertThat(redis.opsForHash().get(inflightKey(USER), "pending")).isEqualTo("0");
+        redis.delete(balanceKey(USER));
+        assertThat(service.getBalance(USER)).isEqualTo(80);
+    }
+
+    @Test
+    void settleFoldsLedgerIntoSnapshotsWithoutChangingBalance() {
+        jdbcTemplate.update("INSERT INTO user_wallets (user_id, balance, version) VALUES (?, 10, 0)", OTHER_USER);
+        insertLedger(USER, "SPEND", 30, false, null);
+        insertLedger(USER, "DEPOSIT", 5, false, null);
+        insertLedger(OTHER_USER, "BONUS", 7, false, null);
+        long before = service.getBalance(USER);
+
+        service.settleLedger();
+
+        assertThat(jdbcTemplate.queryForObject("SELECT balance FROM user_wallets WHERE user_id = ?",
+                Integer.class, USER)).isEqualTo(75);
+        assertThat(jdbcTemplate.queryForObject("SELECT balance FROM user_wallets WHERE user_id = ?",
+                Integer.class, OTHER_USER)).isEqualTo(17);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM wallet_transactions WHERE settled = false",
+                Integer.class)).isZero();
+        assertThat(redis.hasKey(RedisKeyConstants.WALLET_SETTLE_LOCK)).isFalse();
+        redis.delete(balanceKey(USER));
+        assertThat(service.getBalance(USER)).isEqualTo(before).isEqualTo(75);
+    }
+
+    @Test
+    void settleSkipsAndKeepsLockHeldByAnotherNode() {
+        insertLedger(USER, "SPEND", 30, false, null);
+        redis.opsForValue().set(RedisKeyConstants.WALLET_SETTLE_LOCK, "other-node", Duration.ofMinutes(1));
+
+        service.settleLedger();
+
+        assertThat(redis.opsForValue().get(RedisKeyConstants.WALLET_SETTLE_LOCK)).isEqualTo("other-node");
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM wallet_transactions WHERE settled = false",
+                Integer.class)).isEqualTo(1);
+    }
+
+    @Test
+    void archiveMovesOnlyOldSettledRows() {
+        LocalDateTime old = LocalDateTime.now().minusDays(200);
+        for (int i = 0; i < 3; i++) {
+            insertLedger(USER, "SPEND", 1, true, null, 0, old);
+        }
+        insertLedger(USER, "SPEND", 1, false, null, 0, old);
+        insertLedger(USER, "SPEND", 1, true, null, 0, LocalDateTime.now());
+
+        service.archiveTransactions();
+
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM wallet_transactions_archive", Integer.class))
+                .isEqualTo(3);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM wallet_transactions", Integer.class))
+                .isEqualTo(2);
+        assertThat(redis.hasKey(RedisKeyConstants.WALLET_ARCHIVE_LOCK)).isFalse();
+    }
+
+    @Test
+    void archiveKeepsLockTakenOverByAnotherNode() {
+        insertLedger(USER, "SPEND", 1, true, null, 0, LocalDateTime.now().minusDays(200));
+        // Lock hết hạn giữa chừng và node khác lấy được: lần xóa lock cuối job không được xóa lock đó
+        doAnswer(invocation -> {
+            redis.opsForValue().set(RedisKeyConstants.WALLET_ARCHIVE_LOCK, "other-node", Duration.ofMinutes(1));
+            return invocation.callRealMethod();
+        }).when(serviceJdbc).queryForList(anyString(), eq(Long.class), any(), any());
+
+        service.archiveTransactions();
+
+        assertThat(redis.opsForValue().get(RedisKeyConstants.WALLET_ARCHIVE_LOCK)).isEqualTo("other-node");
+    }
+
+    private long spend(long userId, int amount) {
+        return transactionTemplate.execute(status -> {
+            String reservationId = UUID.randomUUID().toString();
+            long balance = service.reserve(userId, -amount, reservationId);
+            insertLedger(userId, "SPEND", amount, false, reservationId, balance);
+            return balance;
+        });
+    }
+
+    private static void insertLedger(long userId, String type, int amount, boolean settled, String reservationId) {
+        insertLedger(userId, type, amount, settled, reservationId, 0);
+    }
+
+    private static void insertLedger(long userId, String type, int amount, boolean settled, String reservationId,
+            long balanceAfter) {
+        insertLedger(userId, type, amount, settled, reservationId, balanceAfter, LocalDateTime.now());
+    }
+
+    private static void insertLedger(long userId, String type, int amount, boolean settled, String reservationId,
+            long balanceAfter, LocalDateTime createdAt) {
+        jdbcTemplate.update("INSERT INTO wallet_transactions (user_id, type, amount, balance_after, reservation_id, " +
+                "settled, created_at) VALUES (?, ?, ?, ?, ?, ?, ?)", userId, type, amount, balanceAfter, reservationId,
+                settled, createdAt);
+    }
+
+    // Đẩy thời điểm tạo reservation về quá khứ để job khôi phục coi là quá hạn
+    private static void ageReservations() {
+        var members = redis.opsForZSet().range(RedisKeyConstants.WALLET_RESERVATIONS, 0, -1);
+        for (String member : members) {
+            redis.opsForZSet().add(RedisKeyConstants.WALLET_RESERVATIONS, member, 1);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertThat(latch.await(10, TimeUnit.SECONDS)).isTrue();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String balanceKey(long userId) {
+        return RedisKeyConstants.WALLET_BALANCE + userId;
+    }
+
+    private static String inflightKey(long userId) {
+        return RedisKeyConstants.WALLET_INFLIGHT + userId;
+    }
+
+}
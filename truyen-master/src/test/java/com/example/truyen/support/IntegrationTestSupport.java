@@ -0,0 +1,153 @@
+package com.example.truyen.support;
+
+import jakarta.persistence.Entity;
+import org.hibernate.boot.Metadata;
+import org.hibernate.boot.MetadataSources;
+import org.hibernate.boot.model.naming.CamelCaseToUnderscoresNamingStrategy;
+import org.hibernate.boot.registry.StandardServiceRegistry;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.tool.schema.spi.SchemaManagementToolCoordinator;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.boot.orm.jpa.hibernate.SpringImplicitNamingStrategy;
+import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
+import org.springframework.core.type.filter.AnnotationTypeFilter;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Kết nối MySQL/Redis thật cho các test cần hạ tầng (mặc định localhost, đổi bằng TEST_MYSQL_URL,
+ * TEST_MYSQL_USER, TEST_MYSQL_PASSWORD, TEST_REDIS_HOST, TEST_REDIS_PORT); không kết nối được thì
+ * test bị bỏ qua. Bảng được tạo từ chính các entity (Hibernate schema export, cùng dialect và naming
+ * strategy với ứng dụng) nên không lệch với schema production; khóa ngoại được bỏ qua để test chỉ
+ * cần tạo các bảng mình dùng.
+ */
+public final class IntegrationTestSupport {
+
+    private static final Pattern TARGET_TABLE = Pattern.compile(
+            "^(?:create table|alter table|create (?:unique )?index \\S+ on) (\\S+)", Pattern.CASE_INSENSITIVE);
+
+    private static List<String> entityDdl;
+
+    private IntegrationTestSupport() {
+    }
+
+    public static DataSource mysql() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                env("TEST_MYSQL_URL", "jdbc:mysql://127.0.0.1:3306/truyen_test"),
+                env("TEST_MYSQL_USER", "root"), env("TEST_MYSQL_PASSWORD", "root"));
+        boolean reachable;
+        try {
+            new JdbcTemplate(dataSource).queryForObject("SELECT 1", Integer.class);
+            reachable = true;
+        } catch (Exception e) {
+            reachable = false;
+        }
+        assumeTrue(reachable, "MySQL not reachable");
+        return dataSource;
+    }
+
+    // Redis database 15, test tự xóa dữ liệu của mình
+    public static LettuceConnectionFactory redis() {
+        RedisStandaloneConfiguration config = new RedisStandaloneConfiguration(
+                env("TEST_REDIS_HOST", "localhost"), Integer.parseInt(env("TEST_REDIS_PORT", "6379")));
+        config.setDatabase(15);
+        LettuceConnectionFactory connectionFactory = new LettuceConnectionFactory(config);
+        connectionFactory.afterPropertiesSet();
+        boolean reachable;
+        try {
+            new StringRedisTemplate(connectionFactory).execute(connection -> connection.ping(), true);
+            reachable = true;
+        } catch (Exception e) {
+            reachable = false;
+        }
+        if (!reachable) {
+            connectionFactory.destroy();
+        }
+        assumeTrue(reachable, "Redis not reachable");
+        return connectionFactory;
+    }
+
+    // Xóa rồi tạo lại các bảng theo mapping entity hiện tại (kèm index, unique)
+    public static void recreateTables(JdbcTemplate jdbcTemplate, String... tables) {
+        dropTables(jdbcTemplate, tables);
+        Set<String> wanted = Set.of(tables);
+        for (String statement : entityDdl()) {
+            Matcher matcher = TARGET_TABLE.matcher(statement);
+            if (matcher.find() && wanted.contains(matcher.group(1))
+                    && !statement.toLowerCase().contains("foreign key")) {
+                jdbcTemplate.execute(statement);
+            }
+        }
+    }
+
+    public static void dropTables(JdbcTemplate jdbcTemplate, String... tables) {
+        for (String table : tables) {
+            jdbcTemplate.execute("DROP TABLE IF EXISTS " + table);
+        }
+    }
+
+    private static synchronized List<String> entityDdl() {
+        if (entityDdl == null) {
+            entityDdl = exportEntityDdl();
+        }
+        return entityDdl;
+    }
+
+    private static List<String> exportEntityDdl() {
+        StandardServiceRegistry registry = new StandardServiceRegistryBuilder()
+                .applySetting("hibernate.dialect", "org.hibernate.dialect.MySQLDialect")
+                .applySetting("hibernate.boot.allow_jdbc_metadata_access", "false")
+                .applySetting("hibernate.physical_naming_strategy", new CamelCaseToUnderscoresNamingStrategy())
+                .applySetting("hibernate.implicit_naming_strategy", new SpringImplicitNamingStrategy())
+                .build();
+        try {
+            MetadataSources sources = new MetadataSources(registry);
+            ClassPathScanningCandidateComponentProvider scanner = new ClassPathScanningCandidateComponentProvider(false);
+            scanner.addIncludeFilter(new AnnotationTypeFilter(Entity.class));
+            for (BeanDefinition entity : scanner.findCandidateComponents("com.example.truyen.entity")) {
+                sources.addAnnotatedClass(Class.forName(entity.getBeanClassName()));
+            }
+            Metadata metadata = sources.buildMetadata();
+
+            // Giống ddl-auto của ứng dụng nhưng chỉ sinh script "create", không chạm DB
+            StringWriter script = new StringWriter();
+            Map<String, Object> settings = new HashMap<>();
+            settings.put(AvailableSettings.JAKARTA_HBM2DDL_DATABASE_ACTION, "none");
+            settings.put(AvailableSettings.JAKARTA_HBM2DDL_SCRIPTS_ACTION, "create");
+            settings.put(AvailableSettings.JAKARTA_HBM2DDL_SCRIPTS_CREATE_TARGET, script);
+            settings.put(AvailableSettings.HBM2DDL_DELIMITER, ";");
+            SchemaManagementToolCoordinator.process(metadata, registry, settings, action -> {
+            });
+
+            return Arrays.stream(script.toString().split(";"))
+                    .map(String::trim)
+                    .filter(statement -> !statement.isEmpty())
+                    .toList();
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Cannot export schema from entities", e);
+        } finally {
+            StandardServiceRegistryBuilder.destroy(registry);
+        }
+    }
+
+    private static String env(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return value != null ? value : defaultValue;
+    }
+}